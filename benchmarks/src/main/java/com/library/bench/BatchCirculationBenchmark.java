@@ -0,0 +1,117 @@
+// File: com/library/bench/BatchCirculationBenchmark.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.inventory.CirculationOp;
+import com.library.model.Book;
+import com.library.model.Patron;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A class checkout followed by the matching returns: batchSize operations spread over a few titles,
+ * applied through Library one call at a time versus through one circulate call per direction. With
+ * durable, every change goes to a write-ahead log with synchronous commit, so single calls wait for
+ * a flush each while a batch waits once. The library is rebuilt every iteration, which keeps the
+ * patrons' borrow histories (and the log) from growing without bound.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchCirculationBenchmark {
+    @Param({"100", "2000"})
+    int batchSize;
+
+    @Param({"10", "200"})
+    int titles;
+
+    @Param({"false", "true"})
+    boolean durable;
+
+    Library library;
+    Path dir;
+    List<CirculationOp> checkouts;
+    List<CirculationOp> returns;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        Logger logger = Logger.getLogger("com.library");
+        logger.setUseParentHandlers(false);
+        if (logger.getHandlers().length == 0) {
+            logger.addHandler(new Handler() {
+                @Override
+                public void publish(LogRecord record) {
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+        }
+        if (durable) {
+            dir = Files.createTempDirectory("batch-bench");
+            library = Library.openDurable(dir, true, null);
+        } else {
+            library = new Library();
+        }
+        List<Book> books = CatalogGenerator.books(titles, 11);
+        for (Book b : books) {
+            library.addBook(b.getIsbn(), b.getTitle(), b.getAuthor(), b.getPublicationYear(), batchSize);
+        }
+        List<Patron> patrons = CatalogGenerator.patrons(library, batchSize);
+        checkouts = new ArrayList<>(batchSize);
+        returns = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            String isbn = books.get(i % titles).getIsbn();
+            checkouts.add(CirculationOp.checkout(isbn, patrons.get(i).getId()));
+            returns.add(CirculationOp.giveBack(isbn, patrons.get(i).getId()));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        library.close();
+        if (dir == null) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+        dir = null;
+    }
+
+    @Benchmark
+    public int singleCalls() {
+        int ok = 0;
+        for (CirculationOp op : checkouts) {
+            if (library.checkout(op.getIsbn(), op.getPatronId())) ok++;
+        }
+        for (CirculationOp op : returns) {
+            if (library.returnBook(op.getIsbn(), op.getPatronId())) ok++;
+        }
+        return ok;
+    }
+
+    @Benchmark
+    public int batched() {
+        boolean[] out = library.circulate(checkouts);
+        boolean[] back = library.circulate(returns);
+        return out.length + back.length;
+    }
+}
@@ -0,0 +1,120 @@
+// File: com/library/bench/CatalogGenerator.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.factory.BookFactory;
+import com.library.factory.PatronFactory;
+import com.library.model.Book;
+import com.library.model.Patron;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deterministic synthetic catalog and patron data for the benchmarks. Books and patrons go through
+ * {@link BookFactory} and {@link PatronFactory} so they are validated exactly like production data.
+ */
+public final class CatalogGenerator {
+    private static final String[] WORDS = {
+            "java", "clean", "code", "effective", "design", "patterns", "concurrency", "practice",
+            "refactoring", "domain", "driven", "systems", "distributed", "data", "intensive", "applications",
+            "algorithms", "structures", "modern", "operating", "compilers", "principles", "art", "computer",
+            "programming", "pragmatic", "programmer", "mythical", "month", "release", "site", "reliability",
+            "engineering", "network", "security", "functional", "reactive", "cloud", "native", "database",
+            "internals", "garden", "river", "night", "winter", "summer", "ocean", "mountain", "city", "stars"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Ada", "Alan", "Barbara", "Brian", "Donald", "Edsger", "Frances", "Grace", "Ken", "Leslie",
+            "Linus", "Margaret", "Niklaus", "Radia", "Robert", "Tony", "Joshua", "Martin", "Kent", "Rich"
+    };
+    private static final String[] LAST_NAMES = {
+            "Lovelace", "Turing", "Liskov", "Kernighan", "Knuth", "Dijkstra", "Allen", "Hopper", "Thompson",
+            "Lamport", "Torvalds", "Hamilton", "Wirth", "Perlman", "Martin", "Hoare", "Bloch", "Fowler",
+            "Beck", "Hickey", "Goetz", "Evans", "Kleppmann", "Nygard", "Brooks"
+    };
+
+    // keep per-operation INFO logging out of data set-up and measurements; the strong reference stops
+    // the logger (and with it the level) from being garbage collected
+    private static final Logger LIBRARY_LOGGER = Logger.getLogger("com.library");
+
+    static {
+        LIBRARY_LOGGER.setLevel(Level.WARNING);
+    }
+
+    private CatalogGenerator() {}
+
+    public static String isbn(long n) {
+        String body = String.format("978%09d", n % 1_000_000_000L);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int d = body.charAt(i) - '0';
+            sum += (i % 2 == 0) ? d : d * 3;
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+
+    public static Book book(long n, Random rnd) {
+        int words = 1 + rnd.nextInt(4);
+        StringBuilder title = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) title.append(' ');
+            String word = WORDS[rnd.nextInt(WORDS.length)];
+            title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        title.append(' ').append(n); // keeps titles distinct across large catalogs
+        String author = FIRST_NAMES[rnd.nextInt(FIRST_NAMES.length)] + " "
+                + LAST_NAMES[rnd.nextInt(LAST_NAMES.length)];
+        return BookFactory.create(isbn(n), title.toString(), author, 1950 + rnd.nextInt(75));
+    }
+
+    public static List<Book> books(int count, long seed) {
+        Random rnd = new Random(seed);
+        List<Book> res = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) res.add(book(i, rnd));
+        return res;
+    }
+
+    public static Library library(int books, int copies, long seed) {
+        Library lib = new Library();
+        for (Book b : books(books, seed)) {
+            lib.addBook(b.getIsbn(), b.getTitle(), b.getAuthor(), b.getPublicationYear(), copies);
+        }
+        return lib;
+    }
+
+    /**
+     * The library's own Book objects (live status included), listed once for the scan baselines so
+     * they do not pay for listing the catalog on every call. A blank title search matches every title.
+     */
+    public static List<Book> allBooks(Library lib, int expected) {
+        List<Book> res = new ArrayList<>(lib.searchTitle(""));
+        if (res.size() != expected) {
+            throw new IllegalStateException("Listed " + res.size() + " of " + expected + " titles");
+        }
+        return res;
+    }
+
+    public static List<Patron> patrons(Library lib, int count) {
+        List<Patron> res = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            res.add(lib.addPatron("Patron " + i, "patron" + i + "@example.com"));
+        }
+        return res;
+    }
+
+    /** Registers a patron who has borrowed and returned historyLength random titles of the catalog. */
+    public static Patron patronWithHistory(Library lib, int catalogSize, int historyLength, long seed) {
+        Random rnd = new Random(seed);
+        Patron p = lib.addPatron("Reader " + seed, "reader" + seed + "@example.com");
+        for (int i = 0; i < historyLength; i++) {
+            String isbn = isbn(rnd.nextInt(catalogSize));
+            if (lib.checkout(isbn, p.getId())) {
+                lib.returnBook(isbn, p.getId());
+            }
+        }
+        return p;
+    }
+}
@@ -0,0 +1,72 @@
+// File: com/library/bench/CatalogStartupBenchmark.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.model.Book;
+import com.library.persistence.MappedCatalog;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of a library with `titles` titles until it can serve a checkout: loading through
+ * addBook one title at a time, against opening a mapped catalog file. `mappedFullScan` also runs a
+ * search that every title matches, which materializes the whole catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class CatalogStartupBenchmark {
+    @Param({"100000", "1000000"})
+    int titles;
+
+    List<Book> books;
+    Path file;
+    String probe;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        books = CatalogGenerator.books(titles, 5);
+        file = Files.createTempFile("catalog-bench", ".lmc");
+        MappedCatalog.write(file, books, b -> 2);
+        probe = books.get(titles / 2).getIsbn();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public boolean addBookLoop() {
+        Library lib = new Library();
+        for (Book b : books) lib.addBook(b.getIsbn(), b.getTitle(), b.getAuthor(), b.getPublicationYear(), 2);
+        return serve(lib);
+    }
+
+    @Benchmark
+    public boolean mapped() throws IOException {
+        Library lib = new Library();
+        lib.openCatalog(file);
+        return serve(lib);
+    }
+
+    @Benchmark
+    public List<Book> mappedFullScan() throws IOException {
+        Library lib = new Library();
+        lib.openCatalog(file);
+        return lib.searchTitle("");
+    }
+
+    private boolean serve(Library lib) {
+        int patron = lib.addPatron("Reader", "reader@example.com").getId();
+        return lib.checkout(probe, patron);
+    }
+}
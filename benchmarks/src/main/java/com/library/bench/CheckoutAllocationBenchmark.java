@@ -0,0 +1,79 @@
+// File: com/library/bench/CheckoutAllocationBenchmark.java
+package com.library.bench;
+
+import com.library.audit.AuditLog;
+import com.library.inventory.LibraryInventory;
+import com.library.model.Book;
+import com.library.reservation.ReservationManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Allocation profile of the checkout hot path. Run with {@code -prof gc}: gc.alloc.rate.norm is the
+ * number of bytes allocated per operation. The patron discards its borrow record, which is the one
+ * allocation the path is allowed, so the inventory itself should report close to 0 B/op.
+ *
+ * `audit` attaches an audit log: "off" records nothing (events are below its level), "on" records
+ * every operation. The profiler counts all threads, so "on" includes the writer thread's formatting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckoutAllocationBenchmark {
+    private static final int TITLES = 10_000;
+
+    @Param({"none", "off", "on"})
+    String audit;
+
+    LibraryInventory inventory;
+    AuditLog auditLog;
+    Path auditFile;
+    String[] isbns;
+    HistorylessPatron patron;
+    int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        inventory = new LibraryInventory(new ReservationManager());
+        List<Book> books = CatalogGenerator.books(TITLES, 7);
+        isbns = new String[TITLES];
+        for (int i = 0; i < TITLES; i++) {
+            inventory.addBook(books.get(i), 2);
+            isbns[i] = books.get(i).getIsbn();
+        }
+        patron = new HistorylessPatron("Allocation");
+        if (!audit.equals("none")) {
+            auditFile = Files.createTempFile("audit-bench", ".log");
+            auditLog = AuditLog.open(auditFile, 1 << 16, audit.equals("on") ? Level.INFO : Level.WARNING);
+            inventory.setAuditLog(auditLog);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (auditLog != null) {
+            auditLog.close();
+            Files.deleteIfExists(auditFile);
+        }
+    }
+
+    @Benchmark
+    public boolean checkoutAndReturn() {
+        String isbn = isbns[next++ % TITLES];
+        return inventory.checkoutBook(isbn, patron) & inventory.returnBook(isbn, patron);
+    }
+
+    @Benchmark
+    public int availableCopies() {
+        return inventory.getAvailableCopies(isbns[next++ % TITLES]);
+    }
+}
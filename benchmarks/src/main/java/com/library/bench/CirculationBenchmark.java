@@ -0,0 +1,77 @@
+// File: com/library/bench/CirculationBenchmark.java
+package com.library.bench;
+
+import com.library.inventory.LibraryInventory;
+import com.library.model.Book;
+import com.library.reservation.ReservationManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout followed by return of the same copy, single-threaded and under contention. hotTitles limits
+ * the titles the threads pick from: 1 puts every thread on the same ISBN, larger values spread them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CirculationBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int catalogSize;
+
+    @Param({"1", "1024"})
+    int hotTitles;
+
+    LibraryInventory inventory;
+    String[] isbns;
+
+    @State(Scope.Thread)
+    public static class Desk {
+        HistorylessPatron patron;
+
+        @Setup
+        public void setUp() {
+            patron = new HistorylessPatron("Desk " + Thread.currentThread().getName());
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        inventory = new LibraryInventory(new ReservationManager());
+        List<Book> books = CatalogGenerator.books(catalogSize, 42);
+        isbns = new String[Math.min(hotTitles, catalogSize)];
+        for (int i = 0; i < books.size(); i++) {
+            // enough copies that concurrent desks never exhaust a hot title
+            inventory.addBook(books.get(i), 1024);
+            if (i < isbns.length) isbns[i] = books.get(i).getIsbn();
+        }
+    }
+
+    private boolean cycle(Desk desk) {
+        String isbn = isbns[ThreadLocalRandom.current().nextInt(isbns.length)];
+        return inventory.checkoutBook(isbn, desk.patron) & inventory.returnBook(isbn, desk.patron);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean checkoutReturn(Desk desk) {
+        return cycle(desk);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean checkoutReturn4Threads(Desk desk) {
+        return cycle(desk);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean checkoutReturnAllCores(Desk desk) {
+        return cycle(desk);
+    }
+}
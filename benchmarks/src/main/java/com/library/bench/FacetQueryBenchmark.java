@@ -0,0 +1,84 @@
+// File: com/library/bench/FacetQueryBenchmark.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.model.Book;
+import com.library.model.BookStatus;
+import com.library.model.Patron;
+import com.library.search.CatalogQuery;
+import com.library.search.Facet;
+import com.library.search.QueryResult;
+import com.library.search.TitleSearchStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Combined OPAC queries with author and decade facets: the bitmap query engine against chaining the
+ * existing strategies (the most selective indexed search, then scans for the other criteria, then
+ * hash-map facet counts). narrow is author + title word + 20-year range + AVAILABLE; broad is the
+ * year range and status alone, which no strategy indexes, so the chained path scans the catalog
+ * (listed once in setup; statuses stay live).
+ * A third of the titles are checked out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FacetQueryBenchmark {
+    @Param({"100000", "1000000"})
+    int catalogSize;
+
+    Library library;
+    List<Book> catalog;
+    CatalogQuery narrow;
+    CatalogQuery broad;
+
+    @Setup
+    public void setUp() {
+        library = CatalogGenerator.library(catalogSize, 1, 42);
+        Patron p = library.addPatron("Benchmark Patron", "bench@example.com");
+        for (int i = 0; i < catalogSize; i += 3) library.checkout(CatalogGenerator.isbn(i), p.getId());
+        catalog = CatalogGenerator.allBooks(library, catalogSize);
+        narrow = CatalogQuery.all().author("knuth").titleWords("reliability").years(1980, 1999)
+                .status(BookStatus.AVAILABLE).facets(Facet.AUTHOR, Facet.DECADE);
+        broad = CatalogQuery.all().years(1980, 1999).status(BookStatus.AVAILABLE).facets(Facet.AUTHOR, Facet.DECADE);
+    }
+
+    @Benchmark
+    public QueryResult engineNarrow() {
+        return library.query(narrow);
+    }
+
+    @Benchmark
+    public Map<String, Integer> chainedNarrow() {
+        List<Book> byAuthor = library.searchAuthor("knuth");
+        return filterAndCount(new TitleSearchStrategy().search(byAuthor, "reliability"));
+    }
+
+    @Benchmark
+    public QueryResult engineBroad() {
+        return library.query(broad);
+    }
+
+    @Benchmark
+    public Map<String, Integer> chainedBroad() {
+        return filterAndCount(catalog);
+    }
+
+    private static Map<String, Integer> filterAndCount(List<Book> candidates) {
+        Map<String, Integer> facets = new HashMap<>();
+        for (Book b : candidates) {
+            int year = b.getPublicationYear();
+            if (year < 1980 || year > 1999 || b.getStatus() != BookStatus.AVAILABLE) continue;
+            facets.merge(b.getAuthor(), 1, Integer::sum);
+            facets.merge(year / 10 * 10 + "s", 1, Integer::sum);
+        }
+        return facets;
+    }
+}
@@ -0,0 +1,60 @@
+// File: com/library/bench/FuzzySearchBenchmark.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.model.Book;
+import com.library.search.FuzzySearchStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misspelled title and author queries through the fuzzy index, sampled so the report carries
+ * p99/p99.9. fuzzyScan ranks the same query over the catalog, listed once in setup, without the
+ * maintained index, as the brute-force baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FuzzySearchBenchmark {
+    @Param({"100000", "1000000"})
+    int catalogSize;
+
+    Library library;
+    List<Book> catalog;
+
+    @Setup
+    public void setUp() {
+        library = CatalogGenerator.library(catalogSize, 1, 42);
+        catalog = CatalogGenerator.allBooks(library, catalogSize);
+    }
+
+    @Benchmark
+    public List<Book> titleTypos() {
+        return library.searchFuzzy("Desing Patterns", FuzzySearchStrategy.DEFAULT_LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> authorTypo() {
+        return library.searchFuzzy("Blcoh", FuzzySearchStrategy.DEFAULT_LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> titleAndAuthorTypos() {
+        return library.searchFuzzy("relaibility enginering kleppman", FuzzySearchStrategy.DEFAULT_LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> exactRareTitle() {
+        return library.searchFuzzy("Mythical Month " + (catalogSize - 1), FuzzySearchStrategy.DEFAULT_LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> fuzzyScan() {
+        return new FuzzySearchStrategy(null).search(catalog, "Desing Patterns");
+    }
+}
@@ -0,0 +1,24 @@
+// File: com/library/bench/HistorylessPatron.java
+package com.library.bench;
+
+import com.library.model.Patron;
+
+import java.time.LocalDateTime;
+
+/**
+ * Patron that drops its borrow records, so long benchmark runs measure the inventory rather than an
+ * ever-growing history list.
+ */
+class HistorylessPatron extends Patron {
+    HistorylessPatron(String name) {
+        super(name, "");
+    }
+
+    @Override
+    public void addBorrowRecord(String isbn, LocalDateTime at) {
+    }
+
+    @Override
+    public void returnBorrowedBook(String isbn, LocalDateTime at) {
+    }
+}
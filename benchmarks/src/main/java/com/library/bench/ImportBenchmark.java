@@ -0,0 +1,62 @@
+// File: com/library/bench/ImportBenchmark.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.importer.ImportStats;
+import com.library.importer.RecordFormat;
+import com.library.model.Book;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a CSV feed of `rows` rows (10% repeated ISBNs) into an empty library: one addBook call per
+ * row against the bulk import pipeline. Rows per second = rows / score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ImportBenchmark {
+    @Param({"100000", "500000"})
+    int rows;
+
+    String feed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Book> books = CatalogGenerator.books(rows * 9 / 10, 21);
+        StringBuilder sb = new StringBuilder("isbn,title,author,year,copies\n");
+        for (int i = 0; i < rows; i++) {
+            Book b = books.get(i < books.size() ? i : i % 97);
+            sb.append(b.getIsbn()).append(',').append(b.getTitle()).append(',').append(b.getAuthor()).append(',')
+                    .append(b.getPublicationYear()).append(",2\n");
+        }
+        feed = sb.toString();
+    }
+
+    @Benchmark
+    public Library addBookPerRow() throws IOException {
+        Library lib = new Library();
+        BufferedReader in = new BufferedReader(new StringReader(feed));
+        in.readLine(); // header
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] f = line.split(",");
+            lib.addBook(f[0], f[1], f[2], Integer.parseInt(f[3]), Integer.parseInt(f[4]));
+        }
+        return lib;
+    }
+
+    @Benchmark
+    public ImportStats bulkImport() throws IOException {
+        Library lib = new Library();
+        return lib.importCatalog(new StringReader(feed), RecordFormat.CSV, null);
+    }
+}
@@ -0,0 +1,58 @@
+// File: com/library/bench/NotificationDispatchBenchmark.java
+package com.library.bench;
+
+import com.library.model.Book;
+import com.library.model.Patron;
+import com.library.reservation.AsyncNotificationDispatcher;
+import com.library.reservation.ReservationManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cost seen by the return path when notifying a listener that takes listenerMicros per delivery:
+ * inline delivery pays it on every call, asynchronous delivery only pays for the enqueue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotificationDispatchBenchmark {
+    @Param({"0", "1000"})
+    long listenerMicros;
+
+    @Param({"INLINE", "DROP_OLDEST", "DROP_NEWEST"})
+    String mode;
+
+    ReservationManager manager;
+    AsyncNotificationDispatcher dispatcher;
+    Book book;
+    Patron patron;
+
+    @Setup
+    public void setUp() {
+        manager = new ReservationManager();
+        manager.addListener((b, p) -> {
+            if (listenerMicros > 0) LockSupport.parkNanos(listenerMicros * 1000);
+        });
+        if (!mode.equals("INLINE")) {
+            dispatcher = new AsyncNotificationDispatcher(1024, AsyncNotificationDispatcher.OverflowPolicy.valueOf(mode));
+            manager.setDispatcher(dispatcher);
+        }
+        book = CatalogGenerator.books(1, 3).get(0);
+        patron = new HistorylessPatron("Waiting");
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (dispatcher != null) dispatcher.close();
+    }
+
+    @Benchmark
+    public void notifyAvailable() {
+        manager.notifyBookAvailable(book, patron);
+    }
+}
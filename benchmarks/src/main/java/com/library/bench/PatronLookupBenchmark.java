@@ -0,0 +1,64 @@
+// File: com/library/bench/PatronLookupBenchmark.java
+package com.library.bench;
+
+import com.library.model.Patron;
+import com.library.model.PatronRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Patron lookup by id, the first step of every checkout and return: the plain HashMap Library used to
+ * read without synchronization, a ConcurrentHashMap, and the dense-id PatronRegistry. Ids are looked up
+ * at random over the registered range, so large registries also measure cache misses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatronLookupBenchmark {
+    @Param({"hashMap", "concurrentHashMap", "registry"})
+    String impl;
+
+    @Param({"10000", "1000000"})
+    int patronCount;
+
+    IntFunction<Patron> lookup;
+    int firstId;
+
+    @Setup
+    public void setUp() {
+        Map<Integer, Patron> map = impl.equals("hashMap") ? new HashMap<>() : new ConcurrentHashMap<>();
+        PatronRegistry registry = new PatronRegistry();
+        for (int i = 0; i < patronCount; i++) {
+            Patron p = new HistorylessPatron("Patron " + i);
+            if (i == 0) firstId = p.getId();
+            if (impl.equals("registry")) registry.register(p);
+            else map.put(p.getId(), p);
+        }
+        lookup = impl.equals("registry") ? registry::get : map::get;
+    }
+
+    private Patron lookupRandom() {
+        return lookup.apply(firstId + ThreadLocalRandom.current().nextInt(patronCount));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Patron lookup() {
+        return lookupRandom();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Patron lookup4Threads() {
+        return lookupRandom();
+    }
+}
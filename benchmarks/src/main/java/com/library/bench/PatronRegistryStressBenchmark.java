@@ -0,0 +1,75 @@
+// File: com/library/bench/PatronRegistryStressBenchmark.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.model.Patron;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registration racing with lookups and circulation: one thread keeps registering patrons while three
+ * look patrons up and run checkout/return cycles, several threads at a time on the same patrons and
+ * titles. Every successful checkout must be matched by a successful return, and every iteration
+ * starts from a fresh library and ends by checking that no patron still holds a loan, so lost updates
+ * fail the run instead of only skewing the score.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatronRegistryStressBenchmark {
+    private static final int TITLES = 64;
+    private static final int COPIES = 8;
+
+    @Param({"16", "10000"})
+    int patronCount;
+
+    Library library;
+    String[] isbns;
+    int firstId;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        library = CatalogGenerator.library(TITLES, COPIES, 5);
+        List<Patron> patrons = CatalogGenerator.patrons(library, patronCount);
+        firstId = patrons.get(0).getId();
+        isbns = new String[TITLES];
+        for (int i = 0; i < TITLES; i++) isbns[i] = CatalogGenerator.isbn(i);
+    }
+
+    @TearDown(Level.Iteration)
+    public void verify() {
+        for (Patron p : library.listPatrons()) {
+            if (!p.getCurrentBorrowedIsbns().isEmpty()) {
+                throw new IllegalStateException("Patron " + p.getId() + " still holds " + p.getCurrentBorrowedIsbns());
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(1)
+    public Patron register() {
+        return library.addPatron("Walk-in", "walkin@example.com");
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(3)
+    public boolean lookupAndCirculate() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Optional<Patron> p = library.getPatron(firstId + rnd.nextInt(patronCount));
+        if (p.isEmpty()) throw new IllegalStateException("Registered patron not found");
+        String isbn = isbns[rnd.nextInt(TITLES)];
+        int id = p.get().getId();
+        if (!library.checkout(isbn, id)) return false;
+        if (!library.returnBook(isbn, id)) throw new IllegalStateException("Return of " + isbn + " by " + id + " failed");
+        return true;
+    }
+}
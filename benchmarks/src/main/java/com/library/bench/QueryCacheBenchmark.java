@@ -0,0 +1,103 @@
+// File: com/library/bench/QueryCacheBenchmark.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.model.Patron;
+import com.library.search.CatalogQuery;
+import com.library.search.Facet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Kiosk traffic with and without the query cache (cacheBytes 0 turns it off): a Zipf-distributed
+ * stream over 520 popular title, author and catalog searches and recommendation widgets for 50
+ * patrons. kioskMixUnderChurn also checks out or returns a random title every 20th call; each
+ * change drops the cached answers it touches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class QueryCacheBenchmark {
+    private static final String[] WORDS = {
+            "java", "design", "patterns", "distributed", "systems", "data", "reliability", "engineering",
+            "algorithms", "compilers", "database", "internals", "cloud", "native", "functional", "security",
+            "garden", "river", "ocean", "stars"
+    };
+    private static final String[] AUTHORS = {
+            "knuth", "fowler", "bloch", "kleppmann", "liskov", "lamport", "hopper", "turing", "brooks", "evans"
+    };
+
+    @Param({"100000"})
+    int catalogSize;
+
+    @Param({"0", "67108864"})
+    long cacheBytes;
+
+    Library library;
+    List<Patron> patrons;
+    List<Supplier<Object>> requests;
+    int[] stream;
+    int next;
+    Random rnd;
+
+    @Setup
+    public void setUp() {
+        library = CatalogGenerator.library(catalogSize, 2, 42);
+        patrons = new ArrayList<>();
+        for (int i = 0; i < 50; i++) patrons.add(CatalogGenerator.patronWithHistory(library, catalogSize, 20, i));
+        if (cacheBytes > 0) library.enableQueryCache(cacheBytes);
+
+        requests = new ArrayList<>();
+        for (String w : WORDS) {
+            requests.add(() -> library.searchTitle(w));
+            requests.add(() -> library.searchGeneric("TrigramSearchStrategy", w));
+            CatalogQuery q = CatalogQuery.all().titleWords(w).facets(Facet.AUTHOR, Facet.DECADE);
+            requests.add(() -> library.query(q));
+            for (String a : AUTHORS) {
+                requests.add(() -> library.searchTitle(w + " " + WORDS[(w.length() + a.length()) % WORDS.length]));
+                CatalogQuery qa = CatalogQuery.all().titleWords(w).author(a).facets(Facet.STATUS);
+                requests.add(() -> library.query(qa));
+            }
+        }
+        for (String a : AUTHORS) requests.add(() -> library.searchAuthor(a));
+        for (Patron p : patrons) requests.add(() -> library.recommendForPatron(p.getId(), 10));
+        Collections.shuffle(requests, new Random(3)); // popularity independent of the kind of request
+
+        // Zipf(1) over the requests, most popular first
+        rnd = new Random(7);
+        double[] cdf = new double[requests.size()];
+        double sum = 0;
+        for (int i = 0; i < cdf.length; i++) cdf[i] = sum += 1.0 / (i + 1);
+        stream = new int[1 << 16];
+        for (int i = 0; i < stream.length; i++) {
+            int k = Arrays.binarySearch(cdf, rnd.nextDouble() * sum);
+            stream[i] = k < 0 ? -k - 1 : k;
+        }
+    }
+
+    @Benchmark
+    public Object kioskMix() {
+        return requests.get(stream[next++ & (stream.length - 1)]).get();
+    }
+
+    @Benchmark
+    public Object kioskMixUnderChurn() {
+        int i = next++;
+        if (i % 20 == 0) {
+            String isbn = CatalogGenerator.isbn(rnd.nextInt(catalogSize));
+            int patron = patrons.get(rnd.nextInt(patrons.size())).getId();
+            if (!library.checkout(isbn, patron)) library.returnBook(isbn, patron);
+        }
+        return requests.get(stream[i & (stream.length - 1)]).get();
+    }
+}
@@ -0,0 +1,42 @@
+// File: com/library/bench/RecommendationBenchmark.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.model.Book;
+import com.library.model.Patron;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Recommended for you" across catalog sizes and patron history lengths. A history of 0 exercises the
+ * newest-available fallback taken for new patrons.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class RecommendationBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int catalogSize;
+
+    @Param({"0", "10", "100", "1000"})
+    int historyLength;
+
+    Library library;
+    Patron patron;
+
+    @Setup
+    public void setUp() {
+        library = CatalogGenerator.library(catalogSize, 1, 42);
+        patron = CatalogGenerator.patronWithHistory(library, catalogSize, historyLength, 7);
+    }
+
+    @Benchmark
+    public List<Book> recommendTop10() {
+        return library.recommendForPatron(patron.getId(), 10);
+    }
+}
@@ -0,0 +1,83 @@
+// File: com/library/bench/RecoveryBenchmark.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.model.Book;
+import com.library.model.Patron;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to reopen a durable library from its data directory. The directory is produced once per trial
+ * by running `events` logged operations (titles, patrons, then checkouts and returns) through a
+ * durable library; with `snapshot` a checkpoint is taken at 90% so recovery loads the snapshot and
+ * replays only the last 10% of the log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class RecoveryBenchmark {
+    private static final int TITLES = 100_000;
+    private static final int PATRONS = 50_000;
+
+    @Param({"1000000", "10000000"})
+    int events;
+
+    @Param({"false", "true"})
+    boolean snapshot;
+
+    Path dir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("recovery-bench");
+        try (Library lib = Library.openDurable(dir, false, null)) {
+            List<Book> books = CatalogGenerator.books(TITLES, 11);
+            for (Book b : books) lib.addBook(b.getIsbn(), b.getTitle(), b.getAuthor(), b.getPublicationYear(), 2);
+            List<Patron> patrons = CatalogGenerator.patrons(lib, PATRONS);
+            Random rnd = new Random(12);
+            long written = TITLES + PATRONS;
+            long checkpointAt = snapshot ? events * 9L / 10 : Long.MAX_VALUE;
+            while (written < events) {
+                String isbn = books.get(rnd.nextInt(TITLES)).getIsbn();
+                int patron = patrons.get(rnd.nextInt(PATRONS)).getId();
+                // checkout of an unavailable title logs a reservation instead; either way one record
+                boolean out = lib.checkout(isbn, patron);
+                written++;
+                if (out && written < events) {
+                    lib.returnBook(isbn, patron);
+                    written++;
+                }
+                if (written >= checkpointAt) {
+                    lib.checkpoint();
+                    checkpointAt = Long.MAX_VALUE;
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    public Library recover() throws IOException {
+        Library lib = Library.openDurable(dir, false, null);
+        lib.close();
+        return lib;
+    }
+}
@@ -0,0 +1,137 @@
+// File: com/library/bench/ReservationBenchmark.java
+package com.library.bench;
+
+import com.library.model.Patron;
+import com.library.reservation.ReservationManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waitlist operations on a blockbuster title with `holds` patrons waiting: a duplicate reservation,
+ * a cancellation followed by the same patron queueing again at the back, a position lookup, and
+ * serving the head of the queue (who queues again). "deque" is the ArrayDeque the manager used to
+ * hold, with the scans that duplicate detection, cancel and position need on it; "indexed" is
+ * ReservationManager. Every operation leaves the queue length unchanged.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReservationBenchmark {
+    private static final String ISBN = CatalogGenerator.isbn(7);
+
+    @Param({"deque", "indexed"})
+    String impl;
+
+    @Param({"100", "10000"})
+    int holds;
+
+    Patron[] patrons;
+    Waitlist waitlist;
+
+    interface Waitlist {
+        boolean reserve(Patron p);
+
+        boolean cancel(Patron p);
+
+        int position(Patron p);
+
+        Patron poll();
+    }
+
+    static final class DequeWaitlist implements Waitlist {
+        private final Deque<Patron> queue = new ArrayDeque<>();
+
+        @Override
+        public synchronized boolean reserve(Patron p) {
+            if (queue.contains(p)) return false;
+            queue.addLast(p);
+            return true;
+        }
+
+        @Override
+        public synchronized boolean cancel(Patron p) {
+            return queue.remove(p);
+        }
+
+        @Override
+        public synchronized int position(Patron p) {
+            int i = 1;
+            for (Iterator<Patron> it = queue.iterator(); it.hasNext(); i++) {
+                if (it.next() == p) return i;
+            }
+            return 0;
+        }
+
+        @Override
+        public synchronized Patron poll() {
+            return queue.pollFirst();
+        }
+    }
+
+    static final class IndexedWaitlist implements Waitlist {
+        private final ReservationManager manager = new ReservationManager();
+
+        @Override
+        public boolean reserve(Patron p) {
+            return manager.reserve(ISBN, p);
+        }
+
+        @Override
+        public boolean cancel(Patron p) {
+            return manager.cancel(ISBN, p.getId());
+        }
+
+        @Override
+        public int position(Patron p) {
+            return manager.position(ISBN, p.getId());
+        }
+
+        @Override
+        public Patron poll() {
+            return manager.pollNextPatron(ISBN).orElse(null);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        waitlist = impl.equals("deque") ? new DequeWaitlist() : new IndexedWaitlist();
+        patrons = new Patron[holds];
+        for (int i = 0; i < holds; i++) {
+            patrons[i] = new HistorylessPatron("Fan " + i);
+            waitlist.reserve(patrons[i]);
+        }
+    }
+
+    private Patron randomPatron() {
+        return patrons[ThreadLocalRandom.current().nextInt(holds)];
+    }
+
+    @Benchmark
+    public boolean duplicateReserve() {
+        return waitlist.reserve(randomPatron());
+    }
+
+    @Benchmark
+    public boolean cancelAndRequeue() {
+        Patron p = randomPatron();
+        return waitlist.cancel(p) & waitlist.reserve(p);
+    }
+
+    @Benchmark
+    public int position() {
+        return waitlist.position(randomPatron());
+    }
+
+    @Benchmark
+    public boolean serveAndRequeue() {
+        return waitlist.reserve(waitlist.poll());
+    }
+}
@@ -0,0 +1,69 @@
+// File: com/library/bench/SearchBenchmark.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.model.Book;
+import com.library.search.TitleSearchStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search strategies across catalog sizes. titleScan is the original list-scanning strategy over the
+ * catalog, listed once in setup, kept as the baseline for the indexed paths. For 10M books pass
+ * {@code -p catalogSize=10000000 -jvmArgsAppend -Xmx24g}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SearchBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int catalogSize;
+
+    Library library;
+    List<Book> catalog;
+    String knownIsbn;
+    String rareTitle;
+
+    @Setup
+    public void setUp() {
+        library = CatalogGenerator.library(catalogSize, 1, 42);
+        catalog = CatalogGenerator.allBooks(library, catalogSize);
+        knownIsbn = CatalogGenerator.isbn(catalogSize / 2);
+        rareTitle = "Mythical Month " + (catalogSize - 1);
+    }
+
+    @Benchmark
+    public List<Book> titleToken() {
+        return library.searchTitle("reliability");
+    }
+
+    @Benchmark
+    public List<Book> titleRare() {
+        return library.searchTitle(rareTitle);
+    }
+
+    @Benchmark
+    public List<Book> titleInfixTrigram() {
+        return library.searchGeneric("TrigramSearchStrategy", "liabilit");
+    }
+
+    @Benchmark
+    public List<Book> author() {
+        return library.searchAuthor("knuth");
+    }
+
+    @Benchmark
+    public List<Book> isbn() {
+        return library.searchIsbn(knownIsbn);
+    }
+
+    @Benchmark
+    public List<Book> titleScan() {
+        return new TitleSearchStrategy().search(catalog, "reliability");
+    }
+}
@@ -0,0 +1,213 @@
+// File: com/library/bench/ServerLoadGenerator.java
+package com.library.bench;
+
+import com.library.Library;
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.MetricsRegistry;
+import com.library.model.Book;
+import com.library.model.Patron;
+import com.library.server.LibraryServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop load against {@link LibraryServer}, compared with calling the same {@link Library}
+ * in-process. Each client owns a patron and repeats a desk mix: 90% checkout-then-return of a random
+ * title, 5% ISBN search, 3% exact title search, 2% recommendations. Modes:
+ *
+ * - direct: clients call the Library methods on their own threads;
+ * - server: one connection per client, one request in flight;
+ * - pipelined: one connection per client, requests sent in bursts of the given depth before reading.
+ *
+ * Latency is measured per request from the moment its burst is sent to the moment its response is
+ * read, so pipelined latency includes queueing behind the earlier requests of the burst.
+ *
+ * Usage: ServerLoadGenerator [-catalog n] [-clients n] [-depth n] [-seconds n] [-mode direct|server|pipelined|all]
+ */
+public final class ServerLoadGenerator {
+    private static final long SEED = 42;
+
+    private final List<Book> books;
+    private final Library library;
+    private final List<Patron> patrons;
+
+    private ServerLoadGenerator(int catalogSize, int clients) {
+        books = CatalogGenerator.books(catalogSize, SEED);
+        library = CatalogGenerator.library(catalogSize, clients + 1, SEED);
+        patrons = CatalogGenerator.patrons(library, clients);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int catalog = 100_000, clients = 16, depth = 16, seconds = 10;
+        String mode = "all";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-catalog": catalog = Integer.parseInt(args[i + 1]); break;
+                case "-clients": clients = Integer.parseInt(args[i + 1]); break;
+                case "-depth": depth = Integer.parseInt(args[i + 1]); break;
+                case "-seconds": seconds = Integer.parseInt(args[i + 1]); break;
+                case "-mode": mode = args[i + 1]; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        ServerLoadGenerator gen = new ServerLoadGenerator(catalog, clients);
+        try (LibraryServer server = new LibraryServer(gen.library, 0).start()) {
+            System.out.printf("catalog=%d clients=%d seconds=%d cpus=%d%n",
+                    catalog, clients, seconds, Runtime.getRuntime().availableProcessors());
+            System.out.printf("%-10s %6s %12s %10s %10s %10s %10s%n",
+                    "mode", "depth", "ops/s", "p50(us)", "p99(us)", "p999(us)", "max(us)");
+            if (mode.equals("all") || mode.equals("direct")) gen.run("direct", clients, 1, seconds, null);
+            if (mode.equals("all") || mode.equals("server")) gen.run("server", clients, 1, seconds, server);
+            if (mode.equals("all") || mode.equals("pipelined")) gen.run("pipelined", clients, depth, seconds, server);
+        } finally {
+            gen.library.close();
+        }
+    }
+
+    private void run(String mode, int clients, int depth, int seconds, LibraryServer server) throws Exception {
+        // a short untimed pass warms the JIT and the connections' code paths
+        measure(clients, depth, Math.max(1, seconds / 5), server);
+        MetricsRegistry registry = new MetricsRegistry();
+        LatencyHistogram latency = registry.histogram("loadgen." + mode);
+        long ops = measure(clients, depth, seconds, server, latency);
+        LatencyHistogram.Snapshot s = latency.snapshot();
+        System.out.printf("%-10s %6d %12.0f %10.1f %10.1f %10.1f %10.1f%n", mode, depth, ops / (double) seconds,
+                s.percentile(0.5) / 1e3, s.percentile(0.99) / 1e3, s.percentile(0.999) / 1e3, s.getMaxNanos() / 1e3);
+    }
+
+    private long measure(int clients, int depth, int seconds, LibraryServer server) throws Exception {
+        return measure(clients, depth, seconds, server, new MetricsRegistry().histogram("warmup"));
+    }
+
+    private long measure(int clients, int depth, int seconds, LibraryServer server, LatencyHistogram latency)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            long[] deadline = new long[1];
+            List<Future<Long>> results = new ArrayList<>(clients);
+            for (int c = 0; c < clients; c++) {
+                Client client = new Client(patrons.get(c).getId(), new Random(SEED + c));
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return server == null
+                            ? client.direct(deadline[0], latency)
+                            : client.remote(server.getPort(), depth, deadline[0], latency);
+                }));
+            }
+            deadline[0] = System.nanoTime() + seconds * 1_000_000_000L;
+            start.countDown();
+            long ops = 0;
+            for (Future<Long> f : results) ops += f.get();
+            return ops;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private final class Client {
+        private final int patronId;
+        private final Random rnd;
+        private final List<String> requests = new ArrayList<>();
+
+        Client(int patronId, Random rnd) {
+            this.patronId = patronId;
+            this.rnd = rnd;
+        }
+
+        private Book randomBook() {
+            return books.get(rnd.nextInt(books.size()));
+        }
+
+        // appends the next step of the mix: one request, or a checkout/return pair
+        private void nextStep() {
+            int r = rnd.nextInt(100);
+            Book b = randomBook();
+            if (r < 90) {
+                requests.add("CHECKOUT " + b.getIsbn() + " " + patronId);
+                requests.add("RETURN " + b.getIsbn() + " " + patronId);
+            } else if (r < 95) {
+                requests.add("SEARCH isbn " + b.getIsbn());
+            } else if (r < 98) {
+                requests.add("SEARCH title " + b.getTitle());
+            } else {
+                requests.add("RECOMMEND " + patronId + " 10");
+            }
+        }
+
+        long direct(long deadline, LatencyHistogram latency) {
+            long ops = 0;
+            while (System.nanoTime() < deadline) {
+                requests.clear();
+                nextStep();
+                for (String req : requests) {
+                    long t0 = System.nanoTime();
+                    call(req);
+                    latency.recordSince(t0);
+                    ops++;
+                }
+            }
+            return ops;
+        }
+
+        private void call(String req) {
+            String[] a = req.split(" ", 3);
+            switch (a[0]) {
+                case "CHECKOUT": library.checkout(a[1], patronId); break;
+                case "RETURN": library.returnBook(a[1], patronId); break;
+                case "SEARCH": {
+                    if (a[1].equals("isbn")) library.searchIsbn(a[2]);
+                    else library.searchTitle(a[2]);
+                    break;
+                }
+                default: library.recommendForPatron(patronId, 10);
+            }
+        }
+
+        long remote(int port, int depth, long deadline, LatencyHistogram latency) throws IOException {
+            long ops = 0;
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                 Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+                socket.setTcpNoDelay(true);
+                while (System.nanoTime() < deadline) {
+                    requests.clear();
+                    while (requests.size() < depth) nextStep();
+                    long t0 = System.nanoTime();
+                    for (String req : requests) out.write(req + "\n");
+                    out.flush();
+                    for (int i = 0; i < requests.size(); i++) {
+                        readResponse(in);
+                        latency.recordSince(t0);
+                    }
+                    ops += requests.size();
+                }
+                out.write("QUIT\n");
+                out.flush();
+            }
+            return ops;
+        }
+
+        private void readResponse(BufferedReader in) throws IOException {
+            String line = in.readLine();
+            if (line == null) throw new EOFException("Server closed the connection");
+            if (line.startsWith("ERR")) throw new IOException("Server error: " + line);
+            String rest = line.length() > 3 ? line.substring(3) : "";
+            // SEARCH and RECOMMEND answer "OK <n>" followed by n book lines
+            if (!rest.isEmpty() && Character.isDigit(rest.charAt(0))) {
+                int n = Integer.parseInt(rest);
+                for (int i = 0; i < n; i++) in.readLine();
+            }
+        }
+    }
+}
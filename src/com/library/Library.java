@@ -1,49 +1,332 @@
 // File: com/library/Library.java
 package com.library;
 
+import com.library.audit.AuditLog;
+import com.library.cache.QueryCache;
+import com.library.concurrent.TimingWheel;
 import com.library.factory.BookFactory;
 import com.library.factory.PatronFactory;
+import com.library.importer.CatalogImporter;
+import com.library.importer.ImportListener;
+import com.library.importer.ImportStats;
+import com.library.importer.RecordFormat;
+import com.library.inventory.CirculationOp;
+import com.library.inventory.Hold;
 import com.library.inventory.LibraryInventory;
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.MetricsReporter;
 import com.library.model.Book;
+import com.library.model.HistoryArchive;
 import com.library.model.Patron;
-import com.library.recommend.RecommendationEngine;
+import com.library.model.PatronRegistry;
+import com.library.persistence.FileHistoryArchive;
+import com.library.persistence.LibraryJournal;
+import com.library.persistence.MappedCatalog;
+import com.library.persistence.Snapshot;
+import com.library.persistence.WriteAheadLog;
+import com.library.recommend.RecommendationService;
+import com.library.reservation.AsyncNotificationDispatcher;
 import com.library.reservation.ReservationListener;
 import com.library.reservation.ReservationManager;
+import com.library.search.IndexedSearchStrategy;
 import com.library.search.IsbnSearchStrategy;
 import com.library.search.SearchStrategy;
 import com.library.search.TitleSearchStrategy;
+import com.library.search.TrigramIndex;
+import com.library.search.TrigramSearchStrategy;
 import com.library.search.AuthorSearchStrategy;
+import com.library.search.CatalogQuery;
+import com.library.search.FacetIndex;
+import com.library.search.FuzzyIndex;
+import com.library.search.FuzzySearchStrategy;
+import com.library.search.QueryResult;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class Library implements ReservationListener {
+public class Library implements LibraryService, ReservationListener {
     private static final Logger LOGGER = Logger.getLogger(Library.class.getName());
 
     private final ReservationManager reservationManager = new ReservationManager();
     private final LibraryInventory inventory = new LibraryInventory(reservationManager);
-    private final Map<Integer, Patron> patrons = new HashMap<>();
-    private final RecommendationEngine recommendEngine = new RecommendationEngine();
+    private final PatronRegistry patrons = new PatronRegistry(); // lookups are lock-free
+    private final RecommendationService recommendService = new RecommendationService(inventory);
+
+    private final TitleSearchStrategy titleSearch = new TitleSearchStrategy(inventory.getTitleIndex());
+    private final AuthorSearchStrategy authorSearch = new AuthorSearchStrategy(inventory.getAuthorIndex());
+    private final IsbnSearchStrategy isbnSearch = new IsbnSearchStrategy(inventory.getIsbnIndex());
+    private final TrigramSearchStrategy trigramSearch = new TrigramSearchStrategy(inventory.getTitleTrigramIndex());
+    private final FuzzyIndex fuzzyIndex = new FuzzyIndex();
+    private final FuzzySearchStrategy fuzzySearch = new FuzzySearchStrategy(fuzzyIndex);
 
     private final List<SearchStrategy> searchStrategies = List.of(
-            new TitleSearchStrategy(),
-            new AuthorSearchStrategy(),
-            new IsbnSearchStrategy()
+            titleSearch,
+            authorSearch,
+            isbnSearch,
+            trigramSearch,
+            fuzzySearch
     );
 
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final Map<SearchStrategy, LatencyHistogram> searchTimes = new IdentityHashMap<>();
+    private final Map<String, SearchStrategy> strategiesByName = new HashMap<>(); // lower-cased class name
+    private final FacetIndex facetIndex = new FacetIndex();
+    private final LatencyHistogram queryTime = metrics.histogram("search.query");
+    private final LatencyHistogram recommendTime = metrics.histogram("recommend");
+    private final List<MetricsReporter> reporters = new CopyOnWriteArrayList<>();
+    private volatile QueryCache queryCache; // null while results are not cached
+    private volatile AuditLog audit;
+    private TimingWheel holdTimers; // guarded by this; null while holds do not expire
+    // patron history tiering; guarded by the patrons lock
+    private HistoryArchive historyArchive;
+    private int hotHistoryRecords;
+
+    private final Object checkpointLock = new Object();
+    private volatile boolean replaying;
+    // set only by openDurable
+    private Path dataDir;
+    private WriteAheadLog wal;
+    private LibraryJournal journal;
+    private boolean synchronousCommit;
+    private ScheduledExecutorService checkpointer;
+
     public Library() {
         reservationManager.addListener(this);
+        inventory.addListener(recommendService);
+        inventory.setMetrics(metrics);
+        reservationManager.setMetrics(metrics);
+        inventory.addListener(facetIndex);
+        inventory.addListener(fuzzyIndex);
+        for (SearchStrategy s : searchStrategies) {
+            String name = s.getClass().getSimpleName().replace("SearchStrategy", "").toLowerCase(Locale.ROOT);
+            searchTimes.put(s, metrics.histogram("search." + name));
+            strategiesByName.put(s.getClass().getSimpleName().toLowerCase(Locale.ROOT), s);
+        }
+    }
+
+    /**
+     * Opens a library whose state survives restarts. The newest snapshot in dir is loaded and the
+     * write-ahead log after it replayed; from then on every change is logged before the call returns.
+     * With synchronousCommit each mutating call also waits until its log record is on disk (commits
+     * running at the same time share one fsync); without it a crash can lose the last few
+     * milliseconds of changes. A snapshot is taken every checkpointInterval (zero or null: only on
+     * {@link #checkpoint()}), after which the log before it is deleted.
+     */
+    public static Library openDurable(Path dir, boolean synchronousCommit, Duration checkpointInterval) throws IOException {
+        Library lib = new Library();
+        lib.recover(dir);
+        lib.synchronousCommit = synchronousCommit;
+        if (checkpointInterval != null && !checkpointInterval.isZero()) {
+            long millis = checkpointInterval.toMillis();
+            lib.checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "library-checkpoint");
+                t.setDaemon(true);
+                return t;
+            });
+            lib.checkpointer.scheduleWithFixedDelay(() -> {
+                try {
+                    lib.checkpoint();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Checkpoint failed: {0}", e.getMessage());
+                }
+            }, millis, millis, TimeUnit.MILLISECONDS);
+        }
+        return lib;
+    }
+
+    public static Library openDurable(Path dir, boolean synchronousCommit) throws IOException {
+        return openDurable(dir, synchronousCommit, Duration.ofMinutes(5));
+    }
+
+    private void recover(Path dir) throws IOException {
+        long started = System.nanoTime();
+        // replay goes through the normal code paths; keep their per-operation log lines quiet
+        Logger pkg = Logger.getLogger("com.library");
+        Level savedLevel = pkg.getLevel();
+        pkg.setLevel(Level.WARNING);
+        replaying = true;
+        long lastLsn;
+        long replayed;
+        try {
+            Optional<Snapshot> snapshot = Snapshot.loadLatest(dir);
+            long snapshotLsn = 0;
+            if (snapshot.isPresent()) {
+                restore(snapshot.get());
+                snapshotLsn = snapshot.get().getLsn();
+            }
+            ReplayClock clock = new ReplayClock();
+            inventory.setClock(clock);
+            Replayer replayer = new Replayer(clock);
+            lastLsn = WriteAheadLog.replay(dir, snapshotLsn,
+                    (lsn, type, payload) -> LibraryJournal.decode(type, payload, replayer));
+            replayed = lastLsn - snapshotLsn;
+        } finally {
+            inventory.setClock(Clock.systemDefaultZone());
+            replaying = false;
+            pkg.setLevel(savedLevel);
+        }
+        recommendService.rebuild(patrons.snapshot());
+
+        dataDir = dir;
+        wal = WriteAheadLog.open(dir, lastLsn + 1);
+        journal = new LibraryJournal(wal);
+        inventory.setJournal(journal);
+        LOGGER.log(Level.INFO, "Recovered {0} titles and {1} patrons ({2} log records replayed) in {3} ms",
+                new Object[]{inventory.getAllBooks().size(), patrons.size(), replayed,
+                        (System.nanoTime() - started) / 1_000_000});
+    }
+
+    private void restore(Snapshot snapshot) {
+        for (Snapshot.PatronState ps : snapshot.getPatrons()) {
+            Patron p = new Patron(ps.getId(), ps.getName(), ps.getEmail());
+            for (Patron.BorrowRecord r : ps.getHistory()) {
+                p.restoreBorrowRecord(r.getIsbn(), r.getBorrowedAt(), r.getReturnAt());
+            }
+            putPatron(p);
+        }
+        for (Snapshot.BookState bs : snapshot.getBooks()) {
+            Book b = new Book(bs.getIsbn(), bs.getTitle(), bs.getAuthor(), bs.getYear());
+            b.setStatus(bs.getStatus());
+            inventory.restoreBook(b, bs.getAvailable(), bs.getBorrowed());
+        }
+        for (Map.Entry<String, int[]> e : snapshot.getReservations().entrySet()) {
+            for (int id : e.getValue()) {
+                Patron p = patrons.get(id);
+                if (p != null) reservationManager.reserve(e.getKey(), p);
+            }
+        }
+        for (Snapshot.HoldState hs : snapshot.getHolds()) {
+            Patron p = patrons.get(hs.getPatronId());
+            if (p != null) inventory.restoreHold(hs.getIsbn(), p, hs.getPlacedAt());
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes the log it covers. Changes are blocked only
+     * while the state is copied, not while it is written. Returns the snapshot's LSN.
+     */
+    public long checkpoint() throws IOException {
+        if (wal == null) throw new IllegalStateException("Library was not opened with openDurable");
+        synchronized (checkpointLock) {
+            Snapshot snapshot;
+            synchronized (patrons) {
+                snapshot = inventory.withAllTitlesLocked(this::captureSnapshot);
+            }
+            snapshot.write(dataDir);
+            wal.truncateThrough(snapshot.getLsn());
+            LOGGER.log(Level.INFO, "Checkpoint at LSN {0}", snapshot.getLsn());
+            return snapshot.getLsn();
+        }
+    }
+
+    // caller holds the patron lock and every inventory stripe, so no record can be appended meanwhile
+    private Snapshot captureSnapshot() {
+        long lsn = wal.lastLsn();
+        List<Snapshot.BookState> books = new ArrayList<>(inventory.getAllBooks().size());
+        for (Book b : inventory.getAllBooks()) {
+            books.add(new Snapshot.BookState(b.getIsbn(), b.getTitle(), b.getAuthor(), b.getPublicationYear(),
+                    b.getStatus(), inventory.getAvailableCopies(b.getIsbn()), inventory.getBorrowedCopies(b.getIsbn())));
+        }
+        List<Snapshot.PatronState> ps = new ArrayList<>(patrons.size());
+        for (Patron p : patrons.snapshot()) {
+            // a fresh copy, decoded from the patron's compact store and archive
+            ps.add(new Snapshot.PatronState(p.getId(), p.getName(), p.getEmail(), p.getBorrowHistory()));
+        }
+        Map<String, int[]> reservations = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Patron>> e : reservationManager.queues().entrySet()) {
+            reservations.put(e.getKey(), e.getValue().stream().mapToInt(Patron::getId).toArray());
+        }
+        List<Snapshot.HoldState> holds = new ArrayList<>();
+        for (Hold h : inventory.getHolds()) {
+            holds.add(new Snapshot.HoldState(h.getIsbn(), h.getPatron().getId(), h.getPlacedAt()));
+        }
+        return new Snapshot(lsn, books, ps, reservations, holds);
+    }
+
+    /**
+     * Stops metrics reporters, hold expiry and periodic checkpoints, and flushes the log of a durable
+     * library.
+     */
+    @Override
+    public void close() throws IOException {
+        for (MetricsReporter r : reporters) r.close();
+        reporters.clear();
+        stopHoldExpiry();
+        stopAuditLog();
+        if (checkpointer != null) checkpointer.shutdownNow();
+        if (wal != null) {
+            inventory.setJournal(null);
+            wal.close();
+        }
+    }
+
+    // waits for this thread's last log record when commits are synchronous
+    private void commit() {
+        if (wal != null && synchronousCommit) wal.awaitDurable();
     }
 
     // -- Patron management --
     public Patron addPatron(String name, String email) {
         Patron p = PatronFactory.create(name, email);
-        patrons.put(p.getId(), p);
+        synchronized (patrons) {
+            putPatron(p);
+            if (journal != null) journal.patronAdded(p);
+        }
+        commit();
         LOGGER.log(Level.INFO, "Added patron {0}", p.getName());
         return p;
     }
 
+    /**
+     * Registers a patron under an id assigned elsewhere, e.g. by the router of a sharded deployment.
+     * An existing patron with that id is replaced.
+     */
+    public Patron addPatron(int id, String name, String email) {
+        Patron p = PatronFactory.create(id, name, email);
+        synchronized (patrons) {
+            putPatron(p);
+            if (journal != null) journal.patronAdded(p);
+        }
+        commit();
+        return p;
+    }
+
+    // caller holds the patrons lock, or is recovering
+    private void putPatron(Patron p) {
+        if (historyArchive != null) p.tierHistory(historyArchive, hotHistoryRecords);
+        patrons.register(p);
+    }
+
+    /**
+     * Keeps about hotRecords borrow records per patron in memory (plus open loans) and moves older
+     * returned ones to the archive, for existing and future patrons.
+     */
+    public void tierPatronHistory(HistoryArchive archive, int hotRecords) {
+        if (hotRecords < 2) throw new IllegalArgumentException("At least two records must stay in memory");
+        synchronized (patrons) {
+            historyArchive = Objects.requireNonNull(archive);
+            hotHistoryRecords = hotRecords;
+            for (Patron p : patrons.snapshot()) p.tierHistory(archive, hotRecords);
+        }
+    }
+
+    /** Tiers patron history to files in dir; see {@link FileHistoryArchive}. */
+    public void tierPatronHistory(Path dir, int hotRecords) throws IOException {
+        tierPatronHistory(new FileHistoryArchive(dir), hotRecords);
+    }
+
     public Optional<Patron> getPatron(int id) {
         return Optional.ofNullable(patrons.get(id));
     }
@@ -51,50 +334,205 @@ public class Library implements ReservationListener {
     public void updatePatron(int id, String name, String email) {
         Patron p = patrons.get(id);
         if (p == null) return;
-        p.setName(name);
-        p.setEmail(email);
+        synchronized (patrons) {
+            p.setName(name);
+            p.setEmail(email);
+            if (journal != null) journal.patronUpdated(id, name, email);
+        }
+        commit();
         LOGGER.log(Level.INFO, "Updated patron {0}", id);
     }
 
+    /** Immutable snapshot of every patron, safe to iterate while patrons are added. */
     public Collection<Patron> listPatrons() {
-        return Collections.unmodifiableCollection(patrons.values());
+        return patrons.snapshot();
     }
 
     // -- Book management --
     public void addBook(String isbn, String title, String author, int year, int copies) {
         Book b = BookFactory.create(isbn, title, author, year);
         inventory.addBook(b, copies);
+        commit();
     }
 
     public void removeBook(String isbn, int copies) {
         inventory.removeBook(isbn, copies);
+        commit();
     }
 
     public void updateBook(String isbn, String title, String author, int year) {
         inventory.updateBookInfo(isbn, title, author, year);
+        commit();
+    }
+
+    /**
+     * Serves the titles of a catalog file written by {@link #exportCatalog} without loading them up
+     * front; see {@link LibraryInventory#attachCatalog}.
+     */
+    public void openCatalog(Path file) throws IOException {
+        inventory.attachCatalog(MappedCatalog.open(file));
+        QueryCache cache = queryCache;
+        if (cache != null) cache.clear(); // its titles are searchable without having been added
+    }
+
+    /**
+     * Writes every title with all the copies the library owns of it, including those on loan or held,
+     * as a mapped catalog file. Loans and holds themselves are not part of the catalog.
+     */
+    public void exportCatalog(Path file) throws IOException {
+        Map<Book, Integer> owned = inventory.getOwnedCopies();
+        MappedCatalog.write(file, owned.keySet(), owned::get);
+    }
+
+    /**
+     * Imports a publisher feed: rows are parsed and validated in parallel, duplicates merged by ISBN,
+     * and the result added in one bulk operation. The listener may be null.
+     */
+    public ImportStats importCatalog(Reader feed, RecordFormat format, ImportListener listener) throws IOException {
+        ImportStats stats = new CatalogImporter(format).importInto(inventory, feed, listener);
+        commit();
+        return stats;
+    }
+
+    public ImportStats importCatalog(Path feed, RecordFormat format, ImportListener listener) throws IOException {
+        try (Reader in = Files.newBufferedReader(feed, StandardCharsets.UTF_8)) {
+            return importCatalog(in, format, listener);
+        }
+    }
+
+    // -- Metrics --
+    /**
+     * Latency histograms (nanoseconds) and counters for circulation, each search strategy,
+     * recommendations and notification delivery, plus reservation queue depth per ISBN.
+     */
+    public MetricsRegistry metrics() {
+        return metrics;
+    }
+
+    /** Dumps the metrics to file every interval until the library is closed. */
+    public MetricsReporter startMetricsReporter(Path file, MetricsRegistry.Format format, Duration interval) {
+        MetricsReporter r = new MetricsReporter(metrics, file, format, interval);
+        reporters.add(r);
+        return r;
+    }
+
+    // -- Audit --
+    /**
+     * Starts writing circulation events at or above level to file (appending, one JSON object per
+     * line) through a ring of the given capacity; see {@link AuditLog}. Replaces a running audit log.
+     */
+    public AuditLog startAuditLog(Path file, int capacity, Level level) throws IOException {
+        AuditLog a = AuditLog.open(file, capacity, level);
+        stopAuditLog();
+        audit = a;
+        inventory.setAuditLog(a);
+        metrics.gauge("audit.written", a::getWritten);
+        metrics.gauge("audit.dropped", a::getDropped);
+        return a;
+    }
+
+    /** Stops the audit log after writing out the events already recorded. */
+    public void stopAuditLog() throws IOException {
+        AuditLog a = audit;
+        if (a == null) return;
+        inventory.setAuditLog(null);
+        audit = null;
+        a.close();
     }
 
     // -- Search (uses Strategy pattern) --
     public List<Book> searchTitle(String title) {
-        return new TitleSearchStrategy().search(new ArrayList<>(inventory.getAllBooks()), title);
+        return search(titleSearch, title);
     }
 
     public List<Book> searchAuthor(String author) {
-        return new AuthorSearchStrategy().search(new ArrayList<>(inventory.getAllBooks()), author);
+        return search(authorSearch, author);
     }
 
     public List<Book> searchIsbn(String isbn) {
-        return new IsbnSearchStrategy().search(new ArrayList<>(inventory.getAllBooks()), isbn);
+        return search(isbnSearch, isbn);
     }
 
     public List<Book> searchGeneric(String strategyName, String query) {
-        for (SearchStrategy s : searchStrategies) {
-            if (s.getClass().getSimpleName().equalsIgnoreCase(strategyName)) {
-                return s.search(new ArrayList<>(inventory.getAllBooks()), query);
-            }
+        SearchStrategy s = strategyName == null ? null : strategiesByName.get(strategyName.toLowerCase(Locale.ROOT));
+        if (s == null) {
+            // fallback: title search
+            return searchTitle(query);
         }
-        // fallback: title search
-        return new TitleSearchStrategy().search(new ArrayList<>(inventory.getAllBooks()), query);
+        return search(s, query);
+    }
+
+    private List<Book> search(SearchStrategy s, String query) {
+        long start = System.nanoTime();
+        QueryCache cache = queryCache;
+        List<Book> res;
+        if (cache == null || s == fuzzySearch) {
+            res = find(s, query);
+        } else if (s == titleSearch) {
+            res = cache.searchTitle(query, q -> find(s, q));
+        } else if (s == trigramSearch) {
+            res = cache.searchTitleTrigrams(query, q -> find(s, q));
+        } else if (s == authorSearch) {
+            res = cache.searchAuthor(query, q -> find(s, q));
+        } else {
+            res = cache.searchIsbn(query, q -> find(s, q));
+        }
+        searchTimes.get(s).recordSince(start);
+        return res;
+    }
+
+    private List<Book> find(SearchStrategy s, String query) {
+        if (s == isbnSearch) {
+            inventory.materializeCatalogIsbn(query);
+        } else if (s == fuzzySearch) {
+            materializeCatalog();
+        } else if (s == authorSearch) {
+            inventory.materializeCatalogMatches(MappedCatalog.Field.AUTHOR, query);
+        } else {
+            inventory.materializeCatalogMatches(MappedCatalog.Field.TITLE, query);
+        }
+        return s instanceof IndexedSearchStrategy
+                ? ((IndexedSearchStrategy) s).search(query)
+                : s.search(inventory.getAllBooks(), query);
+    }
+
+    /**
+     * Runs a multi-criteria query (author and title words, year range, status) on bitmap indexes and
+     * counts the matches by the requested facets. With a mapped catalog attached, the first query
+     * materializes all of it.
+     */
+    public QueryResult query(CatalogQuery query) {
+        long start = System.nanoTime();
+        QueryCache cache = queryCache;
+        QueryResult res = cache == null ? runQuery(query) : cache.query(query, this::runQuery);
+        queryTime.recordSince(start);
+        return res;
+    }
+
+    private QueryResult runQuery(CatalogQuery query) {
+        materializeCatalog();
+        return facetIndex.query(query);
+    }
+
+    /**
+     * Ranked title and author search that tolerates typos (up to two edits per word), best matches
+     * first. With a mapped catalog attached, the first search materializes all of it.
+     */
+    public List<Book> searchFuzzy(String query, int limit) {
+        long start = System.nanoTime();
+        materializeCatalog();
+        List<Book> res = fuzzyIndex.search(query, limit);
+        searchTimes.get(fuzzySearch).recordSince(start);
+        return res;
+    }
+
+    // the bitmap and fuzzy indexes see mapped titles only once they are books
+    private void materializeCatalog() {
+        if (inventory.pendingCatalogTitles() > 0) inventory.getAllBooks();
+    }
+
+    public TrigramIndex.MemoryReport searchIndexMemoryReport() {
+        return inventory.getTitleTrigramIndex().memoryReport();
     }
 
     // -- Lending --
@@ -104,12 +542,9 @@ public class Library implements ReservationListener {
             LOGGER.log(Level.WARNING, "Checkout failed - unknown patron {0}", patronId);
             return false;
         }
-        boolean ok = inventory.checkoutBook(isbn, p);
-        if (!ok) {
-            // if not available, auto-reserve
-            LOGGER.log(Level.INFO, "Auto-reserving {0} for patron {1}", new Object[]{isbn, p.getName()});
-            reservationManager.reserve(isbn, p);
-        }
+        // if not available, auto-reserve
+        boolean ok = inventory.checkoutOrReserve(isbn, p);
+        commit();
         return ok;
     }
 
@@ -119,31 +554,284 @@ public class Library implements ReservationListener {
             LOGGER.log(Level.WARNING, "Return failed - unknown patron {0}", patronId);
             return false;
         }
-        return inventory.returnBook(isbn, p);
+        boolean ok = inventory.returnBook(isbn, p);
+        commit();
+        return ok;
+    }
+
+    /**
+     * Applies many checkouts/returns at once, taking each title's lock once for all of its operations.
+     * Returns a result per operation in input order, with the same meaning as checkout/returnBook.
+     */
+    public boolean[] circulate(List<CirculationOp> ops) {
+        boolean[] results = inventory.applyBatch(ops, patrons::get);
+        commit();
+        return results;
     }
 
     // -- Reservation API --
-    public void reserve(String isbn, int patronId) {
+    public boolean reserve(String isbn, int patronId) {
         Patron p = patrons.get(patronId);
         if (p == null) {
             LOGGER.log(Level.WARNING, "Reserve failed - unknown patron {0}", patronId);
-            return;
+            return false;
         }
-        reservationManager.reserve(isbn, p);
+        boolean queued = inventory.reserve(isbn, p);
+        commit();
+        return queued;
+    }
+
+    public boolean cancelReservation(String isbn, int patronId) {
+        Patron p = patrons.get(patronId);
+        if (p == null) return false;
+        boolean cancelled = inventory.cancelReservation(isbn, p);
+        commit();
+        return cancelled;
+    }
+
+    public int reservationPosition(String isbn, int patronId) {
+        return isbn == null ? 0 : reservationManager.position(isbn, patronId);
+    }
+
+    /** Copies waiting to be collected by the patron they are held for, oldest first within each title. */
+    public List<Hold> listHolds() {
+        return inventory.getHolds();
+    }
+
+    /**
+     * Releases copies held for patrons who do not check them out within pickupWindow: each goes to the
+     * next patron waiting for the title, or back on the shelf. Deadlines live on a timing wheel that
+     * advances every tick, so a hold is released at most about one tick late; hold.expiry.lag records
+     * by how much. Holds placed earlier, including recovered ones, get the same window counted from
+     * when they were placed. Without this, a hold lasts until it is collected.
+     */
+    public synchronized void startHoldExpiry(Duration pickupWindow, Duration tick) {
+        if (pickupWindow == null || pickupWindow.isNegative()) throw new IllegalArgumentException("Invalid pickup window");
+        TimingWheel wheel = new TimingWheel("hold-expiry", tick, 4096);
+        inventory.setHoldExpiry(wheel, pickupWindow);
+        if (holdTimers != null) holdTimers.close();
+        holdTimers = wheel;
+        metrics.gauge("hold.timers", wheel::size);
+    }
+
+    public void startHoldExpiry(Duration pickupWindow) {
+        startHoldExpiry(pickupWindow, Duration.ofSeconds(1));
+    }
+
+    /** Turns hold expiry off; outstanding holds then last until collected. */
+    public synchronized void stopHoldExpiry() {
+        if (holdTimers == null) return;
+        inventory.setHoldExpiry(null, null);
+        holdTimers.close();
+        holdTimers = null;
+        metrics.gauge("hold.timers", () -> 0);
+    }
+
+    /**
+     * Caches search, catalog query and recommendation results, up to about maxBytes of them. An entry
+     * is dropped as soon as an inventory change or checkout could alter it, so results are never
+     * stale. Kiosk traffic repeating the same popular searches is then served from memory; cache.hit,
+     * cache.miss, cache.eviction and cache.invalidation count how it goes. Cached result lists are
+     * shared and unmodifiable. Fuzzy search is not cached.
+     */
+    public synchronized void enableQueryCache(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("Cache size must be positive");
+        QueryCache cache = new QueryCache(maxBytes, metrics);
+        inventory.addListener(cache); // after the indexes, so it sees each change once they have it
+        if (queryCache != null) inventory.removeListener(queryCache);
+        queryCache = cache;
+    }
+
+    public synchronized void disableQueryCache() {
+        if (queryCache == null) return;
+        inventory.removeListener(queryCache);
+        queryCache = null;
+        metrics.gauge("cache.bytes", () -> 0);
+        metrics.gauge("cache.entries", () -> 0);
+    }
+
+    /**
+     * Delivers reservation notifications asynchronously through the given dispatcher so returns do not
+     * wait on listeners; pass null to go back to inline delivery.
+     */
+    public void useNotificationDispatcher(AsyncNotificationDispatcher dispatcher) {
+        reservationManager.setDispatcher(dispatcher);
+    }
+
+    public Map<ReservationListener, AsyncNotificationDispatcher.ListenerStats> notificationStats() {
+        AsyncNotificationDispatcher d = reservationManager.getDispatcher();
+        return d == null ? Collections.emptyMap() : d.stats();
     }
 
     // -- Recommendation API (simple) --
     public List<Book> recommendForPatron(int patronId, int limit) {
         Patron p = patrons.get(patronId);
         if (p == null) return Collections.emptyList();
-        return recommendEngine.recommend(p, inventory.getAllBooks(), limit);
+        long start = System.nanoTime();
+        QueryCache cache = queryCache;
+        List<Book> res = cache == null || limit <= 0
+                ? recommendService.recommend(p, limit, catalogReads(null, limit))
+                : cache.recommend(patronId, limit,
+                        basis -> recommendService.recommend(p, limit, catalogReads(basis, limit)));
+        recommendTime.recordSince(start);
+        return res;
+    }
+
+    /**
+     * As {@link #recommendForPatron}, but only from the patron's borrowing history: empty where that
+     * method would fall back to the newest available books. Not cached.
+     */
+    public List<Book> recommendFromHistory(int patronId, int limit) {
+        Patron p = patrons.get(patronId);
+        if (p == null || limit <= 0) return Collections.emptyList();
+        long start = System.nanoTime();
+        List<Book> res = recommendService.recommendFromHistory(p, limit, catalogReads(null, limit));
+        recommendTime.recordSince(start);
+        return res;
+    }
+
+    // With a mapped catalog attached, materializes what a recommendation is about to read (the author's
+    // titles, or the newest ones) so its indexes see those titles; then tells next, if any.
+    private RecommendationService.Basis catalogReads(RecommendationService.Basis next, int limit) {
+        if (inventory.pendingCatalogTitles() == 0) return next;
+        return new RecommendationService.Basis() {
+            @Override
+            public void authorRead(String author) {
+                inventory.materializeCatalogAuthor(author);
+                if (next != null) next.authorRead(author);
+            }
+
+            @Override
+            public void newestRead() {
+                inventory.materializeCatalogNewest(limit);
+                if (next != null) next.newestRead();
+            }
+        };
     }
 
     // -- ReservationListener implementation (Observer pattern) --
     @Override
     public void onBookAvailable(com.library.model.Book book, com.library.model.Patron patron) {
+        if (replaying) return; // the patron was notified before the restart
         // In real system: send email/SMS push. Here we log notification.
+        if (!LOGGER.isLoggable(Level.INFO)) return;
         LOGGER.log(Level.INFO, "NOTIFICATION: Book available - {0} for patron {1} ({2})",
                 new Object[]{book.getTitle(), patron.getName(), patron.getEmail()});
     }
+
+    // Applies journal records through the same inventory paths that produced them.
+    private final class Replayer implements LibraryJournal.Handler {
+        private final ReplayClock clock;
+
+        Replayer(ReplayClock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public void bookAdded(String isbn, String title, String author, int year, int copies) {
+            inventory.addBook(new Book(isbn, title, author, year), copies);
+        }
+
+        @Override
+        public void copiesRemoved(String isbn, int copies) {
+            inventory.removeBook(isbn, copies);
+        }
+
+        @Override
+        public void bookUpdated(String isbn, String title, String author, int year) {
+            inventory.updateBookInfo(isbn, title, author, year);
+        }
+
+        @Override
+        public void checkedOut(String isbn, int patronId, LocalDateTime at) {
+            Patron p = replayPatron(patronId);
+            if (p == null) return;
+            clock.set(at);
+            inventory.checkoutBook(isbn, p);
+        }
+
+        @Override
+        public void returned(String isbn, int patronId, LocalDateTime at) {
+            Patron p = replayPatron(patronId);
+            if (p == null) return;
+            clock.set(at);
+            inventory.returnBook(isbn, p);
+        }
+
+        @Override
+        public void reserved(String isbn, int patronId) {
+            Patron p = replayPatron(patronId);
+            if (p != null) inventory.reserve(isbn, p);
+        }
+
+        @Override
+        public void reservationCancelled(String isbn, int patronId) {
+            Patron p = replayPatron(patronId);
+            if (p != null) inventory.cancelReservation(isbn, p);
+        }
+
+        @Override
+        public void holdExpired(String isbn, int patronId, LocalDateTime at) {
+            Patron p = replayPatron(patronId);
+            if (p == null) return;
+            clock.set(at);
+            inventory.expireHold(isbn, p);
+        }
+
+        @Override
+        public void patronAdded(int id, String name, String email) {
+            putPatron(new Patron(id, name, email));
+        }
+
+        @Override
+        public void patronUpdated(int id, String name, String email) {
+            Patron p = replayPatron(id);
+            if (p == null) return;
+            p.setName(name);
+            p.setEmail(email);
+        }
+
+        private Patron replayPatron(int id) {
+            Patron p = patrons.get(id);
+            if (p == null) LOGGER.log(Level.WARNING, "Log refers to unknown patron {0}", id);
+            return p;
+        }
+    }
+
+    // Hands out the journaled timestamp of the record being replayed. Copies in other zones share the
+    // original's instant, so they follow it as replay sets it.
+    private static final class ReplayClock extends Clock {
+        private final ReplayClock source;
+        private final ZoneId zone;
+        private Instant now = Instant.EPOCH;
+
+        ReplayClock() {
+            source = this;
+            zone = ZoneOffset.UTC;
+        }
+
+        private ReplayClock(ReplayClock source, ZoneId zone) {
+            this.source = source;
+            this.zone = zone;
+        }
+
+        void set(LocalDateTime at) {
+            source.now = at.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return zone.equals(this.zone) ? this : new ReplayClock(source, zone);
+        }
+
+        @Override
+        public Instant instant() {
+            return source.now;
+        }
+    }
 }
@@ -0,0 +1,64 @@
+// File: com/library/LibraryService.java
+package com.library;
+
+import com.library.inventory.CirculationOp;
+import com.library.model.Book;
+import com.library.model.Patron;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Patron, catalog, search, lending and recommendation operations of a library, served either by a
+ * single in-process {@link Library} or by a router over shards (see com.library.cluster).
+ */
+public interface LibraryService extends AutoCloseable {
+    // -- Patron management --
+    Patron addPatron(String name, String email);
+
+    Optional<Patron> getPatron(int id);
+
+    void updatePatron(int id, String name, String email);
+
+    Collection<Patron> listPatrons();
+
+    // -- Book management --
+    void addBook(String isbn, String title, String author, int year, int copies);
+
+    void removeBook(String isbn, int copies);
+
+    void updateBook(String isbn, String title, String author, int year);
+
+    // -- Search --
+    List<Book> searchTitle(String title);
+
+    List<Book> searchAuthor(String author);
+
+    List<Book> searchIsbn(String isbn);
+
+    List<Book> searchGeneric(String strategyName, String query);
+
+    // -- Lending --
+    boolean checkout(String isbn, int patronId);
+
+    boolean returnBook(String isbn, int patronId);
+
+    boolean[] circulate(List<CirculationOp> ops);
+
+    /** Queues the patron for the title; false if the patron is unknown or already waiting for it. */
+    boolean reserve(String isbn, int patronId);
+
+    /** Takes the patron off the title's waitlist; false if the patron was not waiting for it. */
+    boolean cancelReservation(String isbn, int patronId);
+
+    /** 1-based place of the patron in the title's waitlist, or 0 if the patron is not waiting for it. */
+    int reservationPosition(String isbn, int patronId);
+
+    // -- Recommendations --
+    List<Book> recommendForPatron(int patronId, int limit);
+
+    @Override
+    void close() throws IOException;
+}
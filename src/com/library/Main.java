@@ -5,7 +5,6 @@ import com.library.model.Book;
 import com.library.model.Patron;
 
 import java.util.List;
-import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,11 +12,8 @@ import java.util.logging.Logger;
 public class Main {
 
     static {
-        Logger root = Logger.getLogger("");
-        root.setLevel(Level.INFO);
-        ConsoleHandler ch = new ConsoleHandler();
-        ch.setLevel(Level.INFO);
-        root.addHandler(ch);
+        // the root logger already has a ConsoleHandler; adding another printed every line twice
+        Logger.getLogger("").setLevel(Level.INFO);
     }
 
     public static void main(String[] args) {
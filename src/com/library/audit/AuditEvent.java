@@ -0,0 +1,31 @@
+// File: com/library/audit/AuditEvent.java
+package com.library.audit;
+
+import java.util.Locale;
+import java.util.logging.Level;
+
+/** Kinds of circulation events written to the {@link AuditLog}, each with the level it is recorded at. */
+public enum AuditEvent {
+    BOOK_ADDED(Level.INFO),
+    COPIES_REMOVED(Level.INFO),
+    CHECKOUT(Level.INFO),
+    CHECKOUT_REJECTED(Level.FINE),
+    RETURN(Level.INFO),
+    RETURN_REJECTED(Level.FINE),
+    RESERVE(Level.INFO),
+    CANCEL(Level.INFO),
+    NOTIFY(Level.INFO),
+    HOLD_EXPIRED(Level.INFO);
+
+    private final Level level;
+    final String label;
+
+    AuditEvent(Level level) {
+        this.level = level;
+        this.label = name().toLowerCase(Locale.ROOT);
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+}
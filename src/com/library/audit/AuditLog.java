@@ -0,0 +1,187 @@
+// File: com/library/audit/AuditLog.java
+package com.library.audit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Circulation audit trail. Events go into a preallocated ring of primitive slots (time, event, ISBN
+ * reference, patron id, count) and an "audit-writer" thread drains the ring to a file as JSON lines
+ * ("ts" is epoch milliseconds). The writer reuses its line buffer, so steady-state writing does not
+ * allocate either.
+ *
+ * Recording claims a slot with a compare-and-set and publishes it with a release store: no lock and
+ * no allocation, and an event below the level costs one comparison. When the writer falls a full ring
+ * behind, new events are dropped and counted rather than blocking circulation.
+ */
+public final class AuditLog implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(AuditLog.class.getName());
+    private static final AuditEvent[] EVENTS = AuditEvent.values();
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int mask;
+    private final long[] times;
+    private final byte[] events;
+    private final String[] isbns;
+    private final int[] patrons;
+    private final int[] counts;
+    private final AtomicLongArray published; // sequence number last written into each slot
+
+    private final AtomicLong head = new AtomicLong(); // next sequence to claim
+    private final AtomicLong tail = new AtomicLong(); // next sequence to write out
+    private final LongAdder dropped = new LongAdder();
+    private volatile int threshold;
+    private volatile boolean running = true;
+
+    private final BufferedWriter out;
+    private final Thread writer;
+
+    private AuditLog(int capacity, Level level, BufferedWriter out) {
+        int n = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = n - 1;
+        this.times = new long[n];
+        this.events = new byte[n];
+        this.isbns = new String[n];
+        this.patrons = new int[n];
+        this.counts = new int[n];
+        this.published = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++) published.set(i, -1);
+        this.threshold = level.intValue();
+        this.out = out;
+        this.writer = new Thread(this::drain, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Appends events at or above the level to the file; capacity (rounded up to a power of two) is the
+     * number of events that can wait for the writer.
+     */
+    public static AuditLog open(Path file, int capacity, Level level) throws IOException {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new AuditLog(capacity, Objects.requireNonNull(level), out);
+    }
+
+    public void setLevel(Level level) {
+        threshold = level.intValue();
+    }
+
+    public boolean isEnabled(AuditEvent event) {
+        return event.getLevel().intValue() >= threshold;
+    }
+
+    /** Records an event; patronId is -1 and count 0 where they do not apply. */
+    public void record(AuditEvent event, String isbn, int patronId, int count) {
+        if (!isEnabled(event) || !running) return;
+        long seq;
+        do {
+            seq = head.get();
+            if (seq - tail.get() > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(seq, seq + 1));
+        int slot = (int) seq & mask;
+        times[slot] = System.currentTimeMillis();
+        events[slot] = (byte) event.ordinal();
+        isbns[slot] = isbn;
+        patrons[slot] = patronId;
+        counts[slot] = count;
+        published.lazySet(slot, seq);
+    }
+
+    /** Events written to the file so far. */
+    public long getWritten() {
+        return tail.get();
+    }
+
+    /** Events discarded because the ring was full. */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void drain() {
+        StringBuilder line = new StringBuilder(128);
+        char[] chars = new char[128];
+        boolean dirty = false;
+        while (true) {
+            long seq = tail.get();
+            int slot = (int) seq & mask;
+            if (published.get(slot) != seq) {
+                if (!running && seq == head.get()) break;
+                if (dirty) {
+                    flush();
+                    dirty = false;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            line.setLength(0);
+            format(line, slot);
+            isbns[slot] = null;
+            tail.lazySet(seq + 1);
+            if (chars.length < line.length()) chars = new char[line.length() * 2];
+            line.getChars(0, line.length(), chars, 0);
+            try {
+                out.write(chars, 0, line.length());
+                dirty = true;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Audit write failed: {0}", e.getMessage());
+            }
+        }
+        flush();
+    }
+
+    private void format(StringBuilder sb, int slot) {
+        sb.append("{\"ts\":").append(times[slot])
+                .append(",\"event\":\"").append(EVENTS[events[slot]].label).append('"');
+        String isbn = isbns[slot];
+        if (isbn != null) {
+            sb.append(",\"isbn\":\"");
+            for (int i = 0; i < isbn.length(); i++) {
+                char c = isbn.charAt(i);
+                if (c == '"' || c == '\\') sb.append('\\').append(c);
+                else if (c >= 0x20) sb.append(c);
+            }
+            sb.append('"');
+        }
+        if (patrons[slot] >= 0) sb.append(",\"patron\":").append(patrons[slot]);
+        if (counts[slot] != 0) sb.append(",\"count\":").append(counts[slot]);
+        sb.append("}\n");
+    }
+
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Audit flush failed: {0}", e.getMessage());
+        }
+    }
+
+    /** Stops accepting events, writes out the ones already recorded and closes the file. */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,66 @@
+// File: com/library/cache/FrequencySketch.java
+package com.library.cache;
+
+/**
+ * Approximate access counts for TinyLFU admission: a count-min sketch of 4-bit counters, sixteen to a
+ * long, four counters per item. Counts saturate at 15, and once there have been ten increments per
+ * table word every counter is halved, so old popularity fades instead of pinning an entry for good.
+ *
+ * Not thread-safe; the owning cache guards it.
+ */
+final class FrequencySketch {
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private long[] table = new long[0];
+    private int sampleSize;
+    private int additions;
+
+    /** Sizes the table for about n distinct items; growing it forgets the counts so far. */
+    void ensureCapacity(long n) {
+        int length = (int) Math.min(1 << 22, Math.max(16, Long.highestOneBit(Math.max(1, n - 1)) << 1));
+        if (table.length >= length) return;
+        table = new long[length];
+        sampleSize = 10 * length;
+        additions = 0;
+    }
+
+    int frequency(Object item) {
+        int hash = item.hashCode();
+        int min = 15;
+        for (int i = 0; i < 4; i++) {
+            long h = index(hash, i);
+            int shift = (int) (h >>> 60) << 2;
+            min = Math.min(min, (int) (table[(int) h & (table.length - 1)] >>> shift) & 15);
+        }
+        return min;
+    }
+
+    void increment(Object item) {
+        int hash = item.hashCode();
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            long h = index(hash, i);
+            int slot = (int) h & (table.length - 1);
+            int shift = (int) (h >>> 60) << 2;
+            if (((table[slot] >>> shift) & 15) < 15) {
+                table[slot] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) reset();
+    }
+
+    // ages every counter by half; the counts still rank items as before
+    private void reset() {
+        for (int i = 0; i < table.length; i++) table[i] = (table[i] >>> 1) & RESET_MASK;
+        additions >>>= 1;
+    }
+
+    // low bits pick the word, the top four the counter within it
+    private static long index(int hash, int i) {
+        long h = (hash ^ SEEDS[i]) * 0x9e3779b97f4a7c15L;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,495 @@
+// File: com/library/cache/QueryCache.java
+package com.library.cache;
+
+import com.library.inventory.InventoryListener;
+import com.library.metrics.Counter;
+import com.library.metrics.MetricsRegistry;
+import com.library.model.Book;
+import com.library.model.BookStatus;
+import com.library.model.Patron;
+import com.library.recommend.RecommendationService;
+import com.library.search.CatalogQuery;
+import com.library.search.Facet;
+import com.library.search.IsbnIndex;
+import com.library.search.QueryResult;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Answers of title, author and ISBN searches, catalog queries and recommendations, kept in a
+ * {@link TinyLfuCache} bounded in bytes and dropped as soon as an inventory event could change them.
+ * Registered as an {@link InventoryListener} after the indexes, it hears of each change once they
+ * have applied it.
+ *
+ * Every entry is filed under what its answer depends on, so an event visits only the entries it can
+ * affect. A substring search is filed under the longest letter/digit run of its query: a title or
+ * author containing the query contains that run inside one of its words, so a change looks up the
+ * substrings of the book's words (or walks the runs, if there are fewer) and drops the searches
+ * whose query the old or the new value contains. An ISBN search is filed under its normalized ISBN.
+ * A catalog query is filed under one of its words and dropped when the book matched it before or
+ * after the change; status changes only concern queries filtering or faceting by status. Plans are
+ * kept as they were when the query ran. A recommendation depends on its patron's checkouts, on the
+ * available books of the authors it looked at and, if it fell back to the newest books, on
+ * availability changes from the oldest year it returned onward.
+ *
+ * An answer computed while a change it depends on came in is returned but not kept. Fuzzy search
+ * is not cached: its ranking weighs each word by its frequency across the whole catalog.
+ */
+public final class QueryCache implements InventoryListener {
+    // rough 64-bit compressed-oops sizes: key, entry, map and list nodes, dependency links
+    private static final long ENTRY_BYTES = 200;
+    private static final long FACET_VALUE_BYTES = 96;
+
+    private enum Kind { TITLE, TRIGRAM, AUTHOR, ISBN, QUERY, RECOMMEND }
+
+    private final TinyLfuCache<Key, Object> results;
+    private final Map<Key, Entry> entries = new HashMap<>(); // cached or being computed
+    // "" holds the entries every change must check: searches without letters or digits, queries without words
+    private final Map<String, Set<Key>> titleRuns = new HashMap<>();
+    private final Map<String, Set<Key>> authorRuns = new HashMap<>();
+    private final Map<String, Set<Key>> isbns = new HashMap<>();
+    private final Map<String, Set<Key>> queryTitleWords = new HashMap<>();
+    private final Map<String, Set<Key>> queryAuthorWords = new HashMap<>();
+    private final Map<Integer, Set<Key>> patrons = new HashMap<>();
+    private final Map<String, Set<Key>> authors = new HashMap<>();
+    private final NavigableMap<Integer, Set<Key>> newestFrom = new TreeMap<>();
+    private final Set<Key> recommending = new HashSet<>(); // their authors are not known yet
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter invalidations;
+
+    public QueryCache(long maxBytes, MetricsRegistry metrics) {
+        this.results = new TinyLfuCache<>(maxBytes, (key, value) -> evicted(key));
+        this.hits = metrics.counter("cache.hit");
+        this.misses = metrics.counter("cache.miss");
+        this.evictions = metrics.counter("cache.eviction");
+        this.invalidations = metrics.counter("cache.invalidation");
+        metrics.gauge("cache.bytes", this::weight);
+        metrics.gauge("cache.entries", this::size);
+    }
+
+    public List<Book> searchTitle(String query, Function<String, List<Book>> search) {
+        return search(Kind.TITLE, query, search);
+    }
+
+    public List<Book> searchTitleTrigrams(String query, Function<String, List<Book>> search) {
+        return search(Kind.TRIGRAM, query, search);
+    }
+
+    public List<Book> searchAuthor(String query, Function<String, List<Book>> search) {
+        return search(Kind.AUTHOR, query, search);
+    }
+
+    public List<Book> searchIsbn(String isbn, Function<String, List<Book>> search) {
+        if (isbn == null) return search.apply(null);
+        return books(load(new Key(Kind.ISBN, IsbnIndex.normalize(isbn), 0), r -> List.copyOf(search.apply(isbn))));
+    }
+
+    public QueryResult query(CatalogQuery query, Function<CatalogQuery, QueryResult> run) {
+        return (QueryResult) load(new Key(Kind.QUERY, query, 0), r -> run.apply(query));
+    }
+
+    public List<Book> recommend(int patronId, int limit, Function<RecommendationService.Basis, List<Book>> recommend) {
+        return books(load(new Key(Kind.RECOMMEND, patronId, limit), r -> List.copyOf(recommend.apply(r))));
+    }
+
+    /** Drops every entry, e.g. when titles appeared without inventory events. */
+    public synchronized void clear() {
+        for (Entry e : entries.values()) e.version++; // computations under way are not kept
+        entries.clear();
+        results.clear();
+        for (Map<?, Set<Key>> m : List.of(titleRuns, authorRuns, isbns, queryTitleWords, queryAuthorWords,
+                patrons, authors, newestFrom)) {
+            m.clear();
+        }
+        recommending.clear();
+    }
+
+    public synchronized long weight() {
+        return results.weight();
+    }
+
+    public synchronized long size() {
+        return results.size();
+    }
+
+    private List<Book> search(Kind kind, String query, Function<String, List<Book>> search) {
+        if (query == null) return search.apply(null);
+        return books(load(new Key(kind, query.toLowerCase().trim(), 0), r -> List.copyOf(search.apply(query))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Book> books(Object value) {
+        return (List<Book>) value;
+    }
+
+    private Object load(Key key, Function<Reads, Object> compute) {
+        Entry e;
+        int version;
+        synchronized (this) {
+            Object v = results.get(key);
+            if (v != null) {
+                hits.increment();
+                return v;
+            }
+            misses.increment();
+            e = entries.get(key);
+            if (e == null) {
+                e = new Entry(key);
+                entries.put(key, e);
+                link(e);
+            }
+            if (key.kind == Kind.RECOMMEND) recommending.add(key);
+            e.loading++;
+            version = e.version;
+        }
+        Reads reads = new Reads();
+        Object v = null;
+        try {
+            v = compute.apply(reads);
+            return v;
+        } finally {
+            synchronized (this) {
+                e.loading--;
+                if (e.loading == 0) recommending.remove(key);
+                long weight = v == null ? 0 : weigh(key, v);
+                if (v != null && e.version == version && entries.get(key) == e && weight <= results.maxWeight()) {
+                    if (key.kind == Kind.RECOMMEND) linkReads(e, reads, books(v));
+                    e.cached = true;
+                    results.put(key, v, weight);
+                }
+                if (e.loading == 0 && !e.cached) drop(e);
+            }
+        }
+    }
+
+    private void evicted(Key key) {
+        Entry e = entries.get(key);
+        if (e == null) return;
+        e.cached = false;
+        evictions.increment();
+        if (e.loading == 0) drop(e);
+    }
+
+    private void invalidate(Set<Key> stale) {
+        for (Key k : stale) {
+            Entry e = entries.get(k);
+            if (e == null) continue;
+            e.version++;
+            if (e.cached) {
+                results.remove(k);
+                e.cached = false;
+                invalidations.increment();
+            }
+            if (e.loading == 0) drop(e);
+        }
+    }
+
+    private void drop(Entry e) {
+        if (entries.get(e.key) != e) return;
+        entries.remove(e.key);
+        Key k = e.key;
+        switch (k.kind) {
+            case TITLE:
+            case TRIGRAM:
+                unmap(titleRuns, longestRun((String) k.arg), k);
+                break;
+            case AUTHOR:
+                unmap(authorRuns, longestRun((String) k.arg), k);
+                break;
+            case ISBN:
+                unmap(isbns, (String) k.arg, k);
+                break;
+            case QUERY:
+                CatalogQuery q = (CatalogQuery) k.arg;
+                if (!q.getTitleWords().isEmpty()) {
+                    unmap(queryTitleWords, q.getTitleWords().get(0), k);
+                } else {
+                    unmap(queryAuthorWords, q.getAuthorWords().isEmpty() ? "" : q.getAuthorWords().get(0), k);
+                }
+                break;
+            case RECOMMEND:
+                unmap(patrons, (Integer) k.arg, k);
+                for (String a : e.authors) unmap(authors, a, k);
+                if (e.newest) unmap(newestFrom, e.newestFrom, k);
+                recommending.remove(k);
+                break;
+        }
+    }
+
+    // the dependencies known before the answer is computed
+    private void link(Entry e) {
+        Key k = e.key;
+        switch (k.kind) {
+            case TITLE:
+            case TRIGRAM:
+                map(titleRuns, longestRun((String) k.arg), k);
+                break;
+            case AUTHOR:
+                map(authorRuns, longestRun((String) k.arg), k);
+                break;
+            case ISBN:
+                map(isbns, (String) k.arg, k);
+                break;
+            case QUERY:
+                CatalogQuery q = (CatalogQuery) k.arg;
+                if (!q.getTitleWords().isEmpty()) {
+                    map(queryTitleWords, q.getTitleWords().get(0), k);
+                } else {
+                    map(queryAuthorWords, q.getAuthorWords().isEmpty() ? "" : q.getAuthorWords().get(0), k);
+                }
+                break;
+            case RECOMMEND:
+                map(patrons, (Integer) k.arg, k);
+                break;
+        }
+    }
+
+    private void linkReads(Entry e, Reads reads, List<Book> books) {
+        for (String a : reads.authors) {
+            if (e.authors.add(a)) map(authors, a, e.key);
+        }
+        if (!reads.newest) return;
+        // a short answer took every available book; a full one is displaced only from its oldest year up
+        int from = Integer.MIN_VALUE;
+        if (books.size() >= e.key.n) {
+            from = Integer.MAX_VALUE;
+            for (Book b : books) from = Math.min(from, b.getPublicationYear());
+        }
+        if (e.newest) {
+            if (from >= e.newestFrom) return;
+            unmap(newestFrom, e.newestFrom, e.key);
+        }
+        e.newest = true;
+        e.newestFrom = from;
+        map(newestFrom, from, e.key);
+    }
+
+    // -- InventoryListener --
+    @Override
+    public synchronized void onBookAdded(Book book) {
+        if (entries.isEmpty()) return;
+        Set<Key> stale = new HashSet<>();
+        bookChanged(book.getTitle(), book.getAuthor(), book.getPublicationYear(), book.getStatus(), stale);
+        addAll(stale, isbns.get(IsbnIndex.normalize(book.getIsbn())));
+        if (book.getStatus() == BookStatus.AVAILABLE) availabilityChanged(book.getAuthor(), book.getPublicationYear(), stale);
+        invalidate(stale);
+    }
+
+    @Override
+    public synchronized void onBookRemoved(Book book) {
+        if (entries.isEmpty()) return;
+        Set<Key> stale = new HashSet<>();
+        bookChanged(book.getTitle(), book.getAuthor(), book.getPublicationYear(), book.getStatus(), stale);
+        addAll(stale, isbns.get(IsbnIndex.normalize(book.getIsbn())));
+        availabilityChanged(book.getAuthor(), book.getPublicationYear(), stale);
+        invalidate(stale);
+    }
+
+    @Override
+    public synchronized void onBookUpdated(Book book, String oldTitle, String oldAuthor, int oldYear) {
+        if (entries.isEmpty()) return;
+        Set<Key> stale = new HashSet<>();
+        // reindexing moves the book within the indexes even where its values stay the same
+        bookChanged(oldTitle, oldAuthor, oldYear, book.getStatus(), stale);
+        bookChanged(book.getTitle(), book.getAuthor(), book.getPublicationYear(), book.getStatus(), stale);
+        boolean moved = !Objects.equals(oldAuthor, book.getAuthor()) || oldYear != book.getPublicationYear();
+        if (moved && book.getStatus() == BookStatus.AVAILABLE) {
+            availabilityChanged(oldAuthor, oldYear, stale);
+            availabilityChanged(book.getAuthor(), book.getPublicationYear(), stale);
+        }
+        invalidate(stale);
+    }
+
+    @Override
+    public synchronized void onStatusChanged(Book book, BookStatus oldStatus, BookStatus newStatus) {
+        if (entries.isEmpty()) return;
+        Set<Key> stale = new HashSet<>();
+        for (Key k : queryCandidates(book.getTitle(), book.getAuthor())) {
+            CatalogQuery q = (CatalogQuery) k.arg;
+            boolean watched = q.getStatus() == null
+                    ? q.getFacets().contains(Facet.STATUS)
+                    : q.getStatus() == oldStatus || q.getStatus() == newStatus;
+            if (watched && q.matches(book.getTitle(), book.getAuthor(), book.getPublicationYear(), q.getStatus())) {
+                stale.add(k);
+            }
+        }
+        if (oldStatus == BookStatus.AVAILABLE || newStatus == BookStatus.AVAILABLE) {
+            availabilityChanged(book.getAuthor(), book.getPublicationYear(), stale);
+        }
+        invalidate(stale);
+    }
+
+    @Override
+    public synchronized void onCheckout(Book book, Patron patron) {
+        Set<Key> keys = patrons.get(patron.getId());
+        if (keys != null) invalidate(new HashSet<>(keys));
+    }
+
+    // entries whose answer can change when a book with these values is added, removed or reindexed
+    private void bookChanged(String title, String author, int year, BookStatus status, Set<Key> stale) {
+        textChanged(titleRuns, title, stale);
+        textChanged(authorRuns, author, stale);
+        for (Key k : queryCandidates(title, author)) {
+            if (((CatalogQuery) k.arg).matches(title, author, year, status)) stale.add(k);
+        }
+    }
+
+    private void textChanged(Map<String, Set<Key>> runs, String value, Set<Key> stale) {
+        if (runs.isEmpty() || value == null) return;
+        String v = value.toLowerCase();
+        List<String> words = words(v);
+        long substrings = 1;
+        for (String w : words) substrings += (long) w.length() * (w.length() + 1) / 2;
+        if (runs.size() <= substrings) {
+            for (Map.Entry<String, Set<Key>> e : runs.entrySet()) {
+                if (v.contains(e.getKey())) contained(e.getValue(), v, stale);
+            }
+            return;
+        }
+        contained(runs.get(""), v, stale);
+        for (String w : words) {
+            for (int i = 0; i < w.length(); i++) {
+                for (int j = i + 1; j <= w.length(); j++) contained(runs.get(w.substring(i, j)), v, stale);
+            }
+        }
+    }
+
+    private static void contained(Set<Key> keys, String value, Set<Key> stale) {
+        if (keys == null) return;
+        for (Key k : keys) {
+            if (value.contains((String) k.arg)) stale.add(k);
+        }
+    }
+
+    private List<Key> queryCandidates(String title, String author) {
+        List<Key> res = new ArrayList<>();
+        if (queryTitleWords.isEmpty() && queryAuthorWords.isEmpty()) return res;
+        for (String w : words(title == null ? null : title.toLowerCase())) addAll(res, queryTitleWords.get(w));
+        for (String w : words(author == null ? null : author.toLowerCase())) addAll(res, queryAuthorWords.get(w));
+        addAll(res, queryAuthorWords.get(""));
+        return res;
+    }
+
+    private void availabilityChanged(String author, int year, Set<Key> stale) {
+        stale.addAll(recommending);
+        if (author != null) addAll(stale, authors.get(author));
+        for (Set<Key> keys : newestFrom.headMap(year, true).values()) stale.addAll(keys);
+    }
+
+    private static long weigh(Key key, Object value) {
+        long bytes = ENTRY_BYTES + (key.arg instanceof String ? 2L * ((String) key.arg).length() : 64);
+        if (value instanceof QueryResult) {
+            QueryResult r = (QueryResult) value;
+            bytes += 48 + 4L * r.getBooks().size() + 2L * r.getPlan().length();
+            for (Facet f : Facet.values()) bytes += FACET_VALUE_BYTES * r.getFacet(f).size();
+        } else {
+            bytes += 32 + 4L * ((List<?>) value).size();
+        }
+        return bytes;
+    }
+
+    // the longest run of letters and digits, the first of equally long ones; "" if there is none
+    static String longestRun(String s) {
+        String best = "";
+        for (String w : words(s)) {
+            if (w.length() > best.length()) best = w;
+        }
+        return best;
+    }
+
+    // maximal runs of letters and digits, as the search indexes split values into words
+    static List<String> words(String s) {
+        if (s == null || s.isEmpty()) return List.of();
+        List<String> res = new ArrayList<>();
+        int i = 0;
+        while (i < s.length()) {
+            if (!Character.isLetterOrDigit(s.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < s.length() && Character.isLetterOrDigit(s.charAt(i))) i++;
+            res.add(s.substring(start, i));
+        }
+        return res;
+    }
+
+    private static <D> void map(Map<D, Set<Key>> index, D dep, Key key) {
+        index.computeIfAbsent(dep, d -> new HashSet<>()).add(key);
+    }
+
+    private static <D> void unmap(Map<D, Set<Key>> index, D dep, Key key) {
+        Set<Key> keys = index.get(dep);
+        if (keys == null) return;
+        keys.remove(key);
+        if (keys.isEmpty()) index.remove(dep);
+    }
+
+    private static void addAll(Collection<Key> to, Set<Key> keys) {
+        if (keys != null) to.addAll(keys);
+    }
+
+    /** One cached call: its kind, its normalized argument, and the recommendation limit. */
+    private static final class Key {
+        final Kind kind;
+        final Object arg;
+        final int n;
+
+        Key(Kind kind, Object arg, int n) {
+            this.kind = kind;
+            this.arg = arg;
+            this.n = n;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return kind == k.kind && n == k.n && arg.equals(k.arg);
+        }
+
+        @Override
+        public int hashCode() {
+            return (kind.ordinal() * 31 + arg.hashCode()) * 31 + n;
+        }
+    }
+
+    /**
+     * A key that is cached or being computed. version moves on with every invalidation, so a
+     * computation that started before it does not store its answer.
+     */
+    private static final class Entry {
+        final Key key;
+        int version;
+        int loading;
+        boolean cached;
+        final Set<String> authors = new HashSet<>(1);
+        boolean newest;
+        int newestFrom;
+
+        Entry(Key key) {
+            this.key = key;
+        }
+    }
+
+    /** What one recommendation read, reported by the service while it computes. */
+    private static final class Reads implements RecommendationService.Basis {
+        final Set<String> authors = new HashSet<>();
+        boolean newest;
+
+        @Override
+        public void authorRead(String author) {
+            authors.add(author);
+        }
+
+        @Override
+        public void newestRead() {
+            newest = true;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+// File: com/library/cache/TinyLfuCache.java
+package com.library.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Map bounded by total weight (the caller's estimate of each entry's size in bytes) with W-TinyLFU
+ * admission and eviction. New entries go into a small LRU window, 1% of the capacity. Entries pushed
+ * out of the window become candidates for the main space, a segmented LRU whose protected part holds
+ * 80% and whose probation part holds the rest. A candidate is admitted only if the
+ * {@link FrequencySketch} has seen its key more often than the eldest probation entry's key;
+ * otherwise the candidate is dropped. A hit on probation promotes the entry to protected. A scan of
+ * one-off keys therefore only cycles through the window, while a newly popular key gets in after a
+ * few more requests.
+ *
+ * Not thread-safe; {@link QueryCache} guards it with its monitor.
+ */
+public final class TinyLfuCache<K, V> {
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    private final long maxWeight;
+    private final long windowMax;
+    private final long protectedMax;
+    private final BiConsumer<K, V> onEvicted;
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+    private final FrequencySketch sketch = new FrequencySketch();
+    private final Segment<K, V>[] segments = newSegments();
+
+    /** onEvicted hears about entries dropped for space, not about removed or replaced ones. */
+    public TinyLfuCache(long maxWeight, BiConsumer<K, V> onEvicted) {
+        if (maxWeight <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.maxWeight = maxWeight;
+        this.windowMax = Math.max(1, maxWeight / 100);
+        this.protectedMax = (maxWeight - windowMax) * 4 / 5;
+        this.onEvicted = onEvicted;
+        sketch.ensureCapacity(64);
+    }
+
+    /** The cached value, or null; either way the request counts towards the key's frequency. */
+    public V get(K key) {
+        sketch.increment(key);
+        Node<K, V> n = data.get(key);
+        if (n == null) return null;
+        if (n.segment == PROBATION) {
+            move(n, PROTECTED);
+            // demoted entries get another chance on probation
+            Segment<K, V> prot = segments[PROTECTED];
+            while (prot.weight > protectedMax && prot.head.next != n) move(prot.head.next, PROBATION);
+        } else {
+            move(n, n.segment);
+        }
+        return n.value;
+    }
+
+    /** Adds or replaces the entry. One heavier than the whole cache is not kept. */
+    public void put(K key, V value, long weight) {
+        if (weight < 0) throw new IllegalArgumentException("Negative weight");
+        Node<K, V> n = data.get(key);
+        if (weight > maxWeight) {
+            if (n != null) remove(key);
+            return;
+        }
+        if (n != null) {
+            segments[n.segment].weight += weight - n.weight;
+            n.value = value;
+            n.weight = weight;
+            move(n, n.segment);
+        } else {
+            n = new Node<>(key, value, weight);
+            data.put(key, n);
+            segments[WINDOW].addLast(n);
+            sketch.ensureCapacity(data.size());
+        }
+        evict();
+    }
+
+    public V remove(K key) {
+        Node<K, V> n = data.remove(key);
+        if (n == null) return null;
+        segments[n.segment].unlink(n);
+        return n.value;
+    }
+
+    public void clear() {
+        data.clear();
+        for (Segment<K, V> s : segments) s.clear();
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public long weight() {
+        return segments[WINDOW].weight + segments[PROBATION].weight + segments[PROTECTED].weight;
+    }
+
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    // Moves the window's overflow to probation, then evicts until the cache fits: each candidate from
+    // the window against the eldest probation entry, the less frequently requested one going.
+    private void evict() {
+        Node<K, V> candidate = null;
+        Segment<K, V> window = segments[WINDOW];
+        while (window.weight > windowMax) {
+            Node<K, V> n = window.head.next;
+            move(n, PROBATION);
+            if (candidate == null) candidate = n;
+        }
+        Segment<K, V> probation = segments[PROBATION];
+        while (weight() > maxWeight) {
+            Node<K, V> victim = probation.head.next;
+            if (victim == probation.head) victim = segments[PROTECTED].head.next;
+            if (victim == segments[PROTECTED].head) victim = window.head.next;
+            if (candidate == null || victim == candidate || victim.segment != PROBATION) {
+                if (victim == candidate) candidate = next(candidate);
+                evict(victim);
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim);
+            } else {
+                Node<K, V> loser = candidate;
+                candidate = next(candidate);
+                evict(loser);
+            }
+        }
+    }
+
+    // the next window overflow entry after n, or null; they were appended to probation in order
+    private Node<K, V> next(Node<K, V> n) {
+        return n.next == segments[PROBATION].head ? null : n.next;
+    }
+
+    private void evict(Node<K, V> n) {
+        data.remove(n.key);
+        segments[n.segment].unlink(n);
+        if (onEvicted != null) onEvicted.accept(n.key, n.value);
+    }
+
+    private void move(Node<K, V> n, int segment) {
+        segments[n.segment].unlink(n);
+        n.segment = segment;
+        segments[segment].addLast(n);
+    }
+
+    // one per WINDOW, PROBATION, PROTECTED
+    private static <K, V> Segment<K, V>[] newSegments() {
+        @SuppressWarnings("unchecked")
+        Segment<K, V>[] res = (Segment<K, V>[]) new Segment<?, ?>[3];
+        for (int i = 0; i < res.length; i++) res[i] = new Segment<>();
+        return res;
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        V value;
+        long weight;
+        int segment;
+        Node<K, V> prev, next;
+
+        Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /** Access-ordered list with a sentinel head: eldest first. */
+    private static final class Segment<K, V> {
+        final Node<K, V> head = new Node<>(null, null, 0);
+        long weight;
+
+        Segment() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        void addLast(Node<K, V> n) {
+            n.prev = head.prev;
+            n.next = head;
+            head.prev.next = n;
+            head.prev = n;
+            weight += n.weight;
+        }
+
+        void unlink(Node<K, V> n) {
+            n.prev.next = n.next;
+            n.next.prev = n.prev;
+            n.prev = n.next = null;
+            weight -= n.weight;
+        }
+
+        void clear() {
+            head.prev = head;
+            head.next = head;
+            weight = 0;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+// File: com/library/cluster/LocalCluster.java
+package com.library.cluster;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts shard servers as child JVMs on the loopback interface, each with this process's class path,
+ * and a {@link ShardedLibrary} routing to them. Intended for local testing and benchmarks. Closing
+ * the cluster closes the shards' standard input, which stops them; any still running after a few
+ * seconds are killed.
+ */
+public final class LocalCluster implements AutoCloseable {
+    private final List<Process> processes;
+    private final List<InetSocketAddress> addresses;
+    private final ShardedLibrary router;
+
+    private LocalCluster(List<Process> processes, List<InetSocketAddress> addresses) {
+        this.processes = processes;
+        this.addresses = List.copyOf(addresses);
+        this.router = new ShardedLibrary(addresses);
+    }
+
+    /**
+     * Starts the shards. With a data directory every shard is durable under dataDir/shard-&lt;n&gt;;
+     * shard output is appended to dataDir/shard-&lt;n&gt;.log, or discarded without one.
+     */
+    public static LocalCluster start(int shards, Path dataDir, String... jvmArgs) throws IOException {
+        if (shards <= 0) throw new IllegalArgumentException("At least one shard required");
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<Process> processes = new ArrayList<>(shards);
+        List<InetSocketAddress> addresses = new ArrayList<>(shards);
+        try {
+            for (int i = 0; i < shards; i++) {
+                List<String> cmd = new ArrayList<>();
+                cmd.add(java);
+                cmd.addAll(List.of(jvmArgs));
+                cmd.add("-cp");
+                cmd.add(System.getProperty("java.class.path"));
+                cmd.add(ShardServer.class.getName());
+                cmd.add("0");
+                if (dataDir != null) cmd.add(dataDir.resolve("shard-" + i).toString());
+                ProcessBuilder pb = new ProcessBuilder(cmd);
+                pb.redirectError(dataDir == null ? ProcessBuilder.Redirect.DISCARD
+                        : ProcessBuilder.Redirect.appendTo(dataDir.resolve("shard-" + i + ".log").toFile()));
+                Process p = pb.start();
+                processes.add(p);
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), awaitPort(p, i)));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Process p : processes) p.destroyForcibly();
+            throw e;
+        }
+        return new LocalCluster(processes, addresses);
+    }
+
+    public static LocalCluster start(int shards) throws IOException {
+        return start(shards, null);
+    }
+
+    private static int awaitPort(Process p, int shard) throws IOException {
+        BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = out.readLine()) != null) {
+            if (line.startsWith("LISTENING ")) return Integer.parseInt(line.substring("LISTENING ".length()).trim());
+        }
+        throw new IOException("Shard " + shard + " closed its output before listening"
+                + (p.isAlive() ? "" : " (exit code " + p.exitValue() + ")"));
+    }
+
+    public ShardedLibrary router() {
+        return router;
+    }
+
+    /** The shards' addresses in shard order, e.g. to inspect one shard through a router of its own. */
+    public List<InetSocketAddress> shardAddresses() {
+        return addresses;
+    }
+
+    @Override
+    public void close() {
+        router.close();
+        for (Process p : processes) {
+            try {
+                p.getOutputStream().close();
+            } catch (IOException ignored) {
+                // already gone
+            }
+        }
+        for (Process p : processes) {
+            try {
+                if (!p.waitFor(5, TimeUnit.SECONDS)) p.destroyForcibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                p.destroyForcibly();
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+// File: com/library/cluster/ShardClient.java
+package com.library.cluster;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Request/response calls to one shard. Connections are pooled: a call borrows an idle connection (or
+ * opens one), so concurrent callers each get their own and a connection carries one request at a
+ * time. A connection that fails mid-call is closed rather than returned. A shard that takes longer than
+ * the call timeout to answer fails the call with a {@link SocketTimeoutException}; its connection is
+ * closed too, since the late answer would otherwise be read as the next call's.
+ */
+final class ShardClient implements Closeable {
+    interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private final InetSocketAddress address;
+    private final int timeoutMillis;
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    ShardClient(InetSocketAddress address, int timeoutMillis) {
+        this.address = address;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    InetSocketAddress getAddress() {
+        return address;
+    }
+
+    <T> T call(byte op, Writer request, Reader<T> response) throws IOException {
+        if (closed) throw new IOException("Shard client closed: " + address);
+        Connection c = idle.poll();
+        if (c == null) c = new Connection(address, timeoutMillis);
+        boolean healthy = false;
+        try {
+            c.out.writeByte(op);
+            request.write(c.out);
+            c.out.flush();
+            byte status = c.in.readByte();
+            if (status == ShardProtocol.ERROR) {
+                String message = ShardProtocol.readString(c.in);
+                healthy = true;
+                throw new IllegalArgumentException(message);
+            }
+            T result = response.read(c.in);
+            healthy = true;
+            return result;
+        } catch (SocketTimeoutException e) {
+            throw new SocketTimeoutException("Shard " + address + " did not answer within " + timeoutMillis + " ms");
+        } finally {
+            if (healthy && !closed) idle.add(c);
+            else c.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection c;
+        while ((c = idle.poll()) != null) c.close();
+    }
+
+    private static final class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(InetSocketAddress address, int timeoutMillis) throws IOException {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(address, Math.min(5_000, timeoutMillis));
+            socket.setSoTimeout(timeoutMillis);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // nothing left to do with it
+            }
+        }
+    }
+}
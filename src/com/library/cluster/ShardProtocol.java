@@ -0,0 +1,90 @@
+// File: com/library/cluster/ShardProtocol.java
+package com.library.cluster;
+
+import com.library.model.Book;
+import com.library.model.BookStatus;
+import com.library.model.Patron;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format between the router and shard servers. A request is an op byte followed by its
+ * arguments; a response starts with OK (then the result) or ERROR (then a message, raised as an
+ * IllegalArgumentException on the router). Strings are a presence flag plus modified UTF-8.
+ * A RECOMMEND result is a flag, true if the books come from the patron's borrowing history on that
+ * shard and false if they are its newest-available fallback, followed by the books.
+ */
+final class ShardProtocol {
+    static final byte ADD_PATRON = 1;
+    static final byte REGISTER_PATRON = 2;
+    static final byte GET_PATRON = 3;
+    static final byte UPDATE_PATRON = 4;
+    static final byte LIST_PATRONS = 5;
+    static final byte ADD_BOOK = 6;
+    static final byte REMOVE_BOOK = 7;
+    static final byte UPDATE_BOOK = 8;
+    static final byte SEARCH_TITLE = 9;
+    static final byte SEARCH_AUTHOR = 10;
+    static final byte SEARCH_ISBN = 11;
+    static final byte SEARCH_GENERIC = 12;
+    static final byte CHECKOUT = 13;
+    static final byte RETURN = 14;
+    static final byte CIRCULATE = 15;
+    static final byte RESERVE = 16;
+    static final byte RECOMMEND = 17;
+    static final byte CANCEL_RESERVATION = 18;
+    static final byte RESERVATION_POSITION = 19;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    private ShardProtocol() {
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeBooks(DataOutputStream out, List<Book> books) throws IOException {
+        out.writeInt(books.size());
+        for (Book b : books) {
+            writeString(out, b.getIsbn());
+            writeString(out, b.getTitle());
+            writeString(out, b.getAuthor());
+            out.writeInt(b.getPublicationYear());
+            out.writeByte(b.getStatus().ordinal());
+        }
+    }
+
+    /** Books as the shard saw them; they are copies, not live inventory objects. */
+    static List<Book> readBooks(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<Book> res = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Book b = new Book(readString(in), readString(in), readString(in), in.readInt());
+            b.setStatus(BookStatus.values()[in.readByte()]);
+            res.add(b);
+        }
+        return res;
+    }
+
+    static void writePatron(DataOutputStream out, Patron p) throws IOException {
+        out.writeInt(p.getId());
+        writeString(out, p.getName());
+        writeString(out, p.getEmail());
+    }
+
+    /** Patron without borrow history; history stays on the shards that own the books. */
+    static Patron readPatron(DataInputStream in) throws IOException {
+        return new Patron(in.readInt(), readString(in), readString(in));
+    }
+}
@@ -0,0 +1,258 @@
+// File: com/library/cluster/ShardServer.java
+package com.library.cluster;
+
+import com.library.Library;
+import com.library.inventory.CirculationOp;
+import com.library.model.Book;
+import com.library.model.Patron;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.library.cluster.ShardProtocol.*;
+
+/**
+ * Serves one shard's {@link Library} to routers over TCP. Each connection gets a thread and carries
+ * one request at a time; the library itself handles concurrency between connections.
+ *
+ * Run as a process with {@code ShardServer <port> [dataDir]} (port 0 picks a free one): it prints
+ * "LISTENING &lt;port&gt;" once ready and shuts down when its standard input is closed, so a parent
+ * process that dies takes its shards with it.
+ */
+public class ShardServer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ShardServer.class.getName());
+
+    private final Library library;
+    private final ServerSocket server;
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "shard-connection");
+        t.setDaemon(true);
+        return t;
+    });
+    private Thread acceptor; // null until started
+    private volatile boolean closed;
+
+    public ShardServer(Library library, int port) throws IOException {
+        this.library = library;
+        this.server = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Starts accepting routers; until then they queue in the listen backlog. Returns this server, so
+     * it can be created and started in one expression.
+     */
+    public synchronized ShardServer start() {
+        if (acceptor != null) throw new IllegalStateException("Shard already started");
+        if (closed) throw new IllegalStateException("Shard is closed");
+        acceptor = Thread.ofPlatform().daemon().name("shard-acceptor").start(this::accept);
+        return this;
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket s = server.accept();
+                s.setTcpNoDelay(true);
+                connections.execute(() -> serve(s));
+            } catch (IOException e) {
+                if (!closed) LOGGER.log(Level.WARNING, "Accept failed: {0}", e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                handle(op, in, out);
+                out.flush();
+            }
+        } catch (SocketException | EOFException e) {
+            // router went away
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Shard connection failed: {0}", e.getMessage());
+        }
+    }
+
+    // reads the whole request before running it, so a failing operation leaves the stream in sync
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        Request r = read(op, in);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            r.run(new DataOutputStream(body));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            out.writeByte(ERROR);
+            writeString(out, String.valueOf(e.getMessage()));
+            return;
+        }
+        out.writeByte(OK);
+        body.writeTo(out);
+    }
+
+    private interface Request {
+        void run(DataOutputStream out) throws IOException;
+    }
+
+    private Request read(byte op, DataInputStream in) throws IOException {
+        switch (op) {
+            case ADD_PATRON: {
+                String name = readString(in), email = readString(in);
+                return out -> out.writeInt(library.addPatron(name, email).getId());
+            }
+            case REGISTER_PATRON: {
+                int id = in.readInt();
+                String name = readString(in), email = readString(in);
+                return out -> library.addPatron(id, name, email);
+            }
+            case GET_PATRON: {
+                int id = in.readInt();
+                return out -> {
+                    Optional<Patron> p = library.getPatron(id);
+                    out.writeBoolean(p.isPresent());
+                    if (p.isPresent()) writePatron(out, p.get());
+                };
+            }
+            case UPDATE_PATRON: {
+                int id = in.readInt();
+                String name = readString(in), email = readString(in);
+                return out -> library.updatePatron(id, name, email);
+            }
+            case LIST_PATRONS:
+                return out -> {
+                    List<Patron> ps = new ArrayList<>(library.listPatrons());
+                    out.writeInt(ps.size());
+                    for (Patron p : ps) writePatron(out, p);
+                };
+            case ADD_BOOK: {
+                String isbn = readString(in), title = readString(in), author = readString(in);
+                int year = in.readInt(), copies = in.readInt();
+                return out -> library.addBook(isbn, title, author, year, copies);
+            }
+            case REMOVE_BOOK: {
+                String isbn = readString(in);
+                int copies = in.readInt();
+                return out -> library.removeBook(isbn, copies);
+            }
+            case UPDATE_BOOK: {
+                String isbn = readString(in), title = readString(in), author = readString(in);
+                int year = in.readInt();
+                return out -> library.updateBook(isbn, title, author, year);
+            }
+            case SEARCH_TITLE: {
+                String q = readString(in);
+                return out -> writeBooks(out, library.searchTitle(q));
+            }
+            case SEARCH_AUTHOR: {
+                String q = readString(in);
+                return out -> writeBooks(out, library.searchAuthor(q));
+            }
+            case SEARCH_ISBN: {
+                String q = readString(in);
+                return out -> writeBooks(out, library.searchIsbn(q));
+            }
+            case SEARCH_GENERIC: {
+                String strategy = readString(in), q = readString(in);
+                return out -> writeBooks(out, library.searchGeneric(strategy, q));
+            }
+            case CHECKOUT: {
+                String isbn = readString(in);
+                int patron = in.readInt();
+                return out -> out.writeBoolean(library.checkout(isbn, patron));
+            }
+            case RETURN: {
+                String isbn = readString(in);
+                int patron = in.readInt();
+                return out -> out.writeBoolean(library.returnBook(isbn, patron));
+            }
+            case CIRCULATE: {
+                int n = in.readInt();
+                List<CirculationOp> ops = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    boolean checkout = in.readBoolean();
+                    String isbn = readString(in);
+                    int patron = in.readInt();
+                    ops.add(checkout ? CirculationOp.checkout(isbn, patron) : CirculationOp.giveBack(isbn, patron));
+                }
+                return out -> {
+                    boolean[] res = library.circulate(ops);
+                    for (boolean b : res) out.writeBoolean(b);
+                };
+            }
+            case RESERVE: {
+                String isbn = readString(in);
+                int patron = in.readInt();
+                return out -> out.writeBoolean(library.reserve(isbn, patron));
+            }
+            case CANCEL_RESERVATION: {
+                String isbn = readString(in);
+                int patron = in.readInt();
+                return out -> out.writeBoolean(library.cancelReservation(isbn, patron));
+            }
+            case RESERVATION_POSITION: {
+                String isbn = readString(in);
+                int patron = in.readInt();
+                return out -> out.writeInt(library.reservationPosition(isbn, patron));
+            }
+            case RECOMMEND: {
+                int patron = in.readInt(), limit = in.readInt();
+                return out -> {
+                    List<Book> picks = library.recommendFromHistory(patron, limit);
+                    boolean fromHistory = !picks.isEmpty();
+                    out.writeBoolean(fromHistory);
+                    writeBooks(out, fromHistory ? picks : library.recommendForPatron(patron, limit));
+                };
+            }
+            default:
+                throw new IOException("Unknown op " + op);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        connections.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ShardServer <port> [dataDir]");
+            System.exit(2);
+        }
+        Library library = args.length > 1
+                ? Library.openDurable(Path.of(args[1]), false, Duration.ofMinutes(5))
+                : new Library();
+        try (ShardServer shard = new ShardServer(library, Integer.parseInt(args[0])).start()) {
+            System.out.println("LISTENING " + shard.getPort());
+            System.out.flush();
+            while (System.in.read() >= 0) {
+                // parent still there
+            }
+        } finally {
+            library.close();
+        }
+    }
+}
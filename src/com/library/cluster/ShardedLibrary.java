@@ -0,0 +1,334 @@
+// File: com/library/cluster/ShardedLibrary.java
+package com.library.cluster;
+
+import com.library.LibraryService;
+import com.library.factory.PatronFactory;
+import com.library.inventory.CirculationOp;
+import com.library.model.Book;
+import com.library.model.Patron;
+import com.library.search.IsbnIndex;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.library.cluster.ShardProtocol.*;
+
+/**
+ * Router in front of shard servers, each holding the titles of one partition of the ISBN space.
+ *
+ * - Titles belong to the shard picked by the hash of their normalized ISBN ({@link IsbnIndex#normalize}),
+ *   so every spelling of an ISBN lands on the same shard; book changes, circulation, reservations and
+ *   ISBN search go to that shard only.
+ * - Shard 0 assigns patron ids; the patron is then registered on every shard so any shard can lend
+ *   to them. Patron reads go to the patron's home shard (id mod shard count), updates to all shards.
+ *   Borrow history stays on the shards that own the books, so patrons returned here carry none.
+ * - Title/author search and recommendations are sent to all shards in parallel and merged: search
+ *   results in shard order, recommendations interleaved round-robin up to the limit, since each shard
+ *   ranks only by the history it holds. Picks from the patron's borrowing history come first; shards
+ *   holding none of it answer with their newest available books, which only fill what is left.
+ *
+ * There is no cross-shard transaction: a failure while registering a patron can leave it on some
+ * shards only. Calls that reach a shard that is down, or one that does not answer within the call
+ * timeout, throw UncheckedIOException.
+ */
+public class ShardedLibrary implements LibraryService {
+    private static final String ISBN_STRATEGY = "IsbnSearchStrategy";
+    private static final Duration DEFAULT_CALL_TIMEOUT = Duration.ofSeconds(30);
+
+    private final List<ShardClient> shards;
+    private final ExecutorService scatter = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "shard-scatter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ShardedLibrary(List<InetSocketAddress> shardAddresses) {
+        this(shardAddresses, DEFAULT_CALL_TIMEOUT);
+    }
+
+    /** callTimeout bounds the wait for each shard's answer; the default is 30 seconds. */
+    public ShardedLibrary(List<InetSocketAddress> shardAddresses, Duration callTimeout) {
+        if (shardAddresses.isEmpty()) throw new IllegalArgumentException("At least one shard required");
+        if (callTimeout == null || callTimeout.isNegative() || callTimeout.isZero()) {
+            throw new IllegalArgumentException("Invalid call timeout");
+        }
+        int timeoutMillis = (int) Math.min(Integer.MAX_VALUE, Math.max(1, callTimeout.toMillis()));
+        List<ShardClient> clients = new ArrayList<>(shardAddresses.size());
+        for (InetSocketAddress a : shardAddresses) clients.add(new ShardClient(a, timeoutMillis));
+        this.shards = List.copyOf(clients);
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public int shardForIsbn(String isbn) {
+        return isbn == null ? 0 : Math.floorMod(IsbnIndex.normalize(isbn).hashCode(), shards.size());
+    }
+
+    public int homeShard(int patronId) {
+        return Math.floorMod(patronId, shards.size());
+    }
+
+    // -- Patron management --
+    @Override
+    public Patron addPatron(String name, String email) {
+        int id = call(shards.get(0), ADD_PATRON, out -> {
+            writeString(out, name);
+            writeString(out, email);
+        }, in -> in.readInt());
+        Patron p = PatronFactory.create(id, name, email);
+        all(1, s -> s.call(REGISTER_PATRON, out -> writePatron(out, p), in -> null));
+        return p;
+    }
+
+    @Override
+    public Optional<Patron> getPatron(int id) {
+        return call(shards.get(homeShard(id)), GET_PATRON, out -> out.writeInt(id),
+                in -> in.readBoolean() ? Optional.of(readPatron(in)) : Optional.empty());
+    }
+
+    @Override
+    public void updatePatron(int id, String name, String email) {
+        all(0, s -> s.call(UPDATE_PATRON, out -> {
+            out.writeInt(id);
+            writeString(out, name);
+            writeString(out, email);
+        }, in -> null));
+    }
+
+    @Override
+    public Collection<Patron> listPatrons() {
+        return call(shards.get(0), LIST_PATRONS, out -> { }, in -> {
+            int n = in.readInt();
+            List<Patron> res = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) res.add(readPatron(in));
+            return Collections.unmodifiableList(res);
+        });
+    }
+
+    // -- Book management --
+    @Override
+    public void addBook(String isbn, String title, String author, int year, int copies) {
+        call(owner(isbn), ADD_BOOK, out -> {
+            writeString(out, isbn);
+            writeString(out, title);
+            writeString(out, author);
+            out.writeInt(year);
+            out.writeInt(copies);
+        }, in -> null);
+    }
+
+    @Override
+    public void removeBook(String isbn, int copies) {
+        call(owner(isbn), REMOVE_BOOK, out -> {
+            writeString(out, isbn);
+            out.writeInt(copies);
+        }, in -> null);
+    }
+
+    @Override
+    public void updateBook(String isbn, String title, String author, int year) {
+        call(owner(isbn), UPDATE_BOOK, out -> {
+            writeString(out, isbn);
+            writeString(out, title);
+            writeString(out, author);
+            out.writeInt(year);
+        }, in -> null);
+    }
+
+    // -- Search --
+    @Override
+    public List<Book> searchTitle(String title) {
+        return concat(all(0, s -> s.call(SEARCH_TITLE, out -> writeString(out, title), ShardProtocol::readBooks)));
+    }
+
+    @Override
+    public List<Book> searchAuthor(String author) {
+        return concat(all(0, s -> s.call(SEARCH_AUTHOR, out -> writeString(out, author), ShardProtocol::readBooks)));
+    }
+
+    @Override
+    public List<Book> searchIsbn(String isbn) {
+        return call(owner(isbn), SEARCH_ISBN, out -> writeString(out, isbn), ShardProtocol::readBooks);
+    }
+
+    @Override
+    public List<Book> searchGeneric(String strategyName, String query) {
+        ShardClient.Writer request = out -> {
+            writeString(out, strategyName);
+            writeString(out, query);
+        };
+        if (ISBN_STRATEGY.equalsIgnoreCase(strategyName)) {
+            return call(owner(query), SEARCH_GENERIC, request, ShardProtocol::readBooks);
+        }
+        return concat(all(0, s -> s.call(SEARCH_GENERIC, request, ShardProtocol::readBooks)));
+    }
+
+    // -- Lending --
+    @Override
+    public boolean checkout(String isbn, int patronId) {
+        return call(owner(isbn), CHECKOUT, out -> {
+            writeString(out, isbn);
+            out.writeInt(patronId);
+        }, in -> in.readBoolean());
+    }
+
+    @Override
+    public boolean returnBook(String isbn, int patronId) {
+        return call(owner(isbn), RETURN, out -> {
+            writeString(out, isbn);
+            out.writeInt(patronId);
+        }, in -> in.readBoolean());
+    }
+
+    /** Splits the batch by shard; each shard applies its part as one batch, in input order. */
+    @Override
+    public boolean[] circulate(List<CirculationOp> ops) {
+        int n = shards.size();
+        List<List<Integer>> byShard = new ArrayList<>(n);
+        for (int s = 0; s < n; s++) byShard.add(new ArrayList<>());
+        for (int i = 0; i < ops.size(); i++) byShard.get(shardForIsbn(ops.get(i).getIsbn())).add(i);
+
+        boolean[] results = new boolean[ops.size()];
+        List<Future<boolean[]>> parts = new ArrayList<>(n);
+        for (int s = 0; s < n; s++) {
+            List<Integer> idx = byShard.get(s);
+            ShardClient shard = shards.get(s);
+            parts.add(idx.isEmpty() ? null : scatter.submit(() -> shard.call(CIRCULATE, out -> {
+                out.writeInt(idx.size());
+                for (int i : idx) {
+                    CirculationOp op = ops.get(i);
+                    out.writeBoolean(op.getType() == CirculationOp.Type.CHECKOUT);
+                    writeString(out, op.getIsbn());
+                    out.writeInt(op.getPatronId());
+                }
+            }, in -> {
+                boolean[] res = new boolean[idx.size()];
+                for (int k = 0; k < res.length; k++) res[k] = in.readBoolean();
+                return res;
+            })));
+        }
+        for (int s = 0; s < n; s++) {
+            if (parts.get(s) == null) continue;
+            boolean[] res = await(parts.get(s));
+            List<Integer> idx = byShard.get(s);
+            for (int k = 0; k < res.length; k++) results[idx.get(k)] = res[k];
+        }
+        return results;
+    }
+
+    @Override
+    public boolean reserve(String isbn, int patronId) {
+        return call(owner(isbn), RESERVE, out -> {
+            writeString(out, isbn);
+            out.writeInt(patronId);
+        }, in -> in.readBoolean());
+    }
+
+    @Override
+    public boolean cancelReservation(String isbn, int patronId) {
+        return call(owner(isbn), CANCEL_RESERVATION, out -> {
+            writeString(out, isbn);
+            out.writeInt(patronId);
+        }, in -> in.readBoolean());
+    }
+
+    @Override
+    public int reservationPosition(String isbn, int patronId) {
+        return call(owner(isbn), RESERVATION_POSITION, out -> {
+            writeString(out, isbn);
+            out.writeInt(patronId);
+        }, in -> in.readInt());
+    }
+
+    // -- Recommendations --
+    @Override
+    public List<Book> recommendForPatron(int patronId, int limit) {
+        if (limit <= 0) return Collections.emptyList();
+        List<Map.Entry<Boolean, List<Book>>> perShard = all(0, s -> s.call(RECOMMEND, out -> {
+            out.writeInt(patronId);
+            out.writeInt(limit);
+        }, in -> Map.entry(in.readBoolean(), readBooks(in))));
+        List<List<Book>> fromHistory = new ArrayList<>(perShard.size());
+        List<List<Book>> fallback = new ArrayList<>(perShard.size());
+        for (Map.Entry<Boolean, List<Book>> e : perShard) (e.getKey() ? fromHistory : fallback).add(e.getValue());
+        List<Book> res = new ArrayList<>(limit);
+        interleave(fromHistory, limit, res);
+        interleave(fallback, limit, res);
+        return res;
+    }
+
+    // appends the lists' books round-robin, rank by rank, until res holds limit books
+    private static void interleave(List<List<Book>> lists, int limit, List<Book> res) {
+        for (int rank = 0; res.size() < limit; rank++) {
+            boolean any = false;
+            for (List<Book> books : lists) {
+                if (rank >= books.size()) continue;
+                any = true;
+                if (res.size() < limit) res.add(books.get(rank));
+            }
+            if (!any) break;
+        }
+    }
+
+    @Override
+    public void close() {
+        scatter.shutdownNow();
+        for (ShardClient s : shards) s.close();
+    }
+
+    // -- plumbing --
+    private interface ShardCall<T> {
+        T apply(ShardClient shard) throws IOException;
+    }
+
+    private ShardClient owner(String isbn) {
+        return shards.get(shardForIsbn(isbn));
+    }
+
+    private static <T> T call(ShardClient shard, byte op, ShardClient.Writer request, ShardClient.Reader<T> response) {
+        try {
+            return shard.call(op, request, response);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Shard " + shard.getAddress() + " failed", e);
+        }
+    }
+
+    // runs the call on shards from..n-1 in parallel and returns their results in shard order
+    private <T> List<T> all(int from, ShardCall<T> call) {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (int s = from; s < shards.size(); s++) {
+            ShardClient shard = shards.get(s);
+            futures.add(scatter.submit(() -> call.apply(shard)));
+        }
+        List<T> res = new ArrayList<>(futures.size());
+        for (Future<T> f : futures) res.add(await(f));
+        return res;
+    }
+
+    private static <T> T await(Future<T> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted waiting for a shard"));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof IOException) throw new UncheckedIOException("Shard call failed", (IOException) cause);
+            throw new IllegalStateException("Shard call failed", cause);
+        }
+    }
+
+    private static List<Book> concat(List<List<Book>> parts) {
+        List<Book> res = new ArrayList<>();
+        for (List<Book> p : parts) res.addAll(p);
+        return res;
+    }
+}
@@ -0,0 +1,62 @@
+// File: com/library/concurrent/DenseIdTable.java
+package com.library.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Map from small non-negative int ids to values, for ids handed out densely from a counter. Ids index
+ * fixed-size segments found through a segment directory, so a lookup is two array reads and needs no
+ * hashing, boxing or locking. Writers are serialized on the table; each value is published with
+ * release semantics and read with acquire semantics, so a reader that sees a value also sees the
+ * writes made before it was put.
+ *
+ * Memory is proportional to the largest id, not to the number of entries.
+ */
+public final class DenseIdTable<T> {
+    private static final int SEGMENT_BITS = 10;
+    private static final int SEGMENT = 1 << SEGMENT_BITS;
+    private static final int MASK = SEGMENT - 1;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    // segments are never replaced once created; growing the directory publishes a new copy
+    private volatile Object[][] directory = new Object[0][];
+    private volatile int size;
+
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        if (id < 0) return null;
+        Object[][] dir = directory;
+        int s = id >>> SEGMENT_BITS;
+        if (s >= dir.length) return null;
+        Object[] segment = dir[s];
+        return segment == null ? null : (T) SLOT.getAcquire(segment, id & MASK);
+    }
+
+    /** Maps the id to the value and returns the previous value, or null. */
+    @SuppressWarnings("unchecked")
+    public synchronized T put(int id, T value) {
+        if (id < 0 || value == null) throw new IllegalArgumentException("Invalid id/value");
+        Object[] segment = segmentFor(id);
+        T previous = (T) SLOT.getAcquire(segment, id & MASK);
+        SLOT.setRelease(segment, id & MASK, value);
+        if (previous == null) size++;
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // caller holds the table lock
+    private Object[] segmentFor(int id) {
+        int s = id >>> SEGMENT_BITS;
+        Object[][] dir = directory;
+        if (s < dir.length && dir[s] != null) return dir[s];
+        Object[][] grown = Arrays.copyOf(dir, s < dir.length ? dir.length : Math.max(s + 1, dir.length * 2));
+        grown[s] = new Object[SEGMENT];
+        directory = grown;
+        return grown[s];
+    }
+}
@@ -0,0 +1,137 @@
+// File: com/library/concurrent/SnapshotList.java
+package com.library.concurrent;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Unordered collection whose readers get immutable, versioned snapshots: {@link #snapshot()} is a
+ * volatile read, and a snapshot can be iterated or indexed without locking or copying while writers
+ * go on. Writers are serialized on the list and publish a new snapshot per change.
+ *
+ * Elements live in fixed-size chunks. Appending writes past the end of the last chunk, which no
+ * published snapshot reads, so an add copies nothing (the chunk table is copied only when it fills
+ * up). Removal moves the last element into the hole, copying the one or two chunks involved and the
+ * chunk table; element order is therefore not stable across removals. Elements are tracked by
+ * identity.
+ */
+public final class SnapshotList<T> {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int MASK = CHUNK - 1;
+
+    private final Map<T, Integer> positions = new IdentityHashMap<>();
+    private Object[][] chunks = new Object[4][];
+    private volatile View<T> current = new View<>(chunks, 0, 0);
+
+    /** The latest published version. */
+    public View<T> snapshot() {
+        return current;
+    }
+
+    public synchronized void add(T element) {
+        append(Objects.requireNonNull(element));
+        publish();
+    }
+
+    /** Adds every element and publishes them as one version. */
+    public synchronized void addAll(Collection<? extends T> elements) {
+        if (elements.isEmpty()) return;
+        for (T e : elements) append(Objects.requireNonNull(e));
+        publish();
+    }
+
+    /** Removes the element (compared by identity); false if it is not in the list. */
+    public synchronized boolean remove(T element) {
+        Integer pos = positions.remove(element);
+        if (pos == null) return false;
+        int last = positions.size(); // size before the removal, minus one
+        chunks = chunks.clone();
+        Object[] tail = chunks[last >>> CHUNK_BITS].clone();
+        chunks[last >>> CHUNK_BITS] = tail;
+        if (pos != last) {
+            Object[] hole = chunks[pos >>> CHUNK_BITS];
+            if (hole != tail) chunks[pos >>> CHUNK_BITS] = hole = hole.clone();
+            @SuppressWarnings("unchecked")
+            T moved = (T) tail[last & MASK];
+            hole[pos & MASK] = moved;
+            positions.put(moved, pos);
+        }
+        tail[last & MASK] = null;
+        publish();
+        return true;
+    }
+
+    /** Puts replacement where element was; false if element is not in the list. */
+    public synchronized boolean replace(T element, T replacement) {
+        Objects.requireNonNull(replacement);
+        Integer pos = positions.get(element);
+        if (pos == null) return false;
+        if (positions.containsKey(replacement)) throw new IllegalArgumentException("Replacement already listed");
+        positions.remove(element);
+        positions.put(replacement, pos);
+        chunks = chunks.clone();
+        Object[] chunk = chunks[pos >>> CHUNK_BITS].clone();
+        chunk[pos & MASK] = replacement;
+        chunks[pos >>> CHUNK_BITS] = chunk;
+        publish();
+        return true;
+    }
+
+    // caller holds the list lock; the element becomes visible with the next publish
+    private void append(T element) {
+        if (positions.containsKey(element)) throw new IllegalArgumentException("Element already listed");
+        int pos = positions.size();
+        int c = pos >>> CHUNK_BITS;
+        if (c == chunks.length) chunks = Arrays.copyOf(chunks, c * 2);
+        if (chunks[c] == null) chunks[c] = new Object[CHUNK];
+        chunks[c][pos & MASK] = element;
+        positions.put(element, pos);
+    }
+
+    private void publish() {
+        current = new View<>(chunks, positions.size(), current.version + 1);
+    }
+
+    /**
+     * One published version: an immutable random-access list. The elements themselves are shared
+     * with the live collection, so their own mutable state may still change.
+     */
+    public static final class View<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[][] chunks;
+        private final int size;
+        private final long version;
+
+        View(Object[][] chunks, int size, long version) {
+            this.chunks = chunks;
+            this.size = size;
+            this.version = version;
+        }
+
+        /** Incremented by every change; equal versions of one list hold the same elements. */
+        public long version() {
+            return version;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            Objects.checkIndex(index, size);
+            return (T) chunks[index >>> CHUNK_BITS][index & MASK];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEach(Consumer<? super T> action) {
+            for (int c = 0, left = size; left > 0; c++, left -= CHUNK) {
+                Object[] chunk = chunks[c];
+                for (int i = 0, n = Math.min(left, CHUNK); i < n; i++) action.accept((T) chunk[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+// File: com/library/concurrent/TimingWheel.java
+package com.library.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel for large numbers of coarse timers. Time advances in fixed ticks; a timer sits
+ * in the bucket of the tick it is due in, modulo the wheel size, with the number of whole turns still
+ * to go. Scheduling and cancelling are O(1) and lock-free: both only enqueue, and a single worker
+ * thread moves new timers into their buckets, unlinks cancelled ones and, once per tick, walks one
+ * bucket, running the timers that are due. Memory is one small object per outstanding timer.
+ *
+ * Timers fire late by up to one tick (plus the time the tasks before them take); they never fire
+ * early. Tasks run on the worker thread, so they should be short.
+ */
+public final class TimingWheel implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(TimingWheel.class.getName());
+
+    private final long tickNanos;
+    private final Timeout[] buckets; // bucket heads; touched only by the worker
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong outstanding = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+    private long tick; // worker only: ticks processed so far
+    private volatile boolean closed;
+
+    /** Starts a wheel with the given tick and number of buckets (rounded up to a power of two). */
+    public TimingWheel(String threadName, Duration tick, int wheelSize) {
+        if (tick.isNegative() || tick.isZero() || wheelSize <= 0) {
+            throw new IllegalArgumentException("Invalid tick/wheel size");
+        }
+        this.tickNanos = tick.toNanos();
+        int n = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.buckets = new Timeout[n];
+        this.mask = n - 1;
+        this.worker = new Thread(this::run, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Runs the task on the wheel's thread once the delay has passed, unless cancelled first. */
+    public Timeout schedule(long delay, TimeUnit unit, Runnable task) {
+        Objects.requireNonNull(task);
+        if (closed) throw new IllegalStateException("Timing wheel is closed");
+        long deadline = System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+        Timeout t = new Timeout(this, task, deadline);
+        outstanding.incrementAndGet();
+        scheduled.add(t);
+        return t;
+    }
+
+    /** Timers scheduled and neither fired nor cancelled yet. */
+    public long size() {
+        return outstanding.get();
+    }
+
+    /** Stops the worker; timers that have not fired yet never will. */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+        if (Thread.currentThread() == worker) return;
+        try {
+            worker.join(TimeUnit.NANOSECONDS.toMillis(tickNanos) + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long now = awaitTick();
+            if (closed) return;
+            for (Timeout t; (t = cancelled.poll()) != null; ) unlink(t);
+            for (Timeout t; (t = scheduled.poll()) != null; ) place(t);
+            expire(tick & mask, now);
+            tick++;
+        }
+    }
+
+    // sleeps until the end of the current tick; returns the wheel time then
+    private long awaitTick() {
+        long end = tickNanos * (tick + 1);
+        while (!closed) {
+            long now = System.nanoTime() - startNanos;
+            if (now >= end) return now;
+            LockSupport.parkNanos(this, end - now);
+        }
+        return end;
+    }
+
+    private void place(Timeout t) {
+        if (t.state != Timeout.PENDING) return; // cancelled before it reached the wheel
+        long due = t.deadline / tickNanos;
+        long at = Math.max(due, tick); // already overdue: the current tick
+        t.rounds = (at - tick) / buckets.length;
+        int b = (int) (at & mask);
+        t.bucket = b;
+        t.next = buckets[b];
+        if (t.next != null) t.next.prev = t;
+        buckets[b] = t;
+    }
+
+    private void unlink(Timeout t) {
+        if (t.bucket < 0) return; // never placed, or already expired
+        if (t.prev == null) buckets[t.bucket] = t.next;
+        else t.prev.next = t.next;
+        if (t.next != null) t.next.prev = t.prev;
+        t.prev = t.next = null;
+        t.bucket = -1;
+    }
+
+    private void expire(long bucket, long now) {
+        Timeout t = buckets[(int) bucket];
+        while (t != null) {
+            Timeout next = t.next;
+            if (t.state != Timeout.PENDING) {
+                unlink(t);
+            } else if (t.rounds <= 0 && t.deadline <= now) {
+                unlink(t);
+                if (Timeout.STATE.compareAndSet(t, Timeout.PENDING, Timeout.EXPIRED)) {
+                    outstanding.decrementAndGet();
+                    try {
+                        t.task.run();
+                    } catch (RuntimeException | Error e) {
+                        LOGGER.log(Level.WARNING, "Timer task failed", e);
+                    }
+                }
+            } else if (t.rounds > 0) {
+                t.rounds--;
+            }
+            t = next;
+        }
+    }
+
+    /** Handle of one scheduled task. */
+    public static final class Timeout {
+        static final int PENDING = 0;
+        static final int EXPIRED = 1;
+        static final int CANCELLED = 2;
+        static final VarHandle STATE;
+
+        static {
+            try {
+                STATE = MethodHandles.lookup().findVarHandle(Timeout.class, "state", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadline; // nanos since the wheel started
+        volatile int state;
+        // worker only
+        private long rounds;
+        private int bucket = -1;
+        private Timeout prev;
+        private Timeout next;
+
+        Timeout(TimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /** Stops the task from running; false if it already ran or was cancelled. */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) return false;
+            wheel.outstanding.decrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+    }
+}
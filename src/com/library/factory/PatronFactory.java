@@ -12,4 +12,14 @@ public final class PatronFactory {
         }
         return new Patron(name.trim(), email == null ? "" : email.trim());
     }
+
+    public static Patron create(int id, String name, String email) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Patron id must be positive");
+        }
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Name required");
+        }
+        return new Patron(id, name.trim(), email == null ? "" : email.trim());
+    }
 }
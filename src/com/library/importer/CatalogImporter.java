@@ -0,0 +1,172 @@
+// File: com/library/importer/CatalogImporter.java
+package com.library.importer;
+
+import com.library.factory.BookFactory;
+import com.library.inventory.LibraryInventory;
+import com.library.model.Book;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streaming import of a publisher feed. The calling thread reads lines and hands them out in chunks
+ * to parser threads, which parse and validate rows through {@link BookFactory}. Parsed chunks are merged
+ * in feed order, so a repeated ISBN keeps the details of its first row and adds up the copies of all
+ * of them (the same outcome as calling addBook for each row). The merged batch is applied with a
+ * single {@link LibraryInventory#addBooks} call.
+ *
+ * At most two chunks per parser thread are in flight, so memory holds the merged titles plus a few
+ * chunks of lines, not the whole feed.
+ */
+public final class CatalogImporter {
+    private static final Logger LOGGER = Logger.getLogger(CatalogImporter.class.getName());
+
+    public static final int DEFAULT_CHUNK_LINES = 4096;
+    private static final int MAX_ERRORS = 100;
+
+    private final RecordFormat format;
+    private final int parallelism;
+    private final int chunkLines;
+
+    public CatalogImporter(RecordFormat format) {
+        this(format, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_LINES);
+    }
+
+    public CatalogImporter(RecordFormat format, int parallelism, int chunkLines) {
+        if (parallelism <= 0 || chunkLines <= 0) throw new IllegalArgumentException("Parallelism and chunk size must be positive");
+        this.format = Objects.requireNonNull(format);
+        this.parallelism = parallelism;
+        this.chunkLines = chunkLines;
+    }
+
+    /** Imports the feed into the inventory. The listener (may be null) hears about every merged chunk. */
+    public ImportStats importInto(LibraryInventory inventory, Reader source, ImportListener listener) throws IOException {
+        Progress progress = new Progress(System.nanoTime(), listener);
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "catalog-import");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            BufferedReader in = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source, 1 << 16);
+            Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            List<String> lines = new ArrayList<>(chunkLines);
+            long firstLine = 1;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == chunkLines) {
+                    inFlight.add(parsers.submit(parseTask(lines, firstLine)));
+                    firstLine += lines.size();
+                    lines = new ArrayList<>(chunkLines);
+                    if (inFlight.size() >= 2 * parallelism) progress.merge(await(inFlight.poll()));
+                }
+            }
+            if (!lines.isEmpty()) inFlight.add(parsers.submit(parseTask(lines, firstLine)));
+            while (!inFlight.isEmpty()) progress.merge(await(inFlight.poll()));
+        } finally {
+            parsers.shutdownNow();
+        }
+
+        int added = inventory.addBooks(progress.merged);
+        ImportStats result = progress.stats(added);
+        if (listener != null) listener.onProgress(result);
+        LOGGER.log(Level.INFO, "Imported catalog: {0}", result);
+        return result;
+    }
+
+    private Callable<Chunk> parseTask(List<String> lines, long firstLine) {
+        return () -> {
+            Chunk c = new Chunk(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                try {
+                    String[] f = format.parse(lines.get(i));
+                    if (f == null) continue;
+                    c.rows++;
+                    int year = Integer.parseInt(f[3].trim());
+                    int copies = Integer.parseInt(f[4].trim());
+                    if (copies <= 0) throw new IllegalArgumentException("Copies must be positive");
+                    c.books.add(BookFactory.create(f[0], f[1], f[2], year));
+                    c.copies.add(copies);
+                } catch (IllegalArgumentException e) {
+                    c.rejected++;
+                    if (c.errors.size() < MAX_ERRORS) c.errors.add("line " + (firstLine + i) + ": " + e.getMessage());
+                }
+            }
+            return c;
+        };
+    }
+
+    private static Chunk await(Future<Chunk> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Parser failed", e.getCause());
+        }
+    }
+
+    private static final class Chunk {
+        final List<Book> books;
+        final List<Integer> copies;
+        final List<String> errors = new ArrayList<>();
+        long rows;
+        long rejected;
+
+        Chunk(int lines) {
+            books = new ArrayList<>(lines);
+            copies = new ArrayList<>(lines);
+        }
+    }
+
+    // merge state; touched only by the importing thread
+    private static final class Progress {
+        final long started;
+        final ImportListener listener;
+        final Map<Book, Integer> merged = new LinkedHashMap<>();
+        final List<String> errors = new ArrayList<>();
+        long rows;
+        long accepted;
+        long duplicates;
+        long rejected;
+
+        Progress(long started, ImportListener listener) {
+            this.started = started;
+            this.listener = listener;
+        }
+
+        void merge(Chunk c) {
+            rows += c.rows;
+            rejected += c.rejected;
+            for (String e : c.errors) {
+                if (errors.size() < MAX_ERRORS) errors.add(e);
+            }
+            for (int i = 0; i < c.books.size(); i++) {
+                Book b = c.books.get(i);
+                int copies = c.copies.get(i);
+                Integer prev = merged.get(b);
+                if (prev == null) {
+                    merged.put(b, copies);
+                } else {
+                    merged.put(b, prev + copies);
+                    duplicates++;
+                }
+                accepted++;
+            }
+            if (listener != null) listener.onProgress(stats(0));
+        }
+
+        ImportStats stats(int titlesAdded) {
+            return new ImportStats(rows, accepted, duplicates, rejected, titlesAdded, System.nanoTime() - started,
+                    List.copyOf(errors));
+        }
+    }
+}
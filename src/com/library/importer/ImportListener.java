@@ -0,0 +1,8 @@
+// File: com/library/importer/ImportListener.java
+package com.library.importer;
+
+/** Progress callback of a {@link CatalogImporter}; called on the importing thread. */
+@FunctionalInterface
+public interface ImportListener {
+    void onProgress(ImportStats progress);
+}
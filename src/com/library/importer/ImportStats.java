@@ -0,0 +1,76 @@
+// File: com/library/importer/ImportStats.java
+package com.library.importer;
+
+import java.util.List;
+
+/** Counters of an import so far (from progress callbacks) or in total (the import's result). */
+public final class ImportStats {
+    private final long rows;
+    private final long accepted;
+    private final long duplicates;
+    private final long rejected;
+    private final int titlesAdded;
+    private final long elapsedNanos;
+    private final List<String> errors;
+
+    ImportStats(long rows, long accepted, long duplicates, long rejected, int titlesAdded, long elapsedNanos,
+                List<String> errors) {
+        this.rows = rows;
+        this.accepted = accepted;
+        this.duplicates = duplicates;
+        this.rejected = rejected;
+        this.titlesAdded = titlesAdded;
+        this.elapsedNanos = elapsedNanos;
+        this.errors = errors;
+    }
+
+    /** Record lines read, valid or not; blank and header lines are not counted. */
+    public long getRows() {
+        return rows;
+    }
+
+    /** Rows that passed validation. */
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /** Accepted rows whose ISBN appeared earlier in the feed; their copies were added to the first. */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    /** Titles new to the inventory; only known once the batch has been applied. */
+    public int getTitlesAdded() {
+        return titlesAdded;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    /** The first rejection messages, with line numbers. */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportStats{" +
+                "rows=" + rows +
+                ", accepted=" + accepted +
+                ", duplicates=" + duplicates +
+                ", rejected=" + rejected +
+                ", titlesAdded=" + titlesAdded +
+                ", elapsedMillis=" + elapsedNanos / 1_000_000 +
+                ", rowsPerSecond=" + Math.round(getRowsPerSecond()) +
+                '}';
+    }
+}
@@ -0,0 +1,97 @@
+// File: com/library/importer/RecordFormat.java
+package com.library.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line formats of publisher feeds. Each parses one line into the raw fields
+ * [isbn, title, author, year, copies]; returns null for lines that carry no record (blank, header).
+ */
+public enum RecordFormat {
+    /**
+     * {@code isbn,title,author,year,copies}. Fields may be double-quoted, with "" for a quote inside;
+     * copies may be omitted (one copy). A line whose fields are exactly these column names (in any
+     * case) is taken for a header, so a record whose ISBN field happens to start with "isbn" is kept.
+     */
+    CSV {
+        @Override
+        String[] parse(String line) {
+            if (line.isBlank()) return null;
+            List<String> fields = new ArrayList<>(5);
+            StringBuilder cur = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        cur.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(cur.toString());
+                    cur.setLength(0);
+                } else {
+                    cur.append(c);
+                }
+            }
+            if (quoted) throw new IllegalArgumentException("Unterminated quote");
+            fields.add(cur.toString());
+            if (fields.size() < 4 || fields.size() > 5) {
+                throw new IllegalArgumentException("Expected 4 or 5 fields, got " + fields.size());
+            }
+            if (isHeader(fields)) return null;
+            return new String[]{fields.get(0), fields.get(1), fields.get(2), fields.get(3),
+                    fields.size() == 5 ? fields.get(4) : "1"};
+        }
+    },
+
+    /**
+     * MARC-like tagged fields separated by '|': {@code 020:isbn|245:title|100:author|260:year|852:copies}.
+     * Fields may come in any order; unknown tags are ignored and 852 defaults to one copy.
+     */
+    MARC_LINE {
+        @Override
+        String[] parse(String line) {
+            if (line.isBlank()) return null;
+            String[] res = {null, null, null, null, "1"};
+            int start = 0;
+            while (start <= line.length()) {
+                int end = line.indexOf('|', start);
+                if (end < 0) end = line.length();
+                int colon = line.indexOf(':', start);
+                if (colon < 0 || colon > end) throw new IllegalArgumentException("Field without tag: " + line.substring(start, end));
+                String value = line.substring(colon + 1, end);
+                switch (line.substring(start, colon).trim()) {
+                    case "020": res[0] = value; break;
+                    case "245": res[1] = value; break;
+                    case "100": res[2] = value; break;
+                    case "260": res[3] = value; break;
+                    case "852": res[4] = value; break;
+                    default: break;
+                }
+                start = end + 1;
+            }
+            if (res[3] == null) throw new IllegalArgumentException("Missing 260 (year)");
+            return res;
+        }
+    };
+
+    private static final List<String> CSV_HEADER = List.of("isbn", "title", "author", "year", "copies");
+
+    abstract String[] parse(String line);
+
+    // the CSV column names, in order, with or without the optional copies column
+    private static boolean isHeader(List<String> fields) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (!fields.get(i).trim().equalsIgnoreCase(CSV_HEADER.get(i))) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,112 @@
+// File: com/library/inventory/CatalogRowIndex.java
+package com.library.inventory;
+
+import com.library.persistence.MappedCatalog;
+import com.library.search.TokenIndex;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Row postings over a mapped catalog, built in one pass over its columns: title and author words to
+ * the rows holding them, exact authors to their rows, and all rows newest first. A search for pending
+ * titles then visits only the rows it could match instead of decoding the whole catalog each time.
+ */
+final class CatalogRowIndex {
+    private final int rows;
+    private final Map<String, int[]> titleWords;
+    private final Map<String, int[]> authorWords;
+    private final Map<String, int[]> authors;
+    private final int[] newestFirst;
+
+    CatalogRowIndex(MappedCatalog catalog) {
+        rows = catalog.size();
+        Map<String, Rows> titles = new HashMap<>(), authorTokens = new HashMap<>(), exact = new HashMap<>();
+        Integer[] order = new Integer[rows];
+        for (int row = 0; row < rows; row++) {
+            String author = catalog.author(row);
+            for (String w : TokenIndex.tokenize(catalog.title(row).toLowerCase())) posting(titles, w).add(row);
+            for (String w : TokenIndex.tokenize(author.toLowerCase())) posting(authorTokens, w).add(row);
+            posting(exact, author).add(row);
+            order[row] = row;
+        }
+        titleWords = freeze(titles);
+        authorWords = freeze(authorTokens);
+        authors = freeze(exact);
+        Arrays.sort(order, (a, b) -> Integer.compare(catalog.year(b), catalog.year(a)));
+        newestFirst = new int[rows];
+        for (int i = 0; i < rows; i++) newestFirst[i] = order[i];
+    }
+
+    /**
+     * Passes every row whose field could contain the lower-cased query, and possibly more; callers
+     * verify. As in {@link TokenIndex}, the query's longest letter/digit run is looked up: a run with
+     * a separator on both sides is a whole word, one bounded on the left a word prefix, on the right
+     * a word suffix, and an unbounded run can sit anywhere inside a word.
+     */
+    void forEachCandidate(MappedCatalog.Field field, String q, IntConsumer action) {
+        String best = null;
+        boolean left = false, right = false;
+        int i = 0;
+        while (i < q.length()) {
+            if (!Character.isLetterOrDigit(q.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < q.length() && Character.isLetterOrDigit(q.charAt(i))) i++;
+            if (best == null || i - start > best.length()) {
+                best = q.substring(start, i);
+                left = start > 0;
+                right = i < q.length();
+            }
+        }
+        if (best == null) {
+            for (int row = 0; row < rows; row++) action.accept(row);
+            return;
+        }
+        Map<String, int[]> words = field == MappedCatalog.Field.TITLE ? titleWords : authorWords;
+        if (left && right) {
+            int[] r = words.get(best);
+            if (r != null) for (int row : r) action.accept(row);
+            return;
+        }
+        for (Map.Entry<String, int[]> e : words.entrySet()) {
+            String w = e.getKey();
+            boolean match = left ? w.startsWith(best) : right ? w.endsWith(best) : w.contains(best);
+            if (match) for (int row : e.getValue()) action.accept(row);
+        }
+    }
+
+    /** Rows whose author is exactly the given one. */
+    int[] rowsByAuthor(String author) {
+        int[] r = authors.get(author == null ? "" : author);
+        return r == null ? new int[0] : r;
+    }
+
+    int[] newestFirst() {
+        return newestFirst;
+    }
+
+    private static Rows posting(Map<String, Rows> map, String key) {
+        return map.computeIfAbsent(key, k -> new Rows());
+    }
+
+    private static Map<String, int[]> freeze(Map<String, Rows> map) {
+        Map<String, int[]> res = new HashMap<>(map.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Rows> e : map.entrySet()) {
+            res.put(e.getKey(), Arrays.copyOf(e.getValue().data, e.getValue().size));
+        }
+        return res;
+    }
+
+    private static final class Rows {
+        int[] data = new int[2];
+        int size;
+
+        void add(int row) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = row;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+// File: com/library/inventory/CirculationOp.java
+package com.library.inventory;
+
+/**
+ * One checkout or return in a batch, such as a night's book-drop returns or a class checkout.
+ */
+public final class CirculationOp {
+    public enum Type {
+        CHECKOUT,
+        RETURN
+    }
+
+    private final Type type;
+    private final String isbn;
+    private final int patronId;
+
+    private CirculationOp(Type type, String isbn, int patronId) {
+        this.type = type;
+        this.isbn = isbn;
+        this.patronId = patronId;
+    }
+
+    public static CirculationOp checkout(String isbn, int patronId) {
+        return new CirculationOp(Type.CHECKOUT, isbn, patronId);
+    }
+
+    public static CirculationOp giveBack(String isbn, int patronId) {
+        return new CirculationOp(Type.RETURN, isbn, patronId);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public int getPatronId() {
+        return patronId;
+    }
+
+    @Override
+    public String toString() {
+        return "CirculationOp{" +
+                "type=" + type +
+                ", isbn='" + isbn + '\'' +
+                ", patronId=" + patronId +
+                '}';
+    }
+}
@@ -0,0 +1,58 @@
+// File: com/library/inventory/CopyCounters.java
+package com.library.inventory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Primitive per-title copy counters. Each title in the inventory owns a dense slot; the available and
+ * borrowed counts of a slot sit next to each other in a fixed-size int chunk. Chunks never move once
+ * allocated, so a slot can be updated under its ISBN stripe while other threads grow the slab.
+ */
+final class CopyCounters {
+    static final int AVAILABLE = 0;
+    static final int BORROWED = 1;
+
+    private static final int FIELDS = 2;
+    private static final int CHUNK_SHIFT = 12; // 4096 slots per chunk
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private volatile AtomicIntegerArray[] chunks = new AtomicIntegerArray[0];
+    private int nextSlot;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    synchronized int allocate() {
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+        int chunk = slot >>> CHUNK_SHIFT;
+        if (chunk >= chunks.length) {
+            AtomicIntegerArray[] grown = Arrays.copyOf(chunks, chunk + 1);
+            grown[chunk] = new AtomicIntegerArray((CHUNK_MASK + 1) * FIELDS);
+            chunks = grown;
+        }
+        set(slot, AVAILABLE, 0);
+        set(slot, BORROWED, 0);
+        return slot;
+    }
+
+    synchronized void release(int slot) {
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+    }
+
+    int get(int slot, int field) {
+        return chunks[slot >>> CHUNK_SHIFT].get(((slot & CHUNK_MASK) * FIELDS) + field);
+    }
+
+    void set(int slot, int field, int value) {
+        chunks[slot >>> CHUNK_SHIFT].set(((slot & CHUNK_MASK) * FIELDS) + field, value);
+    }
+
+    int add(int slot, int field, int delta) {
+        return chunks[slot >>> CHUNK_SHIFT].addAndGet(((slot & CHUNK_MASK) * FIELDS) + field, delta);
+    }
+
+    synchronized int capacity() {
+        return chunks.length << CHUNK_SHIFT;
+    }
+}
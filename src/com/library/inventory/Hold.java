@@ -0,0 +1,36 @@
+// File: com/library/inventory/Hold.java
+package com.library.inventory;
+
+import com.library.concurrent.TimingWheel;
+import com.library.model.Patron;
+
+import java.time.LocalDateTime;
+
+/**
+ * A returned copy set aside for the patron at the head of the title's waitlist. The copy counts as
+ * neither available nor borrowed until the patron checks it out or the hold expires.
+ */
+public final class Hold {
+    private final String isbn;
+    private final Patron patron;
+    private final LocalDateTime placedAt;
+    TimingWheel.Timeout timer; // guarded by the ISBN's stripe; null while expiry is off
+
+    Hold(String isbn, Patron patron, LocalDateTime placedAt) {
+        this.isbn = isbn;
+        this.patron = patron;
+        this.placedAt = placedAt;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public Patron getPatron() {
+        return patron;
+    }
+
+    public LocalDateTime getPlacedAt() {
+        return placedAt;
+    }
+}
@@ -0,0 +1,22 @@
+// File: com/library/inventory/Holding.java
+package com.library.inventory;
+
+import com.library.model.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A title held by the inventory: the shared {@link Book}, the dense slot of its copy counters and the
+ * copies on hold for patrons, oldest first (guarded by the ISBN's stripe).
+ */
+final class Holding {
+    final Book book;
+    final int slot;
+    final List<Hold> holds = new ArrayList<>(0);
+
+    Holding(Book book, int slot) {
+        this.book = book;
+        this.slot = slot;
+    }
+}
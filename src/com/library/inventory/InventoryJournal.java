@@ -0,0 +1,30 @@
+// File: com/library/inventory/InventoryJournal.java
+package com.library.inventory;
+
+import com.library.model.Book;
+import com.library.model.Patron;
+
+import java.time.LocalDateTime;
+
+/**
+ * Receives every state change the inventory applies, while the ISBN's stripe is still held, so the
+ * journal sees the changes of one ISBN in exactly the order they were applied. Replaying the entries
+ * through the same inventory methods in that order reproduces the state.
+ */
+public interface InventoryJournal {
+    void bookAdded(Book book, int copies);
+
+    void copiesRemoved(String isbn, int copies);
+
+    void bookUpdated(String isbn, String title, String author, int year);
+
+    void checkedOut(String isbn, Patron patron, LocalDateTime at);
+
+    void returned(String isbn, Patron patron, LocalDateTime at);
+
+    void reserved(String isbn, Patron patron);
+
+    void reservationCancelled(String isbn, Patron patron);
+
+    void holdExpired(String isbn, Patron patron, LocalDateTime at);
+}
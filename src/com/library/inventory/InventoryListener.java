@@ -0,0 +1,26 @@
+// File: com/library/inventory/InventoryListener.java
+package com.library.inventory;
+
+import com.library.model.Book;
+import com.library.model.BookStatus;
+import com.library.model.Patron;
+
+/**
+ * Observer of inventory changes, used to keep derived structures (recommendation profiles, indexes)
+ * current without rescanning the catalog. Callbacks run on the mutating thread while the ISBN's stripe
+ * is held, so events for one ISBN arrive in order; they must be quick and must not call back into the
+ * inventory.
+ */
+public interface InventoryListener {
+    default void onBookAdded(Book book) {}
+
+    default void onBookRemoved(Book book) {}
+
+    default void onBookUpdated(Book book, String oldTitle, String oldAuthor, int oldYear) {}
+
+    default void onStatusChanged(Book book, BookStatus oldStatus, BookStatus newStatus) {}
+
+    default void onCheckout(Book book, Patron patron) {}
+
+    default void onReturn(Book book, Patron patron) {}
+}
@@ -0,0 +1,58 @@
+// File: com/library/inventory/LazyCatalog.java
+package com.library.inventory;
+
+import com.library.persistence.MappedCatalog;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A mapped catalog attached to the inventory plus one "taken" bit per row. A row is taken the first
+ * time its ISBN is touched; from then on the title lives in the holdings map like any other. The
+ * {@link CatalogRowIndex} over the rows is built once, on first use.
+ */
+final class LazyCatalog {
+    final MappedCatalog catalog;
+    private final AtomicLongArray taken;
+    private final AtomicInteger pending;
+    private volatile CatalogRowIndex rowIndex;
+
+    LazyCatalog(MappedCatalog catalog) {
+        this.catalog = catalog;
+        this.taken = new AtomicLongArray((catalog.size() + 63) >>> 6);
+        this.pending = new AtomicInteger(catalog.size());
+    }
+
+    CatalogRowIndex rowIndex() {
+        CatalogRowIndex idx = rowIndex;
+        if (idx != null) return idx;
+        synchronized (this) {
+            if (rowIndex == null) rowIndex = new CatalogRowIndex(catalog);
+            return rowIndex;
+        }
+    }
+
+    int pending() {
+        return pending.get();
+    }
+
+    boolean isTaken(int row) {
+        return (taken.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    /** Row of the ISBN if it has not been taken yet, else -1. */
+    int pendingRow(String isbn) {
+        if (pending.get() == 0) return -1;
+        int row = catalog.find(isbn);
+        return row >= 0 && !isTaken(row) ? row : -1;
+    }
+
+    /** Marks the row taken; false if another caller got it first. */
+    boolean take(int row) {
+        long bit = 1L << row;
+        long prev = taken.getAndAccumulate(row >>> 6, bit, (a, b) -> a | b);
+        if ((prev & bit) != 0) return false;
+        pending.decrementAndGet();
+        return true;
+    }
+}
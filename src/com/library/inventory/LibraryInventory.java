@@ -1,148 +1,924 @@
 // File: com/library/inventory/LibraryInventory.java
 package com.library.inventory;
 
+import com.library.audit.AuditEvent;
+import com.library.audit.AuditLog;
+import com.library.concurrent.SnapshotList;
+import com.library.concurrent.TimingWheel;
 import com.library.model.Book;
 import com.library.model.BookStatus;
 import com.library.model.Patron;
+import com.library.metrics.Counter;
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.MetricsRegistry;
+import com.library.persistence.MappedCatalog;
 import com.library.reservation.ReservationManager;
+import com.library.search.IsbnIndex;
+import com.library.search.TokenIndex;
+import com.library.search.TrigramIndex;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
+/**
+ * Per-ISBN state is guarded by a lock stripe chosen from the ISBN, so circulation on unrelated titles
+ * does not serialize. Every mutation of one ISBN (counts, status, its reservations) happens under its
+ * stripe; reads of counts and books go straight to the holdings map and counter slab without locking.
+ *
+ * A copy returned while patrons are waiting is put on hold for the first of them; it is counted as
+ * neither available nor borrowed until that patron checks it out or, with hold expiry on, the pickup
+ * window runs out and it passes to the next patron or back to the shelf.
+ */
 public class LibraryInventory {
     private static final Logger LOGGER = Logger.getLogger(LibraryInventory.class.getName());
 
-    private final Map<String, Book> isbnBookMap = new HashMap<>();
-    private final Map<String, Integer> availableCount = new HashMap<>(); // isbn -> copies available
-    private final Map<String, Integer> borrowedCount = new HashMap<>(); // isbn -> copies borrowed
+    private final Map<String, Holding> holdings = new ConcurrentHashMap<>(); // isbn -> book + counter slot
+    private final CopyCounters counters = new CopyCounters(); // per slot: copies available / borrowed
+    private final SnapshotList<Book> titles = new SnapshotList<>(); // every held book, for listing
+
+    private final IsbnIndex isbnIndex = new IsbnIndex();
+    private final TokenIndex titleIndex = new TokenIndex(Book::getTitle);
+    private final TokenIndex authorIndex = new TokenIndex(Book::getAuthor);
+    private final TrigramIndex titleTrigramIndex = new TrigramIndex(Book::getTitle);
+
+    private final Object[] stripes;
+
+    private final List<InventoryListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile InventoryJournal journal; // null: changes are not journaled
+    private volatile Clock clock = Clock.systemDefaultZone();
+    private volatile LazyCatalog catalog; // null: no mapped catalog attached
+    private volatile Instruments metrics; // null: circulation is not measured
+    private volatile AuditLog audit; // null: no audit trail
+    private volatile TimingWheel holdTimers; // null: holds last until collected
+    private volatile Duration pickupWindow;
+    private final AtomicInteger activeHolds = new AtomicInteger();
 
     private final ReservationManager reservationManager;
 
     public LibraryInventory(ReservationManager reservationManager) {
+        this(reservationManager, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public LibraryInventory(ReservationManager reservationManager, int concurrency) {
         this.reservationManager = reservationManager;
+        int n = Integer.highestOneBit(Math.max(16, concurrency) - 1) << 1;
+        this.stripes = new Object[n];
+        for (int i = 0; i < n; i++) stripes[i] = new Object();
+    }
+
+    public IsbnIndex getIsbnIndex() {
+        return isbnIndex;
+    }
+
+    public TokenIndex getTitleIndex() {
+        return titleIndex;
+    }
+
+    public TokenIndex getAuthorIndex() {
+        return authorIndex;
+    }
+
+    public TrigramIndex getTitleTrigramIndex() {
+        return titleTrigramIndex;
+    }
+
+    public void addListener(InventoryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(InventoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void setJournal(InventoryJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Records circulation latency (including the wait for the ISBN's stripe) and failures in the
+     * registry: circulation.checkout, circulation.return, circulation.batch. Holds are counted as
+     * hold.active, hold.collected and hold.expired, and hold.expiry.lag measures how long after its
+     * deadline each timed-out hold was released. Null stops recording.
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        this.metrics = registry == null ? null : new Instruments(registry);
+        if (registry != null) registry.gauge("hold.active", activeHolds::get);
+    }
+
+    /**
+     * Records additions, removals, checkouts, returns, reservations and notifications (including
+     * rejected ones and those applied in batches) in the audit log; null stops recording.
+     */
+    public void setAuditLog(AuditLog audit) {
+        this.audit = audit;
+    }
+
+    /** Clock used for borrow/return timestamps; recovery replays journaled times through it. */
+    public void setClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * Releases holds not collected within pickupWindow of being placed: the copy goes to the next
+     * patron waiting for the title, or back on the shelf. Deadlines are tracked on the given wheel,
+     * whose thread runs the expiries. Holds already outstanding (e.g. recovered ones) are re-armed
+     * with the new window, counted from when they were placed. A null wheel turns expiry off.
+     */
+    public void setHoldExpiry(TimingWheel wheel, Duration pickupWindow) {
+        if (wheel != null && (pickupWindow == null || pickupWindow.isNegative())) {
+            throw new IllegalArgumentException("Invalid pickup window");
+        }
+        int armed = withAllTitlesLocked(() -> {
+            this.pickupWindow = pickupWindow;
+            this.holdTimers = wheel;
+            int n = 0;
+            for (Holding h : holdings.values()) {
+                for (Hold hold : h.holds) {
+                    if (hold.timer != null) hold.timer.cancel();
+                    hold.timer = null;
+                    armLocked(hold);
+                    n++;
+                }
+            }
+            return n;
+        });
+        LOGGER.log(Level.INFO, "Hold expiry {0} ({1} outstanding holds)",
+                new Object[]{wheel == null ? "off" : "after " + pickupWindow, armed});
+    }
+
+    /**
+     * Serves the titles of a mapped catalog file without loading them. A catalog title becomes a
+     * regular holding (a {@link Book}, index entries, listener events) the first time its ISBN is used,
+     * when a search could match it, or when all books are listed. Titles already in the inventory take
+     * precedence over catalog rows with the same ISBN. Materializing a title is not journaled, so a
+     * durable library must attach the same catalog before recovery.
+     */
+    public void attachCatalog(MappedCatalog mapped) {
+        if (catalog != null) throw new IllegalStateException("A catalog is already attached");
+        LazyCatalog c = new LazyCatalog(mapped);
+        catalog = c;
+        // the row index is ready by the time searches need it, unless one comes right away
+        Thread indexer = new Thread(c::rowIndex, "catalog-row-index");
+        indexer.setDaemon(true);
+        indexer.start();
+        LOGGER.log(Level.INFO, "Attached catalog with {0} titles", mapped.size());
+    }
+
+    /** Number of catalog titles not materialized yet. */
+    public int pendingCatalogTitles() {
+        LazyCatalog c = catalog;
+        return c == null ? 0 : c.pending();
+    }
+
+    /**
+     * Materializes pending catalog titles whose field contains the query, ignoring case. Only the rows
+     * the catalog's word postings point to are decoded and checked.
+     */
+    public void materializeCatalogMatches(MappedCatalog.Field field, String query) {
+        LazyCatalog c = catalog;
+        if (c == null || c.pending() == 0 || query == null) return;
+        String q = query.toLowerCase().trim();
+        c.rowIndex().forEachCandidate(field, q, row -> {
+            if (!c.isTaken(row) && c.catalog.field(field, row).toLowerCase().contains(q)) materializeRow(c, row);
+        });
+    }
+
+    /** Materializes pending catalog titles by exactly this author. */
+    public void materializeCatalogAuthor(String author) {
+        LazyCatalog c = catalog;
+        if (c == null || c.pending() == 0) return;
+        for (int row : c.rowIndex().rowsByAuthor(author)) {
+            if (!c.isTaken(row)) materializeRow(c, row);
+        }
+    }
+
+    /**
+     * Materializes pending catalog titles newest first until count of the catalog's titles are
+     * available, finishing the publication year reached, so a newest-first listing of count books
+     * sees every catalog title it could include.
+     */
+    public void materializeCatalogNewest(int count) {
+        LazyCatalog c = catalog;
+        if (c == null || c.pending() == 0 || count <= 0) return;
+        int available = 0;
+        int lastYear = 0;
+        for (int row : c.rowIndex().newestFirst()) {
+            int year = c.catalog.year(row);
+            if (available >= count && year != lastYear) break;
+            if (!c.isTaken(row)) materializeRow(c, row);
+            if (isAvailable(c.catalog.isbn(row))) available++;
+            lastYear = year;
+        }
+    }
+
+    /** Materializes pending catalog titles an ISBN search for the query would match. */
+    public void materializeCatalogIsbn(String isbn) {
+        LazyCatalog c = catalog;
+        if (c == null || c.pending() == 0) return;
+        for (int row : c.catalog.findByIsbnKey(isbn)) materializeRow(c, row);
     }
 
-    public synchronized void addBook(Book book, int copies) {
+    private void materializeAll() {
+        LazyCatalog c = catalog;
+        if (c == null) return;
+        for (int row = 0; row < c.catalog.size() && c.pending() > 0; row++) {
+            if (!c.isTaken(row)) materializeRow(c, row);
+        }
+    }
+
+    private void materializeRow(LazyCatalog c, int row) {
+        String isbn = c.catalog.isbn(row);
+        synchronized (lockFor(isbn)) {
+            holdingLocked(isbn);
+        }
+    }
+
+    // Holding for the ISBN, materializing it from the catalog if needed. Caller holds the ISBN's stripe.
+    private Holding holdingLocked(String isbn) {
+        Holding h = holdings.get(isbn);
+        if (h != null) return h;
+        LazyCatalog c = catalog;
+        if (c == null) return null;
+        int row = c.pendingRow(isbn);
+        if (row < 0 || !c.take(row)) return null;
+        h = install(c.catalog.book(row));
+        counters.set(h.slot, CopyCounters.AVAILABLE, c.catalog.copies(row));
+        return h;
+    }
+
+    // Holding for lock-free readers; only takes the stripe when a catalog title must be materialized.
+    private Holding holding(String isbn) {
+        if (isbn == null) return null;
+        Holding h = holdings.get(isbn);
+        if (h != null) return h;
+        LazyCatalog c = catalog;
+        if (c == null || c.pendingRow(isbn) < 0) return null;
+        synchronized (lockFor(isbn)) {
+            return holdingLocked(isbn);
+        }
+    }
+
+    // caller holds the book's stripe and has checked that the ISBN is not held yet
+    private Holding install(Book book) {
+        Holding h = new Holding(book, counters.allocate());
+        holdings.put(book.getIsbn(), h);
+        titles.add(book);
+        isbnIndex.add(book);
+        titleIndex.add(book);
+        authorIndex.add(book);
+        titleTrigramIndex.add(book);
+        for (InventoryListener l : listeners) l.onBookAdded(book);
+        return h;
+    }
+
+    public void addBook(Book book, int copies) {
         if (book == null || copies <= 0) throw new IllegalArgumentException("Invalid book/copies");
-        isbnBookMap.putIfAbsent(book.getIsbn(), book);
-        availableCount.merge(book.getIsbn(), copies, Integer::sum);
-        LOGGER.log(Level.INFO, "Added {0} copies of {1}", new Object[]{copies, book.getIsbn()});
+        synchronized (lockFor(book.getIsbn())) {
+            Holding h = holdingLocked(book.getIsbn());
+            if (h == null) h = install(book);
+            counters.add(h.slot, CopyCounters.AVAILABLE, copies);
+            InventoryJournal j = journal;
+            if (j != null) j.bookAdded(h.book, copies);
+            AuditLog a = audit;
+            if (a != null) a.record(AuditEvent.BOOK_ADDED, book.getIsbn(), -1, copies);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Added {0} copies of {1}", new Object[]{copies, book.getIsbn()});
+        }
+    }
+
+    /**
+     * Adds many titles as one operation: every stripe is taken once for the whole batch, new titles
+     * are installed and then added to each search index in a single pass per index. Titles already
+     * held only gain copies, as with addBook. Circulation waits while the batch is applied. Returns
+     * the number of new titles.
+     */
+    public int addBooks(Map<Book, Integer> copiesByBook) {
+        for (Map.Entry<Book, Integer> e : copiesByBook.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null || e.getValue() <= 0) {
+                throw new IllegalArgumentException("Invalid book/copies");
+            }
+        }
+        List<Book> added = withAllTitlesLocked(() -> {
+            List<Book> fresh = new ArrayList<>();
+            InventoryJournal j = journal;
+            AuditLog a = audit;
+            for (Map.Entry<Book, Integer> e : copiesByBook.entrySet()) {
+                Book book = e.getKey();
+                Holding h = holdingLocked(book.getIsbn());
+                if (h == null) {
+                    h = new Holding(book, counters.allocate());
+                    holdings.put(book.getIsbn(), h);
+                    fresh.add(book);
+                }
+                counters.add(h.slot, CopyCounters.AVAILABLE, e.getValue());
+                if (j != null) j.bookAdded(h.book, e.getValue());
+                if (a != null) a.record(AuditEvent.BOOK_ADDED, book.getIsbn(), -1, e.getValue());
+            }
+            titles.addAll(fresh);
+            isbnIndex.addAll(fresh);
+            titleIndex.addAll(fresh);
+            authorIndex.addAll(fresh);
+            titleTrigramIndex.addAll(fresh);
+            for (InventoryListener l : listeners) {
+                for (Book b : fresh) l.onBookAdded(b);
+            }
+            return fresh;
+        });
+        LOGGER.log(Level.INFO, "Bulk-added {0} titles ({1} new)", new Object[]{copiesByBook.size(), added.size()});
+        return added.size();
+    }
+
+    /**
+     * Installs a title with its counts and current status as recorded in a snapshot. Indexes and
+     * listeners are updated as for addBook; nothing is journaled.
+     */
+    public void restoreBook(Book book, int available, int borrowed) {
+        synchronized (lockFor(book.getIsbn())) {
+            Holding h = holdingLocked(book.getIsbn());
+            if (h == null) h = install(book);
+            counters.set(h.slot, CopyCounters.AVAILABLE, available);
+            counters.set(h.slot, CopyCounters.BORROWED, borrowed);
+        }
+    }
+
+    /** Re-creates a hold recorded in a snapshot; the title must be restored first. Nothing is journaled. */
+    public void restoreHold(String isbn, Patron patron, LocalDateTime placedAt) {
+        synchronized (lockFor(isbn)) {
+            Holding h = holdingLocked(isbn);
+            if (h == null) throw new IllegalArgumentException("Unknown ISBN " + isbn);
+            Hold hold = new Hold(isbn, patron, placedAt);
+            h.holds.add(hold);
+            activeHolds.incrementAndGet();
+            armLocked(hold);
+        }
+    }
+
+    /** Every outstanding hold, oldest first within each title. */
+    public List<Hold> getHolds() {
+        List<Hold> res = new ArrayList<>(activeHolds.get());
+        for (Map.Entry<String, Holding> e : holdings.entrySet()) {
+            synchronized (lockFor(e.getKey())) {
+                res.addAll(e.getValue().holds);
+            }
+        }
+        return res;
+    }
+
+    public int getHeldCopies(String isbn) {
+        if (isbn == null) return 0;
+        synchronized (lockFor(isbn)) {
+            Holding h = holdings.get(isbn);
+            return h == null ? 0 : h.holds.size();
+        }
+    }
+
+    /**
+     * Every title with the copies the library owns of it - on the shelf, on loan or held - taken as
+     * one consistent cut. With a catalog attached, materializes all of it first.
+     */
+    public Map<Book, Integer> getOwnedCopies() {
+        if (pendingCatalogTitles() > 0) materializeAll();
+        return withAllTitlesLocked(() -> {
+            Map<Book, Integer> res = new LinkedHashMap<>(holdings.size() * 4 / 3 + 1);
+            for (Holding h : holdings.values()) {
+                res.put(h.book, counters.get(h.slot, CopyCounters.AVAILABLE)
+                        + counters.get(h.slot, CopyCounters.BORROWED) + h.holds.size());
+            }
+            return res;
+        });
+    }
+
+    /**
+     * Releases the patron's hold on a copy of the title as if it had not been collected in time; false
+     * if the patron holds no copy of it. Recovery replays journaled expiries through this.
+     */
+    public boolean expireHold(String isbn, Patron patron) {
+        if (isbn == null) return false;
+        synchronized (lockFor(isbn)) {
+            Holding h = holdingLocked(isbn);
+            Hold hold = h == null ? null : takeHold(h, patron.getId());
+            if (hold == null) return false;
+            if (hold.timer != null) hold.timer.cancel();
+            expiredLocked(h, hold);
+            return true;
+        }
+    }
+
+    // runs on the wheel's thread once the hold's deadline has passed
+    private void holdTimedOut(Hold hold) {
+        synchronized (lockFor(hold.getIsbn())) {
+            Holding h = holdings.get(hold.getIsbn());
+            if (h == null || !h.holds.remove(hold)) return; // collected or released meanwhile
+            Instruments m = metrics;
+            Duration window = pickupWindow;
+            if (m != null && window != null) {
+                LocalDateTime deadline = hold.getPlacedAt().plus(window);
+                m.holdLag.record(Math.max(0, Duration.between(deadline, LocalDateTime.now(clock)).toNanos()));
+            }
+            expiredLocked(h, hold);
+        }
+    }
+
+    // caller holds the stripe and has removed the hold; the copy goes to the next patron or the shelf
+    private void expiredLocked(Holding h, Hold hold) {
+        activeHolds.decrementAndGet();
+        String isbn = hold.getIsbn();
+        Patron patron = hold.getPatron();
+        InventoryJournal j = journal;
+        if (j != null) j.holdExpired(isbn, patron, LocalDateTime.now(clock));
+        AuditLog a = audit;
+        if (a != null) a.record(AuditEvent.HOLD_EXPIRED, isbn, patron.getId(), 0);
+        Instruments m = metrics;
+        if (m != null) m.holdsExpired.increment();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Hold on {0} for patron {1} expired", new Object[]{isbn, patron.getName()});
+        }
+        if (!holdForNextLocked(h, true)) {
+            counters.add(h.slot, CopyCounters.AVAILABLE, 1);
+            if (h.holds.isEmpty()) setStatus(h.book, BookStatus.AVAILABLE);
+        }
+    }
+
+    // sets a copy aside for the next patron waiting for the title; false if nobody is waiting. The
+    // caller has already taken the copy out of the available count.
+    private boolean holdForNextLocked(Holding h, boolean verbose) {
+        Book b = h.book;
+        Optional<Patron> next = reservationManager.pollNextPatron(b.getIsbn());
+        if (next.isEmpty()) return false;
+        Patron nextPatron = next.get();
+        Hold hold = new Hold(b.getIsbn(), nextPatron, LocalDateTime.now(clock));
+        h.holds.add(hold);
+        activeHolds.incrementAndGet();
+        armLocked(hold);
+        // mark book as RESERVED until nextPatron checks out
+        setStatus(b, BookStatus.RESERVED);
+        reservationManager.notifyBookAvailable(b, nextPatron);
+        AuditLog a = audit;
+        if (a != null) a.record(AuditEvent.NOTIFY, b.getIsbn(), nextPatron.getId(), 0);
+        if (verbose && LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Notified patron {0} for reserved book {1}", new Object[]{nextPatron.getName(), b.getIsbn()});
+        }
+        return true;
+    }
+
+    // caller holds the hold's stripe
+    private void armLocked(Hold hold) {
+        TimingWheel wheel = holdTimers;
+        Duration window = pickupWindow;
+        if (wheel == null || window == null) return;
+        LocalDateTime deadline = hold.getPlacedAt().plus(window);
+        long delay = Duration.between(LocalDateTime.now(clock), deadline).toNanos();
+        hold.timer = wheel.schedule(delay, TimeUnit.NANOSECONDS, () -> holdTimedOut(hold));
     }
 
-    public synchronized void removeBook(String isbn, int copies) {
+    private static Hold takeHold(Holding h, int patronId) {
+        for (Iterator<Hold> it = h.holds.iterator(); it.hasNext(); ) {
+            Hold hold = it.next();
+            if (hold.getPatron().getId() == patronId) {
+                it.remove();
+                return hold;
+            }
+        }
+        return null;
+    }
+
+    public void removeBook(String isbn, int copies) {
         if (isbn == null || copies <= 0) return;
-        Integer avail = availableCount.get(isbn);
-        if (avail == null || avail < copies) {
-            LOGGER.log(Level.WARNING, "Not enough copies to remove {0}", isbn);
-            return;
-        }
-        availableCount.put(isbn, avail - copies);
-        if (availableCount.get(isbn) == 0 && borrowedCount.getOrDefault(isbn, 0) == 0) {
-            isbnBookMap.remove(isbn);
-            availableCount.remove(isbn);
-            borrowedCount.remove(isbn);
-            LOGGER.log(Level.INFO, "Removed book entirely from inventory: {0}", isbn);
-        } else {
-            LOGGER.log(Level.INFO, "Removed {0} copies of {1}", new Object[]{copies, isbn});
+        synchronized (lockFor(isbn)) {
+            Holding h = holdingLocked(isbn);
+            if (h == null || counters.get(h.slot, CopyCounters.AVAILABLE) < copies) {
+                LOGGER.log(Level.WARNING, "Not enough copies to remove {0}", isbn);
+                return;
+            }
+            int avail = counters.add(h.slot, CopyCounters.AVAILABLE, -copies);
+            InventoryJournal j = journal;
+            if (j != null) j.copiesRemoved(isbn, copies);
+            AuditLog a = audit;
+            if (a != null) a.record(AuditEvent.COPIES_REMOVED, isbn, -1, copies);
+            if (avail == 0 && counters.get(h.slot, CopyCounters.BORROWED) == 0 && h.holds.isEmpty()) {
+                holdings.remove(isbn);
+                counters.release(h.slot);
+                titles.remove(h.book);
+                isbnIndex.remove(h.book);
+                titleIndex.remove(h.book);
+                authorIndex.remove(h.book);
+                titleTrigramIndex.remove(h.book);
+                for (InventoryListener l : listeners) l.onBookRemoved(h.book);
+                LOGGER.log(Level.FINE, "Removed book entirely from inventory: {0}", isbn);
+            } else if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Removed {0} copies of {1}", new Object[]{copies, isbn});
+            }
         }
     }
 
-    public synchronized void updateBookInfo(String isbn, String title, String author, int year) {
-        Book b = isbnBookMap.get(isbn);
-        if (b == null) {
-            LOGGER.log(Level.WARNING, "Book not found: {0}", isbn);
-            return;
+    public void updateBookInfo(String isbn, String title, String author, int year) {
+        if (isbn == null) return;
+        synchronized (lockFor(isbn)) {
+            Holding h = holdingLocked(isbn);
+            if (h == null) {
+                LOGGER.log(Level.WARNING, "Book not found: {0}", isbn);
+                return;
+            }
+            Book b = h.book;
+            String oldTitle = b.getTitle();
+            String oldAuthor = b.getAuthor();
+            int oldYear = b.getPublicationYear();
+            b.setTitle(title);
+            b.setAuthor(author);
+            if (year > 0) b.setPublicationYear(year);
+            titleIndex.reindex(b);
+            authorIndex.reindex(b);
+            titleTrigramIndex.reindex(b);
+            for (InventoryListener l : listeners) l.onBookUpdated(b, oldTitle, oldAuthor, oldYear);
+            InventoryJournal j = journal;
+            if (j != null) j.bookUpdated(isbn, title, author, year);
         }
-        b.setTitle(title);
-        b.setAuthor(author);
-        if (year > 0) b.setPublicationYear(year);
         LOGGER.log(Level.INFO, "Updated book info for {0}", isbn);
     }
 
-    public synchronized Optional<Book> getBookByIsbn(String isbn) {
-        return Optional.ofNullable(isbnBookMap.get(isbn));
+    public Optional<Book> getBookByIsbn(String isbn) {
+        Holding h = holding(isbn);
+        return h == null ? Optional.empty() : Optional.of(h.book);
+    }
+
+    /**
+     * Immutable snapshot of every title, in no particular order, that can be iterated without locking
+     * while circulation and catalog changes go on; its version changes whenever titles are added or
+     * removed. Book objects are shared, so their status and details are live. With a catalog
+     * attached, the first call materializes all of it.
+     */
+    public SnapshotList.View<Book> getAllBooks() {
+        if (pendingCatalogTitles() > 0) materializeAll();
+        return titles.snapshot();
+    }
+
+    public int getBorrowedCopies(String isbn) {
+        Holding h = holding(isbn);
+        if (h == null) return 0;
+        int borrowed = counters.get(h.slot, CopyCounters.BORROWED);
+        return holdings.get(isbn) == h ? borrowed : 0;
+    }
+
+    /**
+     * Runs the action with every stripe held, so no title changes while it runs. Used to take a
+     * consistent cut of the whole inventory; keep the action short.
+     */
+    public <T> T withAllTitlesLocked(Supplier<T> action) {
+        return lockStripes(0, action);
     }
 
-    public synchronized Collection<Book> getAllBooks() {
-        return Collections.unmodifiableCollection(isbnBookMap.values());
+    private <T> T lockStripes(int i, Supplier<T> action) {
+        if (i == stripes.length) return action.get();
+        synchronized (stripes[i]) {
+            return lockStripes(i + 1, action);
+        }
     }
 
-    public synchronized int getAvailableCopies(String isbn) {
-        return availableCount.getOrDefault(isbn, 0);
+    public int getAvailableCopies(String isbn) {
+        Holding h = holding(isbn);
+        if (h == null) return 0;
+        int avail = counters.get(h.slot, CopyCounters.AVAILABLE);
+        // a holding is never re-added once removed, so if it is still mapped its slot was not recycled
+        return holdings.get(isbn) == h ? avail : 0;
     }
 
-    public synchronized boolean isAvailable(String isbn) {
+    public boolean isAvailable(String isbn) {
         return getAvailableCopies(isbn) > 0;
     }
 
-    public synchronized boolean checkoutBook(String isbn, Patron patron) {
-        if (!isbnBookMap.containsKey(isbn)) {
-            LOGGER.log(Level.WARNING, "Checkout failed - book unknown: {0}", isbn);
-            return false;
+    public boolean checkoutBook(String isbn, Patron patron) {
+        if (isbn == null) return false;
+        Instruments m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        Outcome o;
+        synchronized (lockFor(isbn)) {
+            o = checkoutLocked(isbn, patron, true);
         }
-        if (!isAvailable(isbn)) {
-            // allow reservation
-            LOGGER.log(Level.INFO, "Book not available for checkout, consider reservation: {0}", isbn);
-            return false;
+        warnRejected("Checkout", o, isbn);
+        boolean ok = o == Outcome.DONE;
+        if (m != null) m.checkedOut(start, ok);
+        return ok;
+    }
+
+    /**
+     * Checks out a copy, or queues the patron for the next returned copy when none is available. Both
+     * happen under the ISBN's stripe so a concurrent return cannot slip in between the two.
+     */
+    public boolean checkoutOrReserve(String isbn, Patron patron) {
+        if (isbn == null) return false;
+        Instruments m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        Outcome o;
+        synchronized (lockFor(isbn)) {
+            o = checkoutOrReserveLocked(isbn, patron, true);
         }
-        // reduce available, increase borrowed
-        availableCount.put(isbn, availableCount.get(isbn) - 1);
-        borrowedCount.merge(isbn, 1, Integer::sum);
+        warnRejected("Checkout", o, isbn);
+        boolean ok = o == Outcome.DONE;
+        if (m != null) m.checkedOut(start, ok);
+        return ok;
+    }
 
-        // Only set status to BORROWED if no copies are available
-        Book b = isbnBookMap.get(isbn);
-        if (availableCount.get(isbn) == 0) {
-            b.setStatus(BookStatus.BORROWED);
+    /** Queues the patron for the title; false if the patron is already waiting for it. */
+    public boolean reserve(String isbn, Patron patron) {
+        if (isbn == null) return false;
+        synchronized (lockFor(isbn)) {
+            return reserveLocked(isbn, patron);
         }
-        patron.addBorrowRecord(isbn);
-        LOGGER.log(Level.INFO, "Patron {0} checked out ISBN {1}", new Object[]{patron.getName(), isbn});
+    }
+
+    /** Takes the patron off the title's waitlist; false if the patron was not waiting for it. */
+    public boolean cancelReservation(String isbn, Patron patron) {
+        if (isbn == null) return false;
+        synchronized (lockFor(isbn)) {
+            if (!reservationManager.cancel(isbn, patron.getId())) return false;
+            InventoryJournal j = journal;
+            if (j != null) j.reservationCancelled(isbn, patron);
+            AuditLog a = audit;
+            if (a != null) a.record(AuditEvent.CANCEL, isbn, patron.getId(), 0);
+            return true;
+        }
+    }
+
+    // only new reservations are journaled, so replay sees the same queue as the live run
+    private boolean reserveLocked(String isbn, Patron patron) {
+        if (!reservationManager.reserve(isbn, patron)) return false;
+        InventoryJournal j = journal;
+        if (j != null) j.reserved(isbn, patron);
+        AuditLog a = audit;
+        if (a != null) a.record(AuditEvent.RESERVE, isbn, patron.getId(), 0);
         return true;
     }
 
-    public synchronized boolean returnBook(String isbn, Patron patron) {
-        if (!isbnBookMap.containsKey(isbn)) {
-            LOGGER.log(Level.WARNING, "Return failed - book unknown: {0}", isbn);
-            return false;
+    public boolean returnBook(String isbn, Patron patron) {
+        if (isbn == null) return false;
+        Instruments m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        Outcome o;
+        synchronized (lockFor(isbn)) {
+            o = returnLocked(isbn, patron, true);
+        }
+        warnRejected("Return", o, isbn);
+        boolean ok = o == Outcome.DONE;
+        if (m != null) m.returned(start, ok);
+        return ok;
+    }
+
+    /**
+     * Applies a batch of checkouts and returns. Operations are grouped by ISBN and each group runs
+     * under a single acquisition of its stripe, in the order the operations were given. Checkouts
+     * auto-reserve like {@link #checkoutOrReserve}. Returns one result per operation, in input order;
+     * operations with an unknown patron fail. Failures are logged together in one warning.
+     */
+    public boolean[] applyBatch(List<CirculationOp> ops, IntFunction<Patron> patrons) {
+        Instruments m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        int n = ops.size();
+        boolean[] results = new boolean[n];
+
+        // counting sort of operation indexes by ISBN, keeping input order inside each group
+        Map<String, Integer> groupOf = new HashMap<>(n * 4 / 3 + 1);
+        List<String> groupIsbns = new ArrayList<>();
+        int[] opGroup = new int[n];
+        int[] groupStart = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            String isbn = ops.get(i).getIsbn();
+            if (isbn == null) {
+                opGroup[i] = -1;
+                continue;
+            }
+            Integer g = groupOf.get(isbn);
+            if (g == null) {
+                g = groupIsbns.size();
+                groupOf.put(isbn, g);
+                groupIsbns.add(isbn);
+            }
+            opGroup[i] = g;
+            groupStart[g + 1]++;
+        }
+        int groups = groupIsbns.size();
+        for (int g = 0; g < groups; g++) groupStart[g + 1] += groupStart[g];
+        int[] order = new int[groupStart[groups]];
+        int[] fill = Arrays.copyOf(groupStart, groups);
+        for (int i = 0; i < n; i++) {
+            if (opGroup[i] >= 0) order[fill[opGroup[i]]++] = i;
+        }
+
+        int succeeded = 0;
+        for (int g = 0; g < groups; g++) {
+            String isbn = groupIsbns.get(g);
+            synchronized (lockFor(isbn)) {
+                for (int k = groupStart[g]; k < groupStart[g + 1]; k++) {
+                    int i = order[k];
+                    CirculationOp op = ops.get(i);
+                    Patron p = patrons.apply(op.getPatronId());
+                    if (p == null) continue;
+                    Outcome o = op.getType() == CirculationOp.Type.CHECKOUT
+                            ? checkoutOrReserveLocked(isbn, p, false)
+                            : returnLocked(isbn, p, false);
+                    results[i] = o == Outcome.DONE;
+                    if (results[i]) succeeded++;
+                }
+            }
+        }
+        if (m != null) m.batch.recordSince(start);
+        if (succeeded == n) {
+            LOGGER.log(Level.INFO, "Applied circulation batch: {0} operations over {1} titles", new Object[]{n, groups});
+        } else {
+            LOGGER.log(Level.WARNING, "Circulation batch: {0} of {1} operations failed: {2}",
+                    new Object[]{n - succeeded, n, describeFailures(ops, results, patrons)});
+        }
+        return results;
+    }
+
+    // the failed operations in input order, the first few spelled out
+    private static String describeFailures(List<CirculationOp> ops, boolean[] results, IntFunction<Patron> patrons) {
+        StringBuilder sb = new StringBuilder();
+        int listed = 0, failed = 0;
+        for (int i = 0; i < results.length; i++) {
+            if (results[i]) continue;
+            failed++;
+            if (listed == 20) continue;
+            CirculationOp op = ops.get(i);
+            if (listed++ > 0) sb.append(", ");
+            sb.append(op.getType() == CirculationOp.Type.CHECKOUT ? "checkout of " : "return of ")
+                    .append(op.getIsbn() == null ? "no ISBN" : op.getIsbn())
+                    .append(" by patron ").append(op.getPatronId());
+            if (patrons.apply(op.getPatronId()) == null) sb.append(" (unknown patron)");
+        }
+        if (failed > listed) sb.append(" and ").append(failed - listed).append(" more");
+        return sb.toString();
+    }
+
+    // Outcome of one checkout or return under its stripe. Rejections that point at bad input are warned
+    // about by single operations once they have released the stripe; a batch lists its failures in its
+    // summary instead, and the audit log records every operation either way.
+    private enum Outcome { DONE, NOT_AVAILABLE, UNKNOWN_BOOK, NOTHING_BORROWED }
+
+    private static void warnRejected(String operation, Outcome o, String isbn) {
+        if (o == Outcome.UNKNOWN_BOOK) {
+            LOGGER.log(Level.WARNING, operation + " failed - book unknown: {0}", isbn);
+        } else if (o == Outcome.NOTHING_BORROWED) {
+            LOGGER.log(Level.WARNING, operation + " failed - no borrowed copies recorded for {0}", isbn);
+        }
+    }
+
+    private Outcome checkoutOrReserveLocked(String isbn, Patron patron, boolean verbose) {
+        Outcome o = checkoutLocked(isbn, patron, verbose);
+        if (o != Outcome.DONE) {
+            if (verbose && LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Auto-reserving {0} for patron {1}", new Object[]{isbn, patron.getName()});
+            }
+            reserveLocked(isbn, patron);
+        }
+        return o;
+    }
+
+    // verbose=false skips the per-operation log lines (batches log a single summary instead)
+    private Outcome checkoutLocked(String isbn, Patron patron, boolean verbose) {
+        AuditLog a = audit;
+        Holding h = holdingLocked(isbn);
+        if (h == null) {
+            if (a != null) a.record(AuditEvent.CHECKOUT_REJECTED, isbn, patron.getId(), 0);
+            return Outcome.UNKNOWN_BOOK;
+        }
+        Hold hold = h.holds.isEmpty() ? null : takeHold(h, patron.getId());
+        if (hold != null) {
+            // the patron collects the copy held for them
+            if (hold.timer != null) hold.timer.cancel();
+            activeHolds.decrementAndGet();
+            Instruments m = metrics;
+            if (m != null) m.holdsCollected.increment();
+            counters.add(h.slot, CopyCounters.BORROWED, 1);
+            int avail = counters.get(h.slot, CopyCounters.AVAILABLE);
+            setStatus(h.book, !h.holds.isEmpty() ? BookStatus.RESERVED
+                    : avail > 0 ? BookStatus.AVAILABLE : BookStatus.BORROWED);
+        } else {
+            if (counters.get(h.slot, CopyCounters.AVAILABLE) <= 0) {
+                // allow reservation
+                if (verbose) LOGGER.log(Level.FINE, "Book not available for checkout, consider reservation: {0}", isbn);
+                if (a != null) a.record(AuditEvent.CHECKOUT_REJECTED, isbn, patron.getId(), 0);
+                return Outcome.NOT_AVAILABLE;
+            }
+            // reduce available, increase borrowed
+            int avail = counters.add(h.slot, CopyCounters.AVAILABLE, -1);
+            counters.add(h.slot, CopyCounters.BORROWED, 1);
+
+            // Only set status to BORROWED if no copies are available
+            if (avail == 0) {
+                setStatus(h.book, h.holds.isEmpty() ? BookStatus.BORROWED : BookStatus.RESERVED);
+            }
+        }
+        LocalDateTime now = LocalDateTime.now(clock);
+        patron.addBorrowRecord(isbn, now);
+        InventoryJournal j = journal;
+        if (j != null) j.checkedOut(isbn, patron, now);
+        for (InventoryListener l : listeners) l.onCheckout(h.book, patron);
+        if (a != null) a.record(AuditEvent.CHECKOUT, isbn, patron.getId(), 0);
+        if (verbose && LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Patron {0} checked out ISBN {1}", new Object[]{patron.getName(), isbn});
+        }
+        return Outcome.DONE;
+    }
+
+    private Outcome returnLocked(String isbn, Patron patron, boolean verbose) {
+        AuditLog a = audit;
+        Holding h = holdingLocked(isbn);
+        if (h == null) {
+            if (a != null) a.record(AuditEvent.RETURN_REJECTED, isbn, patron.getId(), 0);
+            return Outcome.UNKNOWN_BOOK;
         }
 
-        int borrowed = borrowedCount.getOrDefault(isbn, 0);
-        if (borrowed <= 0) {
-            LOGGER.log(Level.WARNING, "Return failed - no borrowed copies recorded for {0}", isbn);
+        if (counters.get(h.slot, CopyCounters.BORROWED) <= 0) {
+            if (a != null) a.record(AuditEvent.RETURN_REJECTED, isbn, patron.getId(), 0);
             // still allow adding as available
-            availableCount.merge(isbn, 1, Integer::sum);
-            return false;
+            counters.add(h.slot, CopyCounters.AVAILABLE, 1);
+            InventoryJournal j = journal;
+            if (j != null) j.returned(isbn, patron, LocalDateTime.now(clock));
+            return Outcome.NOTHING_BORROWED;
         }
 
-        borrowedCount.put(isbn, borrowed - 1);
-        availableCount.merge(isbn, 1, Integer::sum);
-        patron.returnBorrowedBook(isbn);
+        counters.add(h.slot, CopyCounters.BORROWED, -1);
+        int avail = counters.add(h.slot, CopyCounters.AVAILABLE, 1);
+        LocalDateTime now = LocalDateTime.now(clock);
+        patron.returnBorrowedBook(isbn, now);
+        InventoryJournal j = journal;
+        if (j != null) j.returned(isbn, patron, now);
+        for (InventoryListener l : listeners) l.onReturn(h.book, patron);
+        if (a != null) a.record(AuditEvent.RETURN, isbn, patron.getId(), 0);
 
-        Book b = isbnBookMap.get(isbn);
+        Book b = h.book;
+        boolean reserved = reservationManager.hasReservations(isbn);
         // Only set status to AVAILABLE if there are available copies and no reservations
-        if (availableCount.get(isbn) > 0 && !reservationManager.hasReservations(isbn)) {
-            b.setStatus(BookStatus.AVAILABLE);
-        }
-        LOGGER.log(Level.INFO, "Patron {0} returned ISBN {1}", new Object[]{patron.getName(), isbn});
-
-        // If there are reservations, notify next patron and mark reserved
-        if (reservationManager.hasReservations(isbn)) {
-            Optional<Patron> next = reservationManager.pollNextPatron(isbn);
-            if (next.isPresent()) {
-                Patron nextPatron = next.get();
-                // mark book as RESERVED until nextPatron checks out
-                b.setStatus(BookStatus.RESERVED);
-                // decrement available since reserved for that patron
-                int avail = availableCount.getOrDefault(isbn, 0);
-                if (avail > 0) {
-                    availableCount.put(isbn, avail - 1);
-                }
-                reservationManager.notifyBookAvailable(b, nextPatron);
-                LOGGER.log(Level.INFO, "Notified patron {0} for reserved book {1}", new Object[]{nextPatron.getName(), isbn});
-            }
+        if (avail > 0 && !reserved) {
+            setStatus(b, BookStatus.AVAILABLE);
+        }
+        if (verbose && LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Patron {0} returned ISBN {1}", new Object[]{patron.getName(), isbn});
         }
 
-        return true;
+        // If there are reservations, hold the returned copy for the next patron
+        if (reserved) {
+            counters.add(h.slot, CopyCounters.AVAILABLE, -1);
+            if (!holdForNextLocked(h, verbose)) counters.add(h.slot, CopyCounters.AVAILABLE, 1);
+        }
+
+        return Outcome.DONE;
+    }
+
+    private void setStatus(Book b, BookStatus status) {
+        BookStatus old = b.getStatus();
+        if (old == status) return;
+        b.setStatus(status);
+        for (InventoryListener l : listeners) l.onStatusChanged(b, old, status);
+    }
+
+    private Object lockFor(String isbn) {
+        int h = isbn.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    // instruments resolved once per registry so the hot path does no name lookups
+    private static final class Instruments {
+        final LatencyHistogram checkout;
+        final Counter checkoutFailed;
+        final LatencyHistogram giveBack;
+        final Counter returnFailed;
+        final LatencyHistogram batch;
+        final LatencyHistogram holdLag;
+        final Counter holdsExpired;
+        final Counter holdsCollected;
+
+        Instruments(MetricsRegistry registry) {
+            checkout = registry.histogram("circulation.checkout");
+            checkoutFailed = registry.counter("circulation.checkout.failed");
+            giveBack = registry.histogram("circulation.return");
+            returnFailed = registry.counter("circulation.return.failed");
+            batch = registry.histogram("circulation.batch");
+            holdLag = registry.histogram("hold.expiry.lag");
+            holdsExpired = registry.counter("hold.expired");
+            holdsCollected = registry.counter("hold.collected");
+        }
+
+        void checkedOut(long start, boolean ok) {
+            checkout.recordSince(start);
+            if (!ok) checkoutFailed.increment();
+        }
+
+        void returned(long start, boolean ok) {
+            giveBack.recordSince(start);
+            if (!ok) returnFailed.increment();
+        }
     }
 }
@@ -0,0 +1,24 @@
+// File: com/library/metrics/Counter.java
+package com.library.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonic count; increments from many threads do not contend on one cache line. */
+public final class Counter {
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long n) {
+        value.add(n);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,113 @@
+// File: com/library/metrics/LatencyHistogram.java
+package com.library.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution in nanoseconds with log-linear buckets, in the manner of HdrHistogram: every
+ * power of two is split into 64 equal sub-buckets, so a reported percentile is within 1/64 (about
+ * 1.6%) of the true value from 1 ns up to about 2.4 hours; longer values land in the last bucket.
+ * Recording is a few atomic adds on a fixed array; it never allocates or locks.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 42;
+    private static final long MAX_TRACKABLE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = ((MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+    }
+
+    /** Records one duration; negative values count as zero. */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        buckets.incrementAndGet(indexOf(Math.min(v, MAX_TRACKABLE)));
+        total.add(v);
+        max.accumulate(v);
+    }
+
+    /** Records the time elapsed since a {@link System#nanoTime()} reading. */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        return new Snapshot(counts, n, total.sum(), max.get());
+    }
+
+    static int indexOf(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((v >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_COUNT) return index;
+        int exponent = (index >>> SUB_BITS) + SUB_BITS - 1;
+        return (long) (SUB_COUNT + (index & (SUB_COUNT - 1))) << (exponent - SUB_BITS);
+    }
+
+    /** Consistent-enough copy of a histogram: buckets are read one by one while recording goes on. */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Snapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /** Smallest recorded bucket bound covering the given fraction (0..1) of the values. */
+        public long percentile(double fraction) {
+            if (fraction < 0 || fraction > 1) throw new IllegalArgumentException("Fraction must be within [0, 1]");
+            if (count == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) return Math.min(lowerBound(i + 1) - 1, maxNanos);
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count +
+                    " mean=" + getMeanNanos() +
+                    " p50=" + percentile(0.5) +
+                    " p90=" + percentile(0.9) +
+                    " p99=" + percentile(0.99) +
+                    " p999=" + percentile(0.999) +
+                    " max=" + maxNanos;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+// File: com/library/metrics/MetricsRegistry.java
+package com.library.metrics;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named counters, latency histograms and gauges. Instruments are created on first use and then live
+ * as long as the registry; hot paths look them up once and keep the reference. Gauges are sampled
+ * only when the registry is dumped. Names are dotted lower case, e.g. "circulation.checkout".
+ */
+public final class MetricsRegistry {
+    /** Dump formats: one instrument per line, or a single JSON object. */
+    public enum Format {
+        TEXT, JSON
+    }
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<? extends Map<String, ? extends Number>>> gaugeGroups = new ConcurrentHashMap<>();
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, k -> new Counter());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /** Registers (or replaces) a gauge read at dump time. */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, Objects.requireNonNull(value));
+    }
+
+    /** Registers (or replaces) a family of gauges keyed by a label, e.g. queue depth per ISBN. */
+    public void gaugeGroup(String name, Supplier<? extends Map<String, ? extends Number>> values) {
+        gaugeGroups.put(name, Objects.requireNonNull(values));
+    }
+
+    public Map<String, Long> counters() {
+        Map<String, Long> res = new TreeMap<>();
+        counters.forEach((k, v) -> res.put(k, v.get()));
+        return res;
+    }
+
+    public Map<String, LatencyHistogram.Snapshot> histograms() {
+        Map<String, LatencyHistogram.Snapshot> res = new TreeMap<>();
+        histograms.forEach((k, v) -> res.put(k, v.snapshot()));
+        return res;
+    }
+
+    public Map<String, Long> gauges() {
+        Map<String, Long> res = new TreeMap<>();
+        gauges.forEach((k, v) -> res.put(k, v.getAsLong()));
+        return res;
+    }
+
+    public Map<String, Map<String, ? extends Number>> gaugeGroups() {
+        Map<String, Map<String, ? extends Number>> res = new TreeMap<>();
+        gaugeGroups.forEach((k, v) -> res.put(k, new TreeMap<>(v.get())));
+        return res;
+    }
+
+    /** Every instrument, sorted by name. Histogram values are in nanoseconds. */
+    public String dump(Format format) {
+        return format == Format.JSON ? toJson() : toText();
+    }
+
+    private String toText() {
+        StringBuilder sb = new StringBuilder();
+        counters().forEach((k, v) -> sb.append(k).append(' ').append(v).append('\n'));
+        gauges().forEach((k, v) -> sb.append(k).append(' ').append(v).append('\n'));
+        gaugeGroups().forEach((k, group) -> group.forEach(
+                (label, v) -> sb.append(k).append('{').append(label).append("} ").append(v).append('\n')));
+        histograms().forEach((k, v) -> sb.append(k).append(' ').append(v).append('\n'));
+        return sb.toString();
+    }
+
+    private String toJson() {
+        StringBuilder sb = new StringBuilder("{\"counters\":{");
+        appendJson(sb, counters());
+        sb.append("},\"gauges\":{");
+        appendJson(sb, gauges());
+        sb.append("},\"gaugeGroups\":{");
+        String sep = "";
+        for (Map.Entry<String, Map<String, ? extends Number>> e : gaugeGroups().entrySet()) {
+            sb.append(sep);
+            quote(sb, e.getKey()).append(":{");
+            appendJson(sb, e.getValue());
+            sb.append('}');
+            sep = ",";
+        }
+        sb.append("},\"histograms\":{");
+        sep = "";
+        for (Map.Entry<String, LatencyHistogram.Snapshot> e : histograms().entrySet()) {
+            LatencyHistogram.Snapshot s = e.getValue();
+            sb.append(sep);
+            quote(sb, e.getKey()).append(":{\"count\":").append(s.getCount())
+                    .append(",\"mean\":").append(s.getMeanNanos())
+                    .append(",\"p50\":").append(s.percentile(0.5))
+                    .append(",\"p90\":").append(s.percentile(0.9))
+                    .append(",\"p99\":").append(s.percentile(0.99))
+                    .append(",\"p999\":").append(s.percentile(0.999))
+                    .append(",\"max\":").append(s.getMaxNanos()).append('}');
+            sep = ",";
+        }
+        return sb.append("}}\n").toString();
+    }
+
+    private static void appendJson(StringBuilder sb, Map<String, ? extends Number> values) {
+        String sep = "";
+        for (Map.Entry<String, ? extends Number> e : values.entrySet()) {
+            sb.append(sep);
+            quote(sb, e.getKey()).append(':').append(e.getValue());
+            sep = ",";
+        }
+    }
+
+    private static StringBuilder quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"');
+    }
+}
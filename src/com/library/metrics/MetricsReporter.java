@@ -0,0 +1,62 @@
+// File: com/library/metrics/MetricsReporter.java
+package com.library.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rewrites a file with a dump of the registry at a fixed interval, for a local scraper to pick up.
+ * Each dump goes to a temporary file that is then renamed over the target, so readers never see a
+ * partial dump. Closing writes one last dump.
+ */
+public final class MetricsReporter implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(MetricsReporter.class.getName());
+
+    private final MetricsRegistry registry;
+    private final Path file;
+    private final MetricsRegistry.Format format;
+    private final ScheduledExecutorService scheduler;
+
+    public MetricsReporter(MetricsRegistry registry, Path file, MetricsRegistry.Format format, Duration interval) {
+        if (interval == null || interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        this.registry = Objects.requireNonNull(registry);
+        this.file = Objects.requireNonNull(file);
+        this.format = Objects.requireNonNull(format);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        long millis = Math.max(1, interval.toMillis());
+        scheduler.scheduleAtFixedRate(this::report, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Writes a dump now. */
+    public synchronized void report() {
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, registry.dump(format), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Metrics dump to {0} failed: {1}", new Object[]{file, e.getMessage()});
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        report();
+    }
+}
@@ -0,0 +1,225 @@
+// File: com/library/model/BorrowHistory.java
+package com.library.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A patron's borrow records as parallel primitive arrays: the ISBN's dense id ({@link IsbnIds}) and
+ * the borrow and return times in UTC epoch seconds. An open-addressing map from ISBN id to the newest
+ * open record makes a return O(1); records of the same ISBN that are open at once are chained
+ * through prevOpen, newest first.
+ *
+ * With an archive, closed records in the older half are moved out whenever more than hotLimit
+ * records are in memory. Open loans always stay in memory, so a loan that was open at the time
+ * comes after records archived later. Not thread-safe; the owning Patron synchronizes.
+ */
+final class BorrowHistory {
+    private static final Logger LOGGER = Logger.getLogger(BorrowHistory.class.getName());
+    private static final long OPEN = Long.MIN_VALUE;
+    private static final int[] NO_INTS = new int[0];
+    private static final long[] NO_LONGS = new long[0];
+
+    private int[] books = NO_INTS;
+    private long[] borrowed = NO_LONGS;
+    private long[] returned = NO_LONGS;
+    private int[] prevOpen = NO_INTS; // older open record of the same ISBN, or -1
+    private int size;
+
+    // ISBN id + 1 (0: empty slot) -> newest open record
+    private int[] openKeys;
+    private int[] openRecords;
+    private int openCount;
+
+    private HistoryArchive archive; // null: everything stays in memory
+    private int patronId;
+    private int hotLimit;
+    private int spillAbove;
+    private int archived;
+
+    void add(String isbn, LocalDateTime borrowedAt, LocalDateTime returnAt) {
+        if (size == books.length) grow();
+        int book = IsbnIds.idOf(isbn);
+        int i = size++;
+        books[i] = book;
+        borrowed[i] = borrowedAt.toEpochSecond(ZoneOffset.UTC);
+        returned[i] = returnAt == null ? OPEN : returnAt.toEpochSecond(ZoneOffset.UTC);
+        prevOpen[i] = -1;
+        if (returnAt == null) {
+            prevOpen[i] = openRecord(book);
+            putOpen(book, i);
+        }
+        if (archive != null && size > spillAbove) spill();
+    }
+
+    /** Closes the newest open loan of the ISBN; false if there is none. */
+    boolean returnLatest(String isbn, LocalDateTime at) {
+        int book = IsbnIds.find(isbn);
+        int i = book < 0 ? -1 : openRecord(book);
+        if (i < 0) return false;
+        returned[i] = at.toEpochSecond(ZoneOffset.UTC);
+        if (prevOpen[i] >= 0) putOpen(book, prevOpen[i]);
+        else removeOpen(book);
+        return true;
+    }
+
+    int size() {
+        return archived + size;
+    }
+
+    /** Archived records followed by those in memory. */
+    List<Patron.BorrowRecord> records() {
+        List<Patron.BorrowRecord> res;
+        if (archived > 0) {
+            try {
+                res = new ArrayList<>(archive.read(patronId));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read archived history of patron " + patronId, e);
+            }
+        } else {
+            res = new ArrayList<>(size);
+        }
+        for (int i = 0; i < size; i++) res.add(record(i));
+        return res;
+    }
+
+    Set<String> openIsbns() {
+        if (openCount == 0) return Collections.emptySet();
+        Set<String> res = new HashSet<>(openCount * 2);
+        for (int key : openKeys) {
+            if (key != 0) res.add(IsbnIds.isbnOf(key - 1));
+        }
+        return res;
+    }
+
+    void tier(int patronId, HistoryArchive archive, int hotLimit) {
+        if (hotLimit < 2) throw new IllegalArgumentException("At least two records must stay in memory");
+        this.patronId = patronId;
+        this.archive = archive;
+        this.hotLimit = hotLimit;
+        this.spillAbove = hotLimit;
+        if (archive != null && size > spillAbove) spill();
+    }
+
+    private Patron.BorrowRecord record(int i) {
+        return new Patron.BorrowRecord(IsbnIds.isbnOf(books[i]), toTime(borrowed[i]),
+                returned[i] == OPEN ? null : toTime(returned[i]));
+    }
+
+    private static LocalDateTime toTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    private void grow() {
+        int n = Math.max(4, books.length * 2);
+        books = Arrays.copyOf(books, n);
+        borrowed = Arrays.copyOf(borrowed, n);
+        returned = Arrays.copyOf(returned, n);
+        prevOpen = Arrays.copyOf(prevOpen, n);
+    }
+
+    // moves the closed records of the older half to the archive and compacts the rest
+    private void spill() {
+        int cut = size / 2;
+        List<Patron.BorrowRecord> cold = new ArrayList<>();
+        for (int i = 0; i < cut; i++) {
+            if (returned[i] != OPEN) cold.add(record(i));
+        }
+        if (!cold.isEmpty()) {
+            try {
+                archive.append(patronId, cold);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Archiving history of patron {0} failed, keeping it in memory: {1}",
+                        new Object[]{patronId, e.getMessage()});
+                archive = archived > 0 ? archive : null;
+                spillAbove = Integer.MAX_VALUE;
+                return;
+            }
+            int w = 0;
+            for (int i = 0; i < size; i++) {
+                if (i < cut && returned[i] != OPEN) continue;
+                books[w] = books[i];
+                borrowed[w] = borrowed[i];
+                returned[w] = returned[i];
+                w++;
+            }
+            archived += cold.size();
+            size = w;
+            reindexOpen();
+        }
+        spillAbove = Math.max(hotLimit, size + hotLimit / 2);
+    }
+
+    private void reindexOpen() {
+        if (openKeys != null) Arrays.fill(openKeys, 0);
+        openCount = 0;
+        for (int i = 0; i < size; i++) {
+            prevOpen[i] = -1;
+            if (returned[i] == OPEN) {
+                prevOpen[i] = openRecord(books[i]);
+                putOpen(books[i], i);
+            }
+        }
+    }
+
+    // -- open-loan map, linear probing --
+    private int openRecord(int book) {
+        if (openKeys == null) return -1;
+        int mask = openKeys.length - 1;
+        for (int s = home(book, mask); openKeys[s] != 0; s = (s + 1) & mask) {
+            if (openKeys[s] == book + 1) return openRecords[s];
+        }
+        return -1;
+    }
+
+    private void putOpen(int book, int record) {
+        if (openKeys == null) {
+            openKeys = new int[8];
+            openRecords = new int[8];
+        } else if ((openCount + 1) * 2 > openKeys.length) {
+            int[] keys = openKeys, records = openRecords;
+            openKeys = new int[keys.length * 2];
+            openRecords = new int[keys.length * 2];
+            openCount = 0;
+            for (int s = 0; s < keys.length; s++) {
+                if (keys[s] != 0) putOpen(keys[s] - 1, records[s]);
+            }
+        }
+        int mask = openKeys.length - 1;
+        int s = home(book, mask);
+        while (openKeys[s] != 0 && openKeys[s] != book + 1) s = (s + 1) & mask;
+        if (openKeys[s] == 0) openCount++;
+        openKeys[s] = book + 1;
+        openRecords[s] = record;
+    }
+
+    private void removeOpen(int book) {
+        int mask = openKeys.length - 1;
+        int s = home(book, mask);
+        while (openKeys[s] != book + 1) {
+            if (openKeys[s] == 0) return;
+            s = (s + 1) & mask;
+        }
+        openKeys[s] = 0;
+        openCount--;
+        // shift later entries of the probe run back so lookups do not stop at the hole
+        for (int j = (s + 1) & mask; openKeys[j] != 0; j = (j + 1) & mask) {
+            int h = home(openKeys[j] - 1, mask);
+            boolean reachable = s <= j ? (s < h && h <= j) : (s < h || h <= j);
+            if (reachable) continue;
+            openKeys[s] = openKeys[j];
+            openRecords[s] = openRecords[j];
+            openKeys[j] = 0;
+            s = j;
+        }
+    }
+
+    private static int home(int book, int mask) {
+        return (book * 0x9E3779B9 >>> 16) & mask;
+    }
+}
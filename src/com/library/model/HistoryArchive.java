@@ -0,0 +1,14 @@
+// File: com/library/model/HistoryArchive.java
+package com.library.model;
+
+import java.io.IOException;
+import java.util.List;
+
+/** Cold storage for closed borrow records that a patron no longer keeps in memory. */
+public interface HistoryArchive {
+    /** Appends records, oldest first, after those already archived for the patron. */
+    void append(int patronId, List<Patron.BorrowRecord> records) throws IOException;
+
+    /** Every record archived for the patron, in the order appended. */
+    List<Patron.BorrowRecord> read(int patronId) throws IOException;
+}
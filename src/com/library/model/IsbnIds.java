@@ -0,0 +1,44 @@
+// File: com/library/model/IsbnIds.java
+package com.library.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary of dense int ids for ISBNs, so borrow histories store an int per record
+ * instead of a reference. Ids are assigned on first use and never reused.
+ */
+final class IsbnIds {
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] isbns = new String[1024];
+    private static int next;
+
+    private IsbnIds() {
+    }
+
+    static int idOf(String isbn) {
+        Integer id = IDS.get(isbn);
+        return id != null ? id : assign(isbn);
+    }
+
+    /** Id of the ISBN, or -1 if it was never assigned one. */
+    static int find(String isbn) {
+        Integer id = IDS.get(isbn);
+        return id != null ? id : -1;
+    }
+
+    static String isbnOf(int id) {
+        return isbns[id];
+    }
+
+    private static synchronized int assign(String isbn) {
+        Integer id = IDS.get(isbn);
+        if (id != null) return id;
+        int n = next++;
+        if (n == isbns.length) isbns = Arrays.copyOf(isbns, n * 2);
+        isbns[n] = isbn;
+        IDS.put(isbn, n); // publishes the array slot written above
+        return n;
+    }
+}
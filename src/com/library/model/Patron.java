@@ -9,10 +9,9 @@ public class Patron {
     private static final AtomicInteger ID_GENERATOR = new AtomicInteger(1);
 
     private final int id;
-    private String name;
-    private String email;
-    private final List<BorrowRecord> borrowHistory = new ArrayList<>();
-    private final Set<String> currentBorrowedIsbns = new HashSet<>();
+    private volatile String name;
+    private volatile String email;
+    private final BorrowHistory borrowHistory = new BorrowHistory();
 
     public Patron(String name, String email) {
         this.id = ID_GENERATOR.getAndIncrement();
@@ -20,6 +19,14 @@ public class Patron {
         this.email = email;
     }
 
+    /** Recreates a persisted patron under its original id; later new patrons get higher ids. */
+    public Patron(int id, String name, String email) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+        ID_GENERATOR.accumulateAndGet(id + 1, Math::max);
+    }
+
     public int getId() {
         return id;
     }
@@ -45,29 +52,51 @@ public class Patron {
     }
 
     public void addBorrowRecord(String isbn) {
-        BorrowRecord r = new BorrowRecord(isbn, LocalDateTime.now(), null);
-        borrowHistory.add(r);
-        currentBorrowedIsbns.add(isbn);
+        addBorrowRecord(isbn, LocalDateTime.now());
+    }
+
+    /** Times are kept to the second. */
+    public synchronized void addBorrowRecord(String isbn, LocalDateTime at) {
+        borrowHistory.add(isbn, at, null);
+    }
+
+    /** Appends a history record as persisted, e.g. from a snapshot. */
+    public synchronized void restoreBorrowRecord(String isbn, LocalDateTime borrowedAt, LocalDateTime returnAt) {
+        borrowHistory.add(isbn, borrowedAt, returnAt);
     }
 
     public void returnBorrowedBook(String isbn) {
-        // mark last borrow record with null return as returned now
-        for (int i = borrowHistory.size() - 1; i >= 0; i--) {
-            BorrowRecord r = borrowHistory.get(i);
-            if (r.getIsbn().equals(isbn) && r.getReturnAt() == null) {
-                r.setReturnAt(LocalDateTime.now());
-                break;
-            }
-        }
-        currentBorrowedIsbns.remove(isbn);
+        returnBorrowedBook(isbn, LocalDateTime.now());
+    }
+
+    /** Marks the most recent open loan of the ISBN as returned. */
+    public synchronized void returnBorrowedBook(String isbn, LocalDateTime at) {
+        borrowHistory.returnLatest(isbn, at);
+    }
+
+    /**
+     * Copy of the borrow history, including records moved to an archive. Records are decoded from the
+     * compact store, so changing them does not change the patron's history.
+     */
+    public synchronized List<BorrowRecord> getBorrowHistory() {
+        return Collections.unmodifiableList(borrowHistory.records());
+    }
+
+    public synchronized int getBorrowCount() {
+        return borrowHistory.size();
     }
 
-    public List<BorrowRecord> getBorrowHistory() {
-        return Collections.unmodifiableList(borrowHistory);
+    /** ISBNs with an open loan. */
+    public synchronized Set<String> getCurrentBorrowedIsbns() {
+        return Collections.unmodifiableSet(borrowHistory.openIsbns());
     }
 
-    public Set<String> getCurrentBorrowedIsbns() {
-        return Collections.unmodifiableSet(currentBorrowedIsbns);
+    /**
+     * Keeps at most about hotRecords records in memory (plus open loans); older returned records are
+     * appended to the archive and read back only when the full history is requested.
+     */
+    public synchronized void tierHistory(HistoryArchive archive, int hotRecords) {
+        borrowHistory.tier(id, Objects.requireNonNull(archive), hotRecords);
     }
 
     @Override
@@ -76,7 +105,7 @@ public class Patron {
                 "id=" + id +
                 ", name='" + name + '\'' +
                 ", email='" + email + '\'' +
-                ", borrowed=" + currentBorrowedIsbns +
+                ", borrowed=" + getCurrentBorrowedIsbns() +
                 '}';
     }
 
@@ -0,0 +1,39 @@
+// File: com/library/model/PatronRegistry.java
+package com.library.model;
+
+import com.library.concurrent.DenseIdTable;
+import com.library.concurrent.SnapshotList;
+
+/**
+ * Registered patrons by id. Ids come densely from {@link Patron}'s generator (or from a router that
+ * assigns them the same way), so lookups go through a {@link DenseIdTable} and never lock; listing
+ * reads an immutable {@link SnapshotList} version. Registration is serialized on the registry.
+ *
+ * A patron's own borrow state is guarded by the patron, so concurrent checkouts and returns for one
+ * patron are safe once it has been looked up.
+ */
+public final class PatronRegistry {
+    private final DenseIdTable<Patron> byId = new DenseIdTable<>();
+    private final SnapshotList<Patron> all = new SnapshotList<>();
+
+    public Patron get(int id) {
+        return byId.get(id);
+    }
+
+    /** Registers the patron under its id, replacing and returning any patron registered there before. */
+    public synchronized Patron register(Patron patron) {
+        Patron old = byId.put(patron.getId(), patron);
+        if (old == null) all.add(patron);
+        else all.replace(old, patron);
+        return old;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /** Every registered patron, as of the latest registration, in no particular order. */
+    public SnapshotList.View<Patron> snapshot() {
+        return all.snapshot();
+    }
+}
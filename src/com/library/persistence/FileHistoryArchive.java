@@ -0,0 +1,76 @@
+// File: com/library/persistence/FileHistoryArchive.java
+package com.library.persistence;
+
+import com.library.model.HistoryArchive;
+import com.library.model.Patron;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Archives closed borrow records in one append-only file per patron (history-&lt;id&gt;.bin): the ISBN
+ * as modified UTF-8, then borrow and return times as UTC epoch seconds.
+ *
+ * The directory is a spill area, not durable state: snapshots carry the full history. Opening the
+ * archive deletes files left by an earlier run, since their records come back through recovery.
+ */
+public class FileHistoryArchive implements HistoryArchive {
+    private static final String PREFIX = "history-";
+    private static final String SUFFIX = ".bin";
+
+    private final Path dir;
+
+    public FileHistoryArchive(Path dir) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) Files.delete(p);
+            }
+        }
+    }
+
+    @Override
+    public void append(int patronId, List<Patron.BorrowRecord> records) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file(patronId),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            for (Patron.BorrowRecord r : records) {
+                if (r.getReturnAt() == null) throw new IllegalArgumentException("Open loans are not archived");
+                out.writeUTF(r.getIsbn());
+                out.writeLong(r.getBorrowedAt().toEpochSecond(ZoneOffset.UTC));
+                out.writeLong(r.getReturnAt().toEpochSecond(ZoneOffset.UTC));
+            }
+        }
+    }
+
+    @Override
+    public List<Patron.BorrowRecord> read(int patronId) throws IOException {
+        Path file = file(patronId);
+        List<Patron.BorrowRecord> res = new ArrayList<>();
+        if (!Files.exists(file)) return res;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                String isbn;
+                try {
+                    isbn = in.readUTF();
+                } catch (EOFException e) {
+                    return res;
+                }
+                res.add(new Patron.BorrowRecord(isbn, time(in.readLong()), time(in.readLong())));
+            }
+        }
+    }
+
+    private Path file(int patronId) {
+        return dir.resolve(PREFIX + patronId + SUFFIX);
+    }
+
+    private static LocalDateTime time(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,235 @@
+// File: com/library/persistence/LibraryJournal.java
+package com.library.persistence;
+
+import com.library.inventory.InventoryJournal;
+import com.library.model.Book;
+import com.library.model.Patron;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Encodes library state changes as write-ahead log records, and decodes them again for replay.
+ * Records describe the operation as it was requested (e.g. "patron 7 checked out ISBN x at t"), so
+ * replaying them in LSN order through the same inventory code rebuilds the same state.
+ */
+public class LibraryJournal implements InventoryJournal {
+    static final byte BOOK_ADDED = 1;
+    static final byte COPIES_REMOVED = 2;
+    static final byte BOOK_UPDATED = 3;
+    static final byte CHECKED_OUT = 4;
+    static final byte RETURNED = 5;
+    static final byte RESERVED = 6;
+    static final byte PATRON_ADDED = 7;
+    static final byte PATRON_UPDATED = 8;
+    static final byte RESERVATION_CANCELLED = 9;
+    static final byte HOLD_EXPIRED = 10;
+
+    /** Receives decoded records during replay. */
+    public interface Handler {
+        void bookAdded(String isbn, String title, String author, int year, int copies);
+
+        void copiesRemoved(String isbn, int copies);
+
+        void bookUpdated(String isbn, String title, String author, int year);
+
+        void checkedOut(String isbn, int patronId, LocalDateTime at);
+
+        void returned(String isbn, int patronId, LocalDateTime at);
+
+        void reserved(String isbn, int patronId);
+
+        void reservationCancelled(String isbn, int patronId);
+
+        void holdExpired(String isbn, int patronId, LocalDateTime at);
+
+        void patronAdded(int id, String name, String email);
+
+        void patronUpdated(int id, String name, String email);
+    }
+
+    private static final ThreadLocal<ByteBuffer> SCRATCH = ThreadLocal.withInitial(() -> ByteBuffer.allocate(512));
+
+    private final WriteAheadLog log;
+
+    public LibraryJournal(WriteAheadLog log) {
+        this.log = log;
+    }
+
+    public WriteAheadLog getLog() {
+        return log;
+    }
+
+    @Override
+    public void bookAdded(Book book, int copies) {
+        ByteBuffer b = begin();
+        b = putString(b, book.getIsbn());
+        b = putString(b, book.getTitle());
+        b = putString(b, book.getAuthor());
+        b = ensure(b, 8);
+        b.putInt(book.getPublicationYear()).putInt(copies);
+        append(BOOK_ADDED, b);
+    }
+
+    @Override
+    public void copiesRemoved(String isbn, int copies) {
+        ByteBuffer b = putString(begin(), isbn);
+        b = ensure(b, 4);
+        b.putInt(copies);
+        append(COPIES_REMOVED, b);
+    }
+
+    @Override
+    public void bookUpdated(String isbn, String title, String author, int year) {
+        ByteBuffer b = putString(begin(), isbn);
+        b = putString(b, title);
+        b = putString(b, author);
+        b = ensure(b, 4);
+        b.putInt(year);
+        append(BOOK_UPDATED, b);
+    }
+
+    @Override
+    public void checkedOut(String isbn, Patron patron, LocalDateTime at) {
+        appendCirculation(CHECKED_OUT, isbn, patron, at);
+    }
+
+    @Override
+    public void returned(String isbn, Patron patron, LocalDateTime at) {
+        appendCirculation(RETURNED, isbn, patron, at);
+    }
+
+    @Override
+    public void reserved(String isbn, Patron patron) {
+        ByteBuffer b = putString(begin(), isbn);
+        b = ensure(b, 4);
+        b.putInt(patron.getId());
+        append(RESERVED, b);
+    }
+
+    @Override
+    public void reservationCancelled(String isbn, Patron patron) {
+        ByteBuffer b = putString(begin(), isbn);
+        b = ensure(b, 4);
+        b.putInt(patron.getId());
+        append(RESERVATION_CANCELLED, b);
+    }
+
+    @Override
+    public void holdExpired(String isbn, Patron patron, LocalDateTime at) {
+        appendCirculation(HOLD_EXPIRED, isbn, patron, at);
+    }
+
+    public void patronAdded(Patron patron) {
+        appendPatron(PATRON_ADDED, patron.getId(), patron.getName(), patron.getEmail());
+    }
+
+    public void patronUpdated(int id, String name, String email) {
+        appendPatron(PATRON_UPDATED, id, name, email);
+    }
+
+    /** Decodes one record produced by this class and passes it to the handler. */
+    public static void decode(byte type, ByteBuffer p, Handler h) {
+        switch (type) {
+            case BOOK_ADDED:
+                h.bookAdded(getString(p), getString(p), getString(p), p.getInt(), p.getInt());
+                break;
+            case COPIES_REMOVED:
+                h.copiesRemoved(getString(p), p.getInt());
+                break;
+            case BOOK_UPDATED:
+                h.bookUpdated(getString(p), getString(p), getString(p), p.getInt());
+                break;
+            case CHECKED_OUT:
+                h.checkedOut(getString(p), p.getInt(), getTime(p));
+                break;
+            case RETURNED:
+                h.returned(getString(p), p.getInt(), getTime(p));
+                break;
+            case RESERVED:
+                h.reserved(getString(p), p.getInt());
+                break;
+            case RESERVATION_CANCELLED:
+                h.reservationCancelled(getString(p), p.getInt());
+                break;
+            case HOLD_EXPIRED:
+                h.holdExpired(getString(p), p.getInt(), getTime(p));
+                break;
+            case PATRON_ADDED:
+                h.patronAdded(p.getInt(), getString(p), getString(p));
+                break;
+            case PATRON_UPDATED:
+                h.patronUpdated(p.getInt(), getString(p), getString(p));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown journal record type " + type);
+        }
+    }
+
+    private void appendCirculation(byte type, String isbn, Patron patron, LocalDateTime at) {
+        ByteBuffer b = putString(begin(), isbn);
+        b = ensure(b, 16);
+        b.putInt(patron.getId());
+        putTime(b, at);
+        append(type, b);
+    }
+
+    private void appendPatron(byte type, int id, String name, String email) {
+        ByteBuffer b = ensure(begin(), 4);
+        b.putInt(id);
+        b = putString(b, name);
+        b = putString(b, email);
+        append(type, b);
+    }
+
+    private void append(byte type, ByteBuffer b) {
+        b.flip();
+        log.append(type, b);
+    }
+
+    private static ByteBuffer begin() {
+        ByteBuffer b = SCRATCH.get();
+        b.clear();
+        return b;
+    }
+
+    private static ByteBuffer ensure(ByteBuffer b, int bytes) {
+        if (b.remaining() >= bytes) return b;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(b.capacity() * 2, b.position() + bytes));
+        b.flip();
+        bigger.put(b);
+        SCRATCH.set(bigger);
+        return bigger;
+    }
+
+    static ByteBuffer putString(ByteBuffer b, String s) {
+        if (s == null) {
+            b = ensure(b, 4);
+            b.putInt(-1);
+            return b;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        b = ensure(b, 4 + bytes.length);
+        b.putInt(bytes.length).put(bytes);
+        return b;
+    }
+
+    static String getString(ByteBuffer b) {
+        int len = b.getInt();
+        if (len < 0) return null;
+        String s = new String(b.array(), b.arrayOffset() + b.position(), len, StandardCharsets.UTF_8);
+        b.position(b.position() + len);
+        return s;
+    }
+
+    // local date-times are stored as if they were UTC, which round-trips them exactly
+    static void putTime(ByteBuffer b, LocalDateTime t) {
+        b.putLong(t.toEpochSecond(ZoneOffset.UTC)).putInt(t.getNano());
+    }
+
+    static LocalDateTime getTime(ByteBuffer b) {
+        return LocalDateTime.ofEpochSecond(b.getLong(), b.getInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,272 @@
+// File: com/library/persistence/MappedCatalog.java
+package com.library.persistence;
+
+import com.library.model.Book;
+import com.library.search.IsbnIndex;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * Read-only catalog file laid out in columns (ISBN, title, author, year, copies) and memory-mapped on
+ * open, so opening costs a few page mappings regardless of the number of titles. Rows are decoded on
+ * demand; nothing is materialized up front. A row permutation sorted by normalized ISBN
+ * ({@link IsbnIndex#normalize}) supports lookups by binary search.
+ *
+ * String columns are an int offset array (rows + 1 entries) over a UTF-8 byte column; each column is
+ * mapped separately and may be up to 2 GB.
+ */
+public final class MappedCatalog {
+    private static final int MAGIC = 0x4C4D4343; // "LMCC"
+    private static final int VERSION = 1;
+    private static final int SECTIONS = 11;
+    private static final int HEADER_BYTES = 16 + SECTIONS * 16;
+
+    // section order in the header
+    private static final int ISBN_OFFSETS = 0, ISBN_BYTES = 1, TITLE_OFFSETS = 2, TITLE_BYTES = 3,
+            AUTHOR_OFFSETS = 4, AUTHOR_BYTES = 5, KEY_OFFSETS = 6, KEY_BYTES = 7, YEARS = 8, COPIES = 9, BY_KEY = 10;
+
+    /** Searchable text columns. */
+    public enum Field {
+        TITLE, AUTHOR
+    }
+
+    private final int rows;
+    private final IntBuffer isbnOffsets, titleOffsets, authorOffsets, keyOffsets;
+    private final ByteBuffer isbnBytes, titleBytes, authorBytes, keyBytes;
+    private final IntBuffer years, copies, byKey;
+
+    private MappedCatalog(int rows, ByteBuffer[] sections) {
+        this.rows = rows;
+        this.isbnOffsets = sections[ISBN_OFFSETS].asIntBuffer();
+        this.isbnBytes = sections[ISBN_BYTES];
+        this.titleOffsets = sections[TITLE_OFFSETS].asIntBuffer();
+        this.titleBytes = sections[TITLE_BYTES];
+        this.authorOffsets = sections[AUTHOR_OFFSETS].asIntBuffer();
+        this.authorBytes = sections[AUTHOR_BYTES];
+        this.keyOffsets = sections[KEY_OFFSETS].asIntBuffer();
+        this.keyBytes = sections[KEY_BYTES];
+        this.years = sections[YEARS].asIntBuffer();
+        this.copies = sections[COPIES].asIntBuffer();
+        this.byKey = sections[BY_KEY].asIntBuffer();
+    }
+
+    /** Maps the file. The mapping stays valid after the file is closed; it is released on garbage collection. */
+    public static MappedCatalog open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) throw new IOException("Not a catalog file: " + file);
+            ByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) throw new IOException("Not a catalog file: " + file);
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException("Unsupported catalog version " + version);
+            int rows = header.getInt();
+            header.getInt(); // padding
+            ByteBuffer[] sections = new ByteBuffer[SECTIONS];
+            for (int s = 0; s < SECTIONS; s++) {
+                long offset = header.getLong();
+                long length = header.getLong();
+                if (offset < HEADER_BYTES || length < 0 || length > Integer.MAX_VALUE || offset + length > ch.size()) {
+                    throw new IOException("Corrupt catalog header in " + file);
+                }
+                sections[s] = ch.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            }
+            return new MappedCatalog(rows, sections);
+        }
+    }
+
+    /**
+     * Writes books and their copy counts as a catalog file (through a temporary file and a rename).
+     * Every book needs a positive copy count; duplicate ISBNs are rejected.
+     */
+    public static void write(Path file, Collection<Book> books, ToIntFunction<Book> copyCount) throws IOException {
+        int n = books.size();
+        byte[][] isbns = new byte[n][], titles = new byte[n][], authors = new byte[n][], keys = new byte[n][];
+        int[] yearCol = new int[n];
+        int[] copyCol = new int[n];
+        int r = 0;
+        for (Book b : books) {
+            int c = copyCount.applyAsInt(b);
+            if (b.getIsbn() == null || c <= 0) throw new IllegalArgumentException("Invalid book/copies: " + b);
+            isbns[r] = utf8(b.getIsbn());
+            titles[r] = utf8(b.getTitle());
+            authors[r] = utf8(b.getAuthor());
+            keys[r] = utf8(IsbnIndex.normalize(b.getIsbn()));
+            yearCol[r] = b.getPublicationYear();
+            copyCol[r] = c;
+            r++;
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> {
+            int k = Arrays.compareUnsigned(keys[a], keys[b]);
+            return k != 0 ? k : Arrays.compareUnsigned(isbns[a], isbns[b]);
+        });
+        for (int i = 1; i < n; i++) {
+            if (Arrays.equals(isbns[order[i]], isbns[order[i - 1]])) {
+                throw new IllegalArgumentException("Duplicate ISBN " + new String(isbns[order[i]], StandardCharsets.UTF_8));
+            }
+        }
+
+        long[] lengths = new long[SECTIONS];
+        byte[][][] strings = {isbns, titles, authors, keys};
+        for (int s = 0; s < 4; s++) {
+            lengths[2 * s] = 4L * (n + 1);
+            long total = 0;
+            for (byte[] v : strings[s]) total += v.length;
+            if (total > Integer.MAX_VALUE) throw new IllegalArgumentException("Column too large for one mapping");
+            lengths[2 * s + 1] = total;
+        }
+        lengths[YEARS] = lengths[COPIES] = lengths[BY_KEY] = 4L * n;
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(0);
+            long offset = HEADER_BYTES;
+            for (int s = 0; s < SECTIONS; s++) {
+                out.writeLong(offset);
+                out.writeLong(lengths[s]);
+                offset = align(offset + lengths[s]);
+            }
+            long written = HEADER_BYTES;
+            for (int s = 0; s < 4; s++) {
+                int pos = 0;
+                out.writeInt(0);
+                for (byte[] v : strings[s]) out.writeInt(pos += v.length);
+                written = pad(out, written + lengths[2 * s]);
+                for (byte[] v : strings[s]) out.write(v);
+                written = pad(out, written + lengths[2 * s + 1]);
+            }
+            for (int v : yearCol) out.writeInt(v);
+            written = pad(out, written + lengths[YEARS]);
+            for (int v : copyCol) out.writeInt(v);
+            written = pad(out, written + lengths[COPIES]);
+            for (Integer v : order) out.writeInt(v);
+            out.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    /** Row holding exactly this ISBN, or -1. */
+    public int find(String isbn) {
+        if (isbn == null) return -1;
+        byte[] key = utf8(IsbnIndex.normalize(isbn));
+        byte[] exact = utf8(isbn);
+        for (int i = firstWithKey(key); i >= 0 && i < rows && compareKey(byKey.get(i), key) == 0; i++) {
+            int row = byKey.get(i);
+            if (compare(isbnOffsets, isbnBytes, row, exact) == 0) return row;
+        }
+        return -1;
+    }
+
+    /** Rows whose normalized ISBN equals that of the query, i.e. what an ISBN search would match. */
+    public int[] findByIsbnKey(String isbn) {
+        if (isbn == null) return new int[0];
+        byte[] key = utf8(IsbnIndex.normalize(isbn));
+        int first = firstWithKey(key);
+        if (first < 0) return new int[0];
+        int end = first;
+        while (end < rows && compareKey(byKey.get(end), key) == 0) end++;
+        int[] res = new int[end - first];
+        for (int i = first; i < end; i++) res[i - first] = byKey.get(i);
+        return res;
+    }
+
+    public String isbn(int row) {
+        return string(isbnOffsets, isbnBytes, row);
+    }
+
+    public String title(int row) {
+        return string(titleOffsets, titleBytes, row);
+    }
+
+    public String author(int row) {
+        return string(authorOffsets, authorBytes, row);
+    }
+
+    public String field(Field field, int row) {
+        return field == Field.TITLE ? title(row) : author(row);
+    }
+
+    public int year(int row) {
+        return years.get(row);
+    }
+
+    public int copies(int row) {
+        return copies.get(row);
+    }
+
+    /** A new, AVAILABLE book for the row. */
+    public Book book(int row) {
+        return new Book(isbn(row), title(row), author(row), year(row));
+    }
+
+    // position in byKey of the first row with the key, or -1
+    private int firstWithKey(byte[] key) {
+        int lo = 0, hi = rows;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareKey(byKey.get(mid), key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo < rows && compareKey(byKey.get(lo), key) == 0 ? lo : -1;
+    }
+
+    private int compareKey(int row, byte[] key) {
+        return compare(keyOffsets, keyBytes, row, key);
+    }
+
+    // unsigned lexicographic comparison of the row's value with the given bytes, without decoding
+    private static int compare(IntBuffer offsets, ByteBuffer bytes, int row, byte[] other) {
+        int start = offsets.get(row);
+        int len = offsets.get(row + 1) - start;
+        int n = Math.min(len, other.length);
+        for (int i = 0; i < n; i++) {
+            int c = Integer.compare(bytes.get(start + i) & 0xFF, other[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return Integer.compare(len, other.length);
+    }
+
+    private static String string(IntBuffer offsets, ByteBuffer bytes, int row) {
+        int start = offsets.get(row);
+        byte[] v = new byte[offsets.get(row + 1) - start];
+        bytes.get(start, v);
+        return new String(v, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static long pad(DataOutputStream out, long written) throws IOException {
+        long aligned = align(written);
+        for (long i = written; i < aligned; i++) out.write(0);
+        return aligned;
+    }
+}
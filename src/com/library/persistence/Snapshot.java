@@ -0,0 +1,366 @@
+// File: com/library/persistence/Snapshot.java
+package com.library.persistence;
+
+import com.library.model.BookStatus;
+import com.library.model.Patron;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary image of the library as of one log sequence number: every title with its counts and
+ * status, every patron with their borrow history, the reservation queues and the copies on hold. Recovery loads the
+ * newest intact snapshot and replays only the log records after its LSN.
+ *
+ * The file ends with a CRC32C of its contents and is written to a temporary name and then renamed,
+ * so a crash while writing never leaves a half-written snapshot under the final name. The directory
+ * is synced after the rename, before older snapshots are deleted.
+ */
+public class Snapshot {
+    private static final Logger LOGGER = Logger.getLogger(Snapshot.class.getName());
+
+    private static final int MAGIC = 0x4C4D5353; // "LMSS"
+    private static final int VERSION = 2;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private final long lsn;
+    private final List<BookState> books;
+    private final List<PatronState> patrons;
+    private final Map<String, int[]> reservations;
+    private final List<HoldState> holds;
+
+    public Snapshot(long lsn, List<BookState> books, List<PatronState> patrons, Map<String, int[]> reservations,
+                    List<HoldState> holds) {
+        this.lsn = lsn;
+        this.books = books;
+        this.patrons = patrons;
+        this.reservations = reservations;
+        this.holds = holds;
+    }
+
+    public long getLsn() {
+        return lsn;
+    }
+
+    public List<BookState> getBooks() {
+        return books;
+    }
+
+    public List<PatronState> getPatrons() {
+        return patrons;
+    }
+
+    /** Patron ids waiting for each ISBN, in queue order. */
+    public Map<String, int[]> getReservations() {
+        return reservations;
+    }
+
+    /** Copies on hold, oldest first within each ISBN. */
+    public List<HoldState> getHolds() {
+        return holds;
+    }
+
+    /** Writes the snapshot into dir, then deletes older snapshots there. Returns the file written. */
+    public Path write(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path target = dir.resolve(fileName(lsn));
+        Path tmp = dir.resolve(fileName(lsn) + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32C crc = new CRC32C();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16), crc));
+            writeBody(out);
+            out.writeLong(crc.getValue());
+            out.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // the rename must be durable before the snapshots it supersedes are gone
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        }
+        for (Path old : snapshotFiles(dir)) {
+            if (lsnOf(old) < lsn) Files.deleteIfExists(old);
+        }
+        return target;
+    }
+
+    /** The newest snapshot in dir that reads back intact, if any. */
+    public static Optional<Snapshot> loadLatest(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return Optional.empty();
+        List<Path> files = snapshotFiles(dir);
+        files.sort(Comparator.comparingLong(Snapshot::lsnOf).reversed());
+        for (Path p : files) {
+            try {
+                return Optional.of(read(p));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Skipping unreadable snapshot {0}: {1}", new Object[]{p.getFileName(), e.getMessage()});
+            }
+        }
+        return Optional.empty();
+    }
+
+    public static Snapshot read(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16), crc))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a snapshot file");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+            long lsn = in.readLong();
+
+            int bookCount = in.readInt();
+            List<BookState> books = new ArrayList<>(bookCount);
+            for (int i = 0; i < bookCount; i++) {
+                books.add(new BookState(readString(in), readString(in), readString(in), in.readInt(),
+                        BookStatus.valueOf(readString(in)), in.readInt(), in.readInt()));
+            }
+
+            int patronCount = in.readInt();
+            List<PatronState> patrons = new ArrayList<>(patronCount);
+            for (int i = 0; i < patronCount; i++) {
+                int id = in.readInt();
+                String name = readString(in);
+                String email = readString(in);
+                int records = in.readInt();
+                List<Patron.BorrowRecord> history = new ArrayList<>(records);
+                for (int r = 0; r < records; r++) {
+                    String isbn = readString(in);
+                    LocalDateTime borrowedAt = readTime(in);
+                    LocalDateTime returnAt = in.readBoolean() ? readTime(in) : null;
+                    history.add(new Patron.BorrowRecord(isbn, borrowedAt, returnAt));
+                }
+                patrons.add(new PatronState(id, name, email, history));
+            }
+
+            int queues = in.readInt();
+            Map<String, int[]> reservations = new LinkedHashMap<>(queues * 4 / 3 + 1);
+            for (int i = 0; i < queues; i++) {
+                String isbn = readString(in);
+                int[] ids = new int[in.readInt()];
+                for (int k = 0; k < ids.length; k++) ids[k] = in.readInt();
+                reservations.put(isbn, ids);
+            }
+
+            int holdCount = in.readInt();
+            List<HoldState> holds = new ArrayList<>(holdCount);
+            for (int i = 0; i < holdCount; i++) {
+                holds.add(new HoldState(readString(in), in.readInt(), readTime(in)));
+            }
+
+            long expected = crc.getValue();
+            if (in.readLong() != expected) throw new IOException("Snapshot checksum mismatch");
+            return new Snapshot(lsn, books, patrons, reservations, holds);
+        } catch (EOFException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt snapshot", e);
+        }
+    }
+
+    private void writeBody(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(lsn);
+
+        out.writeInt(books.size());
+        for (BookState b : books) {
+            writeString(out, b.isbn);
+            writeString(out, b.title);
+            writeString(out, b.author);
+            out.writeInt(b.year);
+            writeString(out, b.status.name());
+            out.writeInt(b.available);
+            out.writeInt(b.borrowed);
+        }
+
+        out.writeInt(patrons.size());
+        for (PatronState p : patrons) {
+            out.writeInt(p.id);
+            writeString(out, p.name);
+            writeString(out, p.email);
+            out.writeInt(p.history.size());
+            for (Patron.BorrowRecord r : p.history) {
+                writeString(out, r.getIsbn());
+                writeTime(out, r.getBorrowedAt());
+                out.writeBoolean(r.getReturnAt() != null);
+                if (r.getReturnAt() != null) writeTime(out, r.getReturnAt());
+            }
+        }
+
+        out.writeInt(reservations.size());
+        for (Map.Entry<String, int[]> e : reservations.entrySet()) {
+            writeString(out, e.getKey());
+            out.writeInt(e.getValue().length);
+            for (int id : e.getValue()) out.writeInt(id);
+        }
+
+        out.writeInt(holds.size());
+        for (HoldState h : holds) {
+            writeString(out, h.isbn);
+            out.writeInt(h.patronId);
+            writeTime(out, h.placedAt);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime t) throws IOException {
+        out.writeLong(t.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(t.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+
+    private static String fileName(long lsn) {
+        return String.format("%s%020d%s", PREFIX, lsn, SUFFIX);
+    }
+
+    private static long lsnOf(Path p) {
+        String name = p.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static List<Path> snapshotFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> res = new ArrayList<>();
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).forEach(res::add);
+            return res;
+        }
+    }
+
+    public static final class BookState {
+        final String isbn;
+        final String title;
+        final String author;
+        final int year;
+        final BookStatus status;
+        final int available;
+        final int borrowed;
+
+        public BookState(String isbn, String title, String author, int year, BookStatus status, int available, int borrowed) {
+            this.isbn = isbn;
+            this.title = title;
+            this.author = author;
+            this.year = year;
+            this.status = status;
+            this.available = available;
+            this.borrowed = borrowed;
+        }
+
+        public String getIsbn() {
+            return isbn;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getAuthor() {
+            return author;
+        }
+
+        public int getYear() {
+            return year;
+        }
+
+        public BookStatus getStatus() {
+            return status;
+        }
+
+        public int getAvailable() {
+            return available;
+        }
+
+        public int getBorrowed() {
+            return borrowed;
+        }
+    }
+
+    public static final class PatronState {
+        final int id;
+        final String name;
+        final String email;
+        final List<Patron.BorrowRecord> history;
+
+        public PatronState(int id, String name, String email, List<Patron.BorrowRecord> history) {
+            this.id = id;
+            this.name = name;
+            this.email = email;
+            this.history = history;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public List<Patron.BorrowRecord> getHistory() {
+            return history;
+        }
+    }
+
+    public static final class HoldState {
+        final String isbn;
+        final int patronId;
+        final LocalDateTime placedAt;
+
+        public HoldState(String isbn, int patronId, LocalDateTime placedAt) {
+            this.isbn = isbn;
+            this.patronId = patronId;
+            this.placedAt = placedAt;
+        }
+
+        public String getIsbn() {
+            return isbn;
+        }
+
+        public int getPatronId() {
+            return patronId;
+        }
+
+        public LocalDateTime getPlacedAt() {
+            return placedAt;
+        }
+    }
+}
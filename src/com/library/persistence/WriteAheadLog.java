@@ -0,0 +1,361 @@
+// File: com/library/persistence/WriteAheadLog.java
+package com.library.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of typed records, each numbered with a log sequence number (LSN). Appends only copy
+ * the record into an in-memory buffer; a single writer thread writes whatever has accumulated and
+ * forces it to disk with one fsync, so concurrent committers share the cost of a sync (group commit).
+ * Callers that need durability wait with {@link #awaitDurable()} after releasing their own locks.
+ *
+ * On disk the log is a series of segment files named after the first LSN they hold. A record is
+ * [length:int][crc32c:int][lsn:long][type:byte][payload]; the checksum covers lsn, type and payload.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(WriteAheadLog.class.getName());
+
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    static final int HEADER_BYTES = 17;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final int BUFFER_BYTES = 64 << 10;
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        /** The payload buffer is only valid during the call. */
+        void apply(long lsn, byte type, ByteBuffer payload) throws IOException;
+    }
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final Thread writer;
+    private final ThreadLocal<long[]> lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasData = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    // guarded by lock
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+    private final CRC32C crc = new CRC32C();
+    private long nextLsn;
+    private long durableLsn;
+    private long syncs;
+    private boolean closed;
+    private boolean writerDone; // set once the writer has drained what was appended before close
+    private IOException failure;
+
+    // writer thread only
+    private FileChannel channel;
+    private long segmentSize;
+
+    private WriteAheadLog(Path dir, long segmentBytes, long nextLsn) throws IOException {
+        if (segmentBytes <= 0) throw new IllegalArgumentException("Segment size must be positive");
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.nextLsn = nextLsn;
+        this.durableLsn = nextLsn - 1;
+        openSegment(nextLsn);
+        this.writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Opens the log for appending; the first record gets nextLsn. Run {@link #replay} first. */
+    public static WriteAheadLog open(Path dir, long nextLsn) throws IOException {
+        return open(dir, nextLsn, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public static WriteAheadLog open(Path dir, long nextLsn, long segmentBytes) throws IOException {
+        if (nextLsn <= 0) throw new IllegalArgumentException("LSNs start at 1");
+        Files.createDirectories(dir);
+        return new WriteAheadLog(dir, segmentBytes, nextLsn);
+    }
+
+    /** Buffers a record and returns its LSN. The record is durable once {@link #awaitDurable(long)} returns. */
+    public long append(byte type, ByteBuffer payload) {
+        int len = payload.remaining();
+        if (len > MAX_RECORD_BYTES) throw new IllegalArgumentException("Record too large: " + len);
+        lock.lock();
+        try {
+            if (failure != null) throw new UncheckedIOException("Log failed", failure);
+            if (closed) throw new IllegalStateException("Log is closed");
+            if (pending.remaining() < HEADER_BYTES + len) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER_BYTES + len));
+                pending.flip();
+                bigger.put(pending);
+                pending = bigger;
+            }
+            long lsn = nextLsn++;
+            int start = pending.position();
+            pending.putInt(len).putInt(0).putLong(lsn).put(type).put(payload);
+            crc.reset();
+            crc.update(pending.array(), start + 8, 9 + len);
+            pending.putInt(start + 4, (int) crc.getValue());
+            if (start == 0) hasData.signal();
+            lastAppended.get()[0] = lsn;
+            return lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Waits until the last record appended by the calling thread is on disk. */
+    public void awaitDurable() {
+        awaitDurable(lastAppended.get()[0]);
+    }
+
+    public void awaitDurable(long lsn) {
+        lock.lock();
+        try {
+            // close() lets the writer drain, so a waiter only gives up once the writer has stopped
+            while (durableLsn < lsn && failure == null && !writerDone) flushed.awaitUninterruptibly();
+            if (durableLsn < lsn) {
+                if (failure != null) throw new UncheckedIOException("Log failed", failure);
+                throw new IllegalStateException("Log closed before LSN " + lsn + " was written");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** LSN of the last appended record, durable or not. */
+    public long lastLsn() {
+        lock.lock();
+        try {
+            return nextLsn - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long durableLsn() {
+        lock.lock();
+        try {
+            return durableLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Number of fsyncs so far; together with lastLsn it shows how well commits are grouped. */
+    public long syncCount() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Deletes segments that hold only records up to and including lsn, e.g. after a snapshot. */
+    public void truncateThrough(long lsn) throws IOException {
+        List<Segment> segs = segments(dir);
+        // a segment can go once its successor starts at or before lsn + 1; the active one has none
+        for (int i = 0; i + 1 < segs.size() && segs.get(i + 1).startLsn <= lsn + 1; i++) {
+            Files.deleteIfExists(segs.get(i).path);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            hasData.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        lock.lock();
+        try {
+            flushed.signalAll();
+            if (failure != null) throw failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        ByteBuffer batch = ByteBuffer.allocate(BUFFER_BYTES);
+        try {
+            while (true) {
+                long upTo;
+                lock.lock();
+                try {
+                    while (pending.position() == 0 && !closed) hasData.awaitUninterruptibly();
+                    if (pending.position() == 0) return; // closed and drained
+                    ByteBuffer full = pending;
+                    pending = batch;
+                    batch = full;
+                    upTo = nextLsn - 1;
+                } finally {
+                    lock.unlock();
+                }
+                batch.flip();
+                segmentSize += batch.remaining();
+                while (batch.hasRemaining()) channel.write(batch);
+                channel.force(false);
+                if (batch.capacity() > 16 * BUFFER_BYTES) {
+                    batch = ByteBuffer.allocate(BUFFER_BYTES); // don't keep a burst-sized buffer around
+                } else {
+                    batch.clear();
+                }
+                lock.lock();
+                try {
+                    durableLsn = upTo;
+                    syncs++;
+                    flushed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                if (segmentSize >= segmentBytes) {
+                    channel.close();
+                    openSegment(upTo + 1);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Write-ahead log failed: {0}", e.getMessage());
+            lock.lock();
+            try {
+                failure = e;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            lock.lock();
+            try {
+                writerDone = true;
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void openSegment(long startLsn) throws IOException {
+        channel = FileChannel.open(dir.resolve(segmentName(startLsn)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = channel.size();
+    }
+
+    /**
+     * Feeds every intact record with an LSN above afterLsn to the handler, in LSN order, and returns the
+     * last LSN in the log (at least afterLsn). The log ends at the first torn or corrupt record: that
+     * segment is cut back to the last good record and any later segments are deleted.
+     */
+    public static long replay(Path dir, long afterLsn, RecordHandler handler) throws IOException {
+        if (!Files.isDirectory(dir)) return afterLsn;
+        List<Segment> segs = segments(dir);
+        long last = afterLsn;
+        ByteBuffer buf = ByteBuffer.allocate(1 << 20);
+        CRC32C crc = new CRC32C();
+        for (int i = 0; i < segs.size(); i++) {
+            Segment seg = segs.get(i);
+            if (seg.startLsn > last + 1) {
+                throw new IOException("Log records " + (last + 1) + " to " + (seg.startLsn - 1) + " are missing");
+            }
+            long expected = seg.startLsn;
+            long offset = 0; // end of the last good record in this segment
+            boolean torn = false;
+            try (FileChannel ch = FileChannel.open(seg.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buf.clear().flip();
+                boolean eof = false;
+                while (true) {
+                    int avail = buf.remaining();
+                    int len = avail >= 4 ? buf.getInt(buf.position()) : 0;
+                    if (avail >= 4 && (len < 0 || len > MAX_RECORD_BYTES)) {
+                        torn = true;
+                        break;
+                    }
+                    if (avail < HEADER_BYTES + len) {
+                        if (eof) {
+                            torn = avail > 0;
+                            break;
+                        }
+                        if (buf.capacity() < HEADER_BYTES + len) {
+                            ByteBuffer bigger = ByteBuffer.allocate(HEADER_BYTES + len);
+                            bigger.put(buf).flip();
+                            buf = bigger;
+                        }
+                        buf.compact();
+                        eof = ch.read(buf) < 0;
+                        buf.flip();
+                        continue;
+                    }
+                    int start = buf.position();
+                    crc.reset();
+                    crc.update(buf.array(), start + 8, 9 + len);
+                    long lsn = buf.getLong(start + 8);
+                    if ((int) crc.getValue() != buf.getInt(start + 4) || lsn != expected) {
+                        torn = true;
+                        break;
+                    }
+                    if (lsn > afterLsn) handler.apply(lsn, buf.get(start + 16), buf.slice(start + HEADER_BYTES, len));
+                    last = Math.max(last, lsn);
+                    expected++;
+                    offset += HEADER_BYTES + len;
+                    buf.position(start + HEADER_BYTES + len);
+                }
+                if (torn) {
+                    LOGGER.log(Level.WARNING, "Torn log tail in {0} at offset {1}; discarding the rest of the log",
+                            new Object[]{seg.path.getFileName(), offset});
+                    ch.truncate(offset);
+                    ch.force(true);
+                }
+            }
+            if (torn) {
+                for (int j = i + 1; j < segs.size(); j++) Files.deleteIfExists(segs.get(j).path);
+                break;
+            }
+        }
+        return last;
+    }
+
+    static String segmentName(long startLsn) {
+        return String.format("%s%020d%s", PREFIX, startLsn, SUFFIX);
+    }
+
+    static List<Segment> segments(Path dir) throws IOException {
+        List<Segment> res = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(p -> {
+                String name = p.getFileName().toString();
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                    res.add(new Segment(p, Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()))));
+                }
+            });
+        }
+        res.sort((a, b) -> Long.compare(a.startLsn, b.startLsn));
+        return res;
+    }
+
+    static final class Segment {
+        final Path path;
+        final long startLsn;
+
+        Segment(Path path, long startLsn) {
+            this.path = path;
+            this.startLsn = startLsn;
+        }
+    }
+}
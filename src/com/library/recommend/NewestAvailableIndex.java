@@ -0,0 +1,52 @@
+// File: com/library/recommend/NewestAvailableIndex.java
+package com.library.recommend;
+
+import com.library.model.Book;
+import com.library.model.BookStatus;
+
+import java.util.*;
+
+/**
+ * AVAILABLE books ordered by publication year, newest first, kept current from inventory events.
+ * Taking the newest K books walks the first K entries instead of sorting the catalog.
+ */
+public class NewestAvailableIndex {
+    private final NavigableMap<Integer, Set<Book>> byYear = new TreeMap<>(Comparator.reverseOrder());
+    private int size;
+
+    public synchronized void add(Book book) {
+        if (byYear.computeIfAbsent(book.getPublicationYear(), y -> new LinkedHashSet<>()).add(book)) size++;
+    }
+
+    public synchronized void remove(Book book) {
+        remove(book, book.getPublicationYear());
+    }
+
+    public synchronized void remove(Book book, int year) {
+        Set<Book> books = byYear.get(year);
+        if (books != null && books.remove(book)) {
+            size--;
+            if (books.isEmpty()) byYear.remove(year);
+        }
+    }
+
+    public synchronized void clear() {
+        byYear.clear();
+        size = 0;
+    }
+
+    public synchronized List<Book> newest(int limit) {
+        List<Book> res = new ArrayList<>(Math.max(0, Math.min(limit, size)));
+        for (Set<Book> books : byYear.values()) {
+            for (Book b : books) {
+                if (res.size() >= limit) return res;
+                if (b.getStatus() == BookStatus.AVAILABLE) res.add(b);
+            }
+        }
+        return res;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
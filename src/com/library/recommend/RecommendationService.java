@@ -0,0 +1,175 @@
+// File: com/library/recommend/RecommendationService.java
+package com.library.recommend;
+
+import com.library.inventory.InventoryListener;
+import com.library.inventory.LibraryInventory;
+import com.library.model.Book;
+import com.library.model.BookStatus;
+import com.library.model.Patron;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incrementally maintained recommendations. Instead of rescanning the catalog and the patron's history
+ * on every call, it keeps per-patron author affinity counts (bumped on checkout) and, per author, the
+ * set of books currently AVAILABLE (moved on status changes). A request picks the patron's most
+ * borrowed authors with a bounded heap ({@link TopK}), as many as it wants books, and takes more only
+ * if their available books run out, so its cost follows the patron's preferred authors rather than
+ * the catalog size. Patrons without history get the newest available books from a
+ * {@link NewestAvailableIndex}.
+ *
+ * Affinity is counted against the author a book had when it was borrowed, except after
+ * {@link #rebuild}: borrow records keep only the ISBN, so a rebuild credits each book's current author.
+ */
+public class RecommendationService implements InventoryListener {
+    private final LibraryInventory inventory;
+    private final NewestAvailableIndex newest = new NewestAvailableIndex();
+
+    private final Map<Integer, AuthorAffinity> affinities = new ConcurrentHashMap<>();
+    private final Map<String, Set<Book>> availableByAuthor = new ConcurrentHashMap<>();
+
+    public RecommendationService(LibraryInventory inventory) {
+        this.inventory = inventory;
+    }
+
+    /**
+     * Rebuilds the profiles from scratch, e.g. after patrons or books were loaded without events.
+     * History is credited to each book's current author; books no longer in the catalog are skipped.
+     */
+    public void rebuild(Collection<Patron> patrons) {
+        affinities.clear();
+        availableByAuthor.clear();
+        newest.clear();
+        for (Book b : inventory.getAllBooks()) {
+            if (b.getStatus() == BookStatus.AVAILABLE) indexAvailable(b);
+        }
+        for (Patron p : patrons) {
+            for (Patron.BorrowRecord br : p.getBorrowHistory()) {
+                inventory.getBookByIsbn(br.getIsbn()).ifPresent(b -> affinity(p).increment(b.getAuthor()));
+            }
+        }
+    }
+
+    public List<Book> recommend(Patron patron, int limit) {
+        return recommend(patron, limit, null);
+    }
+
+    /** As {@link #recommend(Patron, int)}, telling basis (if not null) what the answer was read from. */
+    public List<Book> recommend(Patron patron, int limit, Basis basis) {
+        if (limit <= 0) return Collections.emptyList();
+        List<Book> res = recommendFromHistory(patron, limit, basis);
+        if (!res.isEmpty()) return res;
+        // Fallback: latest available books
+        if (basis != null) basis.newestRead();
+        return newest.newest(limit);
+    }
+
+    /**
+     * Only the picks from the patron's borrowing history, without the newest-books fallback: empty if
+     * the patron has borrowed nothing or none of their authors' books is available.
+     */
+    public List<Book> recommendFromHistory(Patron patron, int limit, Basis basis) {
+        if (limit <= 0) return Collections.emptyList();
+        AuthorAffinity affinity = affinities.get(patron.getId());
+        if (affinity != null) {
+            List<Book> res = new ArrayList<>(limit);
+            Set<String> walked = new HashSet<>();
+            // most patrons' top `limit` authors have enough books; widen the pick only if they don't
+            for (int k = limit; res.size() < limit; k *= 2) {
+                List<String> authors = affinity.top(k);
+                for (String author : authors) {
+                    if (res.size() == limit) break;
+                    if (!walked.add(author)) continue;
+                    if (basis != null) basis.authorRead(author);
+                    Set<Book> books = availableByAuthor.get(author);
+                    if (books == null) continue;
+                    for (Book b : books) {
+                        if (b.getStatus() != BookStatus.AVAILABLE) continue; // status flipped mid-iteration
+                        res.add(b);
+                        if (res.size() == limit) break;
+                    }
+                }
+                if (authors.size() < k || k > Integer.MAX_VALUE / 2) break; // no more authors
+            }
+            return res;
+        }
+        return Collections.emptyList();
+    }
+
+    // -- InventoryListener --
+    @Override
+    public void onBookAdded(Book book) {
+        if (book.getStatus() == BookStatus.AVAILABLE) indexAvailable(book);
+    }
+
+    @Override
+    public void onBookRemoved(Book book) {
+        unindexAvailable(book, book.getAuthor(), book.getPublicationYear());
+    }
+
+    @Override
+    public void onBookUpdated(Book book, String oldTitle, String oldAuthor, int oldYear) {
+        if (Objects.equals(oldAuthor, book.getAuthor()) && oldYear == book.getPublicationYear()) return;
+        unindexAvailable(book, oldAuthor, oldYear);
+        if (book.getStatus() == BookStatus.AVAILABLE) indexAvailable(book);
+    }
+
+    @Override
+    public void onStatusChanged(Book book, BookStatus oldStatus, BookStatus newStatus) {
+        if (newStatus == BookStatus.AVAILABLE) {
+            indexAvailable(book);
+        } else if (oldStatus == BookStatus.AVAILABLE) {
+            unindexAvailable(book, book.getAuthor(), book.getPublicationYear());
+        }
+    }
+
+    @Override
+    public void onCheckout(Book book, Patron patron) {
+        affinity(patron).increment(book.getAuthor());
+    }
+
+    private AuthorAffinity affinity(Patron patron) {
+        return affinities.computeIfAbsent(patron.getId(), k -> new AuthorAffinity());
+    }
+
+    private void indexAvailable(Book book) {
+        newest.add(book);
+        if (book.getAuthor() == null) return;
+        availableByAuthor.computeIfAbsent(book.getAuthor(), k -> ConcurrentHashMap.newKeySet()).add(book);
+    }
+
+    private void unindexAvailable(Book book, String author, int year) {
+        newest.remove(book, year);
+        if (author == null) return;
+        Set<Book> books = availableByAuthor.get(author);
+        if (books != null) books.remove(book);
+    }
+
+    /**
+     * The inputs of one recommendation besides the patron's own borrowing: which authors' available
+     * books it looked at, and whether it fell back to the newest available books. Each is reported
+     * just before it is read.
+     */
+    public interface Basis {
+        void authorRead(String author);
+
+        void newestRead();
+    }
+
+    private static final class AuthorAffinity {
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        synchronized void increment(String author) {
+            if (author != null) counts.merge(author, 1, Integer::sum);
+        }
+
+        // the k most borrowed authors, most borrowed first
+        synchronized List<String> top(int k) {
+            List<Map.Entry<String, Integer>> best = TopK.select(counts.entrySet(), e -> true, Map.Entry::getValue, k);
+            List<String> res = new ArrayList<>(best.size());
+            for (Map.Entry<String, Integer> e : best) res.add(e.getKey());
+            return res;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+// File: com/library/recommend/TopK.java
+package com.library.recommend;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded-heap selection of the k highest-keyed items in O(n log k). Ties keep encounter order, so the
+ * result equals a stable descending sort truncated to k.
+ */
+final class TopK {
+    private TopK() {}
+
+    static <T> List<T> select(Iterable<T> items, Predicate<T> filter, ToIntFunction<T> key, int k) {
+        if (k <= 0) return new ArrayList<>();
+        // the heap root is the current worst: lowest key, then latest seen
+        PriorityQueue<Ranked<T>> heap = new PriorityQueue<>(k, (a, b) -> a.key != b.key
+                ? Integer.compare(a.key, b.key)
+                : Long.compare(b.seq, a.seq));
+        long seq = 0;
+        for (T item : items) {
+            if (!filter.test(item)) continue;
+            int itemKey = key.applyAsInt(item);
+            if (heap.size() < k) {
+                heap.add(new Ranked<>(item, itemKey, seq++));
+            } else if (itemKey > heap.peek().key) {
+                heap.poll();
+                heap.add(new Ranked<>(item, itemKey, seq++));
+            } else {
+                seq++;
+            }
+        }
+        List<Ranked<T>> ranked = new ArrayList<>(heap);
+        ranked.sort((a, b) -> a.key != b.key ? Integer.compare(b.key, a.key) : Long.compare(a.seq, b.seq));
+        List<T> res = new ArrayList<>(ranked.size());
+        for (Ranked<T> r : ranked) res.add(r.item);
+        return res;
+    }
+
+    private static final class Ranked<T> {
+        final T item;
+        final int key;
+        final long seq;
+
+        Ranked(T item, int key, long seq) {
+            this.item = item;
+            this.key = key;
+            this.seq = seq;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+// File: com/library/reservation/AsyncNotificationDispatcher.java
+package com.library.reservation;
+
+import com.library.model.Book;
+import com.library.model.Patron;
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.MetricsRegistry;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers "book available" notifications off the caller's thread. Every listener gets its own lane:
+ * a bounded queue drained by a dedicated worker (a virtual thread by default), so a slow e-mail or SMS
+ * listener only backs up its own lane. When a lane is full the {@link OverflowPolicy} decides what
+ * happens to the new notification; only BLOCK and CALLER_RUNS can make the caller wait.
+ */
+public class AsyncNotificationDispatcher implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(AsyncNotificationDispatcher.class.getName());
+
+    public enum OverflowPolicy {
+        /** Wait for room in the lane. */
+        BLOCK,
+        /** Discard the new notification. */
+        DROP_NEWEST,
+        /** Discard the oldest queued notification to make room. */
+        DROP_OLDEST,
+        /** Deliver the new notification on the calling thread. */
+        CALLER_RUNS
+    }
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final ThreadFactory threadFactory;
+    private final Map<ReservationListener, Lane> lanes = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public AsyncNotificationDispatcher(int capacity, OverflowPolicy policy) {
+        this(capacity, policy, Thread.ofVirtual().name("reservation-notify-", 0).factory());
+    }
+
+    public AsyncNotificationDispatcher(int capacity, OverflowPolicy policy, ThreadFactory threadFactory) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+        this.policy = Objects.requireNonNull(policy);
+        this.threadFactory = Objects.requireNonNull(threadFactory);
+    }
+
+    // listeners is the live registration list; metrics may be null, and a lane keeps the histogram of
+    // the registry it was created with
+    void dispatch(Collection<ReservationListener> listeners, Book book, Patron patron, MetricsRegistry metrics) {
+        if (closed) {
+            LOGGER.log(Level.WARNING, "Dispatcher closed - dropping notification for {0}", book.getIsbn());
+            return;
+        }
+        long now = System.nanoTime();
+        for (ReservationListener l : listeners) {
+            Lane lane = lanes.get(l);
+            if (lane == null && (lane = openLane(listeners, l, metrics)) == null) continue;
+            lane.offer(new Notification(book, patron, now));
+        }
+    }
+
+    // Lanes are opened, removed and closed under this monitor, and a lane is only opened for a listener
+    // still registered, so one removed meanwhile (or a closed dispatcher) never gets a new worker.
+    private synchronized Lane openLane(Collection<ReservationListener> registered, ReservationListener l,
+                                       MetricsRegistry metrics) {
+        if (closed || !registered.contains(l)) return null;
+        Lane lane = lanes.get(l);
+        if (lane == null) {
+            lane = new Lane(l, metrics == null ? null : metrics.histogram(ReservationManager.listenerName(l)));
+            lanes.put(l, lane);
+            lane.worker.start();
+        }
+        return lane;
+    }
+
+    // called after the listener has been unregistered
+    void remove(ReservationListener listener) {
+        Lane lane;
+        synchronized (this) {
+            lane = lanes.remove(listener);
+        }
+        if (lane != null) lane.stop();
+    }
+
+    /** Per-listener delivery statistics, keyed by listener. */
+    public Map<ReservationListener, ListenerStats> stats() {
+        Map<ReservationListener, ListenerStats> res = new LinkedHashMap<>();
+        for (Map.Entry<ReservationListener, Lane> e : lanes.entrySet()) {
+            res.put(e.getKey(), e.getValue().snapshot());
+        }
+        return res;
+    }
+
+    /** Stops accepting notifications and waits up to the timeout for queued ones to be delivered. */
+    public void close(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Lane lane : lanes.values()) lane.stop();
+        for (Lane lane : lanes.values()) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0 || !lane.await(left)) lane.worker.interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            close(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Notification {
+        final Book book;
+        final Patron patron;
+        final long enqueuedAt;
+
+        Notification(Book book, Patron patron, long enqueuedAt) {
+            this.book = book;
+            this.patron = patron;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final class Lane implements Runnable {
+        final ReservationListener listener;
+        final LatencyHistogram serviceTime; // null: not measured
+        final BlockingQueue<Notification> queue = new ArrayBlockingQueue<>(capacity);
+        final Thread worker;
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean running = true;
+
+        final LongAdder delivered = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder totalLatencyNanos = new LongAdder();
+        final LongAdder totalServiceNanos = new LongAdder();
+        final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+        final LongAccumulator maxServiceNanos = new LongAccumulator(Math::max, 0);
+
+        Lane(ReservationListener listener, LatencyHistogram serviceTime) {
+            this.listener = listener;
+            this.serviceTime = serviceTime;
+            this.worker = threadFactory.newThread(this);
+        }
+
+        void offer(Notification n) {
+            if (!running) { // stopped after the caller looked it up; nobody would drain it
+                dropped.increment();
+                return;
+            }
+            switch (policy) {
+                case BLOCK:
+                    try {
+                        queue.put(n);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped.increment();
+                    }
+                    break;
+                case DROP_NEWEST:
+                    if (!queue.offer(n)) dropped.increment();
+                    break;
+                case DROP_OLDEST:
+                    while (!queue.offer(n)) {
+                        if (queue.poll() != null) dropped.increment();
+                    }
+                    break;
+                case CALLER_RUNS:
+                    if (!queue.offer(n)) deliver(n);
+                    break;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running || !queue.isEmpty()) {
+                    Notification n = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (n != null) deliver(n);
+                }
+            } catch (InterruptedException e) {
+                dropped.add(queue.size());
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void deliver(Notification n) {
+            long start = System.nanoTime();
+            try {
+                listener.onBookAvailable(n.book, n.patron);
+                delivered.increment();
+            } catch (Exception ex) {
+                failed.increment();
+                LOGGER.log(Level.WARNING, "Listener failed: {0}", ex.getMessage());
+            }
+            long end = System.nanoTime();
+            totalServiceNanos.add(end - start);
+            maxServiceNanos.accumulate(end - start);
+            if (serviceTime != null) serviceTime.record(end - start);
+            totalLatencyNanos.add(end - n.enqueuedAt);
+            maxLatencyNanos.accumulate(end - n.enqueuedAt);
+        }
+
+        void stop() {
+            running = false;
+        }
+
+        boolean await(long nanos) throws InterruptedException {
+            return done.await(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        ListenerStats snapshot() {
+            return new ListenerStats(queue.size(), delivered.sum(), failed.sum(), dropped.sum(),
+                    totalLatencyNanos.sum(), maxLatencyNanos.get(), totalServiceNanos.sum(), maxServiceNanos.get());
+        }
+    }
+
+    public static final class ListenerStats {
+        private final int queued;
+        private final long delivered;
+        private final long failed;
+        private final long dropped;
+        private final long totalLatencyNanos;
+        private final long maxLatencyNanos;
+        private final long totalServiceNanos;
+        private final long maxServiceNanos;
+
+        ListenerStats(int queued, long delivered, long failed, long dropped, long totalLatencyNanos,
+                      long maxLatencyNanos, long totalServiceNanos, long maxServiceNanos) {
+            this.queued = queued;
+            this.delivered = delivered;
+            this.failed = failed;
+            this.dropped = dropped;
+            this.totalLatencyNanos = totalLatencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+            this.totalServiceNanos = totalServiceNanos;
+            this.maxServiceNanos = maxServiceNanos;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public long getDelivered() {
+            return delivered;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        /** Mean time from dispatch to the end of delivery, including time spent queued. */
+        public long getMeanLatencyNanos() {
+            long n = delivered + failed;
+            return n == 0 ? 0 : totalLatencyNanos / n;
+        }
+
+        public long getMaxLatencyNanos() {
+            return maxLatencyNanos;
+        }
+
+        /** Mean time spent inside the listener. */
+        public long getMeanServiceNanos() {
+            long n = delivered + failed;
+            return n == 0 ? 0 : totalServiceNanos / n;
+        }
+
+        public long getMaxServiceNanos() {
+            return maxServiceNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "ListenerStats{" +
+                    "queued=" + queued +
+                    ", delivered=" + delivered +
+                    ", failed=" + failed +
+                    ", dropped=" + dropped +
+                    ", meanLatencyNanos=" + getMeanLatencyNanos() +
+                    ", maxLatencyNanos=" + maxLatencyNanos +
+                    ", meanServiceNanos=" + getMeanServiceNanos() +
+                    ", maxServiceNanos=" + maxServiceNanos +
+                    '}';
+        }
+    }
+}
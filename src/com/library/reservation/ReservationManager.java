@@ -3,48 +3,164 @@ package com.library.reservation;
 
 import com.library.model.Book;
 import com.library.model.Patron;
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.MetricsRegistry;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Waitlists per ISBN. Each title's queue has its own monitor, so reservations on different titles do
+ * not contend; a queue is unmapped once it empties. Within a queue, duplicate detection is O(1) and
+ * reserving, cancelling, polling and position lookups are O(log n); see {@link ReservationQueue}.
+ */
 public class ReservationManager {
     private static final Logger LOGGER = Logger.getLogger(ReservationManager.class.getName());
 
-    private final Map<String, Deque<Patron>> reservationQueues = new HashMap<>();
-    private final List<ReservationListener> listeners = new ArrayList<>();
+    private final Map<String, ReservationQueue> reservationQueues = new ConcurrentHashMap<>();
+    private final List<ReservationListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile AsyncNotificationDispatcher dispatcher; // null: deliver on the caller's thread
+    private volatile MetricsRegistry metrics; // null: not measured
+    private final Map<ReservationListener, LatencyHistogram> dispatchTimes = new ConcurrentHashMap<>();
 
-    public synchronized void reserve(String isbn, Patron patron) {
-        reservationQueues.computeIfAbsent(isbn, k -> new ArrayDeque<>()).addLast(patron);
-        LOGGER.log(Level.INFO, "Patron {0} reserved ISBN {1}", new Object[]{patron.getName(), isbn});
+    /** Queues the patron for the title; false if the patron is already waiting for it. */
+    public boolean reserve(String isbn, Patron patron) {
+        while (true) {
+            ReservationQueue q = reservationQueues.computeIfAbsent(isbn, k -> new ReservationQueue());
+            synchronized (q) {
+                if (q.retired) continue; // emptied and unmapped meanwhile; map a fresh one
+                boolean added = q.add(patron);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, added ? "Patron {0} reserved ISBN {1}" : "Patron {0} already waiting for ISBN {1}",
+                            new Object[]{patron.getName(), isbn});
+                }
+                return added;
+            }
+        }
+    }
+
+    /** Takes the patron off the title's waitlist; false if the patron was not waiting for it. */
+    public boolean cancel(String isbn, int patronId) {
+        ReservationQueue q = reservationQueues.get(isbn);
+        if (q == null) return false;
+        synchronized (q) {
+            boolean removed = q.remove(patronId);
+            if (removed) retireIfEmpty(isbn, q);
+            return removed;
+        }
+    }
+
+    public Optional<Patron> pollNextPatron(String isbn) {
+        ReservationQueue q = reservationQueues.get(isbn);
+        if (q == null) return Optional.empty();
+        synchronized (q) {
+            Patron p = q.poll();
+            retireIfEmpty(isbn, q);
+            return Optional.ofNullable(p);
+        }
+    }
+
+    /** 1-based place of the patron in the title's waitlist, or 0 if the patron is not waiting. */
+    public int position(String isbn, int patronId) {
+        ReservationQueue q = reservationQueues.get(isbn);
+        if (q == null) return 0;
+        synchronized (q) {
+            return q.position(patronId);
+        }
+    }
+
+    public boolean hasReservations(String isbn) {
+        return reservationQueues.containsKey(isbn); // empty queues are unmapped
+    }
+
+    // caller holds the queue's monitor
+    private void retireIfEmpty(String isbn, ReservationQueue q) {
+        if (!q.isEmpty() || q.retired) return;
+        q.retired = true;
+        reservationQueues.remove(isbn, q);
+    }
+
+    /** Number of waiting patrons per ISBN, for every non-empty queue. */
+    public Map<String, Integer> queueDepths() {
+        Map<String, Integer> res = new HashMap<>();
+        for (Map.Entry<String, ReservationQueue> e : reservationQueues.entrySet()) {
+            ReservationQueue q = e.getValue();
+            synchronized (q) {
+                if (!q.isEmpty()) res.put(e.getKey(), q.size());
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Publishes the queue depth per ISBN (reservation.queue.depth, sampled when the registry is dumped)
+     * and the time each listener spends handling a notification (reservation.dispatch.&lt;listener&gt;).
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        dispatchTimes.clear();
+        this.metrics = registry;
+        if (registry != null) registry.gaugeGroup("reservation.queue.depth", this::queueDepths);
     }
 
-    public synchronized Optional<Patron> pollNextPatron(String isbn) {
-        Deque<Patron> q = reservationQueues.get(isbn);
-        if (q == null || q.isEmpty()) return Optional.empty();
-        return Optional.ofNullable(q.pollFirst());
+    static String listenerName(ReservationListener listener) {
+        String name = listener.getClass().getSimpleName();
+        return "reservation.dispatch." + (name.isEmpty() ? listener.getClass().getName() : name);
     }
 
-    public synchronized boolean hasReservations(String isbn) {
-        Deque<Patron> q = reservationQueues.get(isbn);
-        return q != null && !q.isEmpty();
+    /** Copy of every non-empty queue, in queue order, e.g. for a snapshot. */
+    public Map<String, List<Patron>> queues() {
+        Map<String, List<Patron>> res = new LinkedHashMap<>();
+        for (Map.Entry<String, ReservationQueue> e : reservationQueues.entrySet()) {
+            ReservationQueue q = e.getValue();
+            synchronized (q) {
+                if (!q.isEmpty()) res.put(e.getKey(), q.patrons());
+            }
+        }
+        return res;
     }
 
-    public synchronized void addListener(ReservationListener listener) {
+    public void addListener(ReservationListener listener) {
         listeners.add(listener);
     }
 
-    public synchronized void removeListener(ReservationListener listener) {
+    public void removeListener(ReservationListener listener) {
         listeners.remove(listener);
+        dispatchTimes.remove(listener);
+        AsyncNotificationDispatcher d = dispatcher;
+        if (d != null) d.remove(listener);
+    }
+
+    /**
+     * Switches notification delivery to the given dispatcher, or back to inline delivery with null.
+     * The caller owns the dispatcher and closes it.
+     */
+    public void setDispatcher(AsyncNotificationDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
     }
 
-    public synchronized void notifyBookAvailable(Book book, Patron patron) {
+    public AsyncNotificationDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    // Not synchronized: it is called from the inventory's return path, which must not wait on this monitor.
+    public void notifyBookAvailable(Book book, Patron patron) {
+        AsyncNotificationDispatcher d = dispatcher;
+        MetricsRegistry m = metrics;
+        if (d != null) {
+            d.dispatch(listeners, book, patron, m);
+            return;
+        }
         for (ReservationListener l : listeners) {
+            long start = m == null ? 0 : System.nanoTime();
             try {
                 l.onBookAvailable(book, patron);
             } catch (Exception ex) {
                 LOGGER.log(Level.WARNING, "Listener failed: {0}", ex.getMessage());
             }
+            if (m != null) dispatchTimes.computeIfAbsent(l, k -> m.histogram(listenerName(k))).recordSince(start);
         }
     }
 }
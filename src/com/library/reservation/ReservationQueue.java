@@ -0,0 +1,118 @@
+// File: com/library/reservation/ReservationQueue.java
+package com.library.reservation;
+
+import com.library.model.Patron;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Waitlist of one title: a linked queue in arrival order, indexed by patron id so a patron is queued
+ * at most once and is found for cancellation without a scan. Every entry holds a ticket, increasing
+ * in queue order, and a Fenwick tree over the tickets counts the entries still waiting, so a patron's
+ * position is a prefix sum in O(log n). Tickets are renumbered from zero when they run past the tree, which is sized to
+ * twice the queue then, so renumbering is amortized O(1) per reservation.
+ *
+ * Not thread-safe; {@link ReservationManager} guards each queue with its monitor.
+ */
+final class ReservationQueue {
+    private static final class Node {
+        final Patron patron;
+        int ticket;
+        Node prev;
+        Node next;
+
+        Node(Patron patron) {
+            this.patron = patron;
+        }
+    }
+
+    private final Map<Integer, Node> byPatron = new HashMap<>();
+    private Node head;
+    private Node tail;
+    private int[] tree = new int[17]; // 1-based Fenwick tree over tickets 0..tree.length-2
+    private int nextTicket;
+    boolean retired; // emptied and unmapped by the manager; must not be used again
+
+    /** Queues the patron at the back; false if the patron is already waiting. */
+    boolean add(Patron patron) {
+        if (byPatron.containsKey(patron.getId())) return false;
+        if (nextTicket == tree.length - 1) renumber(Math.max(16, 2 * (byPatron.size() + 1)));
+        Node n = new Node(patron);
+        n.ticket = nextTicket++;
+        update(n.ticket, 1);
+        n.prev = tail;
+        if (tail == null) head = n;
+        else tail.next = n;
+        tail = n;
+        byPatron.put(patron.getId(), n);
+        return true;
+    }
+
+    Patron poll() {
+        if (head == null) return null;
+        Patron p = head.patron;
+        unlink(byPatron.remove(p.getId()));
+        return p;
+    }
+
+    /** Removes the patron from the queue; false if the patron was not waiting. */
+    boolean remove(int patronId) {
+        Node n = byPatron.remove(patronId);
+        if (n == null) return false;
+        unlink(n);
+        return true;
+    }
+
+    /** 1-based position of the patron in the queue, or 0 if the patron is not waiting. */
+    int position(int patronId) {
+        Node n = byPatron.get(patronId);
+        if (n == null) return 0;
+        int count = 0;
+        for (int i = n.ticket + 1; i > 0; i -= i & -i) count += tree[i];
+        return count;
+    }
+
+    int size() {
+        return byPatron.size();
+    }
+
+    boolean isEmpty() {
+        return head == null;
+    }
+
+    List<Patron> patrons() {
+        List<Patron> res = new ArrayList<>(byPatron.size());
+        for (Node n = head; n != null; n = n.next) res.add(n.patron);
+        return res;
+    }
+
+    private void unlink(Node n) {
+        update(n.ticket, -1);
+        if (n.prev == null) head = n.next;
+        else n.prev.next = n.next;
+        if (n.next == null) tail = n.prev;
+        else n.next.prev = n.prev;
+    }
+
+    private void update(int ticket, int delta) {
+        for (int i = ticket + 1; i < tree.length; i += i & -i) tree[i] += delta;
+    }
+
+    // gives the waiting entries tickets 0..size-1 and rebuilds the tree for the given capacity
+    private void renumber(int capacity) {
+        tree = new int[capacity + 1];
+        int t = 0;
+        for (Node n = head; n != null; n = n.next) {
+            n.ticket = t++;
+            tree[t] = 1;
+        }
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) tree[parent] += tree[i];
+        }
+        nextTicket = t;
+    }
+}
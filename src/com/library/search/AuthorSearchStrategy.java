@@ -6,7 +6,23 @@ import com.library.model.Book;
 import java.util.ArrayList;
 import java.util.List;
 
-public class AuthorSearchStrategy implements SearchStrategy {
+public class AuthorSearchStrategy implements IndexedSearchStrategy {
+    private final TokenIndex index;
+
+    public AuthorSearchStrategy() {
+        this(null);
+    }
+
+    public AuthorSearchStrategy(TokenIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public List<Book> search(String query) {
+        if (index == null) throw new IllegalStateException("No author index attached");
+        return index.search(query);
+    }
+
     @Override
     public List<Book> search(List<Book> books, String query) {
         if (query == null) return List.of();
@@ -0,0 +1,144 @@
+// File: com/library/search/CatalogQuery.java
+package com.library.search;
+
+import com.library.model.BookStatus;
+
+import java.util.*;
+
+/**
+ * Multi-criteria catalog query: every criterion given must hold. Title and author criteria match
+ * whole words, case-insensitively, in any order; the year range is inclusive. Matches are counted by
+ * the requested facets, and the first {@code limit} of them (in catalog order) are returned.
+ *
+ * Immutable: each method returns a refined copy, so queries can be shared and used as map keys.
+ */
+public final class CatalogQuery {
+    private static final CatalogQuery ALL = new CatalogQuery(List.of(), List.of(), Integer.MIN_VALUE,
+            Integer.MAX_VALUE, null, Collections.unmodifiableSet(EnumSet.noneOf(Facet.class)), 20);
+
+    private final List<String> titleWords; // sorted, distinct, lower-case
+    private final List<String> authorWords;
+    private final int yearFrom;
+    private final int yearTo;
+    private final BookStatus status; // null: any
+    private final Set<Facet> facets;
+    private final int limit;
+
+    private CatalogQuery(List<String> titleWords, List<String> authorWords, int yearFrom, int yearTo,
+                         BookStatus status, Set<Facet> facets, int limit) {
+        this.titleWords = titleWords;
+        this.authorWords = authorWords;
+        this.yearFrom = yearFrom;
+        this.yearTo = yearTo;
+        this.status = status;
+        this.facets = facets;
+        this.limit = limit;
+    }
+
+    /** Matches the whole catalog; refine it with the other methods. */
+    public static CatalogQuery all() {
+        return ALL;
+    }
+
+    public CatalogQuery titleWords(String words) {
+        return new CatalogQuery(merge(titleWords, words), authorWords, yearFrom, yearTo, status, facets, limit);
+    }
+
+    public CatalogQuery author(String words) {
+        return new CatalogQuery(titleWords, merge(authorWords, words), yearFrom, yearTo, status, facets, limit);
+    }
+
+    public CatalogQuery years(int from, int to) {
+        if (from > to) throw new IllegalArgumentException("Invalid year range");
+        return new CatalogQuery(titleWords, authorWords, from, to, status, facets, limit);
+    }
+
+    public CatalogQuery status(BookStatus status) {
+        return new CatalogQuery(titleWords, authorWords, yearFrom, yearTo, status, facets, limit);
+    }
+
+    public CatalogQuery facets(Facet... facets) {
+        Set<Facet> fs = EnumSet.noneOf(Facet.class);
+        fs.addAll(Arrays.asList(facets));
+        return new CatalogQuery(titleWords, authorWords, yearFrom, yearTo, status, Collections.unmodifiableSet(fs), limit);
+    }
+
+    /** Maximum number of matching books returned; the total and the facets always cover every match. */
+    public CatalogQuery limit(int limit) {
+        if (limit < 0) throw new IllegalArgumentException("Invalid limit");
+        return new CatalogQuery(titleWords, authorWords, yearFrom, yearTo, status, facets, limit);
+    }
+
+    public List<String> getTitleWords() {
+        return titleWords;
+    }
+
+    public List<String> getAuthorWords() {
+        return authorWords;
+    }
+
+    public int getYearFrom() {
+        return yearFrom;
+    }
+
+    public int getYearTo() {
+        return yearTo;
+    }
+
+    public boolean hasYearRange() {
+        return yearFrom != Integer.MIN_VALUE || yearTo != Integer.MAX_VALUE;
+    }
+
+    public BookStatus getStatus() {
+        return status;
+    }
+
+    public Set<Facet> getFacets() {
+        return facets;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /** Whether a book with these values meets every criterion; facets and the limit play no part. */
+    public boolean matches(String title, String author, int year, BookStatus status) {
+        if (year < yearFrom || year > yearTo) return false;
+        if (this.status != null && this.status != status) return false;
+        return hasWords(title, titleWords) && hasWords(author, authorWords);
+    }
+
+    private static boolean hasWords(String value, List<String> words) {
+        if (words.isEmpty()) return true;
+        if (value == null) return false;
+        return TokenIndex.tokenize(value.toLowerCase()).containsAll(words);
+    }
+
+    private static List<String> merge(List<String> current, String words) {
+        if (words == null) return current;
+        TreeSet<String> all = new TreeSet<>(current);
+        all.addAll(TokenIndex.tokenize(words.toLowerCase()));
+        return List.copyOf(all);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CatalogQuery)) return false;
+        CatalogQuery q = (CatalogQuery) o;
+        return yearFrom == q.yearFrom && yearTo == q.yearTo && limit == q.limit && status == q.status
+                && titleWords.equals(q.titleWords) && authorWords.equals(q.authorWords) && facets.equals(q.facets);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(titleWords, authorWords, yearFrom, yearTo, status, facets, limit);
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogQuery{title=" + titleWords + ", author=" + authorWords
+                + (hasYearRange() ? ", years=" + yearFrom + ".." + yearTo : "")
+                + (status != null ? ", status=" + status : "") + ", facets=" + facets + ", limit=" + limit + '}';
+    }
+}
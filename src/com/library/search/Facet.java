@@ -0,0 +1,11 @@
+// File: com/library/search/Facet.java
+package com.library.search;
+
+/** Book fields a {@link CatalogQuery} can count its matches by. */
+public enum Facet {
+    /** Exact author name; the most frequent authors only. */
+    AUTHOR,
+    /** Decade of publication, e.g. "1970s". */
+    DECADE,
+    STATUS
+}
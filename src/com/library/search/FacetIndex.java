@@ -0,0 +1,257 @@
+// File: com/library/search/FacetIndex.java
+package com.library.search;
+
+import com.library.inventory.InventoryListener;
+import com.library.model.Book;
+import com.library.model.BookStatus;
+
+import java.util.*;
+
+/**
+ * Bitmap indexes over title words, author words, exact author, publication year and status, kept
+ * current as an {@link InventoryListener}. Books get a slot number in insertion order, and every
+ * indexed value maps to the {@link RoaringBitmap} of the slots holding it.
+ *
+ * A {@link CatalogQuery} is compiled into a plan of bitmap criteria ordered by estimated match count,
+ * so the most selective one is evaluated first and an empty intersection stops the plan early. A year
+ * range is covered by whole-decade bitmaps plus single years at its ends. Facets are counted by
+ * intersecting the matches with each value's bitmap when the matches are dense and the facet has few
+ * values; otherwise walking the matches and tallying each one's value is cheaper.
+ */
+public class FacetIndex implements InventoryListener {
+    private static final int TOP_AUTHORS = 10;
+    private static final int MAX_INTERSECTED_VALUES = 64;
+
+    private Entry[] slots = new Entry[64];
+    private int nextSlot;
+    private final Map<Book, Integer> slotOf = new HashMap<>();
+    private final RoaringBitmap live = new RoaringBitmap();
+    private final Map<String, RoaringBitmap> titleWords = new HashMap<>();
+    private final Map<String, RoaringBitmap> authorWords = new HashMap<>();
+    private final Map<String, RoaringBitmap> authors = new HashMap<>();
+    private final NavigableMap<Integer, RoaringBitmap> years = new TreeMap<>();
+    private final NavigableMap<Integer, RoaringBitmap> decades = new TreeMap<>(); // keyed by first year
+    private final Map<BookStatus, RoaringBitmap> statuses = new EnumMap<>(BookStatus.class);
+
+    @Override
+    public synchronized void onBookAdded(Book book) {
+        if (book == null || slotOf.containsKey(book)) return;
+        if (nextSlot == slots.length) slots = Arrays.copyOf(slots, slots.length * 2);
+        int slot = nextSlot++;
+        Entry e = new Entry(book);
+        slots[slot] = e;
+        slotOf.put(book, slot);
+        live.add(slot);
+        for (String w : e.titleWords) bitmap(titleWords, w).add(slot);
+        for (String w : e.authorWords) bitmap(authorWords, w).add(slot);
+        if (e.author != null) bitmap(authors, e.author).add(slot);
+        bitmap(years, e.year).add(slot);
+        bitmap(decades, e.decade).add(slot);
+        if (e.status != null) bitmap(statuses, e.status).add(slot);
+    }
+
+    @Override
+    public synchronized void onBookRemoved(Book book) {
+        Integer slot = slotOf.remove(book);
+        if (slot == null) return;
+        Entry e = slots[slot];
+        slots[slot] = null;
+        live.remove(slot);
+        for (String w : e.titleWords) unmap(titleWords, w, slot);
+        for (String w : e.authorWords) unmap(authorWords, w, slot);
+        if (e.author != null) unmap(authors, e.author, slot);
+        unmap(years, e.year, slot);
+        unmap(decades, e.decade, slot);
+        if (e.status != null) unmap(statuses, e.status, slot);
+    }
+
+    @Override
+    public synchronized void onBookUpdated(Book book, String oldTitle, String oldAuthor, int oldYear) {
+        onBookRemoved(book);
+        onBookAdded(book);
+    }
+
+    @Override
+    public synchronized void onStatusChanged(Book book, BookStatus oldStatus, BookStatus newStatus) {
+        Integer slot = slotOf.get(book);
+        if (slot == null) return;
+        Entry e = slots[slot];
+        if (e.status != null) unmap(statuses, e.status, slot);
+        e.status = newStatus;
+        if (newStatus != null) bitmap(statuses, newStatus).add(slot);
+    }
+
+    public synchronized int size() {
+        return slotOf.size();
+    }
+
+    public synchronized QueryResult query(CatalogQuery query) {
+        List<Criterion> plan = compile(query);
+        RoaringBitmap matches = live;
+        for (int i = 0; i < plan.size(); i++) {
+            Criterion c = plan.get(i);
+            matches = i == 0 ? c.evaluate() : c.intersect(matches);
+            if (matches.isEmpty()) break;
+        }
+
+        List<Book> books = new ArrayList<>();
+        for (int slot : matches.first(query.getLimit())) books.add(slots[slot].book);
+        Map<Facet, Map<String, Integer>> facets = new EnumMap<>(Facet.class);
+        for (Facet f : query.getFacets()) facets.put(f, count(f, matches));
+        return new QueryResult(matches.cardinality(), Collections.unmodifiableList(books),
+                Collections.unmodifiableMap(facets), describe(plan));
+    }
+
+    // one bitmap criterion per query condition, most selective first
+    private List<Criterion> compile(CatalogQuery q) {
+        List<Criterion> plan = new ArrayList<>();
+        for (String w : q.getTitleWords()) plan.add(new Criterion("title=" + w, titleWords.get(w)));
+        for (String w : q.getAuthorWords()) plan.add(new Criterion("author=" + w, authorWords.get(w)));
+        if (q.hasYearRange()) {
+            plan.add(new Criterion("year=" + q.getYearFrom() + ".." + q.getYearTo(),
+                    yearRange(q.getYearFrom(), q.getYearTo())));
+        }
+        if (q.getStatus() != null) plan.add(new Criterion("status=" + q.getStatus(), statuses.get(q.getStatus())));
+        plan.sort(Comparator.comparingInt(c -> c.estimate));
+        return plan;
+    }
+
+    // value bitmaps covering the years from..to: whole decades where they fit, single years elsewhere
+    private List<RoaringBitmap> yearRange(int from, int to) {
+        List<RoaringBitmap> res = new ArrayList<>();
+        if (years.isEmpty()) return res;
+        int y = Math.max(from, years.firstKey());
+        int last = Math.min(to, years.lastKey());
+        while (y <= last) {
+            RoaringBitmap b;
+            if (Math.floorMod(y, 10) == 0 && y + 9 <= to) {
+                b = decades.get(y);
+                y += 10;
+            } else {
+                b = years.get(y);
+                y++;
+            }
+            if (b != null) res.add(b);
+        }
+        return res;
+    }
+
+    private Map<String, Integer> count(Facet facet, RoaringBitmap matches) {
+        Map<?, RoaringBitmap> values = facet == Facet.AUTHOR ? authors : facet == Facet.DECADE ? decades : statuses;
+        Map<Object, Integer> counts = new HashMap<>();
+        if (values.size() > MAX_INTERSECTED_VALUES || !matches.isDense()) {
+            matches.forEach(slot -> {
+                Object v = slots[slot].valueOf(facet);
+                if (v != null) counts.merge(v, 1, Integer::sum);
+            });
+        } else {
+            for (Map.Entry<?, RoaringBitmap> e : values.entrySet()) {
+                int n = RoaringBitmap.andCardinality(matches, e.getValue());
+                if (n > 0) counts.put(e.getKey(), n);
+            }
+        }
+        Map<String, Integer> res = new LinkedHashMap<>();
+        if (facet == Facet.AUTHOR) {
+            counts.entrySet().stream()
+                    .sorted(Map.Entry.<Object, Integer>comparingByValue().reversed()
+                            .thenComparing(e -> (String) e.getKey()))
+                    .limit(TOP_AUTHORS)
+                    .forEach(e -> res.put((String) e.getKey(), e.getValue()));
+        } else if (facet == Facet.DECADE) {
+            new TreeMap<>(counts).forEach((decade, n) -> res.put(decade + "s", n));
+        } else {
+            for (BookStatus st : BookStatus.values()) {
+                Integer n = counts.get(st);
+                if (n != null) res.put(st.name(), n);
+            }
+        }
+        return Collections.unmodifiableMap(res);
+    }
+
+    private String describe(List<Criterion> plan) {
+        if (plan.isEmpty()) return "all(" + live.cardinality() + ")";
+        StringBuilder sb = new StringBuilder();
+        for (Criterion c : plan) {
+            if (sb.length() > 0) sb.append(" AND ");
+            sb.append(c.label).append('(').append(c.estimate).append(')');
+        }
+        return sb.toString();
+    }
+
+    private static <K> RoaringBitmap bitmap(Map<K, RoaringBitmap> map, K key) {
+        return map.computeIfAbsent(key, k -> new RoaringBitmap());
+    }
+
+    private static <K> void unmap(Map<K, RoaringBitmap> map, K key, int slot) {
+        RoaringBitmap b = map.get(key);
+        if (b == null) return;
+        b.remove(slot);
+        if (b.isEmpty()) map.remove(key);
+    }
+
+    /** Indexed values of one book, kept so removal clears exactly what was added. */
+    private static final class Entry {
+        final Book book;
+        final List<String> titleWords;
+        final List<String> authorWords;
+        final String author;
+        final int year;
+        final Integer decade;
+        BookStatus status;
+
+        Entry(Book book) {
+            this.book = book;
+            this.titleWords = TokenIndex.tokenize(lower(book.getTitle()));
+            this.authorWords = TokenIndex.tokenize(lower(book.getAuthor()));
+            this.author = book.getAuthor() == null ? null : book.getAuthor().trim();
+            this.year = book.getPublicationYear();
+            this.decade = Math.floorDiv(year, 10) * 10;
+            this.status = book.getStatus();
+        }
+
+        Object valueOf(Facet facet) {
+            return facet == Facet.AUTHOR ? author : facet == Facet.DECADE ? decade : status;
+        }
+
+        private static String lower(String s) {
+            return s == null ? null : s.toLowerCase();
+        }
+    }
+
+    /** Books satisfying one condition: the union of one or more value bitmaps. */
+    private static final class Criterion {
+        final String label;
+        final List<RoaringBitmap> anyOf;
+        final int estimate;
+
+        Criterion(String label, RoaringBitmap bitmap) {
+            this(label, bitmap == null ? List.of() : List.of(bitmap));
+        }
+
+        Criterion(String label, Collection<RoaringBitmap> anyOf) {
+            this.label = label;
+            this.anyOf = new ArrayList<>(anyOf);
+            int n = 0;
+            for (RoaringBitmap b : anyOf) n += b.cardinality();
+            this.estimate = n;
+        }
+
+        // the index's own bitmap when there is a single one: callers only read it
+        RoaringBitmap evaluate() {
+            if (anyOf.isEmpty()) return new RoaringBitmap();
+            RoaringBitmap res = anyOf.get(0);
+            for (int i = 1; i < anyOf.size(); i++) res = RoaringBitmap.or(res, anyOf.get(i));
+            return res;
+        }
+
+        // intersects each value bitmap with the (smaller) matches so far, rather than building the union
+        RoaringBitmap intersect(RoaringBitmap matches) {
+            RoaringBitmap res = new RoaringBitmap();
+            for (RoaringBitmap b : anyOf) {
+                RoaringBitmap part = RoaringBitmap.and(matches, b);
+                if (!part.isEmpty()) res = res.isEmpty() ? part : RoaringBitmap.or(res, part);
+            }
+            return res;
+        }
+    }
+}
@@ -0,0 +1,554 @@
+// File: com/library/search/FuzzyIndex.java
+package com.library.search;
+
+import com.library.inventory.InventoryListener;
+import com.library.model.Book;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Typo-tolerant ranked search over the word tokens of titles and authors, kept current as an
+ * {@link InventoryListener}. Candidate terms for a misspelled query word are found with the
+ * symmetric-delete method: every indexed term is stored under the strings left after deleting up to
+ * its edit budget of characters from its first {@value #PREFIX} characters, the query word's deletes
+ * are looked up the same way, and the candidates are verified with the optimal-string-alignment edit
+ * distance (insert, delete, substitute, swap adjacent). The budget is 0 edits for words under 3
+ * characters, 1 under 6 and 2 from there; words without letters (numbers) only match exactly.
+ *
+ * A book scores, for each query word, the best of its matching terms: the term's inverse document
+ * frequency, scaled down by the edit distance and by the length of the field. Posting lists are split
+ * by field length, so every bucket's best possible contribution is known up front. Buckets are read
+ * best first, each book found is scored in full from its own terms, and the search stops as soon as
+ * the last of the top results scores at least what any unread book still could (the threshold
+ * algorithm), so common words rarely cost a full pass over their postings. Removed books leave a dead
+ * slot behind; the index is rebuilt once dead slots outnumber live ones.
+ */
+public class FuzzyIndex implements InventoryListener {
+    static final int PREFIX = 7;
+    private static final int MAX_LENGTH = 8; // longer fields share the last posting bucket
+    private static final int MIN_COMPACT_SLOTS = 1024;
+    private static final float[] NORM = new float[MAX_LENGTH + 1];
+
+    static {
+        for (int len = 1; len <= MAX_LENGTH; len++) NORM[len] = (float) (1 / Math.sqrt(len));
+    }
+
+    private final Map<String, Term> terms = new HashMap<>();
+    private Term[] termsById = new Term[64];
+    private int termCount;
+    private final DeleteTable deletes = new DeleteTable();
+    private final Map<Book, Integer> slotOf = new HashMap<>();
+    private Book[] books = new Book[64]; // by slot; null once removed
+    // One record per slot, in slot order: [slot (-1 once removed), title term count, author term count,
+    // title term ids..., author term ids...]. Postings hold record offsets, so scoring a book found in
+    // a posting list reads one short run of this array.
+    private int[] pool = new int[256];
+    private int poolSize;
+    private int[] recordOf = new int[64]; // slot -> record offset
+    private int nextSlot;
+    private int deadSlots;
+
+    // per-query scratch, sized to the term table; guarded by this
+    private int[] termStamp = new int[64]; // term id -> last query that matched it
+    private int[] termIndex = new int[64]; // term id -> its place among that query's matches
+    private int stamp;
+
+    @Override
+    public synchronized void onBookAdded(Book book) {
+        if (book == null || slotOf.containsKey(book)) return;
+        int[] title = terms(book.getTitle());
+        int[] author = terms(book.getAuthor());
+        if (nextSlot == books.length) {
+            books = Arrays.copyOf(books, books.length * 2);
+            recordOf = Arrays.copyOf(recordOf, books.length);
+        }
+        int record = poolSize;
+        int needed = record + 3 + title.length + author.length;
+        if (needed > pool.length) pool = Arrays.copyOf(pool, Math.max(needed, pool.length * 2));
+        int slot = nextSlot++;
+        books[slot] = book;
+        slotOf.put(book, slot);
+        recordOf[slot] = record;
+        pool[record] = slot;
+        pool[record + 1] = title.length;
+        pool[record + 2] = author.length;
+        System.arraycopy(title, 0, pool, record + 3, title.length);
+        System.arraycopy(author, 0, pool, record + 3 + title.length, author.length);
+        poolSize = needed;
+        for (int id : title) termsById[id].add(title.length, record);
+        for (int id : author) termsById[id].add(author.length, record);
+    }
+
+    @Override
+    public synchronized void onBookRemoved(Book book) {
+        Integer slot = slotOf.remove(book);
+        if (slot == null) return;
+        books[slot] = null;
+        int record = recordOf[slot];
+        pool[record] = -1;
+        int end = record + 3 + pool[record + 1] + pool[record + 2];
+        for (int i = record + 3; i < end; i++) termsById[pool[i]].live--;
+        deadSlots++;
+        if (deadSlots >= MIN_COMPACT_SLOTS && deadSlots > slotOf.size()) compact();
+    }
+
+    @Override
+    public synchronized void onBookUpdated(Book book, String oldTitle, String oldAuthor, int oldYear) {
+        onBookRemoved(book);
+        onBookAdded(book);
+    }
+
+    public synchronized int size() {
+        return slotOf.size();
+    }
+
+    public synchronized int termCount() {
+        return terms.size();
+    }
+
+    /**
+     * Books matching the words of the query, exactly or within their edit budget, best first. Ties go
+     * to the earlier book among those read; the search may stop before reading books that could only tie.
+     */
+    public synchronized List<Book> search(String query, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Limit must be positive");
+        if (query == null) return List.of();
+        List<String> words = TokenIndex.tokenize(query.toLowerCase());
+        if (words.isEmpty() || slotOf.isEmpty()) return List.of();
+        ensureScratch();
+        int q = ++stamp;
+
+        // every matching term with its weight for each query word (0 for the words it does not match)
+        List<float[]> weights = new ArrayList<>();
+        List<Term> matched = new ArrayList<>();
+        for (int i = 0; i < words.size(); i++) {
+            for (Match m : expand(words.get(i))) {
+                int id = m.term.id;
+                if (termStamp[id] != q) {
+                    termStamp[id] = q;
+                    termIndex[id] = matched.size();
+                    matched.add(m.term);
+                    weights.add(new float[words.size()]);
+                }
+                float[] w = weights.get(termIndex[id]);
+                w[i] = Math.max(w[i], m.weight);
+            }
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        for (int k = 0; k < matched.size(); k++) {
+            IntList[] byLength = matched.get(k).byLength;
+            for (int len = 1; len <= MAX_LENGTH; len++) {
+                if (byLength[len] != null) segments.add(new Segment(k, len, byLength[len], weights.get(k)));
+            }
+        }
+        segments.sort((a, b) -> Float.compare(b.priority, a.priority));
+        // segmentOf[match][bucket]: where that bucket of the matching term is read
+        int[][] segmentOf = new int[matched.size()][MAX_LENGTH + 1];
+        for (int[] row : segmentOf) Arrays.fill(row, Integer.MAX_VALUE);
+        for (int k = 0; k < segments.size(); k++) {
+            Segment seg = segments.get(k);
+            segmentOf[seg.match][seg.bucket] = k;
+        }
+        // bound[k]: the most a book first found in segment k or later can score
+        float[] bound = new float[segments.size()];
+        float[] wordMax = new float[words.size()];
+        for (int k = segments.size() - 1; k >= 0; k--) {
+            Segment seg = segments.get(k);
+            float b = 0;
+            for (int i = 0; i < wordMax.length; i++) {
+                wordMax[i] = Math.max(wordMax[i], seg.weights[i] * seg.norm);
+                b += wordMax[i];
+            }
+            bound[k] = b;
+        }
+
+        long mask = 0; // bit (id & 63) of every matching term; rules most other terms out without a lookup
+        for (Term t : matched) mask |= 1L << t.id;
+        TopK top = new TopK(Math.min(limit, slotOf.size()));
+        float[] byWord = new float[words.size()];
+        for (int k = 0; k < segments.size() && !top.reached(bound[k]); k++) {
+            IntList list = segments.get(k).records;
+            for (int j = 0; j < list.size && !top.reached(bound[k]); j++) {
+                int record = list.data[j];
+                if (pool[record] < 0) continue;
+                float score = score(record, k, segmentOf, weights, q, mask, byWord);
+                if (score >= 0) top.offer(pool[record], score);
+            }
+        }
+        int[] best = top.sorted();
+        List<Book> res = new ArrayList<>(best.length);
+        for (int s : best) res.add(books[s]);
+        return res;
+    }
+
+    // index terms within the edit budget of the query word, weighted by rarity and closeness
+    private List<Match> expand(String w) {
+        List<Match> res = new ArrayList<>();
+        int n = slotOf.size();
+        Term exact = terms.get(w);
+        if (exact != null && exact.live > 0) res.add(new Match(exact, idf(exact, n)));
+        int budget = budget(w);
+        if (budget == 0) return res;
+        Set<Term> seen = new HashSet<>();
+        if (exact != null) seen.add(exact);
+        for (String d : deletesOf(w, budget)) {
+            deletes.forEach(hash(d), id -> {
+                Term t = termsById[id];
+                if (t.live == 0 || !seen.add(t)) return;
+                int allowed = Math.min(budget, budget(t.text));
+                int dist = distance(w, t.text, allowed);
+                if (dist <= allowed) {
+                    float closeness = 1f - (float) dist / Math.max(w.length(), t.text.length());
+                    res.add(new Match(t, idf(t, n) * closeness));
+                }
+            });
+        }
+        return res;
+    }
+
+    // Sum over the query words of the book's best matching term, scaled by the length of its field; -1
+    // if one of its matching terms has a segment read before segment k, which scored the book already.
+    private float score(int record, int k, int[][] segmentOf, List<float[]> weights, int q, long mask,
+                        float[] byWord) {
+        Arrays.fill(byWord, 0);
+        int titleLength = pool[record + 1];
+        int authorLength = pool[record + 2];
+        int authorStart = record + 3 + titleLength;
+        float titleNorm = norm(titleLength);
+        float authorNorm = norm(authorLength);
+        for (int p = record + 3; p < authorStart + authorLength; p++) {
+            int id = pool[p];
+            if ((mask & 1L << id) == 0 || termStamp[id] != q) continue;
+            int match = termIndex[id];
+            boolean title = p < authorStart;
+            if (segmentOf[match][Math.min(title ? titleLength : authorLength, MAX_LENGTH)] < k) return -1;
+            float[] w = weights.get(match);
+            float norm = title ? titleNorm : authorNorm;
+            for (int i = 0; i < byWord.length; i++) byWord[i] = Math.max(byWord[i], w[i] * norm);
+        }
+        float sum = 0;
+        for (float x : byWord) sum += x;
+        return sum;
+    }
+
+    // never more than the norm of the posting bucket the field length falls in
+    private static float norm(int fieldLength) {
+        return fieldLength <= MAX_LENGTH ? NORM[fieldLength] : (float) (1 / Math.sqrt(fieldLength));
+    }
+
+    // grows the scratch arrays; stamps restart from zero whenever they are replaced
+    private void ensureScratch() {
+        boolean reset = stamp == Integer.MAX_VALUE;
+        if (termStamp.length < termCount) {
+            int n = Math.max(termCount, termStamp.length * 2);
+            termStamp = new int[n];
+            termIndex = new int[n];
+            reset = true;
+        }
+        if (reset) {
+            Arrays.fill(termStamp, 0);
+            stamp = 0;
+        }
+    }
+
+    private int[] terms(String value) {
+        List<String> words = TokenIndex.tokenize(value == null ? null : value.toLowerCase());
+        int[] res = new int[words.size()];
+        for (int i = 0; i < res.length; i++) res[i] = term(words.get(i)).id;
+        return res;
+    }
+
+    private Term term(String word) {
+        Term t = terms.get(word);
+        if (t != null) return t;
+        if (termCount == termsById.length) termsById = Arrays.copyOf(termsById, termCount * 2);
+        t = new Term(termCount++, word);
+        termsById[t.id] = t;
+        terms.put(word, t);
+        int budget = budget(word);
+        if (budget > 0) {
+            for (String d : deletesOf(word, budget)) deletes.add(hash(d), t.id);
+        }
+        return t;
+    }
+
+    private void compact() {
+        Book[] live = new Book[slotOf.size()];
+        int n = 0;
+        for (int s = 0; s < nextSlot; s++) {
+            if (books[s] != null) live[n++] = books[s];
+        }
+        terms.clear();
+        termsById = new Term[64];
+        termCount = 0;
+        deletes.clear();
+        slotOf.clear();
+        books = new Book[Math.max(64, n * 2)];
+        recordOf = new int[books.length];
+        pool = new int[Math.max(256, poolSize / 2)];
+        poolSize = 0;
+        nextSlot = 0;
+        deadSlots = 0;
+        for (Book b : live) onBookAdded(b);
+        for (Term t : terms.values()) {
+            for (IntList l : t.byLength) {
+                if (l != null) l.trim();
+            }
+        }
+    }
+
+    // BM25 inverse document frequency over live books
+    private static float idf(Term t, int books) {
+        return (float) Math.log(1 + (books - t.live + 0.5) / (t.live + 0.5));
+    }
+
+    static int budget(String word) {
+        boolean letters = false;
+        for (int i = 0; i < word.length() && !letters; i++) letters = Character.isLetter(word.charAt(i));
+        if (!letters || word.length() < 3) return 0;
+        return word.length() < 6 ? 1 : 2;
+    }
+
+    // the word's prefix with up to maxDeletes characters deleted, itself included
+    static Set<String> deletesOf(String word, int maxDeletes) {
+        Set<String> res = new HashSet<>();
+        String prefix = word.length() > PREFIX ? word.substring(0, PREFIX) : word;
+        res.add(prefix);
+        List<String> level = List.of(prefix);
+        for (int d = 0; d < maxDeletes; d++) {
+            List<String> next = new ArrayList<>();
+            for (String s : level) {
+                for (int i = 0; i < s.length(); i++) {
+                    String v = s.substring(0, i) + s.substring(i + 1);
+                    if (res.add(v)) next.add(v);
+                }
+            }
+            level = next;
+        }
+        return res;
+    }
+
+    // 64-bit FNV-1a, finished with a murmur mix; never 0, which marks an empty table slot
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /** Optimal string alignment distance, or max + 1 once it is known to exceed max. */
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) return max + 1;
+        int[] prev2 = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                char cb = b.charAt(j - 1);
+                int d = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + (ca == cb ? 0 : 1));
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    d = Math.min(d, prev2[j - 2] + 1);
+                }
+                cur[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max) return max + 1;
+            int[] t = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = t;
+        }
+        return Math.min(prev[m], max + 1);
+    }
+
+    private static final class Term {
+        final int id;
+        final String text;
+        final IntList[] byLength = new IntList[MAX_LENGTH + 1]; // records, by length of the field holding the term
+        int live; // live postings: a book counts once per field containing the term
+
+        Term(int id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+
+        void add(int fieldLength, int record) {
+            int len = Math.min(fieldLength, MAX_LENGTH);
+            if (byLength[len] == null) byLength[len] = new IntList();
+            byLength[len].add(record);
+            live++;
+        }
+    }
+
+    /** One length bucket of a matching term, with the term's weight for each query word. */
+    private static final class Segment {
+        final int match;
+        final int bucket;
+        final IntList records;
+        final float[] weights;
+        final float norm;
+        final float priority;
+
+        Segment(int match, int bucket, IntList records, float[] weights) {
+            this.match = match;
+            this.bucket = bucket;
+            this.records = records;
+            this.weights = weights;
+            this.norm = NORM[bucket];
+            float sum = 0;
+            for (float w : weights) sum += w;
+            this.priority = sum * norm;
+        }
+    }
+
+    /** Bounded min-heap of the best slots seen, worst at the root; earlier slots win ties. */
+    private static final class TopK {
+        private final int[] slots;
+        private final float[] scores;
+        private int size;
+
+        TopK(int capacity) {
+            this.slots = new int[capacity];
+            this.scores = new float[capacity];
+        }
+
+        // true once no book scoring at most bound can get in
+        boolean reached(float bound) {
+            return size == slots.length && scores[0] >= bound;
+        }
+
+        void offer(int slot, float score) {
+            if (size < slots.length) {
+                slots[size] = slot;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (better(score, slot, scores[0], slots[0])) {
+                slots[0] = slot;
+                scores[0] = score;
+                siftDown();
+            }
+        }
+
+        int[] sorted() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> better(scores[a], slots[a], scores[b], slots[b]) ? -1
+                    : better(scores[b], slots[b], scores[a], slots[a]) ? 1 : 0);
+            int[] res = new int[size];
+            for (int i = 0; i < size; i++) res[i] = slots[order[i]];
+            return res;
+        }
+
+        private static boolean better(float score, int slot, float otherScore, int otherSlot) {
+            return score > otherScore || (score == otherScore && slot < otherSlot);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!better(scores[parent], slots[parent], scores[i], slots[i])) break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown() {
+            int i = 0;
+            while (true) {
+                int worst = i;
+                int l = 2 * i + 1;
+                int r = l + 1;
+                if (l < size && better(scores[worst], slots[worst], scores[l], slots[l])) worst = l;
+                if (r < size && better(scores[worst], slots[worst], scores[r], slots[r])) worst = r;
+                if (worst == i) return;
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int s = slots[i];
+            slots[i] = slots[j];
+            slots[j] = s;
+            float f = scores[i];
+            scores[i] = scores[j];
+            scores[j] = f;
+        }
+    }
+
+    private static final class Match {
+        final Term term;
+        final float weight;
+
+        Match(Term term, float weight) {
+            this.term = term;
+            this.weight = weight;
+        }
+    }
+
+    private static final class IntList {
+        int[] data = new int[2];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        void trim() {
+            if (size < data.length) data = Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * Multimap from delete hashes to term ids: open addressing with linear probing over parallel
+     * arrays, one slot per pair, so a hash's terms are the matching slots of its probe run.
+     */
+    private static final class DeleteTable {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(long key, int value) {
+            if (2 * (size + 1) > keys.length) grow();
+            int i = (int) key & (keys.length - 1);
+            while (keys[i] != 0) i = (i + 1) & (keys.length - 1);
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        void forEach(long key, IntConsumer action) {
+            for (int i = (int) key & (keys.length - 1); keys[i] != 0; i = (i + 1) & (keys.length - 1)) {
+                if (keys[i] == key) action.accept(values[i]);
+            }
+        }
+
+        void clear() {
+            keys = new long[1024];
+            values = new int[1024];
+            size = 0;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) add(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
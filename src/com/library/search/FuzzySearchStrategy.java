@@ -0,0 +1,41 @@
+// File: com/library/search/FuzzySearchStrategy.java
+package com.library.search;
+
+import com.library.model.Book;
+
+import java.util.List;
+
+/**
+ * Typo-tolerant title and author search served from a {@link FuzzyIndex}: "Desing Patterns" or
+ * "Blcoh" still find their books, best matches first, cut off at the result limit.
+ */
+public class FuzzySearchStrategy implements IndexedSearchStrategy {
+    public static final int DEFAULT_LIMIT = 20;
+
+    private final FuzzyIndex index;
+    private final int limit;
+
+    public FuzzySearchStrategy(FuzzyIndex index) {
+        this(index, DEFAULT_LIMIT);
+    }
+
+    public FuzzySearchStrategy(FuzzyIndex index, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Limit must be positive");
+        this.index = index;
+        this.limit = limit;
+    }
+
+    @Override
+    public List<Book> search(String query) {
+        if (index == null) throw new IllegalStateException("No fuzzy index attached");
+        return index.search(query, limit);
+    }
+
+    @Override
+    public List<Book> search(List<Book> books, String query) {
+        // same ranking as the index, over a throwaway index of the given books
+        FuzzyIndex scratch = new FuzzyIndex();
+        for (Book b : books) scratch.onBookAdded(b);
+        return scratch.search(query, limit);
+    }
+}
@@ -0,0 +1,14 @@
+// File: com/library/search/IndexedSearchStrategy.java
+package com.library.search;
+
+import com.library.model.Book;
+
+import java.util.List;
+
+/**
+ * A search strategy that answers queries from an index maintained by the inventory
+ * instead of scanning a copy of the catalog.
+ */
+public interface IndexedSearchStrategy extends SearchStrategy {
+    List<Book> search(String query);
+}
@@ -0,0 +1,83 @@
+// File: com/library/search/IsbnIndex.java
+package com.library.search;
+
+import com.library.model.Book;
+
+import java.util.*;
+
+/**
+ * Hash index from normalized ISBN keys to books. Keys are case-folded with hyphens and whitespace
+ * removed, and a valid ISBN-10 is keyed by its ISBN-13 form so both spellings find the same edition.
+ */
+public class IsbnIndex {
+    private final Map<String, List<Book>> byKey = new HashMap<>();
+
+    public synchronized void add(Book book) {
+        if (book == null) return;
+        List<Book> books = byKey.computeIfAbsent(normalize(book.getIsbn()), k -> new ArrayList<>(1));
+        if (!books.contains(book)) books.add(book);
+    }
+
+    public synchronized void addAll(Collection<Book> books) {
+        for (Book b : books) add(b);
+    }
+
+    public synchronized void remove(Book book) {
+        if (book == null) return;
+        String key = normalize(book.getIsbn());
+        List<Book> books = byKey.get(key);
+        if (books == null) return;
+        books.remove(book);
+        if (books.isEmpty()) byKey.remove(key);
+    }
+
+    public synchronized List<Book> lookup(String isbn) {
+        if (isbn == null) return List.of();
+        List<Book> books = byKey.get(normalize(isbn));
+        return books == null ? List.of() : new ArrayList<>(books);
+    }
+
+    public synchronized int size() {
+        return byKey.size();
+    }
+
+    public static String normalize(String isbn) {
+        if (isbn == null) return null;
+        StringBuilder sb = new StringBuilder(isbn.length());
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || Character.isWhitespace(c)) continue;
+            sb.append(Character.toUpperCase(c));
+        }
+        String key = sb.toString();
+        return isIsbn10(key) ? toIsbn13(key) : key;
+    }
+
+    private static boolean isIsbn10(String s) {
+        if (s.length() != 10) return false;
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            char c = s.charAt(i);
+            int d;
+            if (c >= '0' && c <= '9') {
+                d = c - '0';
+            } else if (c == 'X' && i == 9) {
+                d = 10;
+            } else {
+                return false;
+            }
+            sum += d * (10 - i);
+        }
+        return sum % 11 == 0;
+    }
+
+    private static String toIsbn13(String isbn10) {
+        String body = "978" + isbn10.substring(0, 9);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int d = body.charAt(i) - '0';
+            sum += (i % 2 == 0) ? d : d * 3;
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+}
@@ -6,14 +6,30 @@ import com.library.model.Book;
 import java.util.ArrayList;
 import java.util.List;
 
-public class IsbnSearchStrategy implements SearchStrategy {
+public class IsbnSearchStrategy implements IndexedSearchStrategy {
+    private final IsbnIndex index;
+
+    public IsbnSearchStrategy() {
+        this(null);
+    }
+
+    public IsbnSearchStrategy(IsbnIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public List<Book> search(String query) {
+        if (index == null) throw new IllegalStateException("No ISBN index attached");
+        return index.lookup(query);
+    }
+
     @Override
     public List<Book> search(List<Book> books, String query) {
         if (query == null) return List.of();
-        String q = query.trim();
+        String q = IsbnIndex.normalize(query);
         List<Book> res = new ArrayList<>();
         for (Book b : books) {
-            if (b.getIsbn().equalsIgnoreCase(q)) res.add(b);
+            if (IsbnIndex.normalize(b.getIsbn()).equals(q)) res.add(b);
         }
         return res;
     }
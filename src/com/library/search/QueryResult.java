@@ -0,0 +1,49 @@
+// File: com/library/search/QueryResult.java
+package com.library.search;
+
+import com.library.model.Book;
+
+import java.util.List;
+import java.util.Map;
+
+/** Answer to a {@link CatalogQuery}: the match count, the first matches, and the facet counts. */
+public final class QueryResult {
+    private final int total;
+    private final List<Book> books;
+    private final Map<Facet, Map<String, Integer>> facets;
+    private final String plan;
+
+    QueryResult(int total, List<Book> books, Map<Facet, Map<String, Integer>> facets, String plan) {
+        this.total = total;
+        this.books = books;
+        this.facets = facets;
+        this.plan = plan;
+    }
+
+    /** Number of books matching the query, regardless of the limit. */
+    public int getTotal() {
+        return total;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    /**
+     * Match counts per value of the facet, or an empty map if it was not requested. Authors are
+     * ordered by count (most frequent first), decades and statuses by value.
+     */
+    public Map<String, Integer> getFacet(Facet facet) {
+        return facets.getOrDefault(facet, Map.of());
+    }
+
+    /** The executed plan: the criteria in evaluation order with their estimated match counts. */
+    public String getPlan() {
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResult{total=" + total + ", books=" + books.size() + ", facets=" + facets + ", plan=" + plan + '}';
+    }
+}
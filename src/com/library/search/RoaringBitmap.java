@@ -0,0 +1,452 @@
+// File: com/library/search/RoaringBitmap.java
+package com.library.search;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints in the roaring layout: values are grouped by their high 16 bits,
+ * and each group is stored as a sorted char array while it has at most 4096 values, or as a 65536-bit
+ * bitmap once it is denser. Intersections and unions work group by group, picking the merge, probe
+ * or word-wise loop that suits the two containers, so their cost follows the compressed sizes rather
+ * than the value range.
+ *
+ * Not thread-safe; {@link FacetIndex} guards its bitmaps with its monitor.
+ */
+final class RoaringBitmap {
+    private static final int ARRAY_MAX = 4096;
+
+    private char[] keys = new char[2];
+    private Container[] containers = new Container[2];
+    private int size; // containers in use
+
+    void add(int value) {
+        char high = (char) (value >>> 16);
+        int i = find(high);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, high, new ArrayContainer(new char[4], 0));
+        }
+        containers[i] = containers[i].add((char) value);
+    }
+
+    void remove(int value) {
+        int i = find((char) (value >>> 16));
+        if (i < 0) return;
+        Container c = containers[i].remove((char) value);
+        if (c.cardinality() == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        } else {
+            containers[i] = c;
+        }
+    }
+
+    boolean contains(int value) {
+        int i = find((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    int cardinality() {
+        int n = 0;
+        for (int i = 0; i < size; i++) n += containers[i].cardinality();
+        return n;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** True when the containers hold more values on average than an array container may. */
+    boolean isDense() {
+        return cardinality() > size * ARRAY_MAX;
+    }
+
+    static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap res = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container c = a.containers[i].and(b.containers[j]);
+                if (c.cardinality() > 0) res.append(a.keys[i], c);
+                i++;
+                j++;
+            }
+        }
+        return res;
+    }
+
+    static int andCardinality(RoaringBitmap a, RoaringBitmap b) {
+        int n = 0;
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                n += a.containers[i].andCardinality(b.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return n;
+    }
+
+    static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap res = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                res.append(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i == a.size || a.keys[i] > b.keys[j]) {
+                res.append(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                res.append(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return res;
+    }
+
+    /** Passes every value to the action, in ascending order. */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) containers[i].forEach(keys[i] << 16, action);
+    }
+
+    /** The smallest limit values (or all of them, if fewer), in ascending order. */
+    int[] first(int limit) {
+        int[] res = new int[Math.min(limit, cardinality())];
+        int n = 0;
+        for (int i = 0; i < size && n < res.length; i++) n = containers[i].fill(keys[i] << 16, res, n);
+        return res;
+    }
+
+    private int find(char key) {
+        // appends are the common case: ids grow, so check the last container first
+        if (size > 0 && keys[size - 1] == key) return size - 1;
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int i, char key, Container c) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = c;
+        size++;
+    }
+
+    private void append(char key, Container c) {
+        insert(size, key, c);
+    }
+
+    private abstract static class Container {
+        abstract Container add(char v);
+
+        abstract Container remove(char v);
+
+        abstract boolean contains(char v);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container copy();
+
+        abstract void forEach(int high, IntConsumer action);
+
+        // writes values into out from pos until out is full; returns the new position
+        abstract int fill(int high, int[] out, int pos);
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int n;
+
+        ArrayContainer(char[] values, int n) {
+            this.values = values;
+            this.n = n;
+        }
+
+        @Override
+        Container add(char v) {
+            int i = n > 0 && values[n - 1] < v ? -n - 1 : Arrays.binarySearch(values, 0, n, v);
+            if (i >= 0) return this;
+            if (n == ARRAY_MAX) return toBitmap().add(v);
+            i = -i - 1;
+            if (n == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_MAX, n * 2));
+            System.arraycopy(values, i, values, i + 1, n - i);
+            values[i] = v;
+            n++;
+            return this;
+        }
+
+        @Override
+        Container remove(char v) {
+            int i = Arrays.binarySearch(values, 0, n, v);
+            if (i < 0) return this;
+            System.arraycopy(values, i + 1, values, i, n - i - 1);
+            n--;
+            return this;
+        }
+
+        @Override
+        boolean contains(char v) {
+            return Arrays.binarySearch(values, 0, n, v) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return n;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] res = new char[Math.min(n, other.cardinality())];
+            int k;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                k = intersect(values, n, o.values, o.n, res);
+            } else {
+                k = 0;
+                for (int i = 0; i < n; i++) {
+                    if (other.contains(values[i])) res[k++] = values[i];
+                }
+            }
+            return new ArrayContainer(res, k);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                return intersect(values, n, o.values, o.n, null);
+            }
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                if (other.contains(values[i])) k++;
+            }
+            return k;
+        }
+
+        // common values of two sorted arrays, written to out unless it is null; returns their count
+        private static int intersect(char[] a, int na, char[] b, int nb, char[] out) {
+            if (na * 32 < nb) return gallop(a, na, b, nb, out);
+            if (nb * 32 < na) return gallop(b, nb, a, na, out);
+            int i = 0, j = 0, k = 0;
+            while (i < na && j < nb) {
+                if (a[i] < b[j]) i++;
+                else if (a[i] > b[j]) j++;
+                else {
+                    if (out != null) out[k] = a[i];
+                    k++;
+                    i++;
+                    j++;
+                }
+            }
+            return k;
+        }
+
+        // for very unequal sizes: exponential then binary search of each small value in the large array
+        private static int gallop(char[] small, int ns, char[] large, int nl, char[] out) {
+            int k = 0, lo = 0;
+            for (int i = 0; i < ns && lo < nl; i++) {
+                char v = small[i];
+                int hi = lo;
+                for (int step = 1; hi < nl && large[hi] < v; step <<= 1) {
+                    lo = hi + 1;
+                    hi += step;
+                }
+                int pos = Arrays.binarySearch(large, lo, Math.min(hi + 1, nl), v);
+                if (pos >= 0) {
+                    if (out != null) out[k] = v;
+                    k++;
+                    lo = pos + 1;
+                } else {
+                    lo = -pos - 1;
+                }
+            }
+            return k;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) return other.or(this);
+            ArrayContainer o = (ArrayContainer) other;
+            if (n + o.n > ARRAY_MAX) {
+                BitmapContainer b = toBitmap();
+                for (int j = 0; j < o.n; j++) b.set(o.values[j]);
+                return b.shrink();
+            }
+            char[] res = new char[n + o.n];
+            int i = 0, j = 0, k = 0;
+            while (i < n || j < o.n) {
+                if (j == o.n || (i < n && values[i] < o.values[j])) res[k++] = values[i++];
+                else if (i == n || values[i] > o.values[j]) res[k++] = o.values[j++];
+                else {
+                    res[k++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(res, k);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, n), n);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < n; i++) action.accept(high | values[i]);
+        }
+
+        @Override
+        int fill(int high, int[] out, int pos) {
+            for (int i = 0; i < n && pos < out.length; i++) out[pos++] = high | values[i];
+            return pos;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer b = new BitmapContainer(new long[1024], 0);
+            for (int i = 0; i < n; i++) b.set(values[i]);
+            return b;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        void set(char v) {
+            long before = words[v >>> 6];
+            long after = before | (1L << v);
+            words[v >>> 6] = after;
+            if (after != before) cardinality++;
+        }
+
+        @Override
+        Container add(char v) {
+            set(v);
+            return this;
+        }
+
+        @Override
+        Container remove(char v) {
+            long before = words[v >>> 6];
+            long after = before & ~(1L << v);
+            if (after == before) return this;
+            words[v >>> 6] = after;
+            cardinality--;
+            return shrink();
+        }
+
+        @Override
+        boolean contains(char v) {
+            return (words[v >>> 6] & (1L << v)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            long[] o = ((BitmapContainer) other).words;
+            long[] res = new long[1024];
+            int card = 0;
+            for (int i = 0; i < 1024; i++) {
+                res[i] = words[i] & o[i];
+                card += Long.bitCount(res[i]);
+            }
+            return new BitmapContainer(res, card).shrink();
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) return other.andCardinality(this);
+            long[] o = ((BitmapContainer) other).words;
+            int card = 0;
+            for (int i = 0; i < 1024; i++) card += Long.bitCount(words[i] & o[i]);
+            return card;
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer res = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                for (int i = 0; i < o.n; i++) res.set(o.values[i]);
+            } else {
+                long[] o = ((BitmapContainer) other).words;
+                int card = 0;
+                for (int i = 0; i < 1024; i++) {
+                    res.words[i] |= o[i];
+                    card += Long.bitCount(res.words[i]);
+                }
+                res.cardinality = card;
+            }
+            return res;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < 1024; i++) {
+                for (long w = words[i]; w != 0; w &= w - 1) {
+                    action.accept(high | (i << 6) | Long.numberOfTrailingZeros(w));
+                }
+            }
+        }
+
+        @Override
+        int fill(int high, int[] out, int pos) {
+            for (int i = 0; i < 1024 && pos < out.length; i++) {
+                for (long w = words[i]; w != 0 && pos < out.length; w &= w - 1) {
+                    out[pos++] = high | (i << 6) | Long.numberOfTrailingZeros(w);
+                }
+            }
+            return pos;
+        }
+
+        // a container this sparse is smaller as an array
+        Container shrink() {
+            if (cardinality > ARRAY_MAX) return this;
+            char[] values = new char[cardinality];
+            int k = 0;
+            for (int i = 0; i < 1024; i++) {
+                for (long w = words[i]; w != 0; w &= w - 1) {
+                    values[k++] = (char) ((i << 6) | Long.numberOfTrailingZeros(w));
+                }
+            }
+            return new ArrayContainer(values, k);
+        }
+    }
+}
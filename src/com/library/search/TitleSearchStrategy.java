@@ -6,7 +6,23 @@ import com.library.model.Book;
 import java.util.ArrayList;
 import java.util.List;
 
-public class TitleSearchStrategy implements SearchStrategy {
+public class TitleSearchStrategy implements IndexedSearchStrategy {
+    private final TokenIndex index;
+
+    public TitleSearchStrategy() {
+        this(null);
+    }
+
+    public TitleSearchStrategy(TokenIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public List<Book> search(String query) {
+        if (index == null) throw new IllegalStateException("No title index attached");
+        return index.search(query);
+    }
+
     @Override
     public List<Book> search(List<Book> books, String query) {
         if (query == null) return List.of();
@@ -0,0 +1,289 @@
+// File: com/library/search/TokenIndex.java
+package com.library.search;
+
+import com.library.model.Book;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Inverted index from the lower-cased word tokens of one book field (title, author) to the books
+ * containing them. Lookups keep the substring semantics of the scanning strategies: the index only
+ * narrows the candidates, which are then verified with {@code contains}.
+ *
+ * A run that can sit anywhere inside a token is looked up in the vocabulary's own gram index (every
+ * substring of up to three characters of every token), so no search walks the whole vocabulary.
+ * Searches share a read lock; only changes to the index exclude them.
+ */
+public class TokenIndex {
+    private final Function<Book, String> field;
+
+    private final NavigableMap<String, Posting> tokens = new TreeMap<>();
+    private final NavigableMap<String, Posting> reversedTokens = new TreeMap<>(); // for suffix lookups
+    private final Map<Book, Posting[]> bookPostings = new LinkedHashMap<>();
+    private final Map<String, Set<Posting>> grams = new HashMap<>(); // token substrings of 1-3 chars
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public TokenIndex(Function<Book, String> field) {
+        this.field = field;
+    }
+
+    public void add(Book book) {
+        lock.writeLock().lock();
+        try {
+            addLocked(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addLocked(Book book) {
+        if (book == null || bookPostings.containsKey(book)) return;
+        List<String> toks = tokenize(lower(field.apply(book)));
+        Posting[] postings = new Posting[toks.size()];
+        for (int i = 0; i < toks.size(); i++) {
+            String t = toks.get(i);
+            Posting p = tokens.get(t);
+            if (p == null) p = newPosting(t);
+            p.books.add(book);
+            postings[i] = p;
+        }
+        bookPostings.put(book, postings);
+    }
+
+    /**
+     * Adds many books under one lock. Each distinct token of the batch is looked up in (or added to)
+     * the token trees once, however many of the books contain it.
+     */
+    public void addAll(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            addAllLocked(books);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addAllLocked(Collection<Book> books) {
+        Map<String, Posting> batchTokens = new HashMap<>();
+        for (Book book : books) {
+            if (book == null || bookPostings.containsKey(book)) continue;
+            List<String> toks = tokenize(lower(field.apply(book)));
+            Posting[] postings = new Posting[toks.size()];
+            for (int i = 0; i < toks.size(); i++) {
+                String t = toks.get(i);
+                Posting p = batchTokens.get(t);
+                if (p == null) {
+                    p = tokens.get(t);
+                    if (p == null) p = newPosting(t);
+                    batchTokens.put(t, p);
+                }
+                p.books.add(book);
+                postings[i] = p;
+            }
+            bookPostings.put(book, postings);
+        }
+    }
+
+    public void remove(Book book) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(Book book) {
+        Posting[] postings = bookPostings.remove(book);
+        if (postings == null) return;
+        for (Posting p : postings) {
+            p.books.remove(book);
+            if (p.books.isEmpty()) dropPosting(p);
+        }
+    }
+
+    /** Re-reads the indexed field after the book was edited in place. */
+    public void reindex(Book book) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(book);
+            addLocked(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Book> search(String query) {
+        if (query == null) return List.of();
+        String q = query.toLowerCase().trim();
+        List<Book> res = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Book b : candidates(q)) {
+                String value = field.apply(b);
+                if (value != null && value.toLowerCase().contains(q)) {
+                    res.add(b);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return res;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return bookPostings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int tokenCount() {
+        lock.readLock().lock();
+        try {
+            return tokens.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Posting newPosting(String token) {
+        Posting p = new Posting(token);
+        tokens.put(token, p);
+        reversedTokens.put(reverse(token), p);
+        for (String g : grams(token)) {
+            grams.computeIfAbsent(g, k -> new HashSet<>()).add(p);
+        }
+        return p;
+    }
+
+    private void dropPosting(Posting p) {
+        tokens.remove(p.token);
+        reversedTokens.remove(reverse(p.token));
+        for (String g : grams(p.token)) {
+            Set<Posting> withGram = grams.get(g);
+            withGram.remove(p);
+            if (withGram.isEmpty()) grams.remove(g);
+        }
+    }
+
+    // Postings whose token contains the run. A run of up to three characters is a gram itself; a
+    // longer one is checked against the tokens sharing its rarest trigram.
+    private List<Posting> tokensContaining(String run) {
+        if (run.length() <= 3) {
+            Set<Posting> withGram = grams.get(run);
+            return withGram == null ? new ArrayList<>() : new ArrayList<>(withGram);
+        }
+        Set<Posting> rarest = null;
+        for (int i = 0; i + 3 <= run.length(); i++) {
+            Set<Posting> withGram = grams.get(run.substring(i, i + 3));
+            if (withGram == null) return new ArrayList<>();
+            if (rarest == null || withGram.size() < rarest.size()) rarest = withGram;
+        }
+        List<Posting> res = new ArrayList<>();
+        for (Posting p : rarest) {
+            if (p.token.contains(run)) res.add(p);
+        }
+        return res;
+    }
+
+    // Picks the most selective token run of the query. A run with a separator on both sides must be
+    // a whole token of the field; one bounded only on the left is a token prefix, only on the right a
+    // token suffix; an unbounded run can sit anywhere inside a token.
+    private Collection<Book> candidates(String q) {
+        String best = null;
+        int bestRank = -1;
+        boolean left = false, right = false;
+        int i = 0;
+        while (i < q.length()) {
+            if (!Character.isLetterOrDigit(q.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < q.length() && Character.isLetterOrDigit(q.charAt(i))) i++;
+            boolean l = start > 0;
+            boolean r = i < q.length();
+            int rank = (l && r ? 3 : (l || r ? 2 : 1)) * 1024 + Math.min(i - start, 1023);
+            if (rank > bestRank) {
+                bestRank = rank;
+                best = q.substring(start, i);
+                left = l;
+                right = r;
+            }
+        }
+        if (best == null) {
+            // nothing to look up (empty or punctuation-only query) - verify every book
+            return bookPostings.keySet();
+        }
+        if (left && right) {
+            Posting p = tokens.get(best);
+            return p == null ? List.of() : p.books;
+        }
+        Set<Book> res = new LinkedHashSet<>();
+        if (left) {
+            for (Posting p : tokens.subMap(best, true, best + Character.MAX_VALUE, true).values()) {
+                res.addAll(p.books);
+            }
+        } else if (right) {
+            String rev = reverse(best);
+            for (Posting p : reversedTokens.subMap(rev, true, rev + Character.MAX_VALUE, true).values()) {
+                res.addAll(p.books);
+            }
+        } else {
+            List<Posting> matched = tokensContaining(best);
+            matched.sort(Comparator.comparing(p -> p.token)); // token order, as the prefix case gives
+            for (Posting p : matched) res.addAll(p.books);
+        }
+        return res;
+    }
+
+    /** Distinct runs of letters and digits, in order of first appearance. */
+    public static List<String> tokenize(String s) {
+        if (s == null || s.isEmpty()) return List.of();
+        List<String> res = new ArrayList<>();
+        int i = 0;
+        while (i < s.length()) {
+            if (!Character.isLetterOrDigit(s.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < s.length() && Character.isLetterOrDigit(s.charAt(i))) i++;
+            String t = s.substring(start, i);
+            if (!res.contains(t)) res.add(t);
+        }
+        return res;
+    }
+
+    // distinct substrings of one to three characters
+    private static Set<String> grams(String token) {
+        Set<String> res = new HashSet<>();
+        for (int len = 1; len <= 3; len++) {
+            for (int i = 0; i + len <= token.length(); i++) res.add(token.substring(i, i + len));
+        }
+        return res;
+    }
+
+    private static String lower(String s) {
+        return s == null ? null : s.toLowerCase();
+    }
+
+    private static String reverse(String s) {
+        return new StringBuilder(s).reverse().toString();
+    }
+
+    private static final class Posting {
+        final String token;
+        final Set<Book> books = new LinkedHashSet<>(2); // most tokens occur in few books; grows as needed
+
+        Posting(String token) {
+            this.token = token;
+        }
+    }
+}
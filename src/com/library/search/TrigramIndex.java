@@ -0,0 +1,278 @@
+// File: com/library/search/TrigramIndex.java
+package com.library.search;
+
+import com.library.model.Book;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Trigram index over the lower-cased value of one book field. A substring query is answered by
+ * intersecting the posting lists of its trigrams and verifying only the surviving books, so the
+ * cost follows the size of the smallest posting list rather than the size of the catalog.
+ *
+ * Books get a slot number in insertion order, which keeps every posting list sorted on append.
+ * Removed books leave a dead slot behind; the index is rebuilt once dead slots outnumber live ones.
+ */
+public class TrigramIndex {
+    private static final int MIN_COMPACT_SLOTS = 1024;
+
+    private final Function<Book, String> field;
+
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private final Map<Book, Integer> slotOf = new HashMap<>();
+    private final Set<Book> shortValues = new LinkedHashSet<>(); // values shorter than one trigram
+    private Book[] slots = new Book[64];
+    private int nextSlot;
+    private int deadSlots;
+
+    public TrigramIndex(Function<Book, String> field) {
+        this.field = field;
+    }
+
+    public synchronized void add(Book book) {
+        if (book == null || slotOf.containsKey(book)) return;
+        if (nextSlot == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+        }
+        int slot = nextSlot++;
+        slots[slot] = book;
+        slotOf.put(book, slot);
+        String value = lower(field.apply(book));
+        if (value.length() < 3) {
+            shortValues.add(book);
+            return;
+        }
+        for (long gram : trigrams(value)) {
+            postings.computeIfAbsent(gram, k -> new IntList()).add(slot);
+        }
+    }
+
+    /** Adds many books under one lock, growing the slot table once. */
+    public synchronized void addAll(Collection<Book> books) {
+        int needed = nextSlot + books.size();
+        if (needed > slots.length) slots = Arrays.copyOf(slots, Math.max(needed, slots.length * 2));
+        for (Book b : books) add(b);
+    }
+
+    public synchronized void remove(Book book) {
+        Integer slot = slotOf.remove(book);
+        if (slot == null) return;
+        slots[slot] = null;
+        shortValues.remove(book);
+        deadSlots++;
+        if (deadSlots >= MIN_COMPACT_SLOTS && deadSlots > slotOf.size()) {
+            compact();
+        }
+    }
+
+    /** Re-reads the indexed field after the book was edited in place. */
+    public synchronized void reindex(Book book) {
+        remove(book);
+        add(book);
+    }
+
+    public synchronized List<Book> search(String query) {
+        if (query == null) return List.of();
+        String q = query.toLowerCase().trim();
+        List<Book> res = new ArrayList<>();
+        if (q.length() < 3) {
+            BitSet candidates = new BitSet(nextSlot);
+            for (Map.Entry<Long, IntList> e : postings.entrySet()) {
+                if (gramContains(e.getKey(), q)) {
+                    IntList l = e.getValue();
+                    for (int i = 0; i < l.size; i++) candidates.set(l.data[i]);
+                }
+            }
+            for (int s = candidates.nextSetBit(0); s >= 0; s = candidates.nextSetBit(s + 1)) {
+                verify(slots[s], q, res);
+            }
+            for (Book b : shortValues) verify(b, q, res);
+            return res;
+        }
+
+        long[] grams = trigrams(q);
+        IntList[] lists = new IntList[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) return res;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(l -> l.size));
+
+        int[] survivors = Arrays.copyOf(lists[0].data, lists[0].size);
+        int count = survivors.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            count = intersect(survivors, count, lists[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            verify(slots[survivors[i]], q, res);
+        }
+        return res;
+    }
+
+    public synchronized int size() {
+        return slotOf.size();
+    }
+
+    public synchronized MemoryReport memoryReport() {
+        long entries = 0;
+        long capacity = 0;
+        for (IntList l : postings.values()) {
+            entries += l.size;
+            capacity += l.data.length;
+        }
+        // rough 64-bit compressed-oops sizes: HashMap node 32, Long 16, IntList 24 + array header 16
+        long postingBytes = postings.size() * (32L + 16 + 24 + 16) + capacity * 4;
+        long slotBytes = 16 + slots.length * 4L + slotOf.size() * (32L + 16) + shortValues.size() * 48L;
+        return new MemoryReport(slotOf.size(), deadSlots, postings.size(), entries, capacity,
+                postingBytes + slotBytes);
+    }
+
+    private void verify(Book b, String q, List<Book> res) {
+        if (b == null) return; // dead slot
+        String value = field.apply(b);
+        if (value != null && value.toLowerCase().contains(q)) {
+            res.add(b);
+        }
+    }
+
+    // Intersects the first count entries of acc with the sorted list in place, galloping through
+    // the longer list. Returns the new number of entries.
+    private static int intersect(int[] acc, int count, IntList other) {
+        int out = 0;
+        int lo = 0;
+        for (int i = 0; i < count && lo < other.size; i++) {
+            int v = acc[i];
+            int step = 1;
+            int hi = lo;
+            while (hi < other.size && other.data[hi] < v) {
+                lo = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            int pos = Arrays.binarySearch(other.data, lo, Math.min(hi + 1, other.size), v);
+            if (pos >= 0) {
+                acc[out++] = v;
+                lo = pos + 1;
+            } else {
+                lo = -pos - 1;
+            }
+        }
+        return out;
+    }
+
+    private void compact() {
+        Book[] live = new Book[slotOf.size()];
+        int n = 0;
+        for (int s = 0; s < nextSlot; s++) {
+            if (slots[s] != null) live[n++] = slots[s];
+        }
+        postings.clear();
+        slotOf.clear();
+        shortValues.clear();
+        slots = new Book[Math.max(64, n * 2)];
+        nextSlot = 0;
+        deadSlots = 0;
+        for (Book b : live) add(b);
+        for (IntList l : postings.values()) l.trim();
+    }
+
+    // distinct trigrams of s, in ascending order
+    private static long[] trigrams(String s) {
+        int n = Math.max(0, s.length() - 2);
+        long[] grams = new long[n];
+        for (int i = 0; i < n; i++) {
+            grams[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || grams[i] != grams[distinct - 1]) grams[distinct++] = grams[i];
+        }
+        return distinct == n ? grams : Arrays.copyOf(grams, distinct);
+    }
+
+    // whether a query of up to two chars occurs in the packed trigram, without decoding it to a String
+    private static boolean gramContains(long gram, String q) {
+        char a = (char) (gram >>> 32), b = (char) (gram >>> 16), c = (char) gram;
+        if (q.isEmpty()) return true;
+        char x = q.charAt(0);
+        if (q.length() == 1) return a == x || b == x || c == x;
+        char y = q.charAt(1);
+        return (a == x && b == y) || (b == x && c == y);
+    }
+
+    private static String lower(String s) {
+        return s == null ? "" : s.toLowerCase();
+    }
+
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        void trim() {
+            if (size < data.length) data = Arrays.copyOf(data, size);
+        }
+    }
+
+    public static final class MemoryReport {
+        private final int documents;
+        private final int deadSlots;
+        private final int distinctTrigrams;
+        private final long postingEntries;
+        private final long postingCapacity;
+        private final long estimatedBytes;
+
+        MemoryReport(int documents, int deadSlots, int distinctTrigrams,
+                     long postingEntries, long postingCapacity, long estimatedBytes) {
+            this.documents = documents;
+            this.deadSlots = deadSlots;
+            this.distinctTrigrams = distinctTrigrams;
+            this.postingEntries = postingEntries;
+            this.postingCapacity = postingCapacity;
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        public int getDocuments() {
+            return documents;
+        }
+
+        public int getDeadSlots() {
+            return deadSlots;
+        }
+
+        public int getDistinctTrigrams() {
+            return distinctTrigrams;
+        }
+
+        public long getPostingEntries() {
+            return postingEntries;
+        }
+
+        public long getPostingCapacity() {
+            return postingCapacity;
+        }
+
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "MemoryReport{" +
+                    "documents=" + documents +
+                    ", deadSlots=" + deadSlots +
+                    ", distinctTrigrams=" + distinctTrigrams +
+                    ", postingEntries=" + postingEntries +
+                    ", postingCapacity=" + postingCapacity +
+                    ", estimatedBytes=" + estimatedBytes +
+                    ", bytesPerDocument=" + (documents == 0 ? 0 : estimatedBytes / documents) +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,29 @@
+// File: com/library/search/TrigramSearchStrategy.java
+package com.library.search;
+
+import com.library.model.Book;
+
+import java.util.List;
+
+/**
+ * Title substring search served from a {@link TrigramIndex}; handles infix queries such as "ode"
+ * without touching books that cannot match.
+ */
+public class TrigramSearchStrategy implements IndexedSearchStrategy {
+    private final TrigramIndex index;
+
+    public TrigramSearchStrategy(TrigramIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public List<Book> search(String query) {
+        return index.search(query);
+    }
+
+    @Override
+    public List<Book> search(List<Book> books, String query) {
+        // same semantics as the title scan
+        return new TitleSearchStrategy().search(books, query);
+    }
+}
@@ -0,0 +1,240 @@
+// File: com/library/server/LibraryServer.java
+package com.library.server;
+
+import com.library.Library;
+import com.library.LibraryService;
+import com.library.model.Book;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Line-protocol front end for desk and kiosk clients, one virtual thread per connection. Requests
+ * are single UTF-8 lines; every request gets exactly one response, in request order:
+ *
+ * <pre>
+ * CHECKOUT isbn patronId        -> OK true|false
+ * RETURN isbn patronId          -> OK true|false
+ * RESERVE isbn patronId         -> OK true|false (false: already waiting)
+ * CANCEL isbn patronId          -> OK true|false
+ * POSITION isbn patronId        -> OK n (1-based place in the waitlist, 0: not waiting)
+ * SEARCH kind query...          -> OK n, then n lines "isbn TAB title TAB author TAB year TAB status"
+ *                                  (kind: title, author, isbn, or a strategy name for searchGeneric)
+ * RECOMMEND patronId limit      -> OK n, then n book lines as for SEARCH
+ * PING                          -> OK PONG
+ * QUIT                          -> closes the connection
+ * </pre>
+ *
+ * Failures answer "ERR message". Clients may pipeline: send several requests before reading. Responses
+ * are flushed only once no further request is already buffered, so a pipelined burst is answered with
+ * few writes.
+ */
+public class LibraryServer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(LibraryServer.class.getName());
+
+    private final LibraryService library;
+    private final ServerSocket server;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private Thread acceptor; // null until started
+    private volatile boolean closed;
+
+    public LibraryServer(LibraryService library, int port) throws IOException {
+        this(library, InetAddress.getLoopbackAddress(), port);
+    }
+
+    /** Listens on the given address instead of loopback, e.g. the wildcard address for remote desks. */
+    public LibraryServer(LibraryService library, InetAddress address, int port) throws IOException {
+        this.library = library;
+        this.server = new ServerSocket(port, 1024, address);
+    }
+
+    /**
+     * Starts accepting connections; until then clients queue in the listen backlog. Returns this
+     * server, so it can be created and started in one expression.
+     */
+    public synchronized LibraryServer start() {
+        if (acceptor != null) throw new IllegalStateException("Server already started");
+        if (closed) throw new IllegalStateException("Server is closed");
+        acceptor = Thread.ofPlatform().daemon().name("library-server-acceptor").start(this::accept);
+        return this;
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket s = server.accept();
+                s.setTcpNoDelay(true);
+                connections.execute(() -> serve(s));
+            } catch (IOException e) {
+                if (!closed) LOGGER.log(Level.WARNING, "Accept failed: {0}", e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), 1 << 14)) {
+            StringBuilder response = new StringBuilder(256);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.equals("QUIT")) break;
+                response.setLength(0);
+                handle(line, response);
+                out.append(response);
+                if (!in.ready()) out.flush();
+            }
+            out.flush();
+        } catch (SocketException e) {
+            // client went away
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Connection failed: {0}", e.getMessage());
+        }
+    }
+
+    void handle(String line, StringBuilder res) {
+        try {
+            int sp = line.indexOf(' ');
+            String command = (sp < 0 ? line : line.substring(0, sp)).toUpperCase(Locale.ROOT);
+            String rest = sp < 0 ? "" : line.substring(sp + 1);
+            switch (command) {
+                case "CHECKOUT": {
+                    String[] a = args(rest, 2);
+                    res.append("OK ").append(library.checkout(a[0], parseInt(a[1]))).append('\n');
+                    break;
+                }
+                case "RETURN": {
+                    String[] a = args(rest, 2);
+                    res.append("OK ").append(library.returnBook(a[0], parseInt(a[1]))).append('\n');
+                    break;
+                }
+                case "RESERVE": {
+                    String[] a = args(rest, 2);
+                    res.append("OK ").append(library.reserve(a[0], parseInt(a[1]))).append('\n');
+                    break;
+                }
+                case "CANCEL": {
+                    String[] a = args(rest, 2);
+                    res.append("OK ").append(library.cancelReservation(a[0], parseInt(a[1]))).append('\n');
+                    break;
+                }
+                case "POSITION": {
+                    String[] a = args(rest, 2);
+                    res.append("OK ").append(library.reservationPosition(a[0], parseInt(a[1]))).append('\n');
+                    break;
+                }
+                case "SEARCH": {
+                    int q = rest.indexOf(' ');
+                    String kind = q < 0 ? rest : rest.substring(0, q);
+                    String query = q < 0 ? "" : rest.substring(q + 1);
+                    books(res, search(kind, query));
+                    break;
+                }
+                case "RECOMMEND": {
+                    String[] a = args(rest, 2);
+                    books(res, library.recommendForPatron(parseInt(a[0]), parseInt(a[1])));
+                    break;
+                }
+                case "PING":
+                    res.append("OK PONG\n");
+                    break;
+                default:
+                    res.append("ERR unknown command ").append(clean(command)).append('\n');
+            }
+        } catch (IllegalArgumentException | IllegalStateException | UncheckedIOException e) {
+            res.setLength(0);
+            res.append("ERR ").append(clean(String.valueOf(e.getMessage()))).append('\n');
+        }
+    }
+
+    private List<Book> search(String kind, String query) {
+        switch (kind.toLowerCase(Locale.ROOT)) {
+            case "title":
+                return library.searchTitle(query);
+            case "author":
+                return library.searchAuthor(query);
+            case "isbn":
+                return library.searchIsbn(query);
+            default:
+                return library.searchGeneric(kind, query);
+        }
+    }
+
+    private static void books(StringBuilder res, List<Book> books) {
+        res.append("OK ").append(books.size()).append('\n');
+        for (Book b : books) {
+            res.append(clean(b.getIsbn())).append('\t')
+                    .append(clean(b.getTitle())).append('\t')
+                    .append(clean(b.getAuthor())).append('\t')
+                    .append(b.getPublicationYear()).append('\t')
+                    .append(b.getStatus()).append('\n');
+        }
+    }
+
+    private static String[] args(String rest, int n) {
+        String[] a = rest.trim().split(" +");
+        if (a.length != n || a[0].isEmpty()) throw new IllegalArgumentException("expected " + n + " arguments");
+        return a;
+    }
+
+    private static int parseInt(String s) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + s);
+        }
+    }
+
+    // fields and messages must not break the line/tab framing
+    private static String clean(String s) {
+        if (s == null) return "";
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\t' || c == '\n' || c == '\r') return s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        }
+        return s;
+    }
+
+    /** Stops accepting, and closes open connections once their current request is answered. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        connections.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: LibraryServer <port> [dataDir]");
+            System.exit(2);
+        }
+        Library library = args.length > 1
+                ? Library.openDurable(Path.of(args[1]), false, Duration.ofMinutes(5))
+                : new Library();
+        try (LibraryServer server = new LibraryServer(library, Integer.parseInt(args[0])).start()) {
+            System.out.println("LISTENING " + server.getPort());
+            System.out.flush();
+            while (System.in.read() >= 0) {
+                // keep serving until stdin closes
+            }
+        } finally {
+            library.close();
+        }
+    }
+}
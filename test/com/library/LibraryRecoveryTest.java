@@ -0,0 +1,170 @@
+// File: com/library/LibraryRecoveryTest.java
+package com.library;
+
+import com.library.inventory.Hold;
+import com.library.model.Book;
+import com.library.model.BookStatus;
+import com.library.model.Patron;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryRecoveryTest {
+    private static final String ONE_COPY = "978-0134685991";
+    private static final String THREE_COPIES = "978-0321125217";
+
+    @TempDir
+    Path dir;
+
+    private int reader, waiting, other;
+
+    @Test
+    void recoversFromTheLogAlone() throws IOException {
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            circulate(lib);
+        }
+        assertTrue(files("snapshot-").isEmpty());
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            assertCirculated(lib);
+        }
+    }
+
+    @Test
+    void recoversFromASnapshotPlusTheLogAfterIt() throws IOException {
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            circulate(lib);
+            lib.checkpoint();
+            lib.updateBook(THREE_COPIES, "Domain-Driven Design", "Eric Evans", 2004);
+        }
+        assertEquals(1, files("snapshot-").size());
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            assertCirculated(lib);
+            assertEquals("Domain-Driven Design", book(lib, THREE_COPIES).getTitle());
+            assertEquals(List.of(THREE_COPIES), lib.searchTitle("domain").stream().map(Book::getIsbn).toList());
+        }
+    }
+
+    @Test
+    void changesAfterRecoveryAreLoggedToo() throws IOException {
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            circulate(lib);
+        }
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            assertTrue(lib.cancelReservation(ONE_COPY, waiting));
+            lib.checkpoint();
+            assertTrue(lib.returnBook(ONE_COPY, reader));
+        }
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            assertEquals(BookStatus.AVAILABLE, book(lib, ONE_COPY).getStatus());
+            assertEquals(0, lib.reservationPosition(ONE_COPY, waiting));
+            for (Patron.BorrowRecord r : lib.getPatron(reader).orElseThrow().getBorrowHistory()) {
+                assertNotNull(r.getReturnAt());
+            }
+        }
+    }
+
+    @Test
+    void recoversCopiesHeldForWaitingPatrons() throws IOException {
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            circulate(lib);
+            assertTrue(lib.returnBook(ONE_COPY, reader)); // goes on hold for the waiting patron
+        }
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            assertHeld(lib);
+            lib.checkpoint();
+        }
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            assertHeld(lib);
+            // the held copy is not on the shelf for anyone else, but the waiting patron can collect it
+            assertFalse(lib.checkout(ONE_COPY, other));
+            assertTrue(lib.cancelReservation(ONE_COPY, other));
+            assertTrue(lib.checkout(ONE_COPY, waiting));
+            assertTrue(lib.listHolds().isEmpty());
+            assertEquals(BookStatus.BORROWED, book(lib, ONE_COPY).getStatus());
+        }
+    }
+
+    @Test
+    void tornLogTailLosesOnlyTheLastChange() throws IOException {
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            circulate(lib);
+            lib.updateBook(THREE_COPIES, "Lost Title", "Nobody", 1999);
+        }
+        List<Path> logs = files("wal-");
+        Path last = logs.get(logs.size() - 1);
+        try (FileChannel ch = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 2);
+        }
+        try (Library lib = Library.openDurable(dir, true, null)) {
+            assertCirculated(lib);
+            assertEquals("Analysis Patterns", book(lib, THREE_COPIES).getTitle());
+        }
+    }
+
+    // the only copy out with a patron waiting for it; one of three copies out, another borrowed and back
+    private void circulate(Library lib) {
+        lib.addBook(ONE_COPY, "Effective Java", "Joshua Bloch", 2018, 1);
+        lib.addBook(THREE_COPIES, "Analysis Patterns", "Martin Fowler", 1996, 3);
+        reader = lib.addPatron("Reader", "reader@example.com").getId();
+        waiting = lib.addPatron("Waiting", "waiting@example.com").getId();
+        other = lib.addPatron("Other", "other@example.com").getId();
+        assertTrue(lib.checkout(ONE_COPY, reader));
+        assertFalse(lib.checkout(ONE_COPY, waiting)); // reserves instead
+        assertTrue(lib.checkout(THREE_COPIES, other));
+        assertTrue(lib.checkout(THREE_COPIES, reader));
+        assertTrue(lib.returnBook(THREE_COPIES, reader));
+    }
+
+    private void assertCirculated(Library lib) {
+        assertEquals(3, lib.listPatrons().size());
+        assertEquals("Waiting", lib.getPatron(waiting).orElseThrow().getName());
+
+        assertEquals(BookStatus.BORROWED, book(lib, ONE_COPY).getStatus());
+        assertEquals(1, lib.reservationPosition(ONE_COPY, waiting));
+
+        List<Patron.BorrowRecord> readerHistory = lib.getPatron(reader).orElseThrow().getBorrowHistory();
+        assertEquals(2, readerHistory.size());
+        assertEquals(ONE_COPY, readerHistory.get(0).getIsbn());
+        assertNull(readerHistory.get(0).getReturnAt());
+        assertEquals(THREE_COPIES, readerHistory.get(1).getIsbn());
+        assertNotNull(readerHistory.get(1).getReturnAt());
+        assertEquals(List.of(THREE_COPIES), List.copyOf(lib.getPatron(other).orElseThrow().getCurrentBorrowedIsbns()));
+
+        // the queue carries on behind the recovered reservation, and two of the three copies are in
+        assertFalse(lib.checkout(ONE_COPY, other));
+        assertEquals(2, lib.reservationPosition(ONE_COPY, other));
+        assertTrue(lib.checkout(THREE_COPIES, reader));
+        assertTrue(lib.checkout(THREE_COPIES, waiting));
+        assertFalse(lib.checkout(THREE_COPIES, lib.addPatron("Late", "late@example.com").getId()));
+    }
+
+    private void assertHeld(Library lib) {
+        List<Hold> holds = lib.listHolds();
+        assertEquals(1, holds.size());
+        assertEquals(ONE_COPY, holds.get(0).getIsbn());
+        assertEquals(waiting, holds.get(0).getPatron().getId());
+        assertEquals(BookStatus.RESERVED, book(lib, ONE_COPY).getStatus());
+        assertEquals(0, lib.reservationPosition(ONE_COPY, waiting));
+    }
+
+    private static Book book(Library lib, String isbn) {
+        List<Book> found = lib.searchIsbn(isbn);
+        assertEquals(1, found.size());
+        return found.get(0);
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+}
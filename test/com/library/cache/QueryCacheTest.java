@@ -0,0 +1,205 @@
+// File: com/library/cache/QueryCacheTest.java
+package com.library.cache;
+
+import com.library.Library;
+import com.library.metrics.MetricsRegistry;
+import com.library.model.Book;
+import com.library.model.BookStatus;
+import com.library.model.Patron;
+import com.library.search.CatalogQuery;
+import com.library.search.Facet;
+import com.library.search.QueryResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCacheTest {
+    private static final int READER = 9101, FOWLER_FAN = 9102, NEWCOMER = 9103;
+
+    private static final List<String> TITLE_QUERIES = List.of(
+            "java", " JAVA ", "pattern", "clean", "arch", "e", "", "practice", "2", "in practice");
+    private static final List<String> TRIGRAM_QUERIES = List.of("java", "tect", "ring", "ar");
+    private static final List<String> AUTHOR_QUERIES = List.of("bloch", "fowler", "martin", "evans", "naftalin", "o");
+    private static final List<String> ISBN_QUERIES = List.of("978-0000000001", "9780000000003", "978-0000000005",
+            "978-0000000008", "978-0000000010", "978-0000000011", "978-0000000099");
+    private static final List<CatalogQuery> QUERIES = List.of(
+            CatalogQuery.all().facets(Facet.AUTHOR, Facet.DECADE, Facet.STATUS),
+            CatalogQuery.all().titleWords("java"),
+            CatalogQuery.all().titleWords("java").status(BookStatus.AVAILABLE).facets(Facet.STATUS),
+            CatalogQuery.all().author("martin").facets(Facet.AUTHOR, Facet.DECADE),
+            CatalogQuery.all().years(2000, 2010).status(BookStatus.BORROWED),
+            CatalogQuery.all().status(BookStatus.RESERVED),
+            CatalogQuery.all().author("bloch").titleWords("java").limit(1));
+
+    @Test
+    void cachedAnswersMatchAnUncachedLibraryAfterEveryEvent() {
+        Library cached = new Library();
+        Library uncached = new Library();
+        cached.enableQueryCache(1 << 20);
+
+        Map<String, Consumer<Library>> events = new LinkedHashMap<>();
+        events.put("checkout of the last copy", lib -> assertTrue(lib.checkout("978-0000000001", NEWCOMER)));
+        events.put("checkout of one of two copies", lib -> assertTrue(lib.checkout("978-0000000002", READER)));
+        events.put("return of the only copy", lib -> assertTrue(lib.returnBook("978-0000000001", NEWCOMER)));
+        events.put("addBook, a new title",
+                lib -> lib.addBook("978-0000000010", "Java Generics and Collections", "Maurice Naftalin", 2006, 1));
+        events.put("addBook, a new title by a borrowed author",
+                lib -> lib.addBook("978-0000000011", "Java Puzzlers 2", "Joshua Bloch", 2021, 1));
+        events.put("addBook, more copies", lib -> lib.addBook("978-0000000004", "Refactoring", "Martin Fowler", 1999, 2));
+        events.put("removeBook, the whole title", lib -> lib.removeBook("978-0000000003", 1));
+        events.put("updateBookInfo, title", lib -> lib.updateBook("978-0000000007", "Clean Architecture", "Robert Martin", 2008));
+        events.put("updateBookInfo, author", lib -> lib.updateBook("978-0000000008", "Domain-Driven Design", "Martin Fowler", 2003));
+        events.put("updateBookInfo, year", lib -> lib.updateBook("978-0000000006", "The Pragmatic Programmer", "Andrew Hunt", 2019));
+        events.put("checkout by the newcomer", lib -> assertTrue(lib.checkout("978-0000000005", NEWCOMER)));
+        events.put("reservation behind it", lib -> assertFalse(lib.checkout("978-0000000005", READER)));
+        events.put("return onto a hold", lib -> assertTrue(lib.returnBook("978-0000000005", NEWCOMER)));
+        events.put("hold collected", lib -> assertTrue(lib.checkout("978-0000000005", READER)));
+        events.put("removeBook, a borrowed author's title", lib -> lib.removeBook("978-0000000011", 1));
+        events.put("updateBookInfo, a held-out title renamed", lib -> lib.updateBook("978-0000000005", "Patterns Revisited", "Martin Fowler", 2002));
+        events.put("return of a borrowed title", lib -> assertTrue(lib.returnBook("978-0000000002", READER)));
+
+        for (Library lib : List.of(cached, uncached)) stock(lib);
+        assertSameAnswers(cached, uncached, "initial");
+        assertSameAnswers(cached, uncached, "initial, from the cache");
+        for (Map.Entry<String, Consumer<Library>> e : events.entrySet()) {
+            e.getValue().accept(cached);
+            e.getValue().accept(uncached);
+            assertSameAnswers(cached, uncached, e.getKey());
+        }
+        Map<String, Long> counters = cached.metrics().counters();
+        assertTrue(counters.get("cache.hit") > 0);
+        assertTrue(counters.get("cache.invalidation") > 0);
+    }
+
+    @Test
+    void searchComputedWhileAnInvalidationArrivesIsReturnedButNotKept() {
+        QueryCache cache = new QueryCache(1 << 20, new MetricsRegistry());
+        Book added = new Book("978-0000000010", "Java Generics", "Maurice Naftalin", 2006);
+        Book unrelated = new Book("978-0000000004", "Refactoring", "Martin Fowler", 1999);
+        AtomicInteger computed = new AtomicInteger();
+
+        List<Book> first = cache.searchTitle("java", q -> {
+            computed.incrementAndGet();
+            inAnotherThread(() -> cache.onBookAdded(added));
+            return List.of();
+        });
+        assertEquals(List.of(), first);
+        assertEquals(0, cache.size());
+
+        List<Book> second = cache.searchTitle("java", q -> {
+            computed.incrementAndGet();
+            inAnotherThread(() -> cache.onBookAdded(unrelated)); // cannot change this answer
+            return List.of(added);
+        });
+        assertEquals(List.of(added), second);
+        assertEquals(List.of(added), cache.searchTitle("java", q -> fail("recomputed")));
+        assertEquals(2, computed.get());
+    }
+
+    @Test
+    void recommendationComputedWhileItsBasisChangesIsNotKept() {
+        QueryCache cache = new QueryCache(1 << 20, new MetricsRegistry());
+        Patron reader = new Patron(READER, "Reader", "reader@example.com");
+        Book bloch = new Book("978-0000000002", "Effective Java", "Joshua Bloch", 2018);
+        Book other = new Book("978-0000000004", "Refactoring", "Martin Fowler", 1999);
+
+        // an availability change while the authors read are not known yet
+        cache.recommend(READER, 3, basis -> {
+            basis.authorRead("Joshua Bloch");
+            inAnotherThread(() -> cache.onStatusChanged(other, BookStatus.BORROWED, BookStatus.AVAILABLE));
+            return List.of(bloch);
+        });
+        assertEquals(0, cache.size());
+
+        // a checkout by the patron
+        cache.recommend(READER, 3, basis -> {
+            basis.authorRead("Joshua Bloch");
+            inAnotherThread(() -> cache.onCheckout(bloch, reader));
+            return List.of(bloch);
+        });
+        assertEquals(0, cache.size());
+
+        cache.recommend(READER, 3, basis -> {
+            basis.authorRead("Joshua Bloch");
+            return List.of(bloch);
+        });
+        assertEquals(List.of(bloch), cache.recommend(READER, 3, basis -> fail("recomputed")));
+        // kept until the author's availability changes
+        cache.onStatusChanged(other, BookStatus.AVAILABLE, BookStatus.BORROWED);
+        assertEquals(1, cache.size());
+        cache.onStatusChanged(bloch, BookStatus.AVAILABLE, BookStatus.BORROWED);
+        assertEquals(0, cache.size());
+    }
+
+    private static void stock(Library lib) {
+        lib.addBook("978-0000000001", "Java Concurrency in Practice", "Brian Goetz", 2006, 1);
+        lib.addBook("978-0000000002", "Effective Java", "Joshua Bloch", 2018, 2);
+        lib.addBook("978-0000000003", "Java Puzzlers", "Joshua Bloch", 2005, 1);
+        lib.addBook("978-0000000004", "Refactoring", "Martin Fowler", 1999, 1);
+        lib.addBook("978-0000000005", "Patterns of Enterprise Application Architecture", "Martin Fowler", 2002, 1);
+        lib.addBook("978-0000000006", "The Pragmatic Programmer", "Andrew Hunt", 1999, 1);
+        lib.addBook("978-0000000007", "Clean Code", "Robert Martin", 2008, 1);
+        lib.addBook("978-0000000008", "Domain-Driven Design", "Eric Evans", 2003, 1);
+        lib.addPatron(READER, "Reader", "reader@example.com");
+        lib.addPatron(FOWLER_FAN, "Fowler Fan", "fan@example.com");
+        lib.addPatron(NEWCOMER, "Newcomer", "new@example.com");
+        assertTrue(lib.checkout("978-0000000003", READER));
+        assertTrue(lib.returnBook("978-0000000003", READER));
+        assertTrue(lib.checkout("978-0000000004", FOWLER_FAN));
+        assertTrue(lib.returnBook("978-0000000004", FOWLER_FAN));
+    }
+
+    private static void assertSameAnswers(Library cached, Library uncached, String after) {
+        for (String q : TITLE_QUERIES) {
+            assertEquals(show(uncached.searchTitle(q)), show(cached.searchTitle(q)), after + ": title " + q);
+        }
+        for (String q : TRIGRAM_QUERIES) {
+            assertEquals(show(uncached.searchGeneric("TrigramSearchStrategy", q)),
+                    show(cached.searchGeneric("TrigramSearchStrategy", q)), after + ": trigram " + q);
+        }
+        for (String q : AUTHOR_QUERIES) {
+            assertEquals(show(uncached.searchAuthor(q)), show(cached.searchAuthor(q)), after + ": author " + q);
+        }
+        for (String q : ISBN_QUERIES) {
+            assertEquals(show(uncached.searchIsbn(q)), show(cached.searchIsbn(q)), after + ": isbn " + q);
+        }
+        for (CatalogQuery q : QUERIES) {
+            assertEquals(show(uncached.query(q)), show(cached.query(q)), after + ": " + q);
+        }
+        for (int patron : List.of(READER, FOWLER_FAN, NEWCOMER)) {
+            for (int limit : List.of(1, 3, 10)) {
+                assertEquals(show(uncached.recommendForPatron(patron, limit)),
+                        show(cached.recommendForPatron(patron, limit)), after + ": recommend " + patron + "/" + limit);
+            }
+        }
+    }
+
+    // the two libraries hold different Book objects; compare what a caller sees of them
+    private static List<String> show(List<Book> books) {
+        List<String> res = new ArrayList<>();
+        for (Book b : books) {
+            res.add(b.getIsbn() + "|" + b.getTitle() + "|" + b.getAuthor() + "|" + b.getPublicationYear() + "|" + b.getStatus());
+        }
+        return res;
+    }
+
+    private static String show(QueryResult r) {
+        StringBuilder sb = new StringBuilder().append(r.getTotal()).append(' ').append(show(r.getBooks()));
+        for (Facet f : Facet.values()) sb.append(' ').append(f).append(new TreeMap<>(r.getFacet(f)));
+        return sb.toString();
+    }
+
+    private static void inAnotherThread(Runnable r) {
+        Thread t = new Thread(r);
+        t.start();
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
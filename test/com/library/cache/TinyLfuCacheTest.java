@@ -0,0 +1,122 @@
+// File: com/library/cache/TinyLfuCacheTest.java
+package com.library.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TinyLfuCacheTest {
+
+    @Test
+    void weightFollowsPutsReplacementsAndRemovals() {
+        List<String> evicted = new ArrayList<>();
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(1000, (k, v) -> evicted.add(k));
+        cache.put("a", "A", 100);
+        cache.put("b", "B", 200);
+        assertEquals(300, cache.weight());
+        assertEquals(2, cache.size());
+
+        cache.put("a", "A2", 50);
+        assertEquals(250, cache.weight());
+        assertEquals("A2", cache.get("a"));
+        assertEquals("B", cache.remove("b"));
+        assertNull(cache.remove("b"));
+        assertEquals(50, cache.weight());
+
+        // an entry heavier than the whole cache is not kept, and replacing with one drops the old value
+        cache.put("c", "C", 1001);
+        assertNull(cache.get("c"));
+        assertEquals(50, cache.weight());
+        cache.put("a", "A3", 1001);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.weight());
+        assertEquals(0, cache.size());
+
+        cache.put("d", "D", 1000);
+        assertEquals(1000, cache.weight());
+        cache.clear();
+        assertEquals(0, cache.weight());
+        assertNull(cache.get("d"));
+        assertEquals(List.of(), evicted); // removals, replacements and clear are not evictions
+
+        assertThrows(IllegalArgumentException.class, () -> cache.put("e", "E", -1));
+        assertThrows(IllegalArgumentException.class, () -> new TinyLfuCache<String, String>(0, null));
+    }
+
+    @Test
+    void evictionKeepsTheCacheWithinItsWeightAndReportsEachEntryOnce() {
+        Map<String, Long> weights = new HashMap<>();
+        Set<String> evicted = new HashSet<>();
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(1000, (k, v) -> {
+            assertEquals(k.toUpperCase(), v);
+            assertTrue(evicted.add(k), k);
+        });
+        Random rnd = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            String key = "k" + rnd.nextInt(400);
+            if (rnd.nextInt(3) == 0) {
+                cache.get(key);
+                continue;
+            }
+            long w = 1 + rnd.nextInt(120);
+            if (cache.get(key) == null) evicted.remove(key); // back in after having been evicted
+            cache.put(key, key.toUpperCase(), w);
+            weights.put(key, w);
+            assertTrue(cache.weight() <= 1000, "weight " + cache.weight());
+        }
+        long live = 0;
+        int present = 0;
+        for (Map.Entry<String, Long> e : weights.entrySet()) {
+            if (cache.get(e.getKey()) != null) {
+                assertFalse(evicted.contains(e.getKey()), e.getKey());
+                live += e.getValue();
+                present++;
+            } else {
+                assertTrue(evicted.contains(e.getKey()), e.getKey());
+            }
+        }
+        assertEquals(live, cache.weight());
+        assertEquals(present, cache.size());
+    }
+
+    @Test
+    void frequentKeysSurviveAScanOfOneOffKeys() {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(1000, null);
+        // fill up first: the sketch forgets its counts whenever it grows with the cache
+        for (int i = 0; i < 200; i++) cache.put("fill" + i, i, 10);
+        for (int i = 0; i < 40; i++) {
+            for (int miss = 0; miss < 3; miss++) assertNull(cache.get("hot" + i));
+            cache.put("hot" + i, i, 10);
+        }
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 40; i++) assertNotNull(cache.get("hot" + i));
+        }
+
+        // the hot keys stay in demand while the scan runs; the sketch ages counts that stop coming
+        for (int i = 0; i < 5000; i++) {
+            if (cache.get("scan" + i) == null) cache.put("scan" + i, i, 10);
+            if (i % 5 == 0) assertNotNull(cache.get("hot" + (i / 5) % 40), "hot" + (i / 5) % 40);
+        }
+        for (int i = 0; i < 40; i++) assertNotNull(cache.get("hot" + i), "hot" + i);
+        int scanned = 0;
+        for (int i = 0; i < 5000; i++) {
+            if (cache.get("scan" + i) != null) scanned++;
+        }
+        assertTrue(scanned <= 60, "kept " + scanned + " one-off keys");
+        assertTrue(cache.weight() <= 1000);
+    }
+
+    @Test
+    void aNewlyPopularKeyIsAdmittedOverOneOffKeys() {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(1000, null);
+        for (int i = 0; i < 200; i++) cache.put("old" + i, i, 10);
+        for (int i = 0; i < 5; i++) assertNull(cache.get("new"));
+        cache.put("new", -1, 10);
+        for (int i = 0; i < 500; i++) {
+            if (cache.get("scan" + i) == null) cache.put("scan" + i, i, 10);
+        }
+        assertEquals(-1, cache.get("new"));
+    }
+}
@@ -0,0 +1,119 @@
+// File: com/library/cluster/LocalClusterTest.java
+package com.library.cluster;
+
+import com.library.inventory.CirculationOp;
+import com.library.model.Book;
+import com.library.model.Patron;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalClusterTest {
+    private static final int SHARDS = 3;
+
+    private static LocalCluster cluster;
+    private static ShardedLibrary router;
+    private static final List<ShardedLibrary> direct = new ArrayList<>(); // one router per shard
+
+    @BeforeAll
+    static void startCluster() throws IOException {
+        cluster = LocalCluster.start(SHARDS);
+        router = cluster.router();
+        for (InetSocketAddress a : cluster.shardAddresses()) direct.add(new ShardedLibrary(List.of(a)));
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        for (ShardedLibrary d : direct) d.close();
+        if (cluster != null) cluster.close();
+    }
+
+    @Test
+    void titlesLiveOnlyOnTheShardTheirIsbnHashesTo() {
+        assertEquals(SHARDS, router.shardCount());
+        assertEquals(SHARDS, cluster.shardAddresses().size());
+        for (int s = 0; s < SHARDS; s++) {
+            for (String isbn : ShardedLibraryTest.isbnsOn(router, s, 2)) {
+                router.addBook(isbn, "Routing " + isbn, "Router Author", 2010, 1);
+                for (int other = 0; other < SHARDS; other++) {
+                    assertEquals(other == s ? 1 : 0, direct.get(other).searchIsbn(isbn).size(), isbn + " on " + other);
+                }
+                // every spelling of the ISBN goes to the same shard
+                String bare = isbn.replace("-", "");
+                assertEquals(s, router.shardForIsbn(bare));
+                assertEquals(List.of(isbn), isbns(router.searchIsbn(bare)));
+                router.updateBook(isbn, "Rerouted " + isbn, "Router Author", 2011);
+                assertEquals("Rerouted " + isbn, direct.get(s).searchIsbn(isbn).get(0).getTitle());
+            }
+        }
+    }
+
+    @Test
+    void patronsAreRegisteredOnEveryShard() {
+        Patron p = router.addPatron("Everywhere", "everywhere@example.com");
+        for (ShardedLibrary shard : direct) {
+            Patron there = shard.getPatron(p.getId()).orElseThrow();
+            assertEquals("Everywhere", there.getName());
+        }
+        router.updatePatron(p.getId(), "Everywhere Else", "else@example.com");
+        for (ShardedLibrary shard : direct) {
+            assertEquals("Everywhere Else", shard.getPatron(p.getId()).orElseThrow().getName());
+        }
+        assertEquals("else@example.com", router.getPatron(p.getId()).orElseThrow().getEmail());
+    }
+
+    @Test
+    void titleAndAuthorSearchesGatherEveryShardInShardOrder() {
+        List<String> expected = new ArrayList<>();
+        for (int s = 0; s < SHARDS; s++) {
+            for (String isbn : ShardedLibraryTest.isbnsOn(router, s, 10).subList(8, 10)) {
+                router.addBook(isbn, "Scattered Gathering " + isbn, "Gatherer " + s, 2015, 1);
+                expected.add(isbn);
+            }
+        }
+        assertEquals(expected, isbns(router.searchTitle("scattered gathering")));
+        assertEquals(expected, isbns(router.searchAuthor("gatherer")));
+        assertEquals(expected, isbns(router.searchGeneric("TrigramSearchStrategy", "ered gath")));
+        assertEquals(List.of(), router.searchTitle("nowhere to be found"));
+    }
+
+    @Test
+    void circulateSplitsTheBatchByShardAndKeepsInputOrder() {
+        List<String> isbns = new ArrayList<>();
+        for (int s = 0; s < SHARDS; s++) isbns.add(ShardedLibraryTest.isbnsOn(router, s, 20).get(19));
+        for (String isbn : isbns) router.addBook(isbn, "Batch " + isbn, "Batch Author", 2020, 1);
+        Patron first = router.addPatron("First", "first@example.com");
+        Patron second = router.addPatron("Second", "second@example.com");
+
+        List<CirculationOp> ops = new ArrayList<>();
+        for (String isbn : isbns) ops.add(CirculationOp.checkout(isbn, first.getId()));
+        for (String isbn : isbns) ops.add(CirculationOp.checkout(isbn, second.getId())); // no copies left
+        ops.add(CirculationOp.giveBack(isbns.get(1), first.getId()));
+        ops.add(CirculationOp.checkout(isbns.get(1), second.getId())); // after the return, same shard
+        ops.add(CirculationOp.checkout("978-9999999999", first.getId()));
+
+        boolean[] res = router.circulate(ops);
+        assertArrayEquals(new boolean[]{
+                true, true, true,
+                false, false, false,
+                true, true,
+                false}, res);
+        assertFalse(router.checkout(isbns.get(0), second.getId()));
+        assertTrue(router.returnBook(isbns.get(1), second.getId()));
+        assertTrue(router.returnBook(isbns.get(2), first.getId()));
+        assertFalse(router.returnBook(isbns.get(1), first.getId()));
+    }
+
+    private static List<String> isbns(List<Book> books) {
+        List<String> res = new ArrayList<>();
+        for (Book b : books) res.add(b.getIsbn());
+        return res;
+    }
+}
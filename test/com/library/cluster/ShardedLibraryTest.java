@@ -0,0 +1,100 @@
+// File: com/library/cluster/ShardedLibraryTest.java
+package com.library.cluster;
+
+import com.library.Library;
+import com.library.model.Book;
+import com.library.model.Patron;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedLibraryTest {
+
+    @Test
+    void shardThatNeverAnswersFailsTheCallAfterTheTimeout() throws IOException {
+        List<Socket> accepted = new CopyOnWriteArrayList<>();
+        try (ServerSocket hung = new ServerSocket(0, 16, InetAddress.getLoopbackAddress())) {
+            Thread.ofPlatform().daemon().start(() -> {
+                try {
+                    while (true) accepted.add(hung.accept()); // reads nothing, answers nothing
+                } catch (IOException e) {
+                    // closed
+                }
+            });
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), hung.getLocalPort());
+            try (ShardedLibrary router = new ShardedLibrary(List.of(address), Duration.ofMillis(200))) {
+                long start = System.nanoTime();
+                UncheckedIOException single = assertThrows(UncheckedIOException.class,
+                        () -> router.searchIsbn("978-0134685991"));
+                assertInstanceOf(SocketTimeoutException.class, single.getCause());
+                assertTrue(single.getCause().getMessage().contains(String.valueOf(hung.getLocalPort())));
+
+                UncheckedIOException scattered = assertThrows(UncheckedIOException.class,
+                        () -> router.searchTitle("java"));
+                assertInstanceOf(SocketTimeoutException.class, scattered.getCause());
+                assertTrue(Duration.ofNanos(System.nanoTime() - start).toSeconds() < 10);
+            }
+        } finally {
+            for (Socket s : accepted) s.close();
+        }
+    }
+
+    @Test
+    void recommendationsFromBorrowingHistoryComeBeforeOtherShardsFallbacks() throws IOException {
+        try (ShardServer a = new ShardServer(new Library(), 0).start();
+             ShardServer b = new ShardServer(new Library(), 0).start();
+             ShardedLibrary router = new ShardedLibrary(List.of(address(a), address(b)))) {
+            List<String> onA = isbnsOn(router, 0, 4), onB = isbnsOn(router, 1, 3);
+            for (int i = 0; i < 4; i++) router.addBook(onA.get(i), "Bloch Volume " + i, "Joshua Bloch", 2001 + i, 1);
+            for (int i = 0; i < 3; i++) router.addBook(onB.get(i), "Newest " + i, "Someone Else", 2024 + i, 1);
+            Patron p = router.addPatron("Reader", "reader@example.com");
+            assertTrue(router.checkout(onA.get(0), p.getId()));
+
+            // shard b has none of the patron's history, so its newest books come last
+            List<String> titles = new ArrayList<>();
+            for (Book book : router.recommendForPatron(p.getId(), 5)) titles.add(book.getTitle());
+            assertEquals(List.of("Bloch Volume 1", "Bloch Volume 2", "Bloch Volume 3"),
+                    titles.subList(0, 3).stream().sorted().toList());
+            assertEquals(5, titles.size());
+            assertTrue(titles.get(3).startsWith("Newest ") && titles.get(4).startsWith("Newest "), titles.toString());
+
+            // a patron without any history gets every shard's newest, interleaved
+            Patron newcomer = router.addPatron("Newcomer", "new@example.com");
+            assertEquals(4, router.recommendForPatron(newcomer.getId(), 4).size());
+        }
+    }
+
+    @Test
+    void callTimeoutMustBePositive() {
+        List<InetSocketAddress> one = List.of(new InetSocketAddress(InetAddress.getLoopbackAddress(), 1));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedLibrary(one, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedLibrary(one, Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedLibrary(one, null));
+    }
+
+    static InetSocketAddress address(ShardServer shard) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), shard.getPort());
+    }
+
+    // the first n ISBNs of a made-up sequence that the router places on the given shard
+    static List<String> isbnsOn(ShardedLibrary router, int shard, int n) {
+        List<String> res = new ArrayList<>(n);
+        for (int i = 0; res.size() < n; i++) {
+            String isbn = String.format("978-%010d", i);
+            if (router.shardForIsbn(isbn) == shard) res.add(isbn);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,90 @@
+// File: com/library/concurrent/DenseIdTableTest.java
+package com.library.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DenseIdTableTest {
+
+    @Test
+    void putAndGetAcrossSegments() {
+        DenseIdTable<String> table = new DenseIdTable<>();
+        assertNull(table.get(0));
+        assertNull(table.get(-1));
+        assertNull(table.put(0, "zero"));
+        assertNull(table.put(5000, "far"));
+        assertEquals("zero", table.get(0));
+        assertEquals("far", table.get(5000));
+        assertNull(table.get(4999));
+        assertNull(table.get(1 << 20));
+        assertEquals(2, table.size());
+
+        assertEquals("far", table.put(5000, "replaced"));
+        assertEquals("replaced", table.get(5000));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    void rejectsNegativeIdsAndNullValues() {
+        DenseIdTable<String> table = new DenseIdTable<>();
+        assertThrows(IllegalArgumentException.class, () -> table.put(-1, "x"));
+        assertThrows(IllegalArgumentException.class, () -> table.put(1, null));
+    }
+
+    @Test
+    void readersSeeEveryPublishedIdWhileWritersGrowTheTable() throws Exception {
+        DenseIdTable<Integer> table = new DenseIdTable<>();
+        int writers = 4, perWriter = 50_000;
+        // writer w puts ids w, w + writers, ... and counts them in progress[w] after each put
+        AtomicIntegerArray progress = new AtomicIntegerArray(writers);
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            tasks.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perWriter; i++) {
+                    int id = i * writers + writer;
+                    table.put(id, id);
+                    progress.set(writer, i + 1);
+                }
+                return null;
+            }));
+        }
+        for (int r = 0; r < 2; r++) {
+            tasks.add(pool.submit(() -> {
+                start.await();
+                boolean finished = false;
+                while (!finished) {
+                    finished = true;
+                    for (int w = 0; w < writers; w++) {
+                        int count = progress.get(w);
+                        if (count < perWriter) finished = false;
+                        for (int i = Math.max(0, count - 256); i < count; i++) {
+                            int id = i * writers + w;
+                            Integer v = table.get(id);
+                            if (v == null || v != id) errors.add("id " + id + " read " + v);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : tasks) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertTrue(errors.isEmpty(), () -> "inconsistent reads: " + errors.stream().limit(5).toList());
+        assertEquals(writers * perWriter, table.size());
+        for (int id = 0; id < writers * perWriter; id++) assertEquals(id, table.get(id));
+    }
+}
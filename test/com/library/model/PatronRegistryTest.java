@@ -0,0 +1,87 @@
+// File: com/library/model/PatronRegistryTest.java
+package com.library.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatronRegistryTest {
+
+    @Test
+    void registerReplacesAndListsEachIdOnce() {
+        PatronRegistry registry = new PatronRegistry();
+        Patron first = new Patron(10, "Ada", "ada@example.com");
+        Patron second = new Patron(10, "Ada Lovelace", "ada@example.com");
+        assertNull(registry.register(first));
+        assertSame(first, registry.register(second));
+
+        assertSame(second, registry.get(10));
+        assertNull(registry.get(11));
+        assertNull(registry.get(-1));
+        assertEquals(1, registry.size());
+        assertEquals(List.of(second), registry.snapshot());
+    }
+
+    @Test
+    void concurrentRegistrationsAreVisibleToLookupsAndListing() throws Exception {
+        PatronRegistry registry = new PatronRegistry();
+        int threads = 4, perThread = 5_000;
+        int base = 1_000_000; // clear of ids other tests draw from the shared generator
+        AtomicIntegerArray progress = new AtomicIntegerArray(threads);
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            tasks.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    int id = base + i * threads + thread;
+                    assertNull(registry.register(new Patron(id, "Patron " + id, id + "@example.com")));
+                    progress.set(thread, i + 1);
+                }
+                return null;
+            }));
+        }
+        for (int r = 0; r < 2; r++) {
+            tasks.add(pool.submit(() -> {
+                start.await();
+                boolean finished = false;
+                while (!finished) {
+                    finished = true;
+                    for (int t = 0; t < threads; t++) {
+                        int count = progress.get(t);
+                        if (count < perThread) finished = false;
+                        for (int i = Math.max(0, count - 64); i < count; i++) {
+                            int id = base + i * threads + t;
+                            Patron p = registry.get(id);
+                            if (p == null || p.getId() != id || !p.getName().equals("Patron " + id)) {
+                                errors.add("id " + id + " read " + p);
+                            }
+                        }
+                    }
+                    // a listing never shows a patron twice, whatever registrations run meanwhile
+                    List<Patron> listed = registry.snapshot();
+                    if (new HashSet<>(listed).size() != listed.size()) errors.add("duplicate in listing");
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : tasks) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertTrue(errors.isEmpty(), () -> "inconsistent reads: " + errors.stream().limit(5).toList());
+        assertEquals(threads * perThread, registry.size());
+        Set<Integer> ids = new HashSet<>();
+        for (Patron p : registry.snapshot()) ids.add(p.getId());
+        assertEquals(threads * perThread, ids.size());
+        for (int i = 0; i < threads * perThread; i++) assertNotNull(registry.get(base + i));
+    }
+}
@@ -0,0 +1,125 @@
+// File: com/library/persistence/SnapshotTest.java
+package com.library.persistence;
+
+import com.library.model.BookStatus;
+import com.library.model.Patron;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 10, 15, 30);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsEverySection() throws IOException {
+        Path file = snapshot(42).write(dir);
+        Snapshot read = Snapshot.read(file);
+
+        assertEquals(42, read.getLsn());
+        assertEquals(2, read.getBooks().size());
+        Snapshot.BookState b = read.getBooks().get(0);
+        assertEquals("978-0134685991", b.getIsbn());
+        assertEquals("Effective Java", b.getTitle());
+        assertEquals("Joshua Bloch", b.getAuthor());
+        assertEquals(2018, b.getYear());
+        assertEquals(BookStatus.AVAILABLE, b.getStatus());
+        assertEquals(2, b.getAvailable());
+        assertEquals(1, b.getBorrowed());
+        assertNull(read.getBooks().get(1).getAuthor());
+
+        Snapshot.PatronState p = read.getPatrons().get(0);
+        assertEquals(7, p.getId());
+        assertEquals("Grace", p.getName());
+        assertEquals("grace@example.com", p.getEmail());
+        assertEquals(2, p.getHistory().size());
+        assertEquals(T0, p.getHistory().get(0).getBorrowedAt());
+        assertEquals(T0.plusDays(3), p.getHistory().get(0).getReturnAt());
+        assertNull(p.getHistory().get(1).getReturnAt());
+
+        assertArrayEquals(new int[]{7, 8}, read.getReservations().get("978-0000000002"));
+        assertEquals(1, read.getHolds().size());
+        assertEquals("978-0000000002", read.getHolds().get(0).getIsbn());
+        assertEquals(8, read.getHolds().get(0).getPatronId());
+        assertEquals(T0.plusHours(1), read.getHolds().get(0).getPlacedAt());
+    }
+
+    @Test
+    void writingKeepsOnlyTheNewestSnapshot() throws IOException {
+        snapshot(10).write(dir);
+        snapshot(20).write(dir);
+        assertEquals(1, snapshotFiles().size());
+        assertEquals(20, Snapshot.loadLatest(dir).orElseThrow().getLsn());
+    }
+
+    @Test
+    void corruptSnapshotIsSkipped() throws IOException {
+        Path file = snapshot(5).write(dir);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[]{0x55}), 44); // inside the first title
+        }
+        assertThrows(IOException.class, () -> Snapshot.read(file));
+        assertTrue(Snapshot.loadLatest(dir).isEmpty());
+    }
+
+    @Test
+    void truncatedSnapshotIsRejected() throws IOException {
+        Path file = snapshot(5).write(dir);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 9);
+        }
+        assertThrows(IOException.class, () -> Snapshot.read(file));
+    }
+
+    @Test
+    void otherFormatVersionsAreRejected() throws IOException {
+        Path file = snapshot(5).write(dir);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(4).putInt(0, 1), 4); // the version follows the magic number
+        }
+        IOException e = assertThrows(IOException.class, () -> Snapshot.read(file));
+        assertTrue(e.getMessage().contains("version"), e.getMessage());
+    }
+
+    @Test
+    void emptyOrMissingDirectoryHasNoSnapshot() throws IOException {
+        assertTrue(Snapshot.loadLatest(dir).isEmpty());
+        assertTrue(Snapshot.loadLatest(dir.resolve("missing")).isEmpty());
+    }
+
+    private static Snapshot snapshot(long lsn) {
+        List<Snapshot.BookState> books = List.of(
+                new Snapshot.BookState("978-0134685991", "Effective Java", "Joshua Bloch", 2018, BookStatus.AVAILABLE, 2, 1),
+                new Snapshot.BookState("978-0000000002", "Anonymous Classics", null, 1901, BookStatus.RESERVED, 0, 0));
+        List<Snapshot.PatronState> patrons = List.of(
+                new Snapshot.PatronState(7, "Grace", "grace@example.com", List.of(
+                        new Patron.BorrowRecord("978-0134685991", T0, T0.plusDays(3)),
+                        new Patron.BorrowRecord("978-0134685991", T0.plusDays(10), null))),
+                new Snapshot.PatronState(8, "Alan", "alan@example.com", List.of()));
+        Map<String, int[]> reservations = new LinkedHashMap<>();
+        reservations.put("978-0000000002", new int[]{7, 8});
+        List<Snapshot.HoldState> holds = List.of(new Snapshot.HoldState("978-0000000002", 8, T0.plusHours(1)));
+        return new Snapshot(lsn, books, patrons, reservations, holds);
+    }
+
+    private List<Path> snapshotFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("snapshot-")).toList();
+        }
+    }
+}
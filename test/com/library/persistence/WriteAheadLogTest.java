@@ -0,0 +1,163 @@
+// File: com/library/persistence/WriteAheadLogTest.java
+package com.library.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysEveryRecordInOrderAcrossSegments() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, 1, 256)) {
+            for (int i = 1; i <= 100; i++) {
+                assertEquals(i, wal.append((byte) (i % 7), payload("record " + i)));
+                wal.awaitDurable(); // one write per record, so segments fill up and roll over
+            }
+            assertEquals(100, wal.durableLsn());
+        }
+        assertTrue(segments().size() > 1);
+
+        List<String> seen = new ArrayList<>();
+        long last = WriteAheadLog.replay(dir, 0, (lsn, type, p) -> {
+            assertEquals(lsn % 7, type);
+            seen.add(lsn + ":" + text(p));
+        });
+        assertEquals(100, last);
+        assertEquals(100, seen.size());
+        for (int i = 1; i <= 100; i++) assertEquals(i + ":record " + i, seen.get(i - 1));
+    }
+
+    @Test
+    void replayStartsAfterTheGivenLsnAndAppendingContinues() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, 1)) {
+            for (int i = 1; i <= 10; i++) wal.append((byte) 1, payload("a" + i));
+        }
+        List<Long> seen = new ArrayList<>();
+        long last = WriteAheadLog.replay(dir, 6, (lsn, type, p) -> seen.add(lsn));
+        assertEquals(List.of(7L, 8L, 9L, 10L), seen);
+
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, last + 1)) {
+            assertEquals(11, wal.append((byte) 1, payload("a11")));
+        }
+        assertEquals(11, WriteAheadLog.replay(dir, 0, (lsn, type, p) -> { }));
+    }
+
+    @Test
+    void tornTailIsCutBackToTheLastIntactRecord() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, 1)) {
+            for (int i = 1; i <= 5; i++) wal.append((byte) 1, payload("record " + i));
+        }
+        Path segment = segments().get(0);
+        long size = Files.size(segment);
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.truncate(size - 3); // a crash in the middle of writing the last record
+        }
+
+        List<String> seen = new ArrayList<>();
+        assertEquals(4, WriteAheadLog.replay(dir, 0, (lsn, type, p) -> seen.add(text(p))));
+        assertEquals(List.of("record 1", "record 2", "record 3", "record 4"), seen);
+        assertTrue(Files.size(segment) < size - 3);
+
+        // the next run appends after the cut and both old and new records replay
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, 5)) {
+            wal.append((byte) 1, payload("record 5 again"));
+        }
+        seen.clear();
+        assertEquals(5, WriteAheadLog.replay(dir, 0, (lsn, type, p) -> seen.add(text(p))));
+        assertEquals("record 5 again", seen.get(4));
+    }
+
+    @Test
+    void corruptRecordEndsTheLog() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, 1)) {
+            for (int i = 1; i <= 5; i++) wal.append((byte) 1, payload("record " + i));
+        }
+        Path segment = segments().get(0);
+        int recordBytes = WriteAheadLog.HEADER_BYTES + "record 1".length();
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[]{'X'}), 2L * recordBytes + WriteAheadLog.HEADER_BYTES);
+        }
+        List<Long> seen = new ArrayList<>();
+        assertEquals(2, WriteAheadLog.replay(dir, 0, (lsn, type, p) -> seen.add(lsn)));
+        assertEquals(List.of(1L, 2L), seen);
+    }
+
+    @Test
+    void truncateThroughDropsOnlyWholeSegmentsItCovers() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, 1, 128)) {
+            for (int i = 1; i <= 40; i++) {
+                wal.append((byte) 1, payload("record " + i));
+                wal.awaitDurable();
+            }
+            int before = segments().size();
+            wal.truncateThrough(20);
+            assertTrue(segments().size() < before);
+        }
+        List<Long> seen = new ArrayList<>();
+        assertEquals(40, WriteAheadLog.replay(dir, 20, (lsn, type, p) -> seen.add(lsn)));
+        assertEquals(20, seen.size());
+        assertEquals(21L, seen.get(0));
+    }
+
+    @Test
+    void closeLetsWaitersForRecordsAppendedBeforeItFinish() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            Path roundDir = dir.resolve("round" + round);
+            WriteAheadLog wal = WriteAheadLog.open(roundDir, 1);
+            int threads = 8;
+            CountDownLatch appended = new CountDownLatch(threads);
+            List<Throwable> errors = new CopyOnWriteArrayList<>();
+            List<Thread> waiters = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                waiters.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        for (int i = 0; i < 50; i++) wal.append((byte) 1, payload("t" + id + " " + i));
+                        appended.countDown();
+                        wal.awaitDurable(); // the writer may still be draining when close() starts
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }));
+            }
+            appended.await();
+            wal.close();
+            for (Thread w : waiters) w.join();
+            assertEquals(List.of(), errors);
+            assertEquals(threads * 50L, WriteAheadLog.replay(roundDir, 0, (lsn, type, p) -> { }));
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static ByteBuffer payload(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(ByteBuffer p) {
+        byte[] b = new byte[p.remaining()];
+        p.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,125 @@
+// File: com/library/search/TokenIndexTest.java
+package com.library.search;
+
+import com.library.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenIndexTest {
+    private static final String[] WORDS = {
+            "java", "javascript", "lava", "avatar", "concurrency", "concurrent", "currency", "patterns",
+            "pattern", "antipatterns", "effective", "defective", "design", "designing", "redesign",
+            "a", "an", "ant", "x", "xx", "xxx", "xxxx", "c++", "2nd", "edition", "édition", "ai", "aaa"
+    };
+
+    @Test
+    void bareWordQueriesMatchTheLinearVocabularyScan() {
+        Random rnd = new Random(17);
+        TokenIndex index = new TokenIndex(Book::getTitle);
+        LinearScan scan = new LinearScan();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            Book b = new Book("isbn-" + i, title(rnd), "Author " + i, 2000);
+            books.add(b);
+            index.add(b);
+            scan.add(b);
+        }
+        // removals and edits drop tokens from the vocabulary and its gram index
+        for (int i = 0; i < 60; i++) {
+            Book b = books.remove(rnd.nextInt(books.size()));
+            index.remove(b);
+            scan.remove(b);
+        }
+        for (int i = 0; i < 60; i++) {
+            Book b = books.get(rnd.nextInt(books.size()));
+            scan.remove(b);
+            b.setTitle(title(rnd));
+            index.reindex(b);
+            scan.add(b);
+        }
+
+        Set<String> queries = new TreeSet<>(List.of("zzz", "qjava", "javaq", "va", "v", "rren", "ttern"));
+        for (String w : WORDS) {
+            for (String t : TokenIndex.tokenize(w)) {
+                queries.add(t);                                                     // whole word
+                for (int i = 1; i < t.length(); i++) queries.add(t.substring(0, i)); // prefix
+                for (int i = 1; i < t.length(); i++) queries.add(t.substring(i));    // suffix
+                for (int i = 1; i + 1 < t.length(); i++) {
+                    for (int j = i + 1; j < t.length(); j++) queries.add(t.substring(i, j)); // infix
+                }
+            }
+        }
+        for (String q : queries) {
+            List<Book> expected = scan.search(q);
+            assertEquals(expected, index.search(q), q);
+            assertEquals(expected, index.search(" " + q.toUpperCase() + " ".repeat(q.length() % 2)), q);
+        }
+        assertEquals(books.size(), index.size());
+        assertEquals(scan.tokens.size(), index.tokenCount());
+    }
+
+    @Test
+    void removedTokensNoLongerMatch() {
+        TokenIndex index = new TokenIndex(Book::getTitle);
+        Book b = new Book("isbn-1", "Concurrency in Practice", "Brian Goetz", 2006);
+        index.add(b);
+        assertEquals(List.of(b), index.search("curren"));
+        b.setTitle("Practice");
+        index.reindex(b);
+        assertEquals(List.of(), index.search("curren"));
+        assertEquals(List.of(), index.search("cy"));
+        assertEquals(List.of(b), index.search("act"));
+        index.remove(b);
+        assertEquals(List.of(), index.search("act"));
+        assertEquals(0, index.tokenCount());
+    }
+
+    // The index's answer before the gram lookup: every token of the vocabulary, in order, checked
+    // with contains, then each candidate verified against the whole field. Postings keep the books
+    // in the order they were indexed, as the index's own do.
+    private static final class LinearScan {
+        final NavigableMap<String, Set<Book>> tokens = new TreeMap<>();
+        final Map<Book, List<String>> tokensOf = new HashMap<>();
+
+        void add(Book b) {
+            List<String> toks = TokenIndex.tokenize(b.getTitle().toLowerCase());
+            tokensOf.put(b, toks);
+            for (String t : toks) tokens.computeIfAbsent(t, k -> new LinkedHashSet<>()).add(b);
+        }
+
+        void remove(Book b) {
+            for (String t : tokensOf.remove(b)) {
+                Set<Book> withToken = tokens.get(t);
+                withToken.remove(b);
+                if (withToken.isEmpty()) tokens.remove(t);
+            }
+        }
+
+        List<Book> search(String query) {
+            String q = query.toLowerCase().trim();
+            Set<Book> candidates = new LinkedHashSet<>();
+            for (Map.Entry<String, Set<Book>> e : tokens.entrySet()) {
+                if (e.getKey().contains(q)) candidates.addAll(e.getValue());
+            }
+            List<Book> res = new ArrayList<>();
+            for (Book b : candidates) {
+                if (b.getTitle().toLowerCase().contains(q)) res.add(b);
+            }
+            return res;
+        }
+    }
+
+    private static String title(Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        int n = 1 + rnd.nextInt(4);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(rnd.nextBoolean() ? " " : ": ");
+            String w = WORDS[rnd.nextInt(WORDS.length)];
+            sb.append(rnd.nextInt(5) == 0 ? w.toUpperCase() : w);
+        }
+        return sb.toString();
+    }
+}
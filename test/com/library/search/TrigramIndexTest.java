@@ -0,0 +1,52 @@
+// File: com/library/search/TrigramIndexTest.java
+package com.library.search;
+
+import com.library.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+    private static final String[] TITLES = {
+            "Java", "Effective Java", "Clean Code", "Refactoring", "Domain-Driven Design", "AI", "Go", "x",
+            "Patterns of Enterprise Application Architecture", "Java Concurrency in Practice", "Édition 2", "C++"
+    };
+
+    @Test
+    void queriesOfEveryLengthMatchALinearScan() {
+        TrigramIndex index = new TrigramIndex(Book::getTitle);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < TITLES.length; i++) {
+            Book b = new Book("isbn-" + i, TITLES[i], "Author " + i, 2000);
+            books.add(b);
+            index.add(b);
+        }
+        Set<String> queries = new TreeSet<>(List.of("", "zz", "q", "va j", "n d"));
+        for (String t : TITLES) {
+            String lower = t.toLowerCase();
+            for (int i = 0; i < lower.length(); i++) {
+                for (int j = i + 1; j <= Math.min(lower.length(), i + 4); j++) queries.add(lower.substring(i, j));
+            }
+        }
+        for (String q : queries) {
+            assertEquals(scan(books, q), index.search(q), q);
+            assertEquals(scan(books, q), index.search(" " + q.toUpperCase() + " "), q);
+        }
+    }
+
+    // search answers in slot order, which is insertion order while nothing has been removed,
+    // followed by the titles too short to have a trigram
+    private static List<Book> scan(List<Book> books, String q) {
+        String needle = q.trim();
+        List<Book> res = new ArrayList<>();
+        for (boolean shortTitles : new boolean[]{false, true}) {
+            for (Book b : books) {
+                String title = b.getTitle().toLowerCase();
+                if ((title.length() < 3) == shortTitles && title.contains(needle)) res.add(b);
+            }
+        }
+        return res;
+    }
+}